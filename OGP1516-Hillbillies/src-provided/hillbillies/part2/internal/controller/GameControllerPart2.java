@@ -1,5 +1,10 @@
 package hillbillies.part2.internal.controller;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -15,8 +20,11 @@ import hillbillies.common.internal.selection.Selection;
 import hillbillies.model.Boulder;
 import hillbillies.model.Faction;
 import hillbillies.model.Log;
+import hillbillies.model.SimulationLoop;
 import hillbillies.model.Unit;
+import hillbillies.model.Vector;
 import hillbillies.model.World;
+import hillbillies.model.WorldSnapshot;
 import hillbillies.part2.facade.IFacade;
 import hillbillies.part2.internal.Constants;
 import hillbillies.part2.internal.Part2Options;
@@ -31,8 +39,15 @@ import ogp.framework.util.ModelException;
 
 public class GameControllerPart2 extends GameController<IHillbilliesView2> implements IGameController2 {
 
+	/**
+	 * The game time by which the simulation thread advances the world in a single step.
+	 */
+	private static final double SIMULATION_STEP = 0.02;
+
 	private World world;
 
+	private SimulationLoop simulation;
+
 	private final GameMap map;
 
 	private final Set<TerrainChangeListener> listeners = new HashSet<>();
@@ -46,8 +61,75 @@ public class GameControllerPart2 extends GameController<IHillbilliesView2> imple
 		}
 	};
 
+	/**
+	 * Terrain changes happen on the simulation thread; the view learns about them from the
+	 * changed cubes of the snapshots it takes, so the world does not notify anyone itself.
+	 */
+	private static final TerrainChangeListener simulationListener = (x, y, z) -> {
+	};
+
+	/**
+	 * The type of each cube of the world, as of the latest snapshot taken by the view.
+	 */
+	private final int[][][] terrain;
+
+	/**
+	 * Whether each cube of the world is solid and connected to the border, as of the latest
+	 * snapshot taken by the view.
+	 */
+	private final boolean[][][] anchored;
+
+	/**
+	 * The latest snapshot taken by the view.
+	 */
+	private WorldSnapshot snapshot;
+
+	/**
+	 * Whether the failure of the simulation has been reported.
+	 */
+	private boolean failureReported = false;
+
+	/**
+	 * Invocation handler running every call to the facade while holding the lock of the
+	 * world, so that user commands and the info panels never see a world halfway a step.
+	 * Rendering does not go through the facade, but reads the snapshots of the world.
+	 */
+	private static class SynchronizedFacade implements InvocationHandler {
+
+		private final Object facade;
+
+		private volatile Object lock = this;
+
+		private SynchronizedFacade(Object facade) {
+			this.facade = facade;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			synchronized (lock) {
+				try {
+					return method.invoke(facade, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		}
+
+		private static Object wrap(Object facade) {
+			return Proxy.newProxyInstance(facade.getClass().getClassLoader(), allInterfaces(facade.getClass()),
+					new SynchronizedFacade(facade));
+		}
+
+		private static Class<?>[] allInterfaces(Class<?> type) {
+			Set<Class<?>> interfaces = new HashSet<>();
+			for (Class<?> c = type; c != null; c = c.getSuperclass())
+				Collections.addAll(interfaces, c.getInterfaces());
+			return interfaces.toArray(new Class<?>[interfaces.size()]);
+		}
+	}
+
 	public GameControllerPart2(IFacade facade, Part2Options options, GameMap map) throws ModelException {
-		super(facade, options);
+		super((IFacade) SynchronizedFacade.wrap(facade), options);
 		this.map = map;
 
 		int[][][] types = new int[map.getNbTilesX()][map.getNbTilesY()][map.getNbTilesZ()];
@@ -61,11 +143,63 @@ public class GameControllerPart2 extends GameController<IHillbilliesView2> imple
 			}
 		}
 
-		world = facade.createWorld(types, modelListener);
+		terrain = new int[types.length][types[0].length][];
+		anchored = new boolean[types.length][types[0].length][types[0][0].length];
+		for (int x = 0; x < types.length; x++) {
+			for (int y = 0; y < types[x].length; y++) {
+				terrain[x][y] = types[x][y].clone();
+			}
+		}
+
+		world = facade.createWorld(types, simulationListener);
+		for (int x = 0; x < anchored.length; x++) {
+			for (int y = 0; y < anchored[x].length; y++) {
+				for (int z = 0; z < anchored[x][y].length; z++) {
+					anchored[x][y][z] = facade.isSolidConnectedToBorder(world, x, y, z);
+				}
+			}
+		}
+		((SynchronizedFacade) Proxy.getInvocationHandler(getFacade())).lock = world;
+		simulation = new SimulationLoop(world, SIMULATION_STEP);
+		synchronized (world) {
+			simulation.start();
+			snapshot = world.takeSnapshot();
+		}
 
 		getSelectionProvider().addListener(e -> selectionUpdated());
 	}
 
+	/**
+	 * Returns the latest snapshot of the world taken by the view, which the terrain
+	 * shown by the view is in line with.
+	 */
+	@Override
+	public WorldSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Takes the latest snapshot published by the simulation thread, if there is a new one,
+	 * and brings the terrain of the view up to date with the cubes that have changed since
+	 * the previous snapshot that was taken.
+	 * 
+	 * @return The snapshot taken before.
+	 */
+	private WorldSnapshot takeSnapshot() {
+		WorldSnapshot previous = snapshot;
+		WorldSnapshot next = world.takeSnapshot();
+		if (next == null)
+			return previous;
+		snapshot = next;
+		for (Vector cube : next.getChangedCubes()) {
+			int x = cube.getCubeX(), y = cube.getCubeY(), z = cube.getCubeZ();
+			terrain[x][y][z] = next.getCubeType(cube);
+			anchored[x][y][z] = next.isSolidConnectedToBorder(cube);
+			modelListener.notifyTerrainChanged(x, y, z);
+		}
+		return previous;
+	}
+
 	@Override
 	public Part2Options getOptions() {
 		return (Part2Options) super.getOptions();
@@ -105,66 +239,71 @@ public class GameControllerPart2 extends GameController<IHillbilliesView2> imple
 
 		@Override
 		public int getNbZTiles() {
-			try {
-				return getFacade().getNbCubesZ(world);
-			} catch (ModelException e) {
-				handleError(e);
-				return 50;
-			}
+			return terrain[0][0].length;
 		}
 
 		@Override
 		public int getNbYTiles() {
-			try {
-				return getFacade().getNbCubesY(world);
-			} catch (ModelException e) {
-				handleError(e);
-				return 50;
-			}
+			return terrain[0].length;
 		}
 
 		@Override
 		public int getNbXTiles() {
-			try {
-				return getFacade().getNbCubesX(world);
-			} catch (ModelException e) {
-				handleError(e);
-				return 50;
-			}
+			return terrain.length;
 		}
 
 		@Override
 		public CubeType getCubeTypeAt(int x, int y, int z) {
-			try {
-				CubeType result = CubeType.fromByte((byte) getFacade().getCubeType(world, x, y, z));
-				return result;
-			} catch (ModelException e) {
+			if (!isInside(x, y, z))
 				return CubeType.EMPTY;
-			}
+			return CubeType.fromByte((byte) terrain[x][y][z]);
 		};
 
 		@Override
 		public boolean isAnchored(int x, int y, int z) {
-			try {
-				return getFacade().isSolidConnectedToBorder(world, x, y, z);
-			} catch (ModelException e) {
-				handleError(e);
-			}
-			return false;
+			return isInside(x, y, z) && anchored[x][y][z];
 		};
 
+		private boolean isInside(int x, int y, int z) {
+			return 0 <= x && x < terrain.length && 0 <= y && y < terrain[x].length && 0 <= z
+					&& z < terrain[x][y].length;
+		}
+
 		@Override
 		public Set<?> getObjectsInBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+			final double[] min = new double[] { minX, minY, minZ };
+			final double[] max = new double[] { maxX, maxY, maxZ };
+			WorldSnapshot snapshot = getSnapshot();
 			Set<Object> result = new HashSet<>();
-			result.addAll(getObjectsOfTypeInBox(Unit.class, minX, minY, minZ, maxX, maxY, maxZ, getFacade()::getUnits,
-					getFacade()::isAlive, getFacade()::getPosition));
-			result.addAll(getObjectsOfTypeInBox(Boulder.class, minX, minY, minZ, maxX, maxY, maxZ,
-					getFacade()::getBoulders, b -> true, getFacade()::getPosition));
-			result.addAll(getObjectsOfTypeInBox(Log.class, minX, minY, minZ, maxX, maxY, maxZ, getFacade()::getLogs,
-					l -> true, getFacade()::getPosition));
+			for (Unit unit : snapshot.getUnits()) {
+				if (liesInBox(snapshot.getState(unit).getPosition().toArray(), min, max))
+					result.add(unit);
+			}
+			for (Map.Entry<Boulder, Vector> boulder : snapshot.getBoulders().entrySet()) {
+				if (liesInBox(boulder.getValue().toArray(), min, max))
+					result.add(boulder.getKey());
+			}
+			for (Map.Entry<Log, Vector> log : snapshot.getLogs().entrySet()) {
+				if (liesInBox(log.getValue().toArray(), min, max))
+					result.add(log.getKey());
+			}
 			return result;
 		}
 
+		private double[] visibleRegion;
+
+		@Override
+		public void setVisibleRegion(double minX, double minY, double maxX, double maxY) {
+			double[] region = new double[] { minX, minY, maxX, maxY };
+			if (Arrays.equals(region, visibleRegion))
+				return;
+			visibleRegion = region;
+			simulation.execute(() -> {
+				world.clearInterestRegions();
+				world.addInterestRegion(new Vector(minX, minY, 0), new Vector(maxX, maxY, world.nbCoordinateZ()));
+			});
+		}
+
 	};
 
 	@FunctionalInterface
@@ -220,24 +359,34 @@ public class GameControllerPart2 extends GameController<IHillbilliesView2> imple
 
 	private Object myFaction;
 
+	/**
+	 * Hands the elapsed game time to the simulation thread, which advances the world
+	 * on its own, and takes the latest snapshot it has published. This method returns
+	 * at once, whatever the cost of simulating it. A failure of the simulation is
+	 * reported once.
+	 */
 	@Override
 	public void updateGame(double dt) {
 		try {
-			getFacade().advanceTime(world, dt);
-			deselectDeadUnit();
-		} catch (ModelException e) {
-			handleError(e);
+			simulation.addTime(dt);
+		} catch (IllegalStateException e) {
+			if (!failureReported) {
+				failureReported = true;
+				handleError(new ModelException(e.getMessage(), e.getCause()));
+			}
 		}
+		deselectDeadUnit(takeSnapshot());
 	}
 
-	protected void deselectDeadUnit() {
+	/**
+	 * Clears the selection if the selected unit was part of the given previous snapshot,
+	 * but no longer is part of the current one. A unit that has just been spawned is not
+	 * part of any snapshot until the simulation thread has taken its next step.
+	 */
+	protected void deselectDeadUnit(WorldSnapshot previous) {
 		getSelectedUnit().ifPresent(unit -> {
-			try {
-				if (!getFacade().isAlive(unit)) {
-					getSelectionProvider().getSelection().clear();
-				}
-			} catch (ModelException e) {
-				handleError(e);
+			if (previous.getState(unit) != null && getSnapshot().getState(unit) == null) {
+				getSelectionProvider().getSelection().clear();
 			}
 		});
 	}
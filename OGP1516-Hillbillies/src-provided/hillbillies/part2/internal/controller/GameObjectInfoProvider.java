@@ -1,11 +1,15 @@
 package hillbillies.part2.internal.controller;
 
+import java.util.Optional;
 import java.util.function.Consumer;
 
 import hillbillies.model.Boulder;
 import hillbillies.model.Faction;
 import hillbillies.model.Log;
+import hillbillies.model.Status;
 import hillbillies.model.Unit;
+import hillbillies.model.Vector;
+import hillbillies.model.WorldSnapshot.UnitState;
 import hillbillies.part1.internal.controller.UnitInfoProviderPart1;
 import hillbillies.part2.facade.IFacade;
 import hillbillies.part2.internal.providers.IGameObjectInfoProvider;
@@ -27,6 +31,71 @@ public class GameObjectInfoProvider extends UnitInfoProviderPart1 implements IGa
 		return (IFacade) super.getFacade();
 	}
 
+	/**
+	 * Returns the state of the given unit in the latest snapshot of the world,
+	 * or null if the unit was no longer part of it.
+	 */
+	protected UnitState getState(Unit unit) {
+		return getGame().getSnapshot().getState(unit);
+	}
+
+	@Override
+	public Optional<double[]> getPosition(Unit unit) {
+		UnitState state = getState(unit);
+		return (state == null) ? Optional.empty() : Optional.of(state.getPosition().toArray());
+	}
+
+	@Override
+	public int getOrientationInDegrees(Unit unit) {
+		UnitState state = getState(unit);
+		if (state == null)
+			return 0;
+		return (int) ((180.0 * state.getOrientation() / Math.PI) + 360) % 360;
+	}
+
+	@Override
+	public boolean isWorking(Unit unit) {
+		UnitState state = getState(unit);
+		return state != null && state.getStatus() == Status.WORKING;
+	}
+
+	@Override
+	public boolean isWalking(Unit unit) {
+		UnitState state = getState(unit);
+		return state != null
+				&& (state.getStatus() == Status.MOVINGADJACENT || state.getStatus() == Status.MOVINGDISTANT);
+	}
+
+	@Override
+	public boolean isResting(Unit unit) {
+		UnitState state = getState(unit);
+		return state != null && state.getStatus() == Status.RESTING;
+	}
+
+	@Override
+	public boolean isAttacking(Unit unit) {
+		UnitState state = getState(unit);
+		return state != null && state.getStatus() == Status.ATTACKING;
+	}
+
+	@Override
+	public boolean isSprinting(Unit unit) {
+		UnitState state = getState(unit);
+		return state != null && state.isSprinting();
+	}
+
+	@Override
+	public int getHitpoints(Unit unit) {
+		UnitState state = getState(unit);
+		return (state == null) ? 0 : state.getHitpoints();
+	}
+
+	@Override
+	public int getStaminapoints(Unit unit) {
+		UnitState state = getState(unit);
+		return (state == null) ? 0 : state.getStamina();
+	}
+
 	@Override
 	public int getExperiencePoints(Unit unit) {
 		try {
@@ -39,32 +108,20 @@ public class GameObjectInfoProvider extends UnitInfoProviderPart1 implements IGa
 
 	@Override
 	public boolean isCarryingLog(Unit unit) {
-		try {
-			return getFacade().isCarryingLog(unit);
-		} catch (ModelException e) {
-			handleError(e);
-		}
-		return false;
+		UnitState state = getState(unit);
+		return state != null && state.isCarryingLog();
 	}
 
 	@Override
 	public boolean isCarryingBoulder(Unit unit) {
-		try {
-			return getFacade().isCarryingBoulder(unit);
-		} catch (ModelException e) {
-			handleError(e);
-		}
-		return false;
+		UnitState state = getState(unit);
+		return state != null && state.isCarryingBoulder();
 	}
 
 	@Override
 	public Faction getFaction(Unit unit) {
-		try {
-			return getFacade().getFaction(unit);
-		} catch (ModelException e) {
-			handleError(e);
-		}
-		return null;
+		UnitState state = getState(unit);
+		return (state == null) ? null : state.getFaction();
 	}
 
 	@Override
@@ -79,21 +136,13 @@ public class GameObjectInfoProvider extends UnitInfoProviderPart1 implements IGa
 
 	@Override
 	public double[] getPosition(Boulder object) {
-		try {
-			return getFacade().getPosition(object);
-		} catch (ModelException e) {
-			handleError(e);
-		}
-		return null;
+		Vector position = getGame().getSnapshot().getBoulders().get(object);
+		return (position == null) ? null : position.toArray();
 	}
 
 	@Override
 	public double[] getPosition(Log object) {
-		try {
-			return getFacade().getPosition(object);
-		} catch (ModelException e) {
-			handleError(e);
-		}
-		return null;
+		Vector position = getGame().getSnapshot().getLogs().get(object);
+		return (position == null) ? null : position.toArray();
 	}
 }
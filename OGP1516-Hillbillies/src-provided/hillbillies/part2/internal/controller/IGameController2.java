@@ -3,6 +3,7 @@ package hillbillies.part2.internal.controller;
 import hillbillies.model.Faction;
 import hillbillies.model.Unit;
 import hillbillies.model.World;
+import hillbillies.model.WorldSnapshot;
 import hillbillies.part1.internal.controller.IGameController1;
 import hillbillies.part2.facade.IFacade;
 import hillbillies.part2.internal.Part2Options;
@@ -19,6 +20,8 @@ public interface IGameController2 extends IGameController1<IHillbilliesView2> {
 
 	World getWorld();
 
+	WorldSnapshot getSnapshot();
+
 	void spawnUnits(int n);
 
 	boolean isPlayerUnit(Unit u);
@@ -11,4 +11,11 @@ public interface WorldInfoProvider2 extends WorldInfoProvider {
 	public void removeTerrainChangeListener(TerrainChangeListener listener);
 
 	public boolean isAnchored(int x, int y, int z);
+
+	/**
+	 * Tells the world which part of it is currently shown, so that units far from it
+	 * can be simulated at a lower level of detail.
+	 */
+	public default void setVisibleRegion(double minX, double minY, double maxX, double maxY) {
+	}
 }
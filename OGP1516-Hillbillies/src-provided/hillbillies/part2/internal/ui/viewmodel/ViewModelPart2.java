@@ -106,6 +106,8 @@ public class ViewModelPart2 extends ViewModel implements IViewModel2 {
 	public void update() {
 		// super.update(); // skip, to not fill entire map again (we're using
 		// listener to selectively update)
+		getWorldInfoProvider().setVisibleRegion(visibleTileToWorldPointX(0), visibleTileToWorldPointY(0),
+				visibleTileToWorldPointX(getNbVisibleTilesX()), visibleTileToWorldPointY(getNbVisibleTilesY()));
 		refreshSprites();
 		updateAnchored();
 	}
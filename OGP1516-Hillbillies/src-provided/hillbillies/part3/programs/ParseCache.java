@@ -0,0 +1,149 @@
+package hillbillies.part3.programs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of parsed tasks, shared by all instances of {@link TaskParser}.
+ *
+ * The cache maps the source text of a task to the binary form in which
+ * {@link TaskBundle} records it: the calls the parser made to its factory, in
+ * order. Parsing the same text again skips lexing and parsing, and replays
+ * these calls against the factory of the parser. The factory thus receives
+ * exactly the calls it would have received from the parser, whatever its
+ * class or state, and builds new nodes every time. The recorded form itself
+ * never changes, so that it can be shared by all parsers and threads.
+ *
+ * Only successful parses are cached. When the cache is full, the least
+ * recently used entry is evicted. A cache with capacity zero caches nothing.
+ */
+public final class ParseCache {
+
+	/**
+	 * The default number of entries of a cache.
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * Create a new, empty cache with the given capacity.
+	 *
+	 * @throws IllegalArgumentException
+	 *             The given capacity is negative.
+	 */
+	public ParseCache(int capacity) throws IllegalArgumentException {
+		setCapacity(capacity);
+	}
+
+	/**
+	 * Return the maximal number of entries of this cache.
+	 */
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Set the maximal number of entries of this cache, evicting the least
+	 * recently used entries that no longer fit.
+	 *
+	 * @throws IllegalArgumentException
+	 *             The given capacity is negative.
+	 */
+	public synchronized void setCapacity(int capacity) throws IllegalArgumentException {
+		if (capacity < 0)
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		this.capacity = capacity;
+		while (entries.size() > capacity) {
+			String eldest = entries.keySet().iterator().next();
+			entries.remove(eldest);
+			nbEvictions++;
+		}
+	}
+
+	private int capacity;
+
+	/**
+	 * Return the number of entries of this cache.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Remove all entries of this cache. The counters are left untouched.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Return the number of lookups that found an entry.
+	 */
+	public synchronized long getNbHits() {
+		return nbHits;
+	}
+
+	/**
+	 * Return the number of lookups that did not find an entry.
+	 */
+	public synchronized long getNbMisses() {
+		return nbMisses;
+	}
+
+	/**
+	 * Return the number of entries that were evicted to respect the capacity
+	 * of this cache.
+	 */
+	public synchronized long getNbEvictions() {
+		return nbEvictions;
+	}
+
+	private long nbHits = 0;
+
+	private long nbMisses = 0;
+
+	private long nbEvictions = 0;
+
+	@Override
+	public synchronized String toString() {
+		return "Parse cache: " + entries.size() + "/" + capacity + " entries, " + nbHits + " hits, " + nbMisses
+				+ " misses, " + nbEvictions + " evictions";
+	}
+
+	/**
+	 * Return the recorded form of the given text, or null if there is none.
+	 */
+	synchronized byte[] lookup(String text) {
+		byte[] entry = entries.get(text);
+		if (entry == null)
+			nbMisses++;
+		else
+			nbHits++;
+		return entry;
+	}
+
+	/**
+	 * Register the recorded form of the given text. The given array must not
+	 * be changed afterwards.
+	 */
+	synchronized void store(String text, byte[] task) {
+		if (capacity == 0)
+			return;
+		entries.put(text, task);
+	}
+
+	/**
+	 * The entries of this cache, from the least to the most recently used.
+	 */
+	private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+			if (size() <= capacity)
+				return false;
+			nbEvictions++;
+			return true;
+		}
+	};
+}
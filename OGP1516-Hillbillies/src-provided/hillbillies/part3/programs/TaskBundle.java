@@ -0,0 +1,608 @@
+package hillbillies.part3.programs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import hillbillies.part3.programs.internal.ParserVisitor;
+import hillbillies.part3.programs.internal.generated.HillbilliesTaskLangParser.TaskContext;
+
+/**
+ * Binary bundles of parsed tasks.
+ *
+ * A bundle holds, for each task, its name and priority, a table of the source
+ * locations used by the task, and the nodes of its activity in the order in
+ * which the parser created them: every node only refers to nodes before it.
+ * Reading a bundle replays these nodes against an {@link ITaskFactory}, and
+ * hands the activity of each task to
+ * {@link ITaskFactory#createTasks(String, int, Object, List)}, exactly as the
+ * parser would. Reading a bundle does not use ANTLR at all; only writing one
+ * does.
+ *
+ * Only texts that parse without errors can be written to a bundle.
+ */
+public final class TaskBundle {
+
+	private TaskBundle() {
+	}
+
+	/**
+	 * The first four bytes of every bundle: "HBTB".
+	 */
+	private static final int MAGIC = 0x48425442;
+
+	/**
+	 * The version of the format of the bundles written by this class.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The largest number of nodes, and of source locations, of a single task in
+	 * a bundle. Larger counts are only found in corrupt bundles, and are
+	 * rejected before anything is allocated for them.
+	 */
+	private static final int MAX_NODES = 1 << 20;
+
+	/**
+	 * Parses each of the given task texts, and writes the results as a bundle
+	 * to the given stream.
+	 *
+	 * @throws IllegalArgumentException
+	 *             One of the given texts cannot be parsed.
+	 * @throws IOException
+	 *             The bundle cannot be written.
+	 */
+	public static void write(List<String> texts, OutputStream out) throws IllegalArgumentException, IOException {
+		Recorder recorder = new Recorder();
+		TaskParser<Integer, Integer, Void> parser = TaskParser.create(recorder);
+		// Bundles are written once: keep their texts out of the shared cache.
+		parser.setCaching(false);
+		for (int i = 0; i < texts.size(); i++) {
+			recorder.startTask();
+			if (!parser.parseString(texts.get(i), Collections.emptyList()).isPresent())
+				throw new IllegalArgumentException("Cannot parse task " + i + ": " + parser.getErrors());
+		}
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeShort(VERSION);
+		data.writeInt(recorder.tasks.size());
+		for (byte[] task : recorder.tasks)
+			data.write(task);
+		data.flush();
+	}
+
+	/**
+	 * Reads the tasks of the bundle in the given stream, and creates them with
+	 * the given factory.
+	 *
+	 * @param selectedCubes
+	 *            The cubes which should be used as selected cubes in the
+	 *            created tasks.
+	 * @return The tasks created for all tasks of the bundle, in the order in
+	 *         which they were written.
+	 * @throws IOException
+	 *             The bundle cannot be read, or is not a valid bundle.
+	 */
+	public static <E, S, T> List<T> read(InputStream in, ITaskFactory<E, S, T> factory, List<int[]> selectedCubes)
+			throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC)
+			throw new IOException("Not a task bundle");
+		int version = data.readShort();
+		if (version != VERSION)
+			throw new IOException("Unsupported task bundle version " + version);
+		int nbTasks = data.readInt();
+		if (nbTasks < 0)
+			throw new IOException("Invalid number of tasks " + nbTasks);
+		List<T> result = new ArrayList<>();
+		for (int i = 0; i < nbTasks; i++) {
+			List<T> tasks = readTask(data, factory, selectedCubes);
+			if (tasks != null)
+				result.addAll(tasks);
+		}
+		return result;
+	}
+
+	/**
+	 * Records the task of the given parse tree in the binary form in which it
+	 * is written to a bundle.
+	 */
+	static byte[] record(TaskContext tree) {
+		Recorder recorder = new Recorder();
+		recorder.startTask();
+		ParserVisitor<Integer, Integer, Void> visitor = new ParserVisitor<>(recorder);
+		visitor.visit(tree);
+		recorder.createTasks(visitor.getName(), visitor.getPriority(), visitor.getActivity(), Collections.emptyList());
+		return recorder.tasks.get(0);
+	}
+
+	/**
+	 * Creates the task recorded in the given binary form with the given
+	 * factory, making the same calls to the factory as the parser would.
+	 *
+	 * @throws IOException
+	 *             The given bytes are not the binary form of a task.
+	 */
+	static <E, S, T> List<T> replay(byte[] task, ITaskFactory<E, S, T> factory, List<int[]> selectedCubes)
+			throws IOException {
+		return readTask(new DataInputStream(new ByteArrayInputStream(task)), factory, selectedCubes);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E, S, T> List<T> readTask(DataInputStream data, ITaskFactory<E, S, T> factory,
+			List<int[]> selectedCubes) throws IOException {
+		String name = data.readUTF();
+		int priority = data.readInt();
+		SourceLocation[] locations = new SourceLocation[count(data, MAX_NODES, "source locations")];
+		for (int i = 0; i < locations.length; i++)
+			locations[i] = new SourceLocation(data.readInt(), data.readInt());
+		Object[] nodes = new Object[count(data, MAX_NODES, "nodes")];
+		for (int i = 0; i < nodes.length; i++) {
+			int operation = data.readByte();
+			switch (operation) {
+			case ASSIGNMENT:
+				String variableName = data.readUTF();
+				nodes[i] = factory.createAssignment(variableName, (E) node(nodes, i, data), location(locations, data));
+				break;
+			case WHILE:
+				E condition = (E) node(nodes, i, data);
+				nodes[i] = factory.createWhile(condition, (S) node(nodes, i, data), location(locations, data));
+				break;
+			case IF:
+				E ifCondition = (E) node(nodes, i, data);
+				S ifBody = (S) node(nodes, i, data);
+				nodes[i] = factory.createIf(ifCondition, ifBody, (S) node(nodes, i, data), location(locations, data));
+				break;
+			case BREAK:
+				nodes[i] = factory.createBreak(location(locations, data));
+				break;
+			case PRINT:
+				nodes[i] = factory.createPrint((E) node(nodes, i, data), location(locations, data));
+				break;
+			case SEQUENCE:
+				List<S> statements = new ArrayList<>();
+				// Every statement of a sequence is a different node before it.
+				for (int nbStatements = count(data, i, "statements"); nbStatements > 0; nbStatements--)
+					statements.add((S) node(nodes, i, data));
+				nodes[i] = factory.createSequence(statements, location(locations, data));
+				break;
+			case MOVE_TO:
+				nodes[i] = factory.createMoveTo((E) node(nodes, i, data), location(locations, data));
+				break;
+			case WORK:
+				nodes[i] = factory.createWork((E) node(nodes, i, data), location(locations, data));
+				break;
+			case FOLLOW:
+				nodes[i] = factory.createFollow((E) node(nodes, i, data), location(locations, data));
+				break;
+			case ATTACK:
+				nodes[i] = factory.createAttack((E) node(nodes, i, data), location(locations, data));
+				break;
+			case READ_VARIABLE:
+				String readName = data.readUTF();
+				nodes[i] = factory.createReadVariable(readName, location(locations, data));
+				break;
+			case IS_SOLID:
+				nodes[i] = factory.createIsSolid((E) node(nodes, i, data), location(locations, data));
+				break;
+			case IS_PASSABLE:
+				nodes[i] = factory.createIsPassable((E) node(nodes, i, data), location(locations, data));
+				break;
+			case IS_FRIEND:
+				nodes[i] = factory.createIsFriend((E) node(nodes, i, data), location(locations, data));
+				break;
+			case IS_ENEMY:
+				nodes[i] = factory.createIsEnemy((E) node(nodes, i, data), location(locations, data));
+				break;
+			case IS_ALIVE:
+				nodes[i] = factory.createIsAlive((E) node(nodes, i, data), location(locations, data));
+				break;
+			case CARRIES_ITEM:
+				nodes[i] = factory.createCarriesItem((E) node(nodes, i, data), location(locations, data));
+				break;
+			case NOT:
+				nodes[i] = factory.createNot((E) node(nodes, i, data), location(locations, data));
+				break;
+			case AND:
+				E left = (E) node(nodes, i, data);
+				nodes[i] = factory.createAnd(left, (E) node(nodes, i, data), location(locations, data));
+				break;
+			case OR:
+				E leftOr = (E) node(nodes, i, data);
+				nodes[i] = factory.createOr(leftOr, (E) node(nodes, i, data), location(locations, data));
+				break;
+			case HERE:
+				nodes[i] = factory.createHerePosition(location(locations, data));
+				break;
+			case LOG:
+				nodes[i] = factory.createLogPosition(location(locations, data));
+				break;
+			case BOULDER:
+				nodes[i] = factory.createBoulderPosition(location(locations, data));
+				break;
+			case WORKSHOP:
+				nodes[i] = factory.createWorkshopPosition(location(locations, data));
+				break;
+			case SELECTED:
+				nodes[i] = factory.createSelectedPosition(location(locations, data));
+				break;
+			case NEXT_TO:
+				nodes[i] = factory.createNextToPosition((E) node(nodes, i, data), location(locations, data));
+				break;
+			case POSITION_OF:
+				nodes[i] = factory.createPositionOf((E) node(nodes, i, data), location(locations, data));
+				break;
+			case LITERAL_POSITION:
+				int x = data.readInt();
+				int y = data.readInt();
+				int z = data.readInt();
+				nodes[i] = factory.createLiteralPosition(x, y, z, location(locations, data));
+				break;
+			case THIS:
+				nodes[i] = factory.createThis(location(locations, data));
+				break;
+			case FRIEND:
+				nodes[i] = factory.createFriend(location(locations, data));
+				break;
+			case ENEMY:
+				nodes[i] = factory.createEnemy(location(locations, data));
+				break;
+			case ANY:
+				nodes[i] = factory.createAny(location(locations, data));
+				break;
+			case TRUE:
+				nodes[i] = factory.createTrue(location(locations, data));
+				break;
+			case FALSE:
+				nodes[i] = factory.createFalse(location(locations, data));
+				break;
+			default:
+				throw new IOException("Unknown node " + operation + " in task " + name);
+			}
+		}
+		return factory.createTasks(name, priority, (S) node(nodes, nodes.length, data), selectedCubes);
+	}
+
+	/**
+	 * Reads a reference to a node before the given index, and returns that
+	 * node, or null for a missing node. A node for which the factory returned
+	 * null is handed to the factory as null, as the parser would.
+	 */
+	private static Object node(Object[] nodes, int before, DataInputStream data) throws IOException {
+		int index = data.readInt();
+		if (index == NO_NODE)
+			return null;
+		if (index < 0 || index >= before)
+			throw new IOException("Invalid node reference " + index);
+		return nodes[index];
+	}
+
+	/**
+	 * Reads a count of elements of the given kind, and checks that it is not
+	 * negative and does not exceed the given maximum.
+	 */
+	private static int count(DataInputStream data, int maximum, String kind) throws IOException {
+		int count = data.readInt();
+		if (count < 0 || count > maximum)
+			throw new IOException("Invalid number of " + kind + " " + count);
+		return count;
+	}
+
+	private static SourceLocation location(SourceLocation[] locations, DataInputStream data) throws IOException {
+		int index = data.readInt();
+		if (index < 0 || index >= locations.length)
+			throw new IOException("Invalid source location reference " + index);
+		return locations[index];
+	}
+
+	private static final int NO_NODE = -1;
+
+	private static final int ASSIGNMENT = 0;
+	private static final int WHILE = 1;
+	private static final int IF = 2;
+	private static final int BREAK = 3;
+	private static final int PRINT = 4;
+	private static final int SEQUENCE = 5;
+	private static final int MOVE_TO = 6;
+	private static final int WORK = 7;
+	private static final int FOLLOW = 8;
+	private static final int ATTACK = 9;
+	private static final int READ_VARIABLE = 10;
+	private static final int IS_SOLID = 11;
+	private static final int IS_PASSABLE = 12;
+	private static final int IS_FRIEND = 13;
+	private static final int IS_ENEMY = 14;
+	private static final int IS_ALIVE = 15;
+	private static final int CARRIES_ITEM = 16;
+	private static final int NOT = 17;
+	private static final int AND = 18;
+	private static final int OR = 19;
+	private static final int HERE = 20;
+	private static final int LOG = 21;
+	private static final int BOULDER = 22;
+	private static final int WORKSHOP = 23;
+	private static final int SELECTED = 24;
+	private static final int NEXT_TO = 25;
+	private static final int POSITION_OF = 26;
+	private static final int LITERAL_POSITION = 27;
+	private static final int THIS = 28;
+	private static final int FRIEND = 29;
+	private static final int ENEMY = 30;
+	private static final int ANY = 31;
+	private static final int TRUE = 32;
+	private static final int FALSE = 33;
+
+	/**
+	 * A factory recording the nodes created by the parser, each node being
+	 * represented by its index.
+	 */
+	private static final class Recorder implements ITaskFactory<Integer, Integer, Void> {
+
+		/**
+		 * The tasks recorded so far, each in its binary form.
+		 */
+		private final List<byte[]> tasks = new ArrayList<>();
+
+		private final ByteArrayOutputStream nodeBytes = new ByteArrayOutputStream();
+
+		private final DataOutputStream nodes = new DataOutputStream(nodeBytes);
+
+		private int nbNodes;
+
+		private final Map<SourceLocation, Integer> locations = new LinkedHashMap<>();
+
+		/**
+		 * Forgets the nodes recorded since the last task, before parsing the
+		 * next task.
+		 */
+		void startTask() {
+			nodeBytes.reset();
+			nbNodes = 0;
+			locations.clear();
+		}
+
+		/**
+		 * Records a node with the given operation, followed by the given
+		 * operands.
+		 */
+		private Integer record(int operation, SourceLocation sourceLocation, int... operands) {
+			return record(operation, null, sourceLocation, operands);
+		}
+
+		/**
+		 * Records a node with the given operation, followed by the given name,
+		 * if effective, and the given operands.
+		 */
+		private Integer record(int operation, String name, SourceLocation sourceLocation, int... operands) {
+			try {
+				nodes.writeByte(operation);
+				if (name != null)
+					nodes.writeUTF(name);
+				for (int operand : operands)
+					nodes.writeInt(operand);
+				Integer location = locations.get(sourceLocation);
+				if (location == null) {
+					location = locations.size();
+					locations.put(sourceLocation, location);
+				}
+				nodes.writeInt(location);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return nbNodes++;
+		}
+
+		private static int index(Integer node) {
+			return (node == null) ? NO_NODE : node;
+		}
+
+		@Override
+		public List<Void> createTasks(String name, int priority, Integer activity, List<int[]> selectedCubes) {
+			if (nbNodes > MAX_NODES)
+				throw new IllegalArgumentException("Task " + name + " has too many nodes: " + nbNodes);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream task = new DataOutputStream(bytes);
+			try {
+				task.writeUTF(name);
+				task.writeInt(priority);
+				task.writeInt(locations.size());
+				for (SourceLocation location : locations.keySet()) {
+					task.writeInt(location.getLine());
+					task.writeInt(location.getColumn());
+				}
+				task.writeInt(nbNodes);
+				nodes.flush();
+				nodeBytes.writeTo(task);
+				task.writeInt(index(activity));
+				task.flush();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			tasks.add(bytes.toByteArray());
+			return Collections.emptyList();
+		}
+
+		@Override
+		public Integer createAssignment(String variableName, Integer value, SourceLocation sourceLocation) {
+			return record(ASSIGNMENT, variableName, sourceLocation, index(value));
+		}
+
+		@Override
+		public Integer createWhile(Integer condition, Integer body, SourceLocation sourceLocation) {
+			return record(WHILE, sourceLocation, index(condition), index(body));
+		}
+
+		@Override
+		public Integer createIf(Integer condition, Integer ifBody, Integer elseBody, SourceLocation sourceLocation) {
+			return record(IF, sourceLocation, index(condition), index(ifBody), index(elseBody));
+		}
+
+		@Override
+		public Integer createBreak(SourceLocation sourceLocation) {
+			return record(BREAK, sourceLocation);
+		}
+
+		@Override
+		public Integer createPrint(Integer value, SourceLocation sourceLocation) {
+			return record(PRINT, sourceLocation, index(value));
+		}
+
+		@Override
+		public Integer createSequence(List<Integer> statements, SourceLocation sourceLocation) {
+			int[] operands = new int[statements.size() + 1];
+			operands[0] = statements.size();
+			for (int i = 0; i < statements.size(); i++)
+				operands[i + 1] = index(statements.get(i));
+			return record(SEQUENCE, sourceLocation, operands);
+		}
+
+		@Override
+		public Integer createMoveTo(Integer position, SourceLocation sourceLocation) {
+			return record(MOVE_TO, sourceLocation, index(position));
+		}
+
+		@Override
+		public Integer createWork(Integer position, SourceLocation sourceLocation) {
+			return record(WORK, sourceLocation, index(position));
+		}
+
+		@Override
+		public Integer createFollow(Integer unit, SourceLocation sourceLocation) {
+			return record(FOLLOW, sourceLocation, index(unit));
+		}
+
+		@Override
+		public Integer createAttack(Integer unit, SourceLocation sourceLocation) {
+			return record(ATTACK, sourceLocation, index(unit));
+		}
+
+		@Override
+		public Integer createReadVariable(String variableName, SourceLocation sourceLocation) {
+			return record(READ_VARIABLE, variableName, sourceLocation);
+		}
+
+		@Override
+		public Integer createIsSolid(Integer position, SourceLocation sourceLocation) {
+			return record(IS_SOLID, sourceLocation, index(position));
+		}
+
+		@Override
+		public Integer createIsPassable(Integer position, SourceLocation sourceLocation) {
+			return record(IS_PASSABLE, sourceLocation, index(position));
+		}
+
+		@Override
+		public Integer createIsFriend(Integer unit, SourceLocation sourceLocation) {
+			return record(IS_FRIEND, sourceLocation, index(unit));
+		}
+
+		@Override
+		public Integer createIsEnemy(Integer unit, SourceLocation sourceLocation) {
+			return record(IS_ENEMY, sourceLocation, index(unit));
+		}
+
+		@Override
+		public Integer createIsAlive(Integer unit, SourceLocation sourceLocation) {
+			return record(IS_ALIVE, sourceLocation, index(unit));
+		}
+
+		@Override
+		public Integer createCarriesItem(Integer unit, SourceLocation sourceLocation) {
+			return record(CARRIES_ITEM, sourceLocation, index(unit));
+		}
+
+		@Override
+		public Integer createNot(Integer expression, SourceLocation sourceLocation) {
+			return record(NOT, sourceLocation, index(expression));
+		}
+
+		@Override
+		public Integer createAnd(Integer left, Integer right, SourceLocation sourceLocation) {
+			return record(AND, sourceLocation, index(left), index(right));
+		}
+
+		@Override
+		public Integer createOr(Integer left, Integer right, SourceLocation sourceLocation) {
+			return record(OR, sourceLocation, index(left), index(right));
+		}
+
+		@Override
+		public Integer createHerePosition(SourceLocation sourceLocation) {
+			return record(HERE, sourceLocation);
+		}
+
+		@Override
+		public Integer createLogPosition(SourceLocation sourceLocation) {
+			return record(LOG, sourceLocation);
+		}
+
+		@Override
+		public Integer createBoulderPosition(SourceLocation sourceLocation) {
+			return record(BOULDER, sourceLocation);
+		}
+
+		@Override
+		public Integer createWorkshopPosition(SourceLocation sourceLocation) {
+			return record(WORKSHOP, sourceLocation);
+		}
+
+		@Override
+		public Integer createSelectedPosition(SourceLocation sourceLocation) {
+			return record(SELECTED, sourceLocation);
+		}
+
+		@Override
+		public Integer createNextToPosition(Integer position, SourceLocation sourceLocation) {
+			return record(NEXT_TO, sourceLocation, index(position));
+		}
+
+		@Override
+		public Integer createPositionOf(Integer unit, SourceLocation sourceLocation) {
+			return record(POSITION_OF, sourceLocation, index(unit));
+		}
+
+		@Override
+		public Integer createLiteralPosition(int x, int y, int z, SourceLocation sourceLocation) {
+			return record(LITERAL_POSITION, sourceLocation, x, y, z);
+		}
+
+		@Override
+		public Integer createThis(SourceLocation sourceLocation) {
+			return record(THIS, sourceLocation);
+		}
+
+		@Override
+		public Integer createFriend(SourceLocation sourceLocation) {
+			return record(FRIEND, sourceLocation);
+		}
+
+		@Override
+		public Integer createEnemy(SourceLocation sourceLocation) {
+			return record(ENEMY, sourceLocation);
+		}
+
+		@Override
+		public Integer createAny(SourceLocation sourceLocation) {
+			return record(ANY, sourceLocation);
+		}
+
+		@Override
+		public Integer createTrue(SourceLocation sourceLocation) {
+			return record(TRUE, sourceLocation);
+		}
+
+		@Override
+		public Integer createFalse(SourceLocation sourceLocation) {
+			return record(FALSE, sourceLocation);
+		}
+	}
+}
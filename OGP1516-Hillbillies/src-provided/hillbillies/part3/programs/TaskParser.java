@@ -1,22 +1,31 @@
 package hillbillies.part3.programs;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 import hillbillies.model.Task;
 import hillbillies.part3.programs.internal.ParserVisitor;
 import hillbillies.part3.programs.internal.generated.HillbilliesTaskLangLexer;
 import hillbillies.part3.programs.internal.generated.HillbilliesTaskLangParser;
+import hillbillies.part3.programs.internal.generated.HillbilliesTaskLangParser.TaskContext;
 import ogp.framework.util.internal.ResourceUtils;
 
 /**
@@ -58,6 +67,23 @@ import ogp.framework.util.internal.ResourceUtils;
  * false and <code>parser.getErrors()</code> can be used to retrieve the list of
  * errors during parsing.
  * 
+ * Successfully parsed texts are kept in a {@link ParseCache} shared by all
+ * parsers, in the binary form of a {@link TaskBundle}. Parsing the same text
+ * again replays the recorded calls against the factory without lexing and
+ * parsing it, so that the factory builds the same task as it would from the
+ * text. Use {@link #setCaching(boolean)} to bypass the cache for a single
+ * parser, or set the capacity of {@link #getCache()} to zero to disable it.
+ * 
+ * Texts are first parsed with the faster SLL prediction of ANTLR, which gives
+ * up on the first syntax error. Only then is the text parsed again with full
+ * LL prediction, which reports all errors. The prediction caches (DFA) of
+ * ANTLR are shared by all parsers, and can be filled in advance with
+ * {@link #warmUp()}.
+ * 
+ * Parsed tasks can be saved to a binary bundle with
+ * {@link #saveBundle(List, OutputStream)}, and created again from it with
+ * {@link #loadBundle(InputStream, ITaskFactory, List)} without parsing. See
+ * {@link TaskBundle}.
  *
  * @param E
  *            The type of expressions
@@ -80,6 +106,75 @@ public class TaskParser<E, S, T> {
 		return factory;
 	}
 
+	private static final ParseCache cache = new ParseCache(ParseCache.DEFAULT_CAPACITY);
+
+	/**
+	 * Returns the cache of parsed tasks shared by all parsers.
+	 */
+	public static ParseCache getCache() {
+		return cache;
+	}
+
+	private boolean caching = true;
+
+	/**
+	 * Returns whether this parser looks up and stores the texts it parses in
+	 * the shared cache.
+	 */
+	public boolean isCaching() {
+		return caching;
+	}
+
+	/**
+	 * Sets whether this parser looks up and stores the texts it parses in the
+	 * shared cache.
+	 */
+	public void setCaching(boolean caching) {
+		this.caching = caching;
+	}
+
+	private boolean twoStage = true;
+
+	/**
+	 * Returns whether this parser tries SLL prediction before falling back to
+	 * full LL prediction.
+	 */
+	public boolean isTwoStage() {
+		return twoStage;
+	}
+
+	/**
+	 * Sets whether this parser tries SLL prediction before falling back to
+	 * full LL prediction. If not, every text is parsed with LL prediction
+	 * only.
+	 */
+	public void setTwoStage(boolean twoStage) {
+		this.twoStage = twoStage;
+	}
+
+	private static final String WARM_UP_TASK = "name: \"warm up\"\npriority: 0\nactivities:\n"
+			+ "p := selected; u := this; b := true && !false || is_solid here;\n"
+			+ "while b do\n"
+			+ "  if is_passable (next_to p) && carries_item u then moveTo log; else work workshop; fi\n"
+			+ "  if is_friend friend || is_enemy enemy || is_alive any then follow any; attack enemy; fi\n"
+			+ "  moveTo position_of u; work boulder; print (1, -2, +3); break;\n"
+			+ "done\n";
+
+	/**
+	 * Parses a task using every construct of the task language without
+	 * creating it, so that the prediction caches shared by all parsers hold
+	 * the decisions of typical tasks before the first task is parsed.
+	 */
+	public static void warmUp() {
+		HillbilliesTaskLangLexer lexer = new HillbilliesTaskLangLexer(new ANTLRInputStream(WARM_UP_TASK));
+		lexer.removeErrorListeners();
+		HillbilliesTaskLangParser parser = new HillbilliesTaskLangParser(new CommonTokenStream(lexer));
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		parser.task();
+	}
+
 	/**
 	 * Returns the tasks that results from parsing the given string, or
 	 * Optional.empty() if parsing has failed.
@@ -130,18 +225,57 @@ public class TaskParser<E, S, T> {
 	protected Optional<List<T>> parse(CharStream input, List<int[]> selectedCubes) {
 		reset();
 
-		HillbilliesTaskLangLexer lexer = new HillbilliesTaskLangLexer(input);
-		HillbilliesTaskLangParser parser = new HillbilliesTaskLangParser(new CommonTokenStream(lexer));
-		parser.addErrorListener(new BaseErrorListener() {
-			@Override
-			public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
-					int charPositionInLine, String msg, RecognitionException e) {
-				errors.add(msg + " (" + line + ", " + charPositionInLine + ")");
+		String text = null;
+		if (caching) {
+			text = input.getText(Interval.of(0, input.size() - 1));
+			byte[] recorded = cache.lookup(text);
+			if (recorded != null) {
+				try {
+					return Optional.ofNullable(TaskBundle.replay(recorded, factory, selectedCubes));
+				} catch (Exception e) {
+					errors.add(e.toString());
+					return Optional.empty();
+				}
 			}
-		});
+		}
+
+		HillbilliesTaskLangLexer lexer = new HillbilliesTaskLangLexer(input);
+		CommonTokenStream tokens = new CommonTokenStream(lexer);
+		HillbilliesTaskLangParser parser = new HillbilliesTaskLangParser(tokens);
 		ParserVisitor<E, S, T> visitor = new ParserVisitor<>(factory);
 		try {
-			visitor.visit(parser.task());
+			TaskContext tree = null;
+			if (twoStage) {
+				parser.removeErrorListeners();
+				parser.setErrorHandler(new BailErrorStrategy());
+				parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+				try {
+					tree = parser.task();
+				} catch (ParseCancellationException e) {
+					// SLL prediction failed: parse the text again, reporting all errors.
+					tokens.seek(0);
+					parser.reset();
+					parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+					parser.setErrorHandler(new DefaultErrorStrategy());
+					parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+				}
+			}
+			if (tree == null) {
+				parser.addErrorListener(new BaseErrorListener() {
+					@Override
+					public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+							int charPositionInLine, String msg, RecognitionException e) {
+						errors.add(msg + " (" + line + ", " + charPositionInLine + ")");
+					}
+				});
+				tree = parser.task();
+			}
+			if (caching && errors.isEmpty()) {
+				byte[] recorded = TaskBundle.record(tree);
+				cache.store(text, recorded);
+				return Optional.ofNullable(TaskBundle.replay(recorded, factory, selectedCubes));
+			}
+			visitor.visit(tree);
 			if (errors.isEmpty()) {
 				return Optional.ofNullable(factory.createTasks(visitor.getName(), visitor.getPriority(),
 						visitor.getActivity(), selectedCubes));
@@ -220,4 +354,33 @@ public class TaskParser<E, S, T> {
 			return null;
 		}
 	}
+
+	/**
+	 * Parse each of the given task texts and save the results as a binary
+	 * bundle to the given stream.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             One of the given texts cannot be parsed.
+	 * @throws IOException
+	 *             The bundle cannot be written.
+	 */
+	public static void saveBundle(List<String> texts, OutputStream out) throws IOException {
+		TaskBundle.write(texts, out);
+	}
+
+	/**
+	 * Create the tasks saved in the binary bundle in the given stream using
+	 * the given factory, without parsing them.
+	 * 
+	 * @param selectedCubes
+	 *            The cubes which should be used as selected cubes in the
+	 *            created tasks.
+	 * @return The tasks created for all tasks of the bundle.
+	 * @throws IOException
+	 *             The bundle cannot be read, or is not a valid bundle.
+	 */
+	public static <T> List<T> loadBundle(InputStream in, ITaskFactory<?, ?, T> factory, List<int[]> selectedCubes)
+			throws IOException {
+		return TaskBundle.read(in, factory, selectedCubes);
+	}
 }
@@ -0,0 +1,214 @@
+package hillbillies.benchmark;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import hillbillies.model.Faction;
+import hillbillies.model.Task;
+import hillbillies.model.TickProfiler;
+import hillbillies.model.TickProfiler.Phase;
+import hillbillies.model.Unit;
+import hillbillies.model.Vector;
+import hillbillies.model.World;
+import hillbillies.model.statements.TaskFactory;
+import hillbillies.part2.internal.map.GameMap;
+import hillbillies.part2.internal.map.GameMapReader;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import hillbillies.part3.programs.TaskParser;
+
+/**
+ * A runner advancing a World as fast as possible, without any user interface.
+ *
+ * The World is read from a map file, or from a map resource if no such file exists,
+ * and is populated with Units with their default behavior enabled. Tasks read from
+ * the given task files are scheduled for every Faction. The game time is then advanced
+ * in a tight loop with a fixed time step, after which the number of simulated seconds
+ * per wall-clock second, the percentiles of the time needed for a single step and the
+ * allocation rate are reported. With --profile, the time spent in each phase of a step
+ * is reported as well. With --interest, only Units in or near the given box are advanced
+ * at full detail, as if it were the part of the World shown on screen; Units walking
+ * outside of it take a single step for most of each leg of their path. With --parallel,
+ * the Units plan their steps in parallel before they are advanced one after another.
+ *
+ * Usage: HeadlessRunner map [number of Units] [simulated seconds] [time step] [--profile]
+ *                       [--parallel] [--interest minX,minY,minZ,maxX,maxY,maxZ] [--seed seed]
+ *                       [task file...]
+ *
+ * Runs with the same map, seed and tasks are identical to the exact step.
+ *
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ */
+public class HeadlessRunner {
+
+	/**
+	 * The number of steps executed before the measurement starts, to let the JIT compiler settle.
+	 */
+	private static final int WARMUP_STEPS = 200;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0){
+			System.out.println("Usage: HeadlessRunner map [number of Units] [simulated seconds] "
+					+ "[time step] [--profile] [--parallel] [--interest minX,minY,minZ,maxX,maxY,maxZ] "
+					+ "[--seed seed] [task file...]");
+			return;
+		}
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		boolean profile = arguments.remove("--profile");
+		boolean parallel = arguments.remove("--parallel");
+		long seed = new SplittableRandom().nextLong();
+		int seedIndex = arguments.indexOf("--seed");
+		if (seedIndex >= 0){
+			seed = Long.parseLong(arguments.remove(seedIndex + 1));
+			arguments.remove(seedIndex);
+		}
+		double[] interest = null;
+		int interestIndex = arguments.indexOf("--interest");
+		if (interestIndex >= 0){
+			interest = Arrays.stream(arguments.remove(interestIndex + 1).split(","))
+					.mapToDouble(Double::parseDouble).toArray();
+			arguments.remove(interestIndex);
+			if (interest.length != 6)
+				throw new IllegalArgumentException("An interest region needs six coordinates");
+		}
+		String mapName = arguments.get(0);
+		int nbUnits = (arguments.size() > 1) ? Integer.parseInt(arguments.get(1)) : 100;
+		double seconds = (arguments.size() > 2) ? Double.parseDouble(arguments.get(2)) : 600;
+		double dt = (arguments.size() > 3) ? Double.parseDouble(arguments.get(3)) : 0.2;
+		List<String> taskFiles = (arguments.size() > 4) ? arguments.subList(4, arguments.size()) : new ArrayList<>();
+
+		World world = createWorld(mapName, seed);
+		world.setParallelTicks(parallel);
+		if (interest != null)
+			world.addInterestRegion(new Vector(interest[0], interest[1], interest[2]),
+					new Vector(interest[3], interest[4], interest[5]));
+		for (int i = 0; i < nbUnits; i++)
+			new Unit(world, true);
+		int nbTasks = 0;
+		for (String taskFile : taskFiles)
+			nbTasks += scheduleTasks(world, taskFile);
+
+		for (int i = 0; i < WARMUP_STEPS; i++)
+			world.advanceTime(dt);
+		world.setProfiling(profile);
+
+		int nbSteps = (int) Math.ceil(seconds / dt);
+		long[] stepTimes = new long[nbSteps];
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < nbSteps; i++){
+			long stepStart = System.nanoTime();
+			world.advanceTime(dt);
+			stepTimes[i] = System.nanoTime() - stepStart;
+		}
+		double wallSeconds = (System.nanoTime() - start) / 1e9;
+		long allocated = allocatedBytes() - allocatedBefore;
+
+		Arrays.sort(stepTimes);
+		System.out.printf("Map: %s (%dx%dx%d), Units: %d, Tasks: %d, time step: %.3f s, seed: %d%n",
+				mapName, world.nbCoordinateX(), world.nbCoordinateY(), world.nbCoordinateZ(),
+				world.getUnits().size(), nbTasks, dt, world.getSeed());
+		System.out.printf("Simulated %.1f s in %.3f s: %.1f simulated seconds per second%n",
+				nbSteps * dt, wallSeconds, nbSteps * dt / wallSeconds);
+		System.out.printf("Step time (us): p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+				percentile(stepTimes, 50) / 1e3, percentile(stepTimes, 90) / 1e3,
+				percentile(stepTimes, 99) / 1e3, percentile(stepTimes, 99.9) / 1e3,
+				stepTimes[nbSteps - 1] / 1e3);
+		if (allocated >= 0)
+			System.out.printf("Allocated: %.1f MB/s, %.0f bytes per step%n",
+					allocated / wallSeconds / (1 << 20), (double) allocated / nbSteps);
+		else
+			System.out.println("Allocated: not supported by this virtual machine");
+		if (profile)
+			printProfile(world.getProfiler(), nbSteps);
+	}
+
+	/**
+	 * Print the measurements of the given profiler, taken over the given number of steps.
+	 */
+	private static void printProfile(TickProfiler profiler, int nbSteps) {
+		System.out.printf("%-16s %10s %12s %10s %10s %10s%n", "Phase (us)", "count", "per step", "p50", "p99", "max");
+		for (Phase phase : Phase.values())
+			System.out.printf("%-16s %10d %12.1f %10.1f %10.1f %10.1f%n", phase, profiler.getCount(phase),
+					profiler.getTotalTime(phase) / 1e3 / nbSteps, profiler.getPercentile(phase, 50) / 1e3,
+					profiler.getPercentile(phase, 99) / 1e3, profiler.getMaxTime(phase) / 1e3);
+		System.out.printf("Task statements executed: %d%n", profiler.getNbStatements());
+	}
+
+	/**
+	 * Create a new World with the terrain of the map with the given name and the given seed.
+	 * The name is looked up as a file first and as a resource on the class path otherwise.
+	 */
+	private static World createWorld(String mapName, long seed) throws IOException {
+		GameMapReader reader = new GameMapReader();
+		GameMap map;
+		if (new File(mapName).isFile())
+			map = reader.readFromFile(mapName);
+		else {
+			InputStream resource = HeadlessRunner.class.getClassLoader().getResourceAsStream(mapName);
+			if (resource == null)
+				throw new FileNotFoundException(mapName);
+			map = reader.readFromReader(new InputStreamReader(resource));
+		}
+		if (map == null)
+			throw new IOException("Cannot read map " + mapName);
+		int[][][] types = new int[map.getNbTilesX()][map.getNbTilesY()][map.getNbTilesZ()];
+		for (int x = 0; x < map.getNbTilesX(); x++)
+			for (int y = 0; y < map.getNbTilesY(); y++)
+				for (int z = 0; z < map.getNbTilesZ(); z++)
+					types[x][y][z] = map.getTypeAt(x, y, z).getByteValue();
+		return new World(types, new DefaultTerrainChangeListener(), seed);
+	}
+
+	/**
+	 * Parse the tasks in the given file once for every active Faction of the given World,
+	 * and schedule them for that Faction.
+	 * @return	The number of tasks parsed from the given file.
+	 */
+	private static int scheduleTasks(World world, String taskFile) throws IOException {
+		int nbTasks = 0;
+		for (Faction faction : world.getActiveFactions()){
+			List<Task> tasks = TaskParser.parseTasksFromFile(taskFile, new TaskFactory(), new ArrayList<>());
+			if (tasks == null)
+				throw new IllegalArgumentException("Cannot parse tasks in " + taskFile);
+			faction.getScheduler().addTasks(tasks.toArray(new Task[tasks.size()]));
+			nbTasks = tasks.size();
+		}
+		return nbTasks;
+	}
+
+	/**
+	 * Return the given percentile of the given sorted array.
+	 */
+	private static long percentile(long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	/**
+	 * Return the total number of bytes allocated on the heap by all live threads so far,
+	 * or -1 if this virtual machine cannot measure allocation.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+			return -1;
+		long total = 0;
+		for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+			if (allocated > 0)
+				total += allocated;
+		return total;
+	}
+}
@@ -0,0 +1,89 @@
+package hillbillies.benchmark;
+
+import java.util.ArrayList;
+
+import hillbillies.model.Task;
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.model.statements.Program;
+import hillbillies.model.statements.Statement;
+import hillbillies.model.statements.TaskFactory;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import hillbillies.part3.programs.TaskParser;
+
+/**
+ * A benchmark reporting the number of Statements a program executes per second, when it is
+ * interpreted and once it has been translated into a class of its own.
+ *
+ * The program counts from zero to seven in three boolean variables, with nested if and while
+ * Statements and breaks, so that most of its instructions are jumps and conditions. Interpreted
+ * programs are measured on fresh programs, each of which executes fewer Statements than the
+ * promotion threshold. Both are measured for a number of rounds, after a round of warming up.
+ *
+ * Usage: ProgramBenchmark [Statements per round] [rounds]
+ *
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ */
+public class ProgramBenchmark {
+
+	private static final String COUNTER = "name: \"counter\"\npriority: 0\nactivities:\n"
+			+ "a := false; b := false; c := false;\n"
+			+ "while true do\n"
+			+ "  if a && b && c then break; fi\n"
+			+ "  if !a then a := true;\n"
+			+ "  else a := false; if !b then b := true; else b := false; c := true; fi\n"
+			+ "  fi\n"
+			+ "  while b || c do p := (1, 2, 0); break; done\n"
+			+ "done\n"
+			+ "q := (2, 2, 0);";
+
+	public static void main(String[] args) {
+		int nbStatements = (args.length > 0) ? Integer.parseInt(args[0]) : 5000000;
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+		World world = new World(new int[3][3][3], new DefaultTerrainChangeListener());
+		Statement statement = TaskParser.parseTasksFromString(COUNTER, new TaskFactory(), new ArrayList<>())
+				.get(0).getStatement();
+
+		Program compiled = new Program(statement);
+		Task task = new Task("compiled", 0, compiled);
+		task.assignToUnit(new Unit(world, false));
+		while (!compiled.isCompiled())
+			run(compiled, task, Program.PROMOTION_THRESHOLD);
+		// Programs translated from the same Statement lay out the state of their Tasks alike.
+		Task interpretedTask = new Task("interpreted", 0, new Program(statement));
+		interpretedTask.assignToUnit(new Unit(world, false));
+
+		double bestInterpreted = 0;
+		double bestCompiled = 0;
+		for (int round = 0; round <= rounds; round++){
+			long start = System.nanoTime();
+			for (int executed = 0; executed < nbStatements; executed += Program.PROMOTION_THRESHOLD / 2)
+				run(new Program(statement), interpretedTask, Program.PROMOTION_THRESHOLD / 2);
+			double interpreted = nbStatements * 1e9 / (System.nanoTime() - start);
+			start = System.nanoTime();
+			run(compiled, task, nbStatements);
+			double translated = nbStatements * 1e9 / (System.nanoTime() - start);
+			if (round > 0){
+				bestInterpreted = Math.max(bestInterpreted, interpreted);
+				bestCompiled = Math.max(bestCompiled, translated);
+			}
+		}
+		System.out.printf("Statements per round: %d, rounds: %d%n", nbStatements, rounds);
+		System.out.printf("Interpreted: %.0f Statements per second%n", bestInterpreted);
+		System.out.printf("Translated: %.0f Statements per second%n", bestCompiled);
+	}
+
+	/**
+	 * Execute the given number of Statements of the given program as part of the given Task,
+	 * restarting the program each time it finishes.
+	 */
+	private static void run(Program program, Task task, int nbStatements) {
+		Program.Execution execution = program.start(task);
+		for (int executed = 0; executed < nbStatements; executed++){
+			if (execution.isFinished())
+				execution = program.start(task);
+			execution.executeNext();
+		}
+	}
+}
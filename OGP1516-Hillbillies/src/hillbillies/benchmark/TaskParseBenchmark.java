@@ -0,0 +1,74 @@
+package hillbillies.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import hillbillies.model.Task;
+import hillbillies.model.statements.TaskFactory;
+import hillbillies.part3.programs.TaskParser;
+
+/**
+ * A benchmark reporting the number of tasks parsed per second.
+ *
+ * The corpus consists of the given task files, each repeated the given number of times.
+ * It is parsed with full LL prediction only, and with SLL prediction falling back to LL,
+ * alternating between both for a number of rounds. The parse cache is bypassed, so that
+ * every text is lexed and parsed. The prediction caches are warmed up before the first round.
+ *
+ * Usage: TaskParseBenchmark [copies of each file] [rounds] task file...
+ *
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ */
+public class TaskParseBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3){
+			System.out.println("Usage: TaskParseBenchmark [copies of each file] [rounds] task file...");
+			return;
+		}
+		int copies = Integer.parseInt(args[0]);
+		int rounds = Integer.parseInt(args[1]);
+		List<String> corpus = new ArrayList<>();
+		for (int i = 2; i < args.length; i++){
+			String text = new String(Files.readAllBytes(Paths.get(args[i])), StandardCharsets.UTF_8);
+			for (int copy = 0; copy < copies; copy++)
+				corpus.add(text);
+		}
+
+		TaskParser.warmUp();
+		double bestLL = 0;
+		double bestTwoStage = 0;
+		for (int round = 0; round < rounds; round++){
+			bestLL = Math.max(bestLL, tasksPerSecond(corpus, false));
+			bestTwoStage = Math.max(bestTwoStage, tasksPerSecond(corpus, true));
+		}
+		System.out.printf("Corpus: %d task files, %d tasks per round, %d rounds%n", args.length - 2, corpus.size(), rounds);
+		System.out.printf("LL only: %.0f tasks per second%n", bestLL);
+		System.out.printf("SLL, then LL: %.0f tasks per second%n", bestTwoStage);
+	}
+
+	/**
+	 * Parse every text of the given corpus once, and return the number of tasks parsed per second.
+	 * @throws IllegalArgumentException
+	 * 			A text of the corpus cannot be parsed.
+	 */
+	private static double tasksPerSecond(List<String> corpus, boolean twoStage) throws IllegalArgumentException {
+		TaskParser<?, ?, Task> parser = TaskParser.create(new TaskFactory());
+		parser.setCaching(false);
+		parser.setTwoStage(twoStage);
+		List<int[]> selectedCubes = new ArrayList<>();
+		int nbTasks = 0;
+		long start = System.nanoTime();
+		for (String text : corpus){
+			if (!parser.parseString(text, selectedCubes).isPresent())
+				throw new IllegalArgumentException("Cannot parse task: " + parser.getErrors());
+			nbTasks++;
+		}
+		return nbTasks * 1e9 / (System.nanoTime() - start);
+	}
+}
@@ -0,0 +1,108 @@
+package hillbillies.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import hillbillies.model.PathfindingException;
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+/**
+ * A benchmark reporting the average number of heap bytes retained by a single Unit,
+ * and the time and heap allocated per step of a Unit walking its path.
+ *
+ * Units are spread over a number of flat Worlds, since a single World holds at most
+ * 100 Units. Every Unit is sent to the far corner of its World, so that the memory
+ * held by its path is included in the measurement. The heap retained by the Worlds
+ * themselves is measured first and subtracted. Afterwards, the Worlds are advanced
+ * by the given number of steps of the maximal step, while the Units walk their paths.
+ *
+ * Usage: UnitMemoryBenchmark [number of Worlds] [size of each World] [number of steps]
+ *
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ */
+public class UnitMemoryBenchmark {
+
+	/**
+	 * The number of Units created in each World.
+	 */
+	private static final int UNITS_PER_WORLD = 100;
+
+	public static void main(String[] args) {
+		int nbWorlds = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+		int size = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+		int nbSteps = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+
+		List<World> worlds = new ArrayList<>();
+		long before = usedMemory();
+		for (int i = 0; i < nbWorlds; i++)
+			worlds.add(new World(new int[size][size][1], new DefaultTerrainChangeListener()));
+		long withWorlds = usedMemory();
+
+		List<Unit> units = new ArrayList<>(nbWorlds * UNITS_PER_WORLD);
+		for (World world : worlds){
+			for (int i = 0; i < UNITS_PER_WORLD; i++){
+				Unit unit = new Unit(world, false);
+				try {
+					unit.moveTo(size - 1, size - 1, 0);
+				} catch (IllegalArgumentException | IllegalStateException | PathfindingException e){
+					// The Unit already stands in the far corner.
+				}
+				units.add(unit);
+			}
+		}
+		long withUnits = usedMemory();
+
+		System.out.printf("Worlds: %d of %dx%dx1, Units: %d%n", nbWorlds, size, size, units.size());
+		System.out.printf("Heap retained by the Worlds: %d bytes%n", withWorlds - before);
+		System.out.printf("Heap retained per Unit: %.1f bytes%n",
+				(double) (withUnits - withWorlds - 4L * units.size()) / units.size());
+
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		for (int step = 0; step < nbSteps; step++)
+			for (World world : worlds)
+				world.advanceTime(World.MAX_STEP);
+		long elapsed = System.nanoTime() - start;
+		allocated = allocatedBytes() - allocated;
+		long nbUnitSteps = (long) nbSteps * units.size();
+		System.out.printf("Steps: %d of %.1f s, %.0f ns and %.0f bytes allocated per Unit step%n",
+				nbSteps, World.MAX_STEP, (double) elapsed / nbUnitSteps, (double) allocated / nbUnitSteps);
+		// Keep everything reachable until the last measurement has been taken.
+		if (worlds.size() + units.size() < 0)
+			System.out.println();
+	}
+
+	/**
+	 * Return the number of bytes allocated on the heap by the current thread so far,
+	 * or 0 if the virtual machine does not measure this.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return 0;
+		return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Return the number of bytes currently in use on the heap, after requesting garbage collection.
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++){
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+}
@@ -14,8 +14,22 @@ public class Boulder extends InanimateObject {
 	 * 			The position for this new Boulder
 	 * @post	The Boulder's position equals the given position.
 	 * @post	The Boulder's weight is a random value between 10 and 50, inclusive.
+	 * @effect	If this new Boulder does not have to fall, it comes to rest in the item pile of its cube
+	 * 			once it has been initialized, without leaving the given position.
+	 * 			| if (!this.hasToFall())
+	 * 			| then world.putToRest(this)
 	 */
 	public Boulder(Vector position, World world){
 		super(position, world);
+		if (!this.hasToFall())
+			world.putToRest(this);
+	}
+
+	/**
+	 * Initialize a new Boulder with the given position and weight, lying in a pile of the given World.
+	 * @effect	| super(position, weight, world)
+	 */
+	Boulder(Vector position, int weight, World world){
+		super(position, weight, world);
 	}
 }
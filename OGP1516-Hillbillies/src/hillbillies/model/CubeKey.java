@@ -0,0 +1,192 @@
+package hillbillies.model;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import be.kuleuven.cs.som.annotate.Value;
+
+/**
+ * A class of keys identifying a single cube of a World by its integer coordinates.
+ * The coordinates are packed in a single long, so that keys are cheap to compare and,
+ * unlike Vectors, cubes lying on the same diagonal plane do not share their hash code.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ */
+@Value
+public final class CubeKey {
+
+	/**
+	 * Initialize this new key with the given packed coordinates.
+	 */
+	private CubeKey(long key){
+		this.key = key;
+	}
+
+	/**
+	 * Return the key of the cube with the given coordinates.
+	 * @param x
+	 * 			The x-coordinate of the cube.
+	 * @param y
+	 * 			The y-coordinate of the cube.
+	 * @param z
+	 * 			The z-coordinate of the cube.
+	 * @return	A key whose coordinates are the given coordinates.
+	 * 			| result.getX() == x && result.getY() == y && result.getZ() == z
+	 */
+	public static CubeKey of(int x, int y, int z){
+		return new CubeKey(pack(x, y, z));
+	}
+
+	/**
+	 * Return the key of the cube in which the given position lies.
+	 * @param position
+	 * 			The position whose cube to return the key of.
+	 * @return	The key of the cube with the cube coordinates of the given position.
+	 * 			| result.equals(of(position.getCubeX(), position.getCubeY(), position.getCubeZ()))
+	 */
+	public static CubeKey of(Vector position){
+		return of(position.getCubeX(), position.getCubeY(), position.getCubeZ());
+	}
+
+	/**
+	 * Return the given cube coordinates packed in a single long.
+	 * Each coordinate is packed in 21 bits, which is far more than any World dimension.
+	 */
+	static long pack(int x, int y, int z){
+		return ((long) (x & MASK) << 42) | ((long) (y & MASK) << 21) | (z & MASK);
+	}
+
+	/**
+	 * Return the coordinate packed in the 21 bits of the given key starting at the given shift.
+	 */
+	private static int unpack(long key, int shift){
+		return (int) (key << (43 - shift) >> 43);
+	}
+
+	/**
+	 * The bits of a packed key holding a single coordinate.
+	 */
+	private static final int MASK = 0x1FFFFF;
+
+	/**
+	 * Return the x-coordinate of the cube of this key.
+	 */
+	@Immutable
+	public int getX(){
+		return unpack(this.key, 42);
+	}
+
+	/**
+	 * Return the y-coordinate of the cube of this key.
+	 */
+	@Immutable
+	public int getY(){
+		return unpack(this.key, 21);
+	}
+
+	/**
+	 * Return the z-coordinate of the cube of this key.
+	 */
+	@Immutable
+	public int getZ(){
+		return unpack(this.key, 0);
+	}
+
+	/**
+	 * Return the coordinates of this key packed in a single long.
+	 */
+	@Basic @Immutable
+	long getKey(){
+		return this.key;
+	}
+
+	/**
+	 * Variable registering the packed coordinates of this key.
+	 */
+	private final long key;
+
+	/**
+	 * Return the position of the corner of the cube of this key with the lowest coordinates.
+	 * @return	| result.equals(new Vector(getX(), getY(), getZ()))
+	 */
+	public Vector toVector(){
+		return new Vector(this.getX(), this.getY(), this.getZ());
+	}
+
+	/**
+	 * Check whether this key is equal to the given object.
+	 * @return	True if and only if the given object is a key for the same cube.
+	 * 			| result == (other instanceof CubeKey) && (((CubeKey) other).getKey() == this.getKey())
+	 */
+	@Override
+	public boolean equals(Object other){
+		return (other instanceof CubeKey) && (((CubeKey) other).key == this.key);
+	}
+
+	/**
+	 * Return the hash code of this key.
+	 * @note	The packed coordinates are scrambled, so that neighbouring cubes land
+	 * 			in different buckets of a hash table.
+	 */
+	@Override
+	public int hashCode(){
+		long hash = this.key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * Return a textual representation of this key.
+	 */
+	@Override
+	public String toString(){
+		return "[" + this.getX() + ", " + this.getY() + ", " + this.getZ() + "]";
+	}
+
+	/**
+	 * A functional interface for code to be executed for the coordinates of a cube.
+	 */
+	@FunctionalInterface
+	public interface CubeConsumer {
+		void accept(int x, int y, int z);
+	}
+
+	/**
+	 * Execute the given code for the coordinates of each of the six cubes sharing a face
+	 * with the cube with the given coordinates.
+	 */
+	public static void forEachDirectNeighbour(int x, int y, int z, CubeConsumer consumer){
+		for (int[] offset:DIRECT_NEIGHBOURS)
+			consumer.accept(x + offset[0], y + offset[1], z + offset[2]);
+	}
+
+	/**
+	 * Execute the given code for the coordinates of each of the 26 cubes sharing a face,
+	 * an edge or a corner with the cube with the given coordinates.
+	 */
+	public static void forEachNeighbour(int x, int y, int z, CubeConsumer consumer){
+		for (int[] offset:NEIGHBOURS)
+			consumer.accept(x + offset[0], y + offset[1], z + offset[2]);
+	}
+
+	/**
+	 * The offsets from a cube to each of the cubes sharing a face with it.
+	 */
+	static final int[][] DIRECT_NEIGHBOURS = {
+			{-1, 0, 0}, {1, 0, 0}, {0, -1, 0}, {0, 1, 0}, {0, 0, -1}, {0, 0, 1}};
+
+	/**
+	 * The offsets from a cube to each of the cubes sharing a face, an edge or a corner with it.
+	 */
+	static final int[][] NEIGHBOURS = neighbourOffsets();
+
+	private static int[][] neighbourOffsets(){
+		int[][] offsets = new int[26][];
+		int index = 0;
+		for (int x = -1; x <= 1; x++)
+			for (int y = -1; y <= 1; y++)
+				for (int z = -1; z <= 1; z++)
+					if (x != 0 || y != 0 || z != 0)
+						offsets[index++] = new int[] {x, y, z};
+		return offsets;
+	}
+}
@@ -0,0 +1,124 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * A class of sets of cubes, supporting insertion, removal and membership tests in constant
+ * time, as well as access to the cube at a given index for picking a cube at random.
+ * Removing a cube moves the last cube of the set to the index of the removed one.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ * @invar	Each cube of this set is registered at its own index.
+ */
+class CubeSet {
+
+	/**
+	 * Return the number of cubes in this set.
+	 */
+	int size(){
+		return this.cubes.size();
+	}
+
+	/**
+	 * Return the cube at the given index of this set.
+	 * @throws IndexOutOfBoundsException
+	 * 			The given index is negative or not smaller than the size of this set.
+	 */
+	CubeKey get(int index) throws IndexOutOfBoundsException {
+		return this.cubes.get(index);
+	}
+
+	/**
+	 * Check whether this set contains the given cube.
+	 */
+	boolean contains(CubeKey cube){
+		return this.indices.containsKey(cube);
+	}
+
+	/**
+	 * Add the given cube to this set, if it is not yet part of it.
+	 * @post	This set contains the given cube.
+	 * 			| new.contains(cube)
+	 */
+	void add(CubeKey cube){
+		if (this.indices.putIfAbsent(cube, this.cubes.size()) == null)
+			this.cubes.add(cube);
+	}
+
+	/**
+	 * Remove the given cube from this set, if it is part of it.
+	 * @post	This set does not contain the given cube.
+	 * 			| !new.contains(cube)
+	 */
+	void remove(CubeKey cube){
+		Integer index = this.indices.remove(cube);
+		if (index == null)
+			return;
+		CubeKey last = this.cubes.remove(this.cubes.size() - 1);
+		if (index < this.cubes.size()){
+			this.cubes.set(index, last);
+			this.indices.put(last, index);
+		}
+	}
+
+	/**
+	 * Return an unmodifiable list of the cubes in this set, ordered by their index.
+	 */
+	List<CubeKey> asList(){
+		return Collections.unmodifiableList(this.cubes);
+	}
+
+	/**
+	 * Return an iterator returning each cube of this set once, in a random order drawn from
+	 * the given random generator.
+	 * @note	Cubes are drawn one at a time as the iterator advances, without copying this set,
+	 * 			so that an iteration stopped after a few cubes only costs a few draws.
+	 * @note	This set must not be changed while the iterator is in use.
+	 */
+	Iterator<CubeKey> randomOrder(SplittableRandom random){
+		return new Iterator<CubeKey>(){
+
+			@Override
+			public boolean hasNext(){
+				return this.nbDrawn < CubeSet.this.size();
+			}
+
+			/**
+			 * Draw the next cube by a step of a Fisher-Yates shuffle of the indices of the set,
+			 * registering only the indices that have been swapped.
+			 */
+			@Override
+			public CubeKey next() throws NoSuchElementException {
+				if (!this.hasNext())
+					throw new NoSuchElementException();
+				int drawn = this.nbDrawn + random.nextInt(CubeSet.this.size() - this.nbDrawn);
+				int index = this.swapped.getOrDefault(drawn, drawn);
+				this.swapped.put(drawn, this.swapped.getOrDefault(this.nbDrawn, this.nbDrawn));
+				this.nbDrawn++;
+				return CubeSet.this.get(index);
+			}
+
+			private int nbDrawn = 0;
+
+			private final Map<Integer, Integer> swapped = new HashMap<>();
+		};
+	}
+
+	/**
+	 * Variable referencing the cubes of this set, ordered by their index.
+	 */
+	private final List<CubeKey> cubes = new ArrayList<>();
+
+	/**
+	 * Variable referencing the index of each cube of this set.
+	 */
+	private final Map<CubeKey, Integer> indices = new HashMap<>();
+}
@@ -0,0 +1,122 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+
+/**
+ * A class of evaluation contexts, memoising the values of the expressions of a Task
+ * during a single step of its execution.
+ *
+ * Each memoised expression of a program is given the index of its node when the program
+ * is laid out, and the context of each Task executing it has a node for each of them. While a scope of the context is open, the first evaluation of
+ * an expression stores its value under that index, and later evaluations in the same scope
+ * return the stored value. Opening a new scope forgets all stored values at once, since the
+ * World may have changed in between. Outside of a scope, nothing is memoised.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ */
+public final class EvaluationContext {
+
+	/**
+	 * Initialize this new evaluation context with the given number of nodes.
+	 * @param nbNodes
+	 * 			The number of memoised expressions laid out for this context in advance.
+	 * @post	| new.getNbNodes() == nbNodes
+	 * @throws IllegalArgumentException
+	 * 			The given number of nodes is negative.
+	 */
+	public EvaluationContext(int nbNodes) throws IllegalArgumentException {
+		if (nbNodes < 0)
+			throw new IllegalArgumentException();
+		this.nbNodes = nbNodes;
+		this.scopes = new int[nbNodes];
+		this.values = new Object[nbNodes];
+	}
+
+	/**
+	 * Return the number of nodes of this context.
+	 */
+	@Basic @Immutable
+	public int getNbNodes(){
+		return this.nbNodes;
+	}
+
+	private final int nbNodes;
+
+	/**
+	 * Check whether a scope of this context is open.
+	 */
+	@Basic
+	public boolean isOpen(){
+		return this.open;
+	}
+
+	/**
+	 * Open a new scope of this context, in which no values are memoised yet.
+	 * @post	| new.isOpen()
+	 */
+	void open(){
+		this.open = true;
+		this.scope++;
+	}
+
+	/**
+	 * Close the current scope of this context.
+	 * @post	| !new.isOpen()
+	 */
+	void close(){
+		this.open = false;
+	}
+
+	/**
+	 * Forget all values memoised by this context, releasing the objects they reference.
+	 */
+	void clear(){
+		this.open = false;
+		Arrays.fill(this.values, null);
+	}
+
+	private boolean open = false;
+
+	/**
+	 * Variable registering the number of the current scope.
+	 */
+	private int scope = 0;
+
+	/**
+	 * Return the value memoised for the node with the given index in the current scope.
+	 * @return	Null if no scope is open, or if no value has been memoised for the given node
+	 * 			in the current scope.
+	 */
+	public Object getValue(int node){
+		if (!this.open || this.scopes[node] != this.scope)
+			return null;
+		return this.values[node];
+	}
+
+	/**
+	 * Memoise the given value for the node with the given index in the current scope.
+	 * Nothing is memoised if no scope is open.
+	 * @throws IllegalArgumentException
+	 * 			The given index is not the index of a node of this context.
+	 */
+	public void setValue(int node, Object value) throws IllegalArgumentException {
+		if (node < 0 || node >= this.nbNodes)
+			throw new IllegalArgumentException();
+		if (!this.open)
+			return;
+		this.scopes[node] = this.scope;
+		this.values[node] = value;
+	}
+
+	/**
+	 * Arrays registering, for each node, the scope in which a value was last memoised for it,
+	 * and that value.
+	 */
+	private final int[] scopes;
+
+	private final Object[] values;
+}
@@ -1,6 +1,9 @@
 package hillbillies.model;
 
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 import be.kuleuven.cs.som.annotate.Basic;
@@ -117,6 +120,7 @@ public class Faction {
 	public void addUnit(@Raw Unit Unit) {
 		assert (Unit != null) && (Unit.getFaction() == this);
 		Units.add(Unit);
+		this.relocateUnit(Unit);
 	}
 
 	/**
@@ -140,6 +144,7 @@ public class Faction {
 	public void removeUnit(Unit Unit) {
 		assert this.hasAsUnit(Unit) && (Unit.getFaction() == null);
 		Units.remove(Unit);
+		this.unindexUnit(Unit);
 //		if (Units.size() == 0)
 //			this.terminate();
 	}
@@ -165,7 +170,104 @@ public class Faction {
 	 *       |   ( (Unit != null) &&
 	 *       |     (! Unit.isTerminated()) )
 	 */
-	private final Set<Unit> Units = new HashSet<Unit>();
+	private final Set<Unit> Units = new LinkedHashSet<Unit>();
+
+	/**
+	 * Return the Units of this Faction that currently occupy the cube with the given coordinates.
+	 * @param x
+	 * 			The x-coordinate of the cube.
+	 * @param y
+	 * 			The y-coordinate of the cube.
+	 * @param z
+	 * 			The z-coordinate of the cube.
+	 * @return	An unmodifiable view on all Units of this Faction whose position lies in the given cube.
+	 * 			| for each unit in result:
+	 * 			|	this.hasAsUnit(unit) && unit.getPosition().getCubeX() == x &&
+	 * 			|	unit.getPosition().getCubeY() == y && unit.getPosition().getCubeZ() == z
+	 */
+	Set<Unit> getUnitsInCube(int x, int y, int z){
+		Set<Unit> result = this.unitsByCube.get(CubeKey.pack(x, y, z));
+		if (result == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Check whether this Faction has at least one Unit in the cube with the given coordinates.
+	 * @return	true if and only if some Unit of this Faction occupies the given cube.
+	 * 			| result == (getUnitsInCube(x, y, z).size() > 0)
+	 */
+	boolean hasUnitInCube(int x, int y, int z){
+		return this.unitsByCube.containsKey(CubeKey.pack(x, y, z));
+	}
+
+	/**
+	 * Register the current cube of the given Unit in the spatial index of this Faction.
+	 * @param unit
+	 * 			The Unit whose position has changed.
+	 * @pre		The given Unit is a Unit of this Faction.
+	 * 			| this.hasAsUnit(unit)
+	 * @post	The given Unit is listed in the cube it currently occupies, and no longer
+	 * 			in the cube it occupied before.
+	 * 			| (new this).getUnitsInCube(unit.getPosition().getCubeX(),
+	 * 			|		unit.getPosition().getCubeY(), unit.getPosition().getCubeZ()).contains(unit)
+	 */
+	void relocateUnit(Unit unit){
+		assert this.hasAsUnit(unit);
+		if (unit.getPosition() == null){
+			this.unindexUnit(unit);
+			return;
+		}
+		long key = CubeKey.pack(unit.getPosition().getCubeX(), unit.getPosition().getCubeY(),
+				unit.getPosition().getCubeZ());
+		Long oldKey = this.cubeOfUnit.put(unit, key);
+		if (oldKey != null){
+			if (oldKey == key)
+				return;
+			this.removeFromCube(unit, oldKey);
+		}
+		Set<Unit> inCube = this.unitsByCube.get(key);
+		if (inCube == null){
+			inCube = new LinkedHashSet<>();
+			this.unitsByCube.put(key, inCube);
+		}
+		inCube.add(unit);
+	}
+
+	/**
+	 * Remove the given Unit from the spatial index of this Faction.
+	 * @post	The given Unit is not listed in any cube of this Faction.
+	 */
+	private void unindexUnit(Unit unit){
+		Long oldKey = this.cubeOfUnit.remove(unit);
+		if (oldKey != null)
+			this.removeFromCube(unit, oldKey);
+	}
+
+	/**
+	 * Remove the given Unit from the cube with the given key, dropping the cube when it becomes empty.
+	 */
+	private void removeFromCube(Unit unit, long key){
+		Set<Unit> inCube = this.unitsByCube.get(key);
+		if (inCube == null)
+			return;
+		inCube.remove(unit);
+		if (inCube.isEmpty())
+			this.unitsByCube.remove(key);
+	}
+
+	/**
+	 * Variable referencing a map from each occupied cube to the Units of this Faction in it.
+	 * 
+	 * @invar	Each Unit is listed in exactly one cube, namely the cube of its position.
+	 * @invar	No cube is mapped to an empty set.
+	 */
+	private final Map<Long, Set<Unit>> unitsByCube = new HashMap<>();
+
+	/**
+	 * Variable referencing the key of the cube each Unit of this Faction was last indexed in.
+	 */
+	private final Map<Unit, Long> cubeOfUnit = new HashMap<>();
 	
 	/**
 	 * Check whether the given World is a valid game World for this Faction
@@ -0,0 +1,111 @@
+package hillbillies.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import be.kuleuven.cs.som.annotate.Basic;
+
+/**
+ * A class of frame layouts, describing the execution state a Task keeps for its program.
+ *
+ * The Statements and expressions of a program are shared by all Tasks executing it, and
+ * never change once the program has been compiled. Whatever an execution needs to remember
+ * is kept by the Task instead, in slots that are laid out while the program is compiled:
+ * a slot for each variable name, a node for each memoised expression, and a target for
+ * each Statement keeping track of a Unit. The Statements and expressions are given these slots
+ * as they are laid out, and keep them in final fields from then on.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ */
+public final class FrameLayout {
+
+	/**
+	 * Return the slot of the variable with the given name, registering a new slot for it
+	 * if it has none yet.
+	 */
+	public int getVariableSlot(String name){
+		Integer slot = this.variableSlots.get(name);
+		if (slot == null){
+			slot = this.variableSlots.size();
+			this.variableSlots.put(name, slot);
+		}
+		return slot;
+	}
+
+	/**
+	 * Return the slot of the variable with the given name, or -1 if it has none.
+	 */
+	public int findVariableSlot(String name){
+		Integer slot = this.variableSlots.get(name);
+		return (slot == null) ? -1 : slot;
+	}
+
+	/**
+	 * Return the number of variable slots of this layout.
+	 */
+	public int getNbVariables(){
+		return this.variableSlots.size();
+	}
+
+	/**
+	 * Return an unmodifiable view of the slots of this layout, by variable name.
+	 */
+	public Map<String, Integer> getVariableSlots(){
+		return Collections.unmodifiableMap(this.variableSlots);
+	}
+
+	private final Map<String, Integer> variableSlots = new HashMap<>();
+
+	/**
+	 * Register a new memoised expression with this layout, and return the index of its node.
+	 */
+	public int registerNode(){
+		return this.nbNodes++;
+	}
+
+	/**
+	 * Return the number of memoised expressions registered with this layout.
+	 */
+	@Basic
+	public int getNbNodes(){
+		return this.nbNodes;
+	}
+
+	private int nbNodes = 0;
+
+	/**
+	 * Register a new Statement keeping track of a Unit with this layout, and return the index of its target.
+	 */
+	public int registerTarget(){
+		return this.nbTargets++;
+	}
+
+	/**
+	 * Return the number of targets registered with this layout.
+	 */
+	@Basic
+	public int getNbTargets(){
+		return this.nbTargets;
+	}
+
+	private int nbTargets = 0;
+
+	/**
+	 * Register that the program reads the selected position of the Tasks executing it.
+	 */
+	public void registerSelectedPosition(){
+		this.readsSelectedPosition = true;
+	}
+
+	/**
+	 * Check whether the program reads the selected position of the Tasks executing it.
+	 */
+	@Basic
+	public boolean readsSelectedPosition(){
+		return this.readsSelectedPosition;
+	}
+
+	private boolean readsSelectedPosition = false;
+}
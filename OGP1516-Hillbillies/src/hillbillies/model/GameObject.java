@@ -1,7 +1,5 @@
 package hillbillies.model;
 
-import java.util.Random;
-
 import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Raw;
 
@@ -20,25 +18,25 @@ import be.kuleuven.cs.som.annotate.Raw;
 public abstract class GameObject {
 	
 	/**
-	 * Initialize a new GameObject with no World or position, a random weight
+	 * Initialize a new GameObject with no World, the given position
 	 * and with the nullvector as its speed
 	 * @post	This GameObject has no World
-	 * @post	This GameObject has no position
-	 * @post	This GameObject has a random weight
+	 * @post	This GameObject has the given position
 	 * @post	This GameObject has the nullvector as its speed
+	 * @note	The weight of this GameObject is to be set by the subclass.
 	 */
 	protected GameObject(Vector position){
 		this.world = null;
 		this.setPosition(position);
 		this.setSpeed(new Vector(0,0,0));
-		this.setWeight(new Random().nextInt());
 	}
 
 	/**
 	 * Initialize this new GameObject with given position and random weight.
 	 * @param  	position
 	 *         	The position for this new GameObject.
-	 * @post	The GameObject's weight equals a random value between 10 and 50, inclusive.
+	 * @post	The GameObject's weight equals a random value between 10 and 50, inclusive,
+	 * 			drawn from the random generator of the given World.
 	 * @effect 	The position of this new GameObject is set to
 	 *         	the given position.
 	 * @post	This new GameObject is Idle
@@ -47,8 +45,7 @@ public abstract class GameObject {
 	public GameObject(Vector position, World world) throws IllegalArgumentException{
 		world.addGameObject(this);
 		this.setPosition(position);
-		Random random = new Random();
-		this.weight= random.nextInt(41)+10;
+		this.weight= world.getRandom().nextInt(41)+10;
 		this.status=Status.IDLE;
 		this.setSpeed(new Vector(0,0,0));
 	}
@@ -325,10 +322,22 @@ public abstract class GameObject {
 				this.startFall();
 			}
 			if (status == Status.FALLING) {
+				TickProfiler profiler = this.getProfiler();
+				long start = (profiler == null) ? 0 : profiler.start();
 				fall(time);
+				if (profiler != null)
+					profiler.stop(TickProfiler.Phase.FALL, start);
 			}
 		}
 	}
+
+	/**
+	 * Return the profiler of the World of this GameObject, or null if this GameObject
+	 * has no World or its World is not being profiled.
+	 */
+	TickProfiler getProfiler(){
+		return (this.getWorld() == null) ? null : this.getWorld().getProfiler();
+	}
 	
 	/**
 	 * Check whether this GameObject has to start falling
@@ -378,6 +387,42 @@ public abstract class GameObject {
 			this.setPosition(new_pos);
 		}
 	}
+
+	/**
+	 * Return how long this GameObject keeps moving in a straight line at its current speed,
+	 * without any event that changes its course or its state.
+	 * @return	If this GameObject is falling, the time it takes to enter the highest cube beneath it
+	 * 			that lies on solid ground, in which it lands. Zero otherwise.
+	 * @note	Terrain only changes at events of Units and when cubes cave in. The World never
+	 * 			advances a GameObject steadily past such an event.
+	 */
+	double getTimeOfSteadyMotion(){
+		if (this.isTerminated() || this.getWorld() == null || this.getStatus() != Status.FALLING)
+			return 0;
+		int x = this.getPosition().getCubeX(), y = this.getPosition().getCubeY();
+		int z = this.getPosition().getCubeZ();
+		while (z != 0 && !this.getWorld().isSolidGround(x, y, z-1))
+			z--;
+		if (z == this.getPosition().getCubeZ())
+			return 0;
+		return (this.getPosition().getZ() - (z + World.CUBELENGTH)) / -this.getSpeed().getZ();
+	}
+
+	/**
+	 * Advance the game time of this GameObject by the given time, during which it moves steadily.
+	 * @param time
+	 * 			The time to advance the game time with, which may exceed the maximal step of a World.
+	 * @pre		This GameObject keeps moving steadily for longer than the given time.
+	 * 			| time < getTimeOfSteadyMotion()
+	 * @post	The speed of this GameObject times the given time is added to its position.
+	 * 			| new.getPosition().equals(this.getPosition().add(this.getSpeed().scalarMultiply(time)))
+	 * @note	The resulting state is the state repeated steps of at most the maximal step lead to,
+	 * 			up to rounding errors in the position.
+	 */
+	void advanceSteadily(double time){
+		assert time < this.getTimeOfSteadyMotion();
+		this.setPosition(this.getPosition().add(this.getSpeed().scalarMultiply(time)));
+	}
 	
 	/**
 	 * Return the speed of this Unit.
@@ -1,6 +1,5 @@
 package hillbillies.model;
 
-import java.util.Random;
 
 public abstract class InanimateObject extends GameObject {
 	
@@ -21,7 +20,28 @@ public abstract class InanimateObject extends GameObject {
 	 */
 	public InanimateObject(Vector position, World world) throws IllegalArgumentException {
 		super(position, world);
-		this.setWeight(new Random().nextInt(41) + 10);
+		this.setWeight(world.getRandom().nextInt(41) + 10);
+	}
+
+	/**
+	 * Initialize a new InanimateObject with the given position and weight, lying in a pile of the given World.
+	 * @param position
+	 * 			The position of this new InanimateObject.
+	 * @param weight
+	 * 			The weight of this new InanimateObject.
+	 * @param world
+	 * 			The World of the pile this new InanimateObject lies in.
+	 * @post	This InanimateObject has the given World as its World, but the given World does not
+	 * 			have this InanimateObject as one of its GameObjects.
+	 * @post	This InanimateObject has the given Vector as its position.
+	 * @post	This InanimateObject has the given weight.
+	 * @post	This InanimateObject is idle.
+	 */
+	InanimateObject(Vector position, int weight, World world){
+		super(position);
+		this.setWorld(world);
+		this.setWeight(weight);
+		this.setStatus(Status.IDLE);
 	}
 	
 	/**
@@ -41,6 +61,22 @@ public abstract class InanimateObject extends GameObject {
 	protected boolean isValidStatus(Status status) {
 		return status == Status.FALLING || status == Status.IDLE;
 	}
+
+	/**
+	 * Advance the game time of this InanimateObject.
+	 * @effect	The game time is advanced as for any GameObject.
+	 * 			| super.advanceTime(time)
+	 * @effect	If this InanimateObject is lying still on solid ground afterwards, it comes to rest
+	 * 			in the item pile of its cube, until the terrain beneath it changes.
+	 * 			| if (this.getWorld() != null && this.getStatus() == Status.IDLE && !this.hasToFall())
+	 * 			| then this.getWorld().putToRest(this)
+	 */
+	@Override
+	public void advanceTime(double time) {
+		super.advanceTime(time);
+		if (this.getWorld() != null && this.getStatus() == Status.IDLE && !this.hasToFall())
+			this.getWorld().putToRest(this);
+	}
 	
 	
 
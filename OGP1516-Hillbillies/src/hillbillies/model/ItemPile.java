@@ -0,0 +1,257 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import be.kuleuven.cs.som.annotate.Basic;
+
+/**
+ * A class of piles collecting the Boulders and Logs lying still in a single cube of a World.
+ * A pile registers, for each type of item, the weight of each of its items in an array. An item
+ * that came to rest in the pile keeps its own InanimateObject, other items only get one when they
+ * are asked for, after which the pile hands out that same InanimateObject for as long as the item
+ * lies in it.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ * @invar	The weight of each item in this pile lies between 10 and 50.
+ * @invar	Each InanimateObject of an item of this pile has the type and weight of that item,
+ * 			and lies in the cube of this pile.
+ */
+class ItemPile {
+
+	/**
+	 * Initialize a new empty pile in the cube with the given coordinates of the given World.
+	 * @param world
+	 * 			The World of this new pile.
+	 * @param x
+	 * 			The x-coordinate of the cube of this new pile.
+	 * @param y
+	 * 			The y-coordinate of the cube of this new pile.
+	 * @param z
+	 * 			The z-coordinate of the cube of this new pile.
+	 * @post	The centre of this new pile is the centre of the given cube.
+	 * @post	This new pile is empty.
+	 */
+	ItemPile(World world, int x, int y, int z){
+		this.world = world;
+		this.centre = new Vector(x + World.CUBELENGTH/2, y + World.CUBELENGTH/2, z + World.CUBELENGTH/2);
+	}
+
+	/**
+	 * Variable referencing the World of this pile.
+	 */
+	private final World world;
+
+	/**
+	 * Variable registering the centre of the cube of this pile.
+	 */
+	private final Vector centre;
+
+	/**
+	 * Return the number of items of the given type in this pile.
+	 * @param type
+	 * 			The type of item to count, either Boulder or Log.
+	 */
+	@Basic
+	int getNbItems(Class<? extends InanimateObject> type){
+		return this.nbItems[indexOf(type)];
+	}
+
+	/**
+	 * Return the weight of the item of the given type at the given index in this pile.
+	 * @param type
+	 * 			The type of the item, either Boulder or Log.
+	 * @param index
+	 * 			The index of the item among the items of its type.
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 0 || index >= getNbItems(type)
+	 */
+	@Basic
+	int getWeightAt(Class<? extends InanimateObject> type, int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= this.getNbItems(type))
+			throw new IndexOutOfBoundsException();
+		return this.weights[indexOf(type)][index];
+	}
+
+	/**
+	 * Check whether this pile is empty.
+	 * @return	true if and only if this pile holds no Boulders and no Logs.
+	 * 			| result == (getNbItems(Boulder.class) == 0 && getNbItems(Log.class) == 0)
+	 */
+	boolean isEmpty(){
+		return this.nbItems[BOULDER] == 0 && this.nbItems[LOG] == 0;
+	}
+
+	/**
+	 * Add an item of the given type and weight to this pile, without creating an InanimateObject for it.
+	 * @param type
+	 * 			The type of the item, either Boulder or Log.
+	 * @param weight
+	 * 			The weight of the item.
+	 * @post	The given weight is the weight of the last item of the given type in this pile.
+	 * 			| new.getNbItems(type) == getNbItems(type) + 1 &&
+	 * 			| new.getWeightAt(type, getNbItems(type)) == weight
+	 */
+	void add(Class<? extends InanimateObject> type, int weight){
+		this.append(indexOf(type), weight, null);
+	}
+
+	/**
+	 * Add the given item, which has come to rest in the cube of this pile, to this pile.
+	 * @param item
+	 * 			The Boulder or Log to add.
+	 * @post	The given item is the last item of its type in this pile, with its own weight.
+	 * 			Its position and World are left untouched.
+	 * 			| new.peek(item.getClass()) == item
+	 */
+	void add(InanimateObject item){
+		this.append(indexOf(item.getClass()), item.getWeight(), item);
+	}
+
+	/**
+	 * Append an item with the given weight and InanimateObject to the items of the given type index.
+	 */
+	private void append(int index, int weight, InanimateObject item){
+		int count = this.nbItems[index];
+		if (count == this.weights[index].length){
+			this.weights[index] = Arrays.copyOf(this.weights[index], 2 * count);
+			this.objects[index] = Arrays.copyOf(this.objects[index], 2 * count);
+		}
+		this.weights[index][count] = weight;
+		this.objects[index][count] = item;
+		this.nbItems[index] = count + 1;
+	}
+
+	/**
+	 * Return the InanimateObject of the item of the given type at the given index, creating it if needed.
+	 * @return	An InanimateObject of the given type with the weight of the given item, lying at the
+	 * 			centre of this pile if it has been created by this pile. The same InanimateObject is
+	 * 			returned for as long as the item lies in this pile.
+	 * @note	The returned item lies in the World of this pile, but is not one of its GameObjects,
+	 * 			since it is never advanced while it lies in this pile.
+	 * @note	Units that plan their steps in parallel may ask for the same item at the same time.
+	 */
+	private synchronized InanimateObject materialise(int index, int i){
+		InanimateObject item = this.objects[index][i];
+		if (item == null){
+			int weight = this.weights[index][i];
+			item = (index == BOULDER) ? new Boulder(this.centre, weight, this.world)
+					: new Log(this.centre, weight, this.world);
+			this.objects[index][i] = item;
+		}
+		return item;
+	}
+
+	/**
+	 * Return the item of the given type that is taken first from this pile.
+	 * @param type
+	 * 			The type of item to look for.
+	 * @return	The InanimateObject of the last item of the given type in this pile,
+	 * 			or null if this pile holds no items of the given type.
+	 */
+	InanimateObject peek(Class<? extends InanimateObject> type){
+		int index = indexOf(type);
+		if (this.nbItems[index] == 0)
+			return null;
+		return this.materialise(index, this.nbItems[index] - 1);
+	}
+
+	/**
+	 * Take an item of the given type from this pile.
+	 * @param type
+	 * 			The type of item to take.
+	 * @return	The InanimateObject of the last item of the given type, which is no longer part
+	 * 			of this pile, or null if this pile holds no items of the given type.
+	 * @effect	| remove(type)
+	 */
+	InanimateObject take(Class<? extends InanimateObject> type){
+		InanimateObject item = this.peek(type);
+		this.remove(type);
+		return item;
+	}
+
+	/**
+	 * Remove the last item of the given type from this pile, without creating an InanimateObject for it.
+	 * @param type
+	 * 			The type of item to remove.
+	 * @return	The InanimateObject of the removed item if it has one, or null otherwise.
+	 * @post	If this pile holds items of the given type, their number has decreased by one.
+	 */
+	InanimateObject remove(Class<? extends InanimateObject> type){
+		int index = indexOf(type);
+		int count = this.nbItems[index];
+		if (count == 0)
+			return null;
+		InanimateObject item = this.objects[index][count - 1];
+		this.objects[index][count - 1] = null;
+		this.nbItems[index] = count - 1;
+		return item;
+	}
+
+	/**
+	 * Remove all items from this pile.
+	 * @return	A list with the InanimateObject of each item of this pile, the items of each type
+	 * 			in the order in which they were added. The items are no longer part of this pile.
+	 * @post	This pile is empty.
+	 */
+	List<InanimateObject> takeAll(){
+		List<InanimateObject> result = this.getItems();
+		Arrays.fill(this.objects[BOULDER], null);
+		Arrays.fill(this.objects[LOG], null);
+		this.nbItems[BOULDER] = 0;
+		this.nbItems[LOG] = 0;
+		return result;
+	}
+
+	/**
+	 * Return a list with the InanimateObject of each item of the given type in this pile.
+	 * @param type
+	 * 			The type of items to return.
+	 */
+	List<InanimateObject> getItems(Class<? extends InanimateObject> type){
+		int index = indexOf(type);
+		List<InanimateObject> result = new ArrayList<>(this.nbItems[index]);
+		for (int i = 0; i < this.nbItems[index]; i++)
+			result.add(this.materialise(index, i));
+		return result;
+	}
+
+	/**
+	 * Return a list with the InanimateObject of each item in this pile.
+	 */
+	List<InanimateObject> getItems(){
+		List<InanimateObject> result = this.getItems(Boulder.class);
+		result.addAll(this.getItems(Log.class));
+		return result;
+	}
+
+	/**
+	 * Return the index of the given type of item in the arrays of this pile.
+	 */
+	private static int indexOf(Class<?> type){
+		return (type == Boulder.class) ? BOULDER : LOG;
+	}
+
+	/**
+	 * The indices of Boulders and Logs in the arrays of a pile.
+	 */
+	private static final int BOULDER = 0, LOG = 1;
+
+	/**
+	 * Variable registering the number of items of each type in this pile.
+	 */
+	private final int[] nbItems = new int[2];
+
+	/**
+	 * Variable registering the weight of each item of each type in this pile.
+	 */
+	private final int[][] weights = { new int[2], new int[2] };
+
+	/**
+	 * Variable referencing the InanimateObject of each item of each type in this pile,
+	 * or null for an item that has not been asked for yet.
+	 */
+	private final InanimateObject[][] objects = { new InanimateObject[2], new InanimateObject[2] };
+}
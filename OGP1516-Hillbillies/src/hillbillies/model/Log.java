@@ -14,9 +14,23 @@ public class Log extends InanimateObject {
 	 * 			The position for this new Log.
 	 * @post	The Log's position equals the given position
 	 * @post	The Log's weight is a random value between 10 and 50, inclusive.
+	 * @effect	If this new Log does not have to fall, it comes to rest in the item pile of its cube
+	 * 			once it has been initialized, without leaving the given position.
+	 * 			| if (!this.hasToFall())
+	 * 			| then world.putToRest(this)
 	 */
 	public Log(Vector position, World world){
 		super(position, world);
+		if (!this.hasToFall())
+			world.putToRest(this);
+	}
+
+	/**
+	 * Initialize a new Log with the given position and weight, lying in a pile of the given World.
+	 * @effect	| super(position, weight, world)
+	 */
+	Log(Vector position, int weight, World world){
+		super(position, weight, world);
 	}
 	
 }
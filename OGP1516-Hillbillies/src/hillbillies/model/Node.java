@@ -1,6 +1,6 @@
 package hillbillies.model;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import be.kuleuven.cs.som.annotate.Basic;
@@ -181,9 +181,11 @@ public class Node implements Comparable<Node> {
 
 	/**
 	 * Return a set containing all Nodes neighbouring this Node.
+	 * @note	The Nodes are iterated in a fixed order, so that paths of equal cost are always
+	 * 			broken in the same way.
 	 */
 	public Set<Node> getNeighbouringNodes(){
-		Set<Node> result = new HashSet<>();
+		Set<Node> result = new LinkedHashSet<>();
 		for (int x = -1; x <= 1; x++){
 			for (int y = -1; y <= 1; y++){
 				for(int z = -1; z <= 1; z++){
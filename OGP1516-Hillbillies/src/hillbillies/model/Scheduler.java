@@ -86,6 +86,14 @@ public class Scheduler implements Iterable<Task>{
 			throw new NoSuchElementException();
 	}
 
+	/**
+	 * Check whether this Scheduler has a Task that is not being executed.
+	 * @return	| result == (for some task in tasks: !task.isBeingExecuted())
+	 */
+	public boolean hasAvailableTask(){
+		return this.tasks.stream().anyMatch((Task t) -> !t.isBeingExecuted());
+	}
+
 	/**
 	 * Check whether this Scheduler can have the given Task
 	 * as one of its Tasks.
@@ -0,0 +1,241 @@
+package hillbillies.model;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+
+/**
+ * A class of loops advancing a World on a thread of their own, at a fixed rate.
+ *
+ * Other threads hand game time to a loop, which consumes it in steps of a fixed length.
+ * At the end of each step the World publishes a snapshot, which is all a user interface
+ * needs to render it, so that rendering never waits for the simulation and the other way
+ * round. Threads that need to access the World itself synchronize on it, since every step
+ * is taken while holding its lock.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ * @invar	The time step of each simulation loop is a valid time step.
+ * 			| isValidTimeStep(getTimeStep())
+ */
+public class SimulationLoop {
+
+	/**
+	 * Initialize a new simulation loop for the given World with the given time step.
+	 * @param world
+	 * 			The World to advance.
+	 * @param timeStep
+	 * 			The game time by which the given World is advanced in a single step.
+	 * @post	The World of this new simulation loop is the given World.
+	 * @post	The time step of this new simulation loop is the given time step.
+	 * @throws IllegalArgumentException
+	 * 			The given World is not effective or the given time step is not a valid time step.
+	 * 			| (world == null) || !isValidTimeStep(timeStep)
+	 */
+	public SimulationLoop(World world, double timeStep) throws IllegalArgumentException {
+		if (world == null || !isValidTimeStep(timeStep))
+			throw new IllegalArgumentException();
+		this.world = world;
+		this.timeStep = timeStep;
+	}
+
+	/**
+	 * Return the World advanced by this simulation loop.
+	 */
+	@Basic @Immutable
+	public World getWorld(){
+		return this.world;
+	}
+
+	/**
+	 * Variable referencing the World of this simulation loop.
+	 */
+	private final World world;
+
+	/**
+	 * Return the game time by which this simulation loop advances its World in a single step.
+	 */
+	@Basic @Immutable
+	public double getTimeStep(){
+		return this.timeStep;
+	}
+
+	/**
+	 * Check whether the given time step is a valid time step for any simulation loop.
+	 * @return	True if and only if the given time step is strictly positive and
+	 * 			does not exceed the maximal step of a World.
+	 * 			| result == (timeStep > 0 && timeStep <= World.MAX_STEP)
+	 */
+	public static boolean isValidTimeStep(double timeStep){
+		return timeStep > 0 && timeStep <= World.MAX_STEP;
+	}
+
+	/**
+	 * Variable registering the time step of this simulation loop.
+	 */
+	private final double timeStep;
+
+	/**
+	 * The largest amount of game time that can be waiting to be simulated. Time handed to
+	 * a simulation loop that falls behind beyond this amount is dropped, rather than simulated
+	 * in a burst afterwards.
+	 */
+	private static final double MAX_BACKLOG = 1;
+
+	/**
+	 * Start advancing the World of this simulation loop on a thread of its own.
+	 * @effect	The World of this simulation loop publishes snapshots.
+	 * 			| getWorld().setPublishesSnapshots(true)
+	 * @post	This simulation loop is running.
+	 * 			| new.isRunning()
+	 * @throws IllegalStateException
+	 * 			This simulation loop has already been started.
+	 */
+	public synchronized void start() throws IllegalStateException {
+		if (this.executor != null)
+			throw new IllegalStateException("This simulation loop has already been started");
+		synchronized (this.getWorld()){
+			this.getWorld().setPublishesSnapshots(true);
+		}
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Simulation");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.round(this.getTimeStep() * 1e9);
+		this.executor.scheduleAtFixedRate(this::tick, period, period, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stop advancing the World of this simulation loop, after the current step has been completed.
+	 * @post	This simulation loop is no longer running.
+	 * 			| !new.isRunning()
+	 */
+	public synchronized void stop(){
+		if (this.executor == null)
+			return;
+		this.executor.shutdown();
+		try {
+			this.executor.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Check whether this simulation loop is advancing its World.
+	 */
+	public synchronized boolean isRunning(){
+		return this.executor != null && !this.executor.isShutdown();
+	}
+
+	/**
+	 * Variable referencing the executor running the steps of this simulation loop.
+	 */
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Hand the given game time to this simulation loop, to be simulated in its next steps.
+	 * @param time
+	 * 			The game time to simulate.
+	 * @post	The given time is added to the time waiting to be simulated, which is
+	 * 			limited to one second of game time.
+	 * @throws IllegalArgumentException
+	 * 			The given time is negative.
+	 * 			| !(time >= 0)
+	 * @throws IllegalStateException
+	 * 			A previous step of this simulation loop has failed. The failure is the cause.
+	 */
+	public void addTime(double time) throws IllegalArgumentException, IllegalStateException {
+		if (!(time >= 0))
+			throw new IllegalArgumentException();
+		if (this.failure != null)
+			throw new IllegalStateException("The simulation has failed", this.failure);
+		synchronized (this.backlogLock){
+			this.backlog = Math.min(MAX_BACKLOG, this.backlog + time);
+		}
+	}
+
+	/**
+	 * Take the next step of the time waiting to be simulated, if any.
+	 * @return	The game time by which the World must be advanced, which is zero if not
+	 * 			a full time step is waiting.
+	 */
+	private double takeStep(){
+		synchronized (this.backlogLock){
+			if (this.backlog + 1e-9 < this.getTimeStep())
+				return 0;
+			this.backlog = Math.max(0, this.backlog - this.getTimeStep());
+			return this.getTimeStep();
+		}
+	}
+
+	/**
+	 * Variable registering the game time waiting to be simulated.
+	 */
+	private double backlog = 0;
+
+	/**
+	 * Object guarding the time waiting to be simulated.
+	 */
+	private final Object backlogLock = new Object();
+
+	/**
+	 * Execute the given command on the thread of this simulation loop, before its next step.
+	 * @param command
+	 * 			The command to execute.
+	 * @post	The given command is executed before the next step of this simulation loop,
+	 * 			after all commands that were handed to it earlier.
+	 * @throws IllegalArgumentException
+	 * 			The given command is not effective.
+	 */
+	public void execute(Runnable command) throws IllegalArgumentException {
+		if (command == null)
+			throw new IllegalArgumentException();
+		this.commands.add(command);
+	}
+
+	/**
+	 * Variable referencing the commands waiting to be executed.
+	 */
+	private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Execute all waiting commands and advance the World of this simulation loop
+	 * by a single time step, if a full step is waiting to be simulated.
+	 * If anything fails, the failure is registered and this simulation loop stops.
+	 */
+	private void tick(){
+		try {
+			synchronized (this.getWorld()){
+				Runnable command;
+				while ((command = this.commands.poll()) != null)
+					command.run();
+				double step = this.takeStep();
+				if (step > 0)
+					this.getWorld().advanceTime(step);
+			}
+		} catch (RuntimeException | Error e){
+			this.failure = e;
+			this.executor.shutdown();
+		}
+	}
+
+	/**
+	 * Return the failure that stopped this simulation loop, or null if it has not failed.
+	 */
+	@Basic
+	public Throwable getFailure(){
+		return this.failure;
+	}
+
+	/**
+	 * Variable referencing the failure that stopped this simulation loop.
+	 */
+	private volatile Throwable failure;
+}
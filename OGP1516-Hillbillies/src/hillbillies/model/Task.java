@@ -1,8 +1,8 @@
 package hillbillies.model;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
@@ -10,6 +10,8 @@ import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Immutable;
 import be.kuleuven.cs.som.annotate.Raw;
 import hillbillies.model.statements.IExecutableStatement;
+import hillbillies.model.statements.MoveToStatement;
+import hillbillies.model.statements.Program;
 import hillbillies.model.statements.Statement;
 
 /**
@@ -57,13 +59,51 @@ public class Task implements Comparable<Task> {
 	 */
 	public Task(String name, int priority,	Statement activitylist)
 			throws IllegalArgumentException {
+		this(name, priority, compile(activitylist));
+	}
+
+	/**
+	 * Return a new program compiling the given Statement.
+	 * @throws IllegalArgumentException
+	 * 		   The given Statement is not valid
+	 * 		 | !isValidStatement(activitylist)
+	 */
+	private static Program compile(Statement activitylist) throws IllegalArgumentException {
 		if (!isValidStatement(activitylist))
 			throw new IllegalArgumentException();
+		return new Program(activitylist);
+	}
+
+	/**
+	 * Initialize this new Task as a non-terminated Task with 
+	 * given name, priority and program, and no Schedulers yet.
+	 * @param  name
+	 *         The name for this new Task.
+	 * @param  priority
+	 *         The priority for this new Task.
+	 * @param  program
+	 * 		   The program to be executed by this Task. The program may be shared with other Tasks.
+	 * @effect The priority of this new Task is set to
+	 *         the given priority.
+	 *       | this.setPriority(priority)
+	 * @effect The name of this new Task is set to
+	 *         the given name.
+	 *       | this.setName(name)
+	 * @post   This new Task has no Schedulers yet.
+	 *       | new.getNbSchedulers() == 0
+	 * @throws IllegalArgumentException
+	 * 		   The given program is not effective
+	 * 		 | program == null
+	 */
+	public Task(String name, int priority, Program program) throws IllegalArgumentException {
+		if (program == null)
+			throw new IllegalArgumentException();
 		this.setPriority(priority);
 		this.setName(name);
-		this.statement=activitylist;
-		this.statement.addToTask(this);
+		this.statement = program.getStatement();
+		this.program = program;
 		this.selectedPosition = null;
+		this.layOutFrame();
 	}
 
 	/**
@@ -102,12 +142,32 @@ public class Task implements Comparable<Task> {
 	 */
 	public Task(String name, int priority,Statement activitylist, Vector selectedPosition) 
 			throws IllegalArgumentException {
-		if (!isValidStatement(activitylist))
+		this(name, priority, compile(activitylist), selectedPosition);
+	}
+
+	/**
+	 * Initialize this new Task with given program and selectedPosition.
+	 * 
+	 * @param  program
+	 * 		   The program to be executed by this Task. The program may be shared with other Tasks.
+	 * @effect This new Task is initialized with the given name, priority and program.
+	 * 		 | this(name, priority, program)
+	 * @post   If the given selectedPosition is a valid selectedPosition for any Task,
+	 *         the selectedPosition of this new Task is equal to the given
+	 *         selectedPosition. Otherwise, each negative component is replaced by zero.
+	 * @throws IllegalArgumentException
+	 * 		   The given program is not effective
+	 * 		 | program == null
+	 */
+	public Task(String name, int priority, Program program, Vector selectedPosition) 
+			throws IllegalArgumentException {
+		if (program == null)
 			throw new IllegalArgumentException();
 		this.setPriority(priority);
 		this.setName(name);
-		this.statement=activitylist;
-		this.statement.addToTask(this);
+		this.statement = program.getStatement();
+		this.program = program;
+		this.layOutFrame();
 		if (canHaveAsSelectedPosition(selectedPosition))
 			this.selectedPosition = selectedPosition;
 		else {
@@ -133,10 +193,9 @@ public class Task implements Comparable<Task> {
 	 * 		  | new.isBeingExecuted()
 	 * @effect	if the Unit does not currently have an assigned unit, it will set this task's unit to 
 	 * 			the given Unit and the Given Unit will have its task set to this task,
-	 * 			and this Task's iterator is reinitialized
+	 * 			and a new execution of this Task's program is started
 	 * 			| this.setUnit(unit)
 	 * 			| unit.assignTask(this)
-	 * 			| this.iterator==this.statements.iterator()
 	 * @throws	IllegalStateException
 	 * 			This Task is already in execution, or the given Unit is already executing a Task,
 	 * 			or this Task has already been terminated
@@ -153,7 +212,7 @@ public class Task implements Comparable<Task> {
 		this.inExecution = true;
 		this.setUnit(unit);
 		unit.assignTask(this);
-		this.iterator = this.statement.iterator();
+		this.execution = this.program.start(this);
 	}
 	
 	/**
@@ -177,8 +236,9 @@ public class Task implements Comparable<Task> {
 		if (!this.isBeingExecuted())
 			throw new IllegalStateException();
 		this.inExecution = false;
-		this.variables.clear();
-		this.statement.reset();
+		this.clearVariables();
+		this.evaluationContext.clear();
+		Arrays.fill(this.targets, null);
 		Unit oldUnit = this.getUnit();
 		this.setUnit(null);
 		oldUnit.removeTask();
@@ -504,15 +564,23 @@ public class Task implements Comparable<Task> {
 	 * @param name
 	 * 			The name of the variable to retrieve
 	 * @return the variable belonging to the given name
-	 * 		 | result == this.variables.get(name)
 	 * @throws NoSuchElementException
 	 * 		   There is no variable with the given name
-	 * 		 | !this.variables.containsKey(name)
 	 */
 	public Object getVariable(String name) throws NoSuchElementException {
-		if (!this.variables.containsKey(name))
+		int slot = this.findVariableSlot(name);
+		if (slot < 0)
 			throw new NoSuchElementException();
-		return this.variables.get(name);
+		switch (this.variableTypes[slot]) {
+		case POSITION_VARIABLE:
+			return this.positionVariables[slot];
+		case UNIT_VARIABLE:
+			return this.unitVariables[slot];
+		case BOOLEAN_VARIABLE:
+			return this.booleanVariables[slot];
+		default:
+			throw new NoSuchElementException();
+		}
 	}
 
 	/**
@@ -539,18 +607,203 @@ public class Task implements Comparable<Task> {
 	public void storeVariable(String name, Object value) throws IllegalArgumentException {
 		if (!isValidVariable(value))
 			throw new IllegalArgumentException();
-		this.variables.put(name, value);
+		int slot = this.getVariableSlot(name);
+		if (value instanceof Vector)
+			this.storePositionVariable(slot, (Vector) value);
+		else if (value instanceof Unit)
+			this.storeUnitVariable(slot, (Unit) value);
+		else
+			this.storeBooleanVariable(slot, (Boolean) value);
+	}
+
+	/**
+	 * Return the slot of the variable with the given name.
+	 * @param name
+	 * 			The name of the variable.
+	 * @return	The slot registered for the given name. If no slot was registered for it yet,
+	 * 			a new slot is registered, in which no value has been stored.
+	 * @note	The Statements and expressions of the program of this Task resolve their variables
+	 * 			to slots of its layout when the program is compiled, so that reading and writing a
+	 * 			variable during execution is a mere array access. Names that do not occur in the
+	 * 			program are given slots following those of the layout.
+	 */
+	public int getVariableSlot(String name) {
+		int slot = this.findVariableSlot(name);
+		if (slot < 0) {
+			slot = this.program.getLayout().getNbVariables() + this.extraVariableSlots.size();
+			this.extraVariableSlots.put(name, slot);
+			if (slot >= this.variableTypes.length) {
+				int capacity = Math.max(4, 2*slot);
+				this.variableTypes = Arrays.copyOf(this.variableTypes, capacity);
+				this.positionVariables = Arrays.copyOf(this.positionVariables, capacity);
+				this.unitVariables = Arrays.copyOf(this.unitVariables, capacity);
+				this.booleanVariables = Arrays.copyOf(this.booleanVariables, capacity);
+			}
+		}
+		return slot;
 	}
 
 	/**
-	 * HashMap registering the variables that have been assigned during this Task
-	 * @invar	The variables are effective
-	 * 			| variable != null
-	 * @invar	The variables in this HashMap must be valid variables for a Task
-	 * 			| for each Object in variables.values:
-	 * 			|					isValidVariable(Object)
+	 * Return the slot of the variable with the given name, or -1 if no slot has been registered for it.
 	 */
-	private HashMap<String,Object> variables = new HashMap<>();
+	private int findVariableSlot(String name) {
+		int slot = this.program.getLayout().findVariableSlot(name);
+		if (slot >= 0)
+			return slot;
+		Integer extra = this.extraVariableSlots.get(name);
+		return (extra == null) ? -1 : extra;
+	}
+
+	/**
+	 * Return the position stored in the given slot.
+	 * @throws NoSuchElementException
+	 * 			No position is stored in the given slot.
+	 */
+	public Vector getPositionVariable(int slot) throws NoSuchElementException {
+		if (this.variableTypes[slot] != POSITION_VARIABLE)
+			throw new NoSuchElementException();
+		return this.positionVariables[slot];
+	}
+
+	/**
+	 * Return the Unit stored in the given slot.
+	 * @throws NoSuchElementException
+	 * 			No Unit is stored in the given slot.
+	 */
+	public Unit getUnitVariable(int slot) throws NoSuchElementException {
+		if (this.variableTypes[slot] != UNIT_VARIABLE)
+			throw new NoSuchElementException();
+		return this.unitVariables[slot];
+	}
+
+	/**
+	 * Return the boolean stored in the given slot.
+	 * @throws NoSuchElementException
+	 * 			No boolean is stored in the given slot.
+	 */
+	public boolean getBooleanVariable(int slot) throws NoSuchElementException {
+		if (this.variableTypes[slot] != BOOLEAN_VARIABLE)
+			throw new NoSuchElementException();
+		return this.booleanVariables[slot];
+	}
+
+	/**
+	 * Store the given position in the given slot.
+	 * @throws IllegalArgumentException
+	 * 			The given position is not effective.
+	 */
+	public void storePositionVariable(int slot, Vector value) throws IllegalArgumentException {
+		if (value == null)
+			throw new IllegalArgumentException();
+		this.clearVariable(slot);
+		this.positionVariables[slot] = value;
+		this.variableTypes[slot] = POSITION_VARIABLE;
+	}
+
+	/**
+	 * Store the given Unit in the given slot.
+	 * @throws IllegalArgumentException
+	 * 			The given Unit is not effective.
+	 */
+	public void storeUnitVariable(int slot, Unit value) throws IllegalArgumentException {
+		if (value == null)
+			throw new IllegalArgumentException();
+		this.clearVariable(slot);
+		this.unitVariables[slot] = value;
+		this.variableTypes[slot] = UNIT_VARIABLE;
+	}
+
+	/**
+	 * Store the given boolean in the given slot.
+	 */
+	public void storeBooleanVariable(int slot, boolean value) {
+		this.clearVariable(slot);
+		this.booleanVariables[slot] = value;
+		this.variableTypes[slot] = BOOLEAN_VARIABLE;
+	}
+
+	/**
+	 * Remove the value stored in the given slot.
+	 */
+	private void clearVariable(int slot) {
+		this.positionVariables[slot] = null;
+		this.unitVariables[slot] = null;
+		this.variableTypes[slot] = NO_VARIABLE;
+	}
+
+	/**
+	 * Remove the values stored in all slots of this Task.
+	 */
+	private void clearVariables() {
+		Arrays.fill(this.variableTypes, NO_VARIABLE);
+		Arrays.fill(this.positionVariables, null);
+		Arrays.fill(this.unitVariables, null);
+	}
+
+	private static final byte NO_VARIABLE = 0;
+
+	private static final byte POSITION_VARIABLE = 1;
+
+	private static final byte UNIT_VARIABLE = 2;
+
+	private static final byte BOOLEAN_VARIABLE = 3;
+
+	/**
+	 * HashMap registering the slot of each variable name used by this Task that does not
+	 * occur in the layout of its program.
+	 */
+	private final HashMap<String,Integer> extraVariableSlots = new HashMap<>();
+
+	/**
+	 * Array registering, for each slot, which bank holds the value of that slot, if any.
+	 * @invar	Each of the variable banks has the same length as this array.
+	 */
+	private byte[] variableTypes = new byte[0];
+
+	/**
+	 * Arrays registering the values of the variables that have been assigned during this Task,
+	 * indexed by their slot. Each bank only holds values of a single type.
+	 * @invar	The value of each slot is only stored in the bank registered for that slot.
+	 */
+	private Vector[] positionVariables = new Vector[0];
+
+	private Unit[] unitVariables = new Unit[0];
+
+	private boolean[] booleanVariables = new boolean[0];
+
+	/**
+	 * Size the execution state of this Task to the layout of its program.
+	 */
+	private void layOutFrame() {
+		FrameLayout layout = this.program.getLayout();
+		int nbVariables = layout.getNbVariables();
+		this.variableTypes = new byte[nbVariables];
+		this.positionVariables = new Vector[nbVariables];
+		this.unitVariables = new Unit[nbVariables];
+		this.booleanVariables = new boolean[nbVariables];
+		this.targets = new Unit[layout.getNbTargets()];
+		this.evaluationContext = new EvaluationContext(layout.getNbNodes());
+	}
+
+	/**
+	 * Return the Unit followed under the given target of the layout of the program of this Task,
+	 * or null if it follows no Unit under that target.
+	 */
+	public Unit getTarget(int target) {
+		return this.targets[target];
+	}
+
+	/**
+	 * Let this Task follow the given Unit under the given target of the layout of its program.
+	 */
+	public void setTarget(int target, Unit unit) {
+		this.targets[target] = unit;
+	}
+
+	/**
+	 * Array registering, for each target of the layout of the program of this Task, the Unit it follows.
+	 */
+	private Unit[] targets = new Unit[0];
 
 	/**
 	 * Return the selectedPosition of this Task.
@@ -586,53 +839,115 @@ public class Task implements Comparable<Task> {
 	 * Advance this Task by a given amount of time
 	 * @param time
 	 * 			The time to advance this Task by
-	 * @effect	If this Task's iterator has no statements anymore,
+	 * @effect	While the Unit is Idle, execute at most time/0.001 statements
+	 * @effect	If the Unit is Idle and this Task has no statements to execute anymore,
 	 * 			this Task is terminated
-	 * 		  | if (!this.getIterator().hasNext())
+	 * 		  | if (this.getUnit().getStatus() == Status.IDLE && this.isFinished())
 	 * 		  | then this.terminate()
-	 * @effect	While the Unit is Idle, execute at most time/0.001 tasks
+	 * @effect	If a statement or a condition cannot be evaluated, this Task is removed from its Unit
 	 */
 	void advanceTask(double time) throws IllegalArgumentException {
 		if (time < 0 || time > 0.2)
 			throw new IllegalArgumentException();
-		if (!this.getIterator().hasNext()){
-			this.removeFromUnit();
-			this.terminate();
-			return;
-		}
 		int nbStatements = (int) Math.ceil(time/0.001);
-		for (int i = 0; i < nbStatements; i++){
-			if (this.getUnit().getStatus() == Status.IDLE)
+		TickProfiler profiler = this.getUnit().getProfiler();
+		int nbExecuted = 0;
+		try {
+			while (nbExecuted < nbStatements && this.getUnit().getStatus() == Status.IDLE){
+				boolean finished;
+				this.evaluationContext.open();
 				try {
-					this.getIterator().next().execute();
-				} catch (Exception e){
+					finished = this.execution.isFinished();
+					if (!finished){
+						nbExecuted++;
+						this.execution.executeNext();
+					}
+				} catch (RuntimeException e){
+					this.removeFromUnit();
+					return;
+				} finally {
+					this.evaluationContext.close();
+				}
+				if (finished){
 					this.removeFromUnit();
+					this.terminate();
 					return;
 				}
-			if (!this.getIterator().hasNext())
-				break;
+			}
+		} finally {
+			if (profiler != null)
+				profiler.countStatements(nbExecuted);
 		}
 	}
 	
 	/**
-	 * Return this Task's iterator
+	 * Return the program executing the Statement of this Task.
+	 */
+	@Basic @Immutable
+	public Program getProgram(){
+		return this.program;
+	}
+
+	/**
+	 * Variable referencing the program executing the Statement of this Task.
 	 */
-	private Iterator<IExecutableStatement> getIterator(){
-		return this.iterator;
+	private final Program program;
+
+	/**
+	 * Return the context memoising the values of the expressions of this Task during a single step.
+	 * @note	A step consists of deciding on the next Statement of this Task and executing it.
+	 * 			Within a step, each memoised expression searches the World at most once.
+	 */
+	@Basic
+	public EvaluationContext getEvaluationContext(){
+		return this.evaluationContext;
 	}
 
 	/**
-	 * Variable registering the iterator this task is using
+	 * Variable referencing the evaluation context of this Task.
 	 */
-	private Iterator<IExecutableStatement> iterator;
+	private EvaluationContext evaluationContext;
+
+	/**
+	 * Variable referencing the execution of the program of this Task by its current Unit.
+	 */
+	private Program.Execution execution;
 
 	/**
 	 * Check whether the current Task has been completed.
-	 * @return true if and only if this Task's iterator has no next Statement
-	 * 		  | result == !(this.getIterator().hasNext())
+	 * @return true if and only if the execution of this Task's program has no next Statement
+	 * 		  | result == this.execution.isFinished()
+	 * @note	If a condition deciding whether any Statement remains cannot be evaluated,
+	 * 			this Task is not considered to be completed. The failure surfaces the next time
+	 * 			this Task is advanced.
 	 */
 	public boolean isFinished(){
-		return !this.iterator.hasNext();
+		try {
+			return this.execution.isFinished();
+		} catch (RuntimeException e){
+			return false;
+		}
+	}
+
+	/**
+	 * Return the target of the next Statement of this Task, if that Statement moves its Unit.
+	 * @return	The position to which the next Statement of the program of this Task moves its Unit,
+	 * 			or null if that Statement does not move its Unit or cannot be determined.
+	 * @note	Nothing is executed: only the conditions up to the next Statement and its target are
+	 * 			evaluated, so that the Unit of this Task can plan its path to that target in advance.
+	 */
+	Vector getNextMoveTarget(){
+		this.evaluationContext.open();
+		try {
+			IExecutableStatement next = this.execution.peekNext();
+			if (next instanceof MoveToStatement)
+				return ((MoveToStatement) next).getTarget(this);
+			return null;
+		} catch (RuntimeException e){
+			return null;
+		} finally {
+			this.evaluationContext.close();
+		}
 	}
 	
 	/**
@@ -653,12 +968,15 @@ public class Task implements Comparable<Task> {
 
 	/**
 	 * Check whether this Task is well formed
-	 * @return true if and only if variables are never read before being assigned
-	 * 		   and all break statements are in a while statement
-	 * 		 | result == this.statements.isWellformed()
+	 * @return true if and only if variables are never read before being assigned,
+	 * 		   all break statements are in a while statement and the selected position
+	 * 		   is only read if this Task has one
+	 * 		 | result == this.statements.isWellformed() &&
+	 * 		 |	(this.getSelectedPosition() != null || !this.getProgram().getLayout().readsSelectedPosition())
 	 */
 	public boolean wellformed() {
-		return this.statement.isWellFormed(new HashSet<String>());
+		return this.statement.isWellFormed(new HashSet<String>())
+				&& (this.getSelectedPosition() != null || !this.program.getLayout().readsSelectedPosition());
 	}
 
 	/**
@@ -0,0 +1,203 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+
+import be.kuleuven.cs.som.annotate.Basic;
+
+/**
+ * A class of profilers, measuring the time a World spends in each phase of advancing its game time.
+ * For every phase, a profiler counts how often the phase was entered, and records the total and
+ * largest time spent in it, together with a histogram of the times spent, with one bucket per power of two
+ * nanoseconds.
+ *
+ * Phases can be nested: the time spent finding a path for a moving Unit is counted both as
+ * pathfinding and as movement.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ * @note	A profiler is updated by the thread advancing the game time of its World, without any
+ * 			synchronization. Other threads must hold the lock of the World while reading it.
+ */
+public class TickProfiler {
+
+	/**
+	 * An enumeration of the phases of advancing the game time of a World.
+	 */
+	public enum Phase {
+		/**
+		 * Cubes that are no longer connected to the border cave in.
+		 */
+		COLLAPSE,
+		/**
+		 * Units, Boulders and Logs fall.
+		 */
+		FALL,
+		/**
+		 * Units move towards their next cube.
+		 */
+		MOVEMENT,
+		/**
+		 * Units search a path to their distant target. Paths searched while choosing a default
+		 * activity or while planning a step count towards those phases instead.
+		 */
+		PATHFINDING,
+		/**
+		 * Units execute the statements of their Task.
+		 */
+		TASK,
+		/**
+		 * Idle Units ask the Scheduler of their Faction for a Task.
+		 */
+		SCHEDULING,
+		/**
+		 * Idle Units without a Task choose an activity.
+		 */
+		DEFAULT_BEHAVIOR,
+		/**
+		 * Units plan their next step in parallel.
+		 */
+		PLANNING
+	}
+
+	/**
+	 * The number of buckets of each histogram.
+	 */
+	private static final int NB_BUCKETS = 64;
+
+	/**
+	 * Initialize a new profiler without any measurements.
+	 */
+	TickProfiler(){
+		int nbPhases = Phase.values().length;
+		this.counts = new long[nbPhases];
+		this.totalTimes = new long[nbPhases];
+		this.maxTimes = new long[nbPhases];
+		this.histograms = new long[nbPhases][NB_BUCKETS];
+	}
+
+	/**
+	 * Return the current time, to be passed to stop once the measured phase is over.
+	 */
+	long start(){
+		return System.nanoTime();
+	}
+
+	/**
+	 * Register that the given phase, started at the given time, is over.
+	 * @param phase
+	 * 			The phase that is over.
+	 * @param start
+	 * 			The time returned by start when the phase was entered.
+	 */
+	void stop(Phase phase, long start){
+		long time = System.nanoTime() - start;
+		int index = phase.ordinal();
+		this.counts[index]++;
+		this.totalTimes[index] += time;
+		if (time > this.maxTimes[index])
+			this.maxTimes[index] = time;
+		this.histograms[index][bucketOf(time)]++;
+	}
+
+	/**
+	 * Register that the given number of statements has been executed.
+	 */
+	void countStatements(int nbStatements){
+		this.nbStatements += nbStatements;
+	}
+
+	/**
+	 * Return the bucket of the histograms in which the given time is registered.
+	 */
+	private static int bucketOf(long time){
+		return Math.min(NB_BUCKETS - 1, NB_BUCKETS - Long.numberOfLeadingZeros(Math.max(0, time)));
+	}
+
+	/**
+	 * Return how many times the given phase has been measured.
+	 */
+	public long getCount(Phase phase){
+		return this.counts[phase.ordinal()];
+	}
+
+	/**
+	 * Return the total time spent in the given phase, in nanoseconds.
+	 */
+	public long getTotalTime(Phase phase){
+		return this.totalTimes[phase.ordinal()];
+	}
+
+	/**
+	 * Return the longest time spent in the given phase at once, in nanoseconds.
+	 */
+	public long getMaxTime(Phase phase){
+		return this.maxTimes[phase.ordinal()];
+	}
+
+	/**
+	 * Return an upper bound on the given percentile of the times spent in the given phase,
+	 * in nanoseconds.
+	 * @param phase
+	 * 			The phase to return the percentile of.
+	 * @param percentile
+	 * 			The percentile to return.
+	 * @return	Zero if the given phase has not been measured yet. Otherwise, the upper bound of the
+	 * 			bucket of the histogram of the given phase that holds the given percentile, which is
+	 * 			at most twice the actual percentile, and never more than the longest time measured.
+	 * @throws IllegalArgumentException
+	 * 			The given percentile does not lie between 0 and 100.
+	 * 			| !(percentile >= 0 && percentile <= 100)
+	 */
+	public long getPercentile(Phase phase, double percentile) throws IllegalArgumentException {
+		if (!(percentile >= 0 && percentile <= 100))
+			throw new IllegalArgumentException();
+		long count = this.getCount(phase);
+		if (count == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long[] histogram = this.histograms[phase.ordinal()];
+		long seen = 0;
+		for (int bucket = 0; bucket < NB_BUCKETS; bucket++){
+			seen += histogram[bucket];
+			if (seen >= rank)
+				return Math.min(this.getMaxTime(phase), (bucket == 0) ? 0 : (1L << bucket) - 1);
+		}
+		return this.getMaxTime(phase);
+	}
+
+	/**
+	 * Return the number of Task statements that have been executed.
+	 */
+	@Basic
+	public long getNbStatements(){
+		return this.nbStatements;
+	}
+
+	/**
+	 * Discard all measurements of this profiler.
+	 * @post	No phase has been measured by this profiler, and no statements have been executed.
+	 */
+	public void reset(){
+		for (int i = 0; i < this.counts.length; i++){
+			this.counts[i] = 0;
+			this.totalTimes[i] = 0;
+			this.maxTimes[i] = 0;
+			Arrays.fill(this.histograms[i], 0);
+		}
+		this.nbStatements = 0;
+	}
+
+	/**
+	 * Variables registering, for each phase, the number of measurements, the total and
+	 * the longest time measured, and the histogram of the times measured.
+	 */
+	private final long[] counts;
+	private final long[] totalTimes;
+	private final long[] maxTimes;
+	private final long[][] histograms;
+
+	/**
+	 * Variable registering the number of Task statements executed.
+	 */
+	private long nbStatements = 0;
+}
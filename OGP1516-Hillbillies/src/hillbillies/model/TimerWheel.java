@@ -0,0 +1,261 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+
+/**
+ * A class of hierarchical timer wheels, firing elements at the game time they were scheduled for.
+ * Time is divided in ticks of a fixed resolution. The first level of the wheel has one slot per
+ * tick, each next level has one slot per full turn of the level below it. Scheduling an element
+ * and firing it both take constant time, regardless of how far ahead the element was scheduled.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ * @param <E>	The type of the elements in this timer wheel.
+ *
+ * @invar	Each element of this timer wheel is scheduled for a tick after the current tick,
+ * 			or is due.
+ */
+class TimerWheel<E> {
+
+	/**
+	 * The number of bits of a tick that select the slot in a single level.
+	 */
+	private static final int BITS_PER_LEVEL = 6;
+
+	/**
+	 * The number of slots in a single level.
+	 */
+	private static final int SLOTS_PER_LEVEL = 1 << BITS_PER_LEVEL;
+
+	/**
+	 * The number of levels of each timer wheel.
+	 */
+	private static final int NB_LEVELS = 4;
+
+	/**
+	 * Initialize a new empty timer wheel with the given resolution.
+	 * @param resolution
+	 * 			The duration of a single tick of this new timer wheel.
+	 * @post	The resolution of this new timer wheel is the given resolution.
+	 * @post	The current tick of this new timer wheel is 0.
+	 * @throws IllegalArgumentException
+	 * 			The given resolution is not strictly positive.
+	 * 			| !(resolution > 0)
+	 */
+	@SuppressWarnings("unchecked")
+	TimerWheel(double resolution) throws IllegalArgumentException {
+		if (!(resolution > 0))
+			throw new IllegalArgumentException();
+		this.resolution = resolution;
+		this.slots = (List<Entry<E>>[][]) new List<?>[NB_LEVELS][SLOTS_PER_LEVEL];
+	}
+
+	/**
+	 * Return the duration of a single tick of this timer wheel.
+	 */
+	@Basic @Immutable
+	double getResolution(){
+		return this.resolution;
+	}
+
+	/**
+	 * Variable registering the duration of a single tick of this timer wheel.
+	 */
+	private final double resolution;
+
+	/**
+	 * Return the number of elements scheduled in this timer wheel.
+	 */
+	@Basic
+	int size(){
+		return this.size;
+	}
+
+	/**
+	 * Variable registering the number of elements scheduled in this timer wheel.
+	 */
+	private int size;
+
+	/**
+	 * Schedule the given element to be fired at the given game time.
+	 * @param element
+	 * 			The element to schedule.
+	 * @param time
+	 * 			The game time at which the element must be fired.
+	 * @post	The given element is fired by the first call to advance with a time that is
+	 * 			not smaller than the given time, rounded down to a whole tick.
+	 * 			| new.size() == this.size() + 1
+	 * @note	Elements are rather fired up to one tick early than late.
+	 */
+	void schedule(E element, double time){
+		long tick = (long) Math.floor(time / this.resolution);
+		this.insert(new Entry<E>(element, tick));
+		this.size++;
+	}
+
+	/**
+	 * Return a game time at or before which the next element of this timer wheel is scheduled.
+	 * @return	Positive infinity if this timer wheel is empty.
+	 * 			| if (size() == 0)
+	 * 			| then result == Double.POSITIVE_INFINITY
+	 * @return	Otherwise, a time that is not later than the time of any element in this timer wheel.
+	 * 			Elements in the first level are found exactly, elements in higher levels are
+	 * 			bounded by the start of their slot.
+	 */
+	double getNextTime(){
+		if (this.size == 0)
+			return Double.POSITIVE_INFINITY;
+		if (!this.due.isEmpty())
+			return this.currentTick * this.resolution;
+		long next = Long.MAX_VALUE;
+		for (int level = 0; level < NB_LEVELS; level++){
+			int shift = BITS_PER_LEVEL * level;
+			long position = this.currentTick >>> shift;
+			for (int i = 1; i <= SLOTS_PER_LEVEL; i++){
+				List<Entry<E>> slot = this.slots[level][(int) ((position + i) & (SLOTS_PER_LEVEL - 1))];
+				if (slot != null && !slot.isEmpty()){
+					next = Math.min(next, Math.max(this.currentTick + 1, (position + i) << shift));
+					break;
+				}
+			}
+		}
+		return next * this.resolution;
+	}
+
+	/**
+	 * Advance this timer wheel to the given game time, firing every element that is due.
+	 * @param time
+	 * 			The game time to advance to.
+	 * @param action
+	 * 			The action to apply to each element that is fired.
+	 * @post	Every element scheduled for a time up to the given time, rounded down to a whole
+	 * 			tick, has been removed from this timer wheel and the given action has been applied to it,
+	 * 			in the order of the ticks they were scheduled for.
+	 */
+	void advance(double time, Consumer<? super E> action){
+		long target = (long) Math.floor(time / this.resolution);
+		while (this.currentTick < target){
+			if (this.size == 0){
+				this.currentTick = target;
+				break;
+			}
+			this.currentTick++;
+			for (int level = NB_LEVELS - 1; level > 0; level--){
+				if ((this.currentTick & ((1L << (BITS_PER_LEVEL * level)) - 1)) == 0)
+					this.cascade(level);
+			}
+			this.fireDue(action);
+			List<Entry<E>> slot = this.takeSlot(0, (int) (this.currentTick & (SLOTS_PER_LEVEL - 1)));
+			if (slot != null){
+				for (Entry<E> entry : slot){
+					if (entry.tick > this.currentTick){
+						this.insert(entry);
+					} else {
+						this.size--;
+						action.accept(entry.element);
+					}
+				}
+			}
+		}
+		this.fireDue(action);
+	}
+
+	/**
+	 * Move all entries in the slot of the given level that the current tick has just reached
+	 * to the levels below.
+	 */
+	private void cascade(int level){
+		int index = (int) ((this.currentTick >>> (BITS_PER_LEVEL * level)) & (SLOTS_PER_LEVEL - 1));
+		List<Entry<E>> slot = this.takeSlot(level, index);
+		if (slot != null){
+			for (Entry<E> entry : slot)
+				this.insert(entry);
+		}
+	}
+
+	/**
+	 * Fire all entries that were scheduled for the current tick or earlier.
+	 */
+	private void fireDue(Consumer<? super E> action){
+		while (!this.due.isEmpty()){
+			List<Entry<E>> fired = this.due;
+			this.due = new ArrayList<>();
+			for (Entry<E> entry : fired){
+				this.size--;
+				action.accept(entry.element);
+			}
+		}
+	}
+
+	/**
+	 * Put the given entry in the slot that covers its tick, in the lowest level that reaches it.
+	 * Entries beyond the reach of the highest level are kept in its farthest slot, and are moved
+	 * closer each time that slot is reached.
+	 */
+	private void insert(Entry<E> entry){
+		long delta = entry.tick - this.currentTick;
+		if (delta <= 0){
+			this.due.add(entry);
+			return;
+		}
+		int level = 0;
+		while (level < NB_LEVELS - 1 && delta >= (1L << (BITS_PER_LEVEL * (level + 1))))
+			level++;
+		long tick = entry.tick;
+		if (delta >= (1L << (BITS_PER_LEVEL * NB_LEVELS)))
+			tick = this.currentTick + (1L << (BITS_PER_LEVEL * NB_LEVELS)) - 1;
+		int index = (int) ((tick >>> (BITS_PER_LEVEL * level)) & (SLOTS_PER_LEVEL - 1));
+		List<Entry<E>> slot = this.slots[level][index];
+		if (slot == null){
+			slot = new ArrayList<>();
+			this.slots[level][index] = slot;
+		}
+		slot.add(entry);
+	}
+
+	/**
+	 * Remove and return the entries in the given slot of the given level, or null if it is empty.
+	 */
+	private List<Entry<E>> takeSlot(int level, int index){
+		List<Entry<E>> slot = this.slots[level][index];
+		if (slot == null || slot.isEmpty())
+			return null;
+		this.slots[level][index] = null;
+		return slot;
+	}
+
+	/**
+	 * Variable registering the tick this timer wheel has advanced to.
+	 */
+	private long currentTick = 0;
+
+	/**
+	 * Variable registering the slots of each level of this timer wheel.
+	 */
+	private final List<Entry<E>>[][] slots;
+
+	/**
+	 * Variable registering the entries that must be fired at the next call to advance.
+	 */
+	private List<Entry<E>> due = new ArrayList<>();
+
+	/**
+	 * A class of entries, registering an element and the tick it is scheduled for.
+	 */
+	private static class Entry<E> {
+
+		private Entry(E element, long tick){
+			this.element = element;
+			this.tick = tick;
+		}
+
+		private final E element;
+
+		private final long tick;
+	}
+}
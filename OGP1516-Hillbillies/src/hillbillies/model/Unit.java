@@ -2,10 +2,12 @@ package hillbillies.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Raw;
@@ -77,7 +79,7 @@ import ogp.framework.util.Util;
  * 			| canHaveAsGameObject(getGameObject())
  * @invar  	The path of a Unit must be a valid path for that
  *         	Unit.
- *       	| canHaveAsPath(getPath())
+ *       	| hasValidPath()
  * @invar	The Faction of each Unit must be a valid Faction for that Unit
  * 			| canHaveAsFaction(getFaction())
  * @invar	The Task of each Unit must always be a valid Task for any Unit
@@ -195,8 +197,8 @@ public class Unit extends GameObject {
 	 * 			| new.getmaxStamina() == Math.ceil(new.getToughness()*new.getWeight()/50.0)
 	 * @effect	The ActivityTime of the Unit is set to zero.
 	 * 			| this.setActivityTime(0)
-	 * @effect	The path of this new Unit is set to the an empty list.
-	 * 			| this.setPath(new ArrayList<Vector>());
+	 * @post	The path of this new Unit is empty.
+	 * 			| new.getPathLength() == 0
 	 * 
 	 */
 	public Unit(Vector position, int agility, int strength, int weight, String name, int toughness, boolean defaultbehavior)
@@ -231,8 +233,6 @@ public class Unit extends GameObject {
 		this.setWeight(weight);
 
 		this.setName(name);
-		this.setMaxHitpoints();
-		this.setMaxStamina();
 		this.setStamina(this.getmaxStamina());
 		this.setHitpoints(this.getmaxHitpoints());
 		this.setStatus(Status.IDLE);
@@ -254,25 +254,25 @@ public class Unit extends GameObject {
 	 * 			The World in which to create this new Unit
 	 * @param enableDefaultBehavior
 	 * 			A boolean reflecting whether this new Unit's default behaviour should be enabled.
-	 * @effect This new Unit is create with random attributes and with a position in the middle
-	 * 		   of the cube at the origin of the world
+	 * @effect This new Unit is create with random attributes, drawn from the random generator
+	 * 		   of the given World, and with a position in the middle of the cube at the origin of the world
 	 * 		   | this(new Vector(CUBELENGTH/2, CUBELENGTH/2, CUBELENGTH/2),
-	 *		   | new Random().nextInt(MAX_INITIAL_AGILITY-MIN_INITIAL_AGILITY + 1) + MIN_INITIAL_AGILITY,
-	 *		   | new Random().nextInt(MAX_INITIAL_STRENGTH-MIN_INITIAL_STRENGTH + 1) + MIN_INITIAL_STRENGTH,
-	 *		   | new Random().nextInt(MAX_INITIAL_WEIGHT-MIN_INITIAL_WEIGHT + 1) + MIN_INITIAL_WEIGHT,
+	 *		   | world.getRandom().nextInt(MAX_INITIAL_AGILITY-MIN_INITIAL_AGILITY + 1) + MIN_INITIAL_AGILITY,
+	 *		   | world.getRandom().nextInt(MAX_INITIAL_STRENGTH-MIN_INITIAL_STRENGTH + 1) + MIN_INITIAL_STRENGTH,
+	 *		   | world.getRandom().nextInt(MAX_INITIAL_WEIGHT-MIN_INITIAL_WEIGHT + 1) + MIN_INITIAL_WEIGHT,
 	 *		   | "John",
-	 *		   | new Random().nextInt(MAX_INITIAL_TOUGHNESS-MIN_INITIAL_TOUGHNESS + 1) + MIN_INITIAL_TOUGHNESS,
+	 *		   | world.getRandom().nextInt(MAX_INITIAL_TOUGHNESS-MIN_INITIAL_TOUGHNESS + 1) + MIN_INITIAL_TOUGHNESS,
 	 *		   | enableDefaultBehavior)
 	 * @effect This Unit is added to the given World
 	 * 		 | world.addGameObject(this)
 	 */
 	public Unit(World world, boolean enableDefaultBehavior){
 		this(new Vector(CUBELENGTH/2, CUBELENGTH/2, CUBELENGTH/2),
-				new Random().nextInt(MAX_INITIAL_AGILITY-MIN_INITIAL_AGILITY + 1) + MIN_INITIAL_AGILITY,
-				new Random().nextInt(MAX_INITIAL_STRENGTH-MIN_INITIAL_STRENGTH + 1) + MIN_INITIAL_STRENGTH,
-				new Random().nextInt(MAX_INITIAL_WEIGHT-MIN_INITIAL_WEIGHT + 1) + MIN_INITIAL_WEIGHT,
+				world.getRandom().nextInt(MAX_INITIAL_AGILITY-MIN_INITIAL_AGILITY + 1) + MIN_INITIAL_AGILITY,
+				world.getRandom().nextInt(MAX_INITIAL_STRENGTH-MIN_INITIAL_STRENGTH + 1) + MIN_INITIAL_STRENGTH,
+				world.getRandom().nextInt(MAX_INITIAL_WEIGHT-MIN_INITIAL_WEIGHT + 1) + MIN_INITIAL_WEIGHT,
 				"John",
-				new Random().nextInt(MAX_INITIAL_TOUGHNESS-MIN_INITIAL_TOUGHNESS + 1) + MIN_INITIAL_TOUGHNESS,
+				world.getRandom().nextInt(MAX_INITIAL_TOUGHNESS-MIN_INITIAL_TOUGHNESS + 1) + MIN_INITIAL_TOUGHNESS,
 				enableDefaultBehavior);
 		world.addGameObject(this);
 	}
@@ -764,14 +764,14 @@ public class Unit extends GameObject {
 	 *       	the Unit's toughness equals the minimum legal toughness
 	 *       	| if (newToughness < MIN_TOUGHNESS)
 	 *       	| then new.getToughness() == MIN_TOUGHNESS
-	 * @effect	The Unit's maximum hitpoints are updated according to its new toughness
-	 * 			| this.setMaxHitpoints()
+	 * @post	The Unit's maximum hitpoints are updated according to its new toughness
+	 * 			| new.getmaxHitpoints() == Math.ceil(new.getToughness()*new.getWeight()/50.0)
 	 * @post	If the Unit's old hitpoints exceed its new maximum amount of hitpoints,
 	 * 			its amount of hitpoints equals its maximum amount of hitpoints
 	 * 			| if (this.getHitpoints() > new.getmaxHitpoints())
 	 * 			| then new.getHitpoints() == new.getmaxHitpoints()
-	 * @effect	The Unit's maximum stamina is updated according to its new toughness
-	 * 			| this.setMaxStamina()
+	 * @post	The Unit's maximum stamina is updated according to its new toughness
+	 * 			| new.getmaxStamina() == Math.ceil(new.getToughness()*new.getWeight()/50.0)
 	 * @post	If the Unit's old stamina exceeds its new maximum amount of stamina,
 	 * 			its amount of stamina equals its maximum amount of stamina
 	 * 			| if (this.getStamina() > new.getmaxStamina())
@@ -784,8 +784,6 @@ public class Unit extends GameObject {
 			newToughness = MAX_TOUGHNESS;
 		}
 		this.toughness = newToughness;
-		this.setMaxHitpoints();
-		this.setMaxStamina();
 		if (this.getHitpoints() > this.getmaxHitpoints())
 			this.setHitpoints(this.getmaxHitpoints());
 		if  (this.getStamina() > this.getmaxStamina())
@@ -951,14 +949,14 @@ public class Unit extends GameObject {
 	 *       	Unit's weight equals the minimum legal weight
 	 *       	| if (newWeight < this.getMinWeight())
 	 *       	| then new.getWeight() == this.getMinWeight()
-	 * @effect	The Unit's maximum hitpoints are updated according to its new weight
-	 * 			| this.setMaxHitpoints()
+	 * @post	The Unit's maximum hitpoints are updated according to its new weight
+	 * 			| new.getmaxHitpoints() == Math.ceil(new.getToughness()*new.getWeight()/50.0)
 	 * @post	If the Unit's old hitpoints exceed its new maximum amount of hitpoints,
 	 * 			its amount of hitpoints equals its maximum amount of hitpoints
 	 * 			| if (this.getHitpoints() > new.getmaxHitpoints())
 	 * 			| then new.getHitpoints() == new.getmaxHitpoints()
-	 * @effect	The Unit's maximum stamina is updated according to its new weight
-	 * 			| this.setMaxStamina()
+	 * @post	The Unit's maximum stamina is updated according to its new weight
+	 * 			| new.getmaxStamina() == Math.ceil(new.getToughness()*new.getWeight()/50.0)
 	 * @post	If the Unit's old stamina exceeds its new maximum amount of stamina,
 	 * 			its amount of stamina equals its maximum amount of stamina
 	 * 			| if (this.getStamina() > new.getmaxStamina())
@@ -972,8 +970,6 @@ public class Unit extends GameObject {
 			newWeight = MAX_WEIGHT;
 		}
 		super.setWeight(newWeight);
-		this.setMaxHitpoints();
-		this.setMaxStamina();
 		if (this.getHitpoints() > this.getmaxHitpoints())
 			this.setHitpoints(this.getmaxHitpoints());
 		if  (this.getStamina() > this.getmaxStamina())
@@ -1047,26 +1043,26 @@ public class Unit extends GameObject {
 	/**
 	 * Return the maximum amount of stamina points for this Unit.
 	 */
-	@Basic @Raw
+	@Raw
 	public int getmaxHitpoints() {
-		return this.maxHitpoints;
+		return MAX_POINTS[this.getToughness()][this.getWeight()];
 	}
 
 	/**
-	 * Set the maximum amount of hitpoints for this Unit
-	 * @post	The maximum amount of hitpoints has been set according to the Unit's stats.
-	 * 			| new.getmaxHitpoints() == Math.ceil(this.getToughness()*this.getWeight()/50.0)
+	 * Table shared by all Units, registering the maximum amount of hitpoints and stamina points
+	 * for each combination of toughness and weight.
+	 * 
+	 * @invar	Each entry equals the maximum amount of points for its toughness and weight.
+	 * 			| for each toughness in 0..MAX_TOUGHNESS, weight in 0..MAX_WEIGHT:
+	 * 			|	MAX_POINTS[toughness][weight] == Math.ceil(toughness*weight/50.0)
 	 */
-	@Raw
-	private void setMaxHitpoints() {
-		double temp = (double) this.getToughness() * (double) this.getWeight() / 50.0;
-		this.maxHitpoints = (int) Math.ceil(temp);
-	}
+	private static final int[][] MAX_POINTS = new int[MAX_TOUGHNESS + 1][MAX_WEIGHT + 1];
 
-	/**
-	 * Variable registering the maximum amount of hitpoints for this Unit.
-	 */
-	private int maxHitpoints;
+	static {
+		for (int toughness = 0; toughness <= MAX_TOUGHNESS; toughness++)
+			for (int weight = 0; weight <= MAX_WEIGHT; weight++)
+				MAX_POINTS[toughness][weight] = (int) Math.ceil((double) toughness * (double) weight / 50.0);
+	}
 
 	/**
 	 * Return the hitpoints of this Unit.
@@ -1121,27 +1117,11 @@ public class Unit extends GameObject {
 	/**
 	 * Return the maximum amount of stamina points for this Unit.
 	 */
-	@Basic @Raw
-	public int getmaxStamina() {
-		return this.maxStamina;
-	}
-
-	/**
-	 * Set the maximum amount of stamina points for this Unit
-	 * @post	The maximum amount of stamina has been set according to the Unit's stats.
-	 * 			| new.getmaxStamina() == Math.ceil(this.getToughness()*this.getWeight()/50.0)
-	 */
 	@Raw
-	private void setMaxStamina() {
-		double temp = (double) this.getToughness() * (double) this.getWeight() / 50.0;
-		this.maxStamina = (int) Math.ceil(temp);
+	public int getmaxStamina() {
+		return MAX_POINTS[this.getToughness()][this.getWeight()];
 	}
 
-	/**
-	 * Variable registering the maximum amount of stamina points for this Unit.
-	 */
-	private int maxStamina;
-
 	/**
 	 * Return the stamina of this Unit.
 	 */
@@ -1408,6 +1388,7 @@ public class Unit extends GameObject {
 	 * 			its sprinting is disabled
 	 * 			| if (this.isMoving())
 	 * 			| then this.setSprinting(false)
+	 * @effect	This Unit and the Units that are asleep while attacking it are woken first.
 	 * @throws IllegalArgumentException
 	 *             The given status is not a valid status for any Unit. 
 	 *             | !isValidStatus(getStatus())
@@ -1416,6 +1397,8 @@ public class Unit extends GameObject {
 	protected void setStatus(Status status) throws IllegalArgumentException {
 		if (!isValidStatus(status))
 			throw new IllegalArgumentException("This is an invalid status for a Unit");
+		this.wakeIfAsleep();
+		this.wakeSleepingAttackers();
 		if (status == Status.IDLE){
 			if (this.isMoving())
 				this.setSprinting(false);
@@ -1555,10 +1538,12 @@ public class Unit extends GameObject {
 	 * 			| (this.getStatus() == Status.MOVINGADJACENT)
 	 */
 	public void startAttack(Unit other) throws IllegalArgumentException,IllegalStateException{
+		this.wakeIfAsleep();
 		if (other == this)
 			throw new IllegalArgumentException("A Unit cannot attack itself!");
 		if (!canHaveAsEnemy(other))
 			throw new IllegalArgumentException("This Unit is not a valid target");
+		this.interact();
 		if (this.getStatus() == Status.MOVINGADJACENT)
 			throw new IllegalStateException("Movement to a neighbouring cube cannot be interrupted");
 		if (this.getStatus() == Status.MOVINGDISTANT){
@@ -1639,11 +1624,11 @@ public class Unit extends GameObject {
 	 *		| this.moveTo((int)Math.floor(target.getX()) , (int)Math.floor(target.getY()), (int)Math.floor(target.getZ()))
 	 * @effect
 	 * 		if the unit dodges it will take no damage but it will have to dodge to another position
-	 * 		|if (Math.random() <= 0.20 * this.getAgility() / attacker.getAgility())
+	 * 		|if (a random number <= 0.20 * this.getAgility() / attacker.getAgility())
 	 * 		|then this.dodge
 	 * 		|new.getHitpoints() == this.getHitpoints()
 	 * @post if the unit parries it takes no damage
-	 * 		| if (Math.random() <= 0.25 * (this.getStrength() + this.getAgility())
+	 * 		| if (a random number <= 0.25 * (this.getStrength() + this.getAgility())
 	 * 		| then new.getHitpoints() == this.getHitpoints()
 	 * @post if the unit fails to parry or dodge it takes damage
 	 * 		|new.gethipoints()==this.getHitpoints()-attacker.getStrength()/10
@@ -1656,7 +1641,9 @@ public class Unit extends GameObject {
 	 * 		
 	 */
 	private void defend(Unit attacker){
-		if (Math.random() <= 0.20 * this.getAgility() / attacker.getAgility()) {
+		this.wakeIfAsleep();
+		this.interact();
+		if (this.getRandom().nextDouble() <= 0.20 * this.getAgility() / attacker.getAgility()) {
 			this.dodge();
 			this.setExp(this.getExp()+20);
 			if (hasTask()) {
@@ -1664,7 +1651,7 @@ public class Unit extends GameObject {
 				this.setStatus(Status.IDLE);
 			}
 
-		} else if (Math.random() <= 0.25 * (this.getStrength() + this.getAgility())
+		} else if (this.getRandom().nextDouble() <= 0.25 * (this.getStrength() + this.getAgility())
 				/ (attacker.getStrength() + attacker.getAgility())) {
 			this.setExp(this.getExp()+20);
 		} else {
@@ -1694,6 +1681,35 @@ public class Unit extends GameObject {
 		}			
 	}
 	
+	/**
+	 * Return the random generator of this Unit.
+	 * @return	The stream split off the random generator of this Unit's World when it was
+	 * 			added to that World. A new, randomly seeded generator if this Unit never had a World.
+	 */
+	private SplittableRandom getRandom(){
+		if (this.random == null)
+			this.random = new SplittableRandom();
+		return this.random;
+	}
+
+	/**
+	 * Variable registering the random generator of this Unit.
+	 */
+	private SplittableRandom random;
+
+	/**
+	 * Randomly permute the given list, using the given random generator.
+	 * @param list
+	 * 			The list to permute.
+	 * @param random
+	 * 			The random generator to draw from.
+	 * @post	The given list holds the same elements as before, in a random order.
+	 */
+	private static void shuffle(List<?> list, SplittableRandom random){
+		for (int i = list.size() - 1; i > 0; i--)
+			Collections.swap(list, i, random.nextInt(i + 1));
+	}
+
 	/**
 	 * sets this Unit's position to a valid position
 	 * @effect
@@ -1705,12 +1721,12 @@ public class Unit extends GameObject {
 		for (int i = 0; i < 9; i++) {
 			dataList.add(i);
 		}
-		Collections.shuffle(dataList);
+		SplittableRandom random=this.getRandom();
+		shuffle(dataList, random);
 		int j;
-		Random random=new Random();
 		for (int i = 0; i < dataList.size(); i++) {
 			j = dataList.get(i);
-			float randomnumber = random.nextFloat();
+			float randomnumber = (float) random.nextDouble();
 			Vector position = selectDodgePosition(j,randomnumber);
 			if (isValidPosition(position)) {
 				setPosition(position);
@@ -1813,6 +1829,7 @@ public class Unit extends GameObject {
 	 * 		  | !isAdjacentPosition(new Vector(x, y, z))
 	 */
 	public void WorkAt(int x, int y, int z)throws IllegalStateException, IllegalArgumentException {
+		this.wakeIfAsleep();
 		if (! this.canBeInterruptedBy(Status.WORKING))
 			throw new IllegalStateException("This Unit cannot start working at this time");
 		if (!isAdjacentPosition(new Vector(x, y, z))) {
@@ -1864,16 +1881,14 @@ public class Unit extends GameObject {
 	 * @effect If this Unit's work is completed and
 	 * 		   the Unit's Workposition is a Workshop and both a Log and a Boulder are present at that position,
 	 * 		   this Unit gains one point of Toughness and one point of weight and a Boulder and a Log at the Unit's
-	 * 		   Workposition are terminated and the Unit gains 10 experience points.
+	 * 		   Workposition are consumed and the Unit gains 10 experience points.
 	 *			| if (this.getActivityTime() - time <= 0 && this.getWorld().getCubeType(this.getWorkposition()) == 3
 	 *			|			&& this.getWorld().containsLogAndBoulder(this.getWorkposition()))
 	 *			| then this.setActivityTime(0) && this.setStatus(Status.IDLE) &&
 	 *			|		this.setWeight(this.getWeight() + 1) &&
 	 *			|		this.setToughness(this.getToughness + 1) &&
-	 *			|		for some Log in this.getWorld.getGameObjectsAt(this.getWorkposition()):
-	 *			|					Log.terminate() && 
-	 *			|		for some Boulder in this.getWorld.getGameObjectsAt(this.getWorkposition()):
-	 *			|					Boulder.terminate() &&
+	 *			|		this.getWorld().consumeItemAt(this.getWorkposition(), Boulder.class) &&
+	 *			|		this.getWorld().consumeItemAt(this.getWorkposition(), Log.class) &&
 	 *			| 		this.setExp(this.getExp() + 10)
 	 * @effect If this Unit's work is completed and a GameObject is present at the Unit's Workposition,
 	 *		   the Unit picks up that GameObject and gains 10 experience points.
@@ -1907,22 +1922,10 @@ public class Unit extends GameObject {
 					&& this.getWorld().containsLogAndBoulder(this.getWorkposition())){
 				this.setWeight(this.getWeight() + 1);
 				this.setToughness(this.getToughness() + 1);
-				boolean foundBoulder = false;
-				boolean foundLog = false;
-				Set<GameObject> objects = this.getWorld().getInanimateObjectsAt(this.getWorkposition());
-				for (GameObject object:objects){
-					if (object instanceof Boulder && !foundBoulder){
-						object.terminate();
-						foundBoulder = true;
-					} else if (object instanceof Log && !foundLog){
-						object.terminate();
-						foundLog = true;
-					}
-					if (foundLog && foundBoulder){
-						this.setExp(this.getExp()+10);
-						return;
-					}
-				}
+				this.getWorld().consumeItemAt(this.getWorkposition(), Boulder.class);
+				this.getWorld().consumeItemAt(this.getWorkposition(), Log.class);
+				this.setExp(this.getExp()+10);
+				return;
 			}
 			if (this.getWorld().containsInanimateObject(this.getWorkposition())){
 				this.pickUpObject(this.getWorkposition());
@@ -1950,33 +1953,24 @@ public class Unit extends GameObject {
 	 * 		|	SetGameObject(LogObject)
 	 */
 	private void pickUpObject(Vector position){
-		for (GameObject object : this.getWorld().getInanimateObjectsAt(position)) {
-			if (object instanceof Boulder){
-				setGameObject((InanimateObject) object);
-				return;
-			}
-		}
-		for (GameObject object : this.getWorld().getGameObjects()) {
-			if (object instanceof Log){
-				setGameObject((InanimateObject) object);
-				return;
-			}
-		}
+		InanimateObject object = this.getWorld().takeItemAt(position, Boulder.class);
+		if (object == null)
+			object = this.getWorld().takeItemAt(position, Log.class);
+		if (object != null)
+			setGameObject(object);
 	}
 
 	/**
 	 * Make the Unit drop its object at the given position
 	 * @effect drops the object the unit is carrying in the Units world
 	 * 			| this.setGameObject(null)
-	 * 			| this.getGameObject().addToWorld(getWorld())
-	 * 			| oldObject.setPosition(position)
+	 * 			| this.getWorld().dropItem(oldObject, position)
 	 */
 	private void dropObjectAt(Vector position) {
 		position = position.getCubePosition().add(new Vector(CUBELENGTH/2,CUBELENGTH/2,CUBELENGTH/2));
-		GameObject oldObject = this.getGameObject();
+		InanimateObject oldObject = this.gameObject;
 		this.setGameObject(null);
-		this.getWorld().addGameObject(oldObject);
-		oldObject.setPosition(position);
+		this.getWorld().dropItem(oldObject, position);
 	}
 	
 	/**
@@ -2064,6 +2058,7 @@ public class Unit extends GameObject {
 	 * 			| (!this.canBeInterruptedBy(Status.MOVINGADJACENT))
 	 */
 	public void moveToAdjacent(int dx, int dy, int dz) throws IllegalArgumentException, IllegalStateException{
+		this.wakeIfAsleep();
 		if (! this.canBeInterruptedBy(Status.MOVINGADJACENT))
 			throw new IllegalStateException("The Unit cannot start moving at this time");
 		Vector target = new Vector(this.getPosition().getCubeX() + dx + CUBELENGTH/2,
@@ -2178,6 +2173,7 @@ public class Unit extends GameObject {
 	 */
 	public void moveTo(int cubeX, int cubeY, int cubeZ)
 			throws IllegalArgumentException, IllegalStateException, PathfindingException{
+		this.wakeIfAsleep();
 		if (!this.canBeInterruptedBy(Status.MOVINGDISTANT))
 			throw new IllegalStateException("This Unit cannot start moving at this time");
 		Vector target = new Vector(cubeX + CUBELENGTH/2, cubeY + CUBELENGTH/2, cubeZ + CUBELENGTH/2);
@@ -2224,11 +2220,11 @@ public class Unit extends GameObject {
 	/**
 	 * Make the Unit move to the next cube on its path to its distantTarget
 	 * @effect	Movement to the adjacent cube nearest to the distantTarget is initiated
-	 * 			| this.setNearTarget(this.getPath().remove(0))
+	 * 			| this.setNearTarget(this.removeFirstPathStep())
 	 * 			| this.setupSpeed()
 	 */
 	private void moveToNextCube(){
-		this.setNearTarget(this.getPath().remove(0));
+		this.setNearTarget(this.removeFirstPathStep());
 		this.setupSpeed();
 	}
 
@@ -2241,6 +2237,343 @@ public class Unit extends GameObject {
 		return 500 / (double) this.getStrength();
 	}
 
+	/**
+	 * Return the game time until the next event in the current activity of this Unit.
+	 * @return	If this Unit is working, the time until its work is done or its next
+	 * 			mandatory rest is due, whichever comes first.
+	 * 			| if (getStatus() == Status.WORKING)
+	 * 			| then result == Math.min(getActivityTime(), getTimeUntilRest())
+	 * @return	If this Unit is attacking, the time until its attack is executed.
+	 * 			| if (getStatus() == Status.ATTACKING && getEnemy() != null)
+	 * 			| then result == 1 - getActivityTime()
+	 * @return	If this Unit is resting, the time until it restores its next hitpoint or
+	 * 			stamina point, or until it has rested long enough if it has fully recovered.
+	 * @return	If this Unit is idle without a Task and with its default behavior disabled,
+	 * 			the time until its next mandatory rest is due.
+	 * 			| if (getStatus() == Status.IDLE && !hasTask() && !getdefaultbehaviorboolean())
+	 * 			| then result == getTimeUntilRest()
+	 * @return	-1 if this Unit has something to do every time its game time is advanced.
+	 * @note	Between two events, advancing the game time of this Unit only updates its
+	 * 			counters, which wakeUp can do all at once.
+	 */
+	double getTimeUntilNextEvent(){
+		if (this.isTerminated() || this.hasToFall())
+			return -1;
+		switch (this.getStatus()){
+		case WORKING:
+			return Math.min(this.getActivityTime(), this.getTimeUntilRest());
+		case ATTACKING:
+			return (this.getEnemy() == null) ? -1 : 1 - this.getActivityTime();
+		case RESTING:
+			if (this.getHitpoints() < this.getmaxHitpoints())
+				return (1 - this.getProgress()) * 40 / this.getToughness();
+			if (this.getStamina() < this.getmaxStamina())
+				return (1 - this.getProgress()) * 20 / this.getToughness();
+			return this.calculateMinRestTime() - this.getActivityTime();
+		case IDLE:
+			if (this.hasTask() || this.getdefaultbehaviorboolean())
+				return -1;
+			return this.getTimeUntilRest();
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Check whether this Unit is asleep until its next event.
+	 */
+	@Basic
+	boolean isAsleep(){
+		return this.asleep;
+	}
+
+	/**
+	 * Put this Unit to sleep until its next event.
+	 * @param time
+	 * 			The game time of this Unit's World.
+	 * @pre		This Unit has no work to do until its next event.
+	 * 			| getTimeUntilNextEvent() > 0
+	 * @post	This Unit is asleep since the given time.
+	 * 			| new.isAsleep()
+	 */
+	void fallAsleep(double time){
+		assert this.getTimeUntilNextEvent() > 0;
+		this.asleep = true;
+		this.asleepSince = time;
+		if (this.isAttacking())
+			this.getEnemy().nbSleepingAttackers++;
+	}
+
+	/**
+	 * Wake this Unit, bringing its counters up to the given game time.
+	 * @param time
+	 * 			The game time of this Unit's World.
+	 * @post	This Unit is no longer asleep.
+	 * 			| !new.isAsleep()
+	 * @effect	The time until the next rest of this Unit and the counters of its current
+	 * 			activity are advanced by the time this Unit has been asleep, as if its game time
+	 * 			had been advanced step by step.
+	 */
+	void wakeUp(double time){
+		if (!this.asleep)
+			return;
+		this.asleep = false;
+		double elapsed = time - this.asleepSince;
+		if (this.isAttacking())
+			this.getEnemy().nbSleepingAttackers--;
+		if (elapsed <= 0)
+			return;
+		this.setTimeUntilRest(Math.max(0, this.getTimeUntilRest() - elapsed));
+		if (this.isWorking())
+			this.setActivityTime(Math.max(0, this.getActivityTime() - elapsed));
+		else if (this.isAttacking())
+			this.setActivityTime(this.getActivityTime() + elapsed);
+		else if (this.isResting()){
+			if (this.getHitpoints() < this.getmaxHitpoints())
+				this.setProgress(this.getProgress() + this.calculateHPRestore(elapsed));
+			else if (this.getStamina() < this.getmaxStamina())
+				this.setProgress(this.getProgress() + this.calculateSTRestore(elapsed));
+			this.setActivityTime(this.getActivityTime() + elapsed);
+		}
+	}
+
+	/**
+	 * Wake this Unit if it is asleep, so that it can be inspected or changed.
+	 */
+	private void wakeIfAsleep(){
+		if (this.asleep && this.getWorld() != null)
+			this.getWorld().wakeUnit(this);
+	}
+
+	/**
+	 * Wake all Units that are asleep while attacking this Unit, because the attack
+	 * may no longer be possible.
+	 */
+	private void wakeSleepingAttackers(){
+		if (this.nbSleepingAttackers == 0 || this.getWorld() == null)
+			return;
+		int cubeX = this.getPosition().getCubeX();
+		int cubeY = this.getPosition().getCubeY();
+		int cubeZ = this.getPosition().getCubeZ();
+		List<Unit> attackers = new ArrayList<>();
+		for (Faction other : this.getWorld().getActiveFactions()){
+			if (other == this.getFaction())
+				continue;
+			for (int dx = -1; dx <= 1; dx++)
+				for (int dy = -1; dy <= 1; dy++)
+					for (int dz = -1; dz <= 1; dz++)
+						for (Unit unit : other.getUnitsInCube(cubeX + dx, cubeY + dy, cubeZ + dz))
+							if (unit.isAsleep() && unit.getEnemy() == this)
+								attackers.add(unit);
+		}
+		for (Unit attacker : attackers)
+			this.getWorld().wakeUnit(attacker);
+	}
+
+	/**
+	 * Variable registering whether this Unit is asleep until its next event.
+	 */
+	private boolean asleep;
+
+	/**
+	 * Variable registering the game time at which this Unit fell asleep.
+	 */
+	private double asleepSince;
+
+	/**
+	 * Variable registering the number of Units that are asleep while attacking this Unit.
+	 */
+	private int nbSleepingAttackers;
+
+	/**
+	 * Return the game time this Unit lags behind its World, because its World
+	 * advances it at a lower level of detail.
+	 */
+	@Basic
+	double getLaggingTime(){
+		return this.laggingTime;
+	}
+
+	/**
+	 * Set the game time this Unit lags behind its World to the given time.
+	 * @pre		The given time is not negative.
+	 * 			| time >= 0
+	 */
+	void setLaggingTime(double time){
+		assert time >= 0;
+		this.laggingTime = time;
+	}
+
+	/**
+	 * Variable registering the game time this Unit lags behind its World.
+	 */
+	private double laggingTime = 0;
+
+	/**
+	 * Return the game time until which this Unit must be advanced at full detail,
+	 * because it has been interacting with another Unit.
+	 */
+	@Basic
+	double getInteractingUntil(){
+		return this.interactingUntil;
+	}
+
+	/**
+	 * Register that this Unit is interacting with another Unit.
+	 * @post	If this Unit is part of a World, it is advanced at full detail for the
+	 * 			interaction time of Worlds from now on.
+	 * 			| if (getWorld() != null)
+	 * 			| then new.getInteractingUntil() == getWorld().getGameTime() + World.INTERACTION_TIME
+	 */
+	private void interact(){
+		if (this.getWorld() != null)
+			this.interactingUntil = this.getWorld().getGameTime() + World.INTERACTION_TIME;
+	}
+
+	/**
+	 * Variable registering the game time until which this Unit is interacting.
+	 */
+	private double interactingUntil = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Plan the next step of this Unit, without changing anything outside this Unit.
+	 * @param time
+	 * 			The time by which this Unit will be advanced.
+	 * @effect	Any earlier plan of this Unit is discarded.
+	 * 			| discardPlan()
+	 * @effect	If this Unit is moving and reaches the next cube of its path within the given time,
+	 * 			but its remaining path is no longer valid, a new path from that cube to its distant
+	 * 			target is planned.
+	 * @effect	If this Unit is idle and executing a Task whose next Statement moves it, a path to
+	 * 			the target of that Statement is planned.
+	 * @effect	If this Unit is idle, has its default behavior enabled and will not have to rest,
+	 * 			and its Faction has no Task for it, it decides on its next activity.
+	 * 			| planDefaultBehavior()
+	 * @note	Units of a World plan their steps in parallel, against the World as it is at the start
+	 * 			of a step. A plan only changes this Unit itself, its random generator and the evaluation
+	 * 			context of its Task, and is used when this Unit is advanced: a planned path is only followed
+	 * 			if the terrain has not changed since, and a planned activity is only started if this Unit
+	 * 			is still idle at the same position.
+	 */
+	void planStep(double time){
+		this.discardPlan();
+		if (this.isTerminated() || this.getWorld() == null || this.isFalling() || this.hasToFall())
+			return;
+		if (this.isMoving()){
+			if (this.getPathLength() > 0 &&
+					this.getSpeed().norm() * time >= this.getPosition().getDistanceTo(this.getNearTarget()) &&
+					!this.hasValidPath())
+				this.planPath(this.getNearTarget(), this.getDistantTarget());
+		} else if (this.getStatus() == Status.IDLE){
+			if (this.hasTask()){
+				Vector target = this.getTask().getNextMoveTarget();
+				if (target != null)
+					this.planPath(this.getPosition(), target);
+			} else if (this.getdefaultbehaviorboolean() && this.getTimeUntilRest() > time &&
+					!this.getFaction().getScheduler().hasAvailableTask()){
+				this.plannedBehavior = this.planDefaultBehavior();
+				this.plannedBehaviorPosition = this.getPosition();
+			}
+		}
+	}
+
+	/**
+	 * Discard the plan of this Unit.
+	 * @post	This Unit has no planned path and no planned activity.
+	 */
+	void discardPlan(){
+		this.plannedPath = null;
+		this.plannedPathStart = null;
+		this.plannedPathTarget = null;
+		this.plannedBehavior = null;
+		this.plannedBehaviorPosition = null;
+	}
+
+	/**
+	 * Plan a path from the cube of the given position to the cube of the given target, if there is one.
+	 * @return	True if and only if a path has been found.
+	 * @post	If a path can be found, it is the planned path of this Unit, together with the
+	 * 			given cubes and the number of terrain changes of its World so far. If the given
+	 * 			target cannot be reached, an empty path is planned instead.
+	 */
+	private boolean planPath(Vector from, Vector target){
+		try {
+			this.plannedPath = this.searchPath(from, target.getCubeX(), target.getCubeY(), target.getCubeZ());
+		} catch (IllegalArgumentException e){
+			this.plannedPath = null;
+			return false;
+		} catch (PathfindingException e){
+			this.plannedPath = Collections.emptyList();
+		}
+		this.plannedPathStart = from.getCubePosition();
+		this.plannedPathTarget = target.getCubePosition();
+		this.plannedTerrainVersion = this.getWorld().getTerrainVersion();
+		return !this.plannedPath.isEmpty();
+	}
+
+	/**
+	 * Take the planned path of this Unit, if it leads from its current cube to the given cube.
+	 * @return	The planned path of this Unit if it starts at the cube of this Unit, ends at the given
+	 * 			cube and the terrain of the World of this Unit has not changed since it was planned,
+	 * 			or null otherwise.
+	 * @post	This Unit has no planned path.
+	 */
+	private List<Vector> takePlannedPath(int x, int y, int z){
+		List<Vector> result = this.plannedPath;
+		this.plannedPath = null;
+		if (result == null || this.plannedTerrainVersion != this.getWorld().getTerrainVersion() ||
+				!this.plannedPathStart.equals(this.getPosition().getCubePosition()) ||
+				!this.plannedPathTarget.equals(new Vector(x, y, z)))
+			return null;
+		return result;
+	}
+
+	/**
+	 * Take the planned activity of this Unit, if it is still valid.
+	 * @return	The planned activity of this Unit if this Unit has not moved since it was planned,
+	 * 			or null otherwise.
+	 * @post	This Unit has no planned activity.
+	 */
+	private Runnable takePlannedBehavior(){
+		Runnable result = this.plannedBehavior;
+		this.plannedBehavior = null;
+		if (result == null || !this.getPosition().equals(this.plannedBehaviorPosition))
+			return null;
+		return result;
+	}
+
+	/**
+	 * Variable registering the centres of the cubes of the path this Unit has planned,
+	 * which is empty if there is no path to the planned target.
+	 */
+	private List<Vector> plannedPath;
+
+	/**
+	 * Variable registering the cube from which the planned path of this Unit starts.
+	 */
+	private Vector plannedPathStart;
+
+	/**
+	 * Variable registering the cube to which the planned path of this Unit leads.
+	 */
+	private Vector plannedPathTarget;
+
+	/**
+	 * Variable registering the number of terrain changes of the World of this Unit
+	 * when it planned its path.
+	 */
+	private long plannedTerrainVersion;
+
+	/**
+	 * Variable referencing the activity this Unit has decided on, which starts it when run.
+	 */
+	private Runnable plannedBehavior;
+
+	/**
+	 * Variable registering the position of this Unit when it decided on its planned activity.
+	 */
+	private Vector plannedBehaviorPosition;
+
 	/**
 	 * Advances the gametime for this Unit by the given time
 	 * @param time
@@ -2276,12 +2609,19 @@ public class Unit extends GameObject {
 			Status status = this.getStatus();
 
 
+			TickProfiler profiler = this.getProfiler();
 			if (status==Status.FALLING) {
+				long start = (profiler == null) ? 0 : profiler.start();
 				this.fall(time);
+				if (profiler != null)
+					profiler.stop(TickProfiler.Phase.FALL, start);
 				return;
 			}
 			if (this.hasTask() && this.getStatus() == Status.IDLE){
+				long start = (profiler == null) ? 0 : profiler.start();
 				this.getTask().advanceTask(time);
+				if (profiler != null)
+					profiler.stop(TickProfiler.Phase.TASK, start);
 				return;
 			}
 			if (status == Status.IDLE){
@@ -2292,8 +2632,12 @@ public class Unit extends GameObject {
 			}
 
 
-			if (status == Status.MOVINGADJACENT || status == Status.MOVINGDISTANT)
+			if (status == Status.MOVINGADJACENT || status == Status.MOVINGDISTANT){
+				long start = (profiler == null) ? 0 : profiler.start();
 				this.move(time);
+				if (profiler != null)
+					profiler.stop(TickProfiler.Phase.MOVEMENT, start);
+			}
 			if (status == Status.RESTING)
 				this.restoreHPST(time);
 			if (status == Status.WORKING)
@@ -2334,8 +2678,8 @@ public class Unit extends GameObject {
 				(this.getNearTarget().equals(new_pos))){
 			this.setExp(this.getExp() + 1);
 			this.setPosition(this.getNearTarget());
-			if (this.getPath().size() > 0){
-				if (!isValidPath(this.getPath())){
+			if (this.getPathLength() > 0){
+				if (!this.hasValidPath()){
 					try {
 						this.findPath(this.getDistantTarget());
 						this.moveToNextCube();
@@ -2386,10 +2730,11 @@ public class Unit extends GameObject {
 	 * 			| (!this.canBeInterruptedBy(Status.RESTING))
 	 */
 	public void resting() throws IllegalStateException {
+		this.wakeIfAsleep();
 		if (! this.canBeInterruptedBy(Status.RESTING))
 			throw new IllegalStateException("This Unit cannot start resting at this moment");
 		if (this.getStatus() == Status.MOVINGDISTANT){
-			this.setPath(new ArrayList<Vector>());
+			this.clearPath();
 			this.setSpeed(new Vector(0,0,0));
 			if (this.getSprinting())
 				this.setSprinting(false);
@@ -2535,7 +2880,10 @@ public class Unit extends GameObject {
 
 	/**
 	 * if a Unit is idle and it has defaultbehavior enabled, it will choose an activity at random
-	 * @post	if the Scheduler of the Unit's faction has a Task that is valid for execution, it
+	 * @effect	if the Unit has decided on an activity while planning its step, and that activity
+	 * 			is still valid, it starts that activity.
+	 * 			| this.takePlannedBehavior().run()
+	 * @post	otherwise, if the Scheduler of the Unit's faction has a Task that is valid for execution, it
 	 * 			will assign the Task to this Unit 
 	 * @post	if no attackableUnits are in range and no tasks are available then 
 	 * 			With a chance of one in three, movement to a random cube in the gameworld is initiated.
@@ -2553,18 +2901,27 @@ public class Unit extends GameObject {
 
 		if(this.getStatus()==Status.IDLE){
 			if (!this.hasTask()) {
-				try{
-					this.getFaction().getScheduler().assignTaskToUnit(this, this.getFaction().getScheduler().getTopPriorityTask());
-				}
-				catch (NoSuchElementException e) {
-					if (!possibleattack()) {
-						defaultNoAttack();
+				TickProfiler profiler = this.getProfiler();
+				long start = (profiler == null) ? 0 : profiler.start();
+				Runnable behavior = this.takePlannedBehavior();
+				if (behavior == null){
+					try{
+						this.getFaction().getScheduler().assignTaskToUnit(this, this.getFaction().getScheduler().getTopPriorityTask());
+						if (profiler != null)
+							profiler.stop(TickProfiler.Phase.SCHEDULING, start);
+						return;
 					}
-					else{
-						defaultWithAttack();
+					catch (NoSuchElementException e) {
+						if (profiler != null){
+							profiler.stop(TickProfiler.Phase.SCHEDULING, start);
+							start = profiler.start();
+						}
+						behavior = this.planDefaultBehavior();
 					}
 				}
-
+				behavior.run();
+				if (profiler != null)
+					profiler.stop(TickProfiler.Phase.DEFAULT_BEHAVIOR, start);
 			}
 
 
@@ -2579,181 +2936,149 @@ public class Unit extends GameObject {
 	 * 			| 				(this.canHaveAsEnemy(Unit))
 	 */
 	private boolean possibleattack() {
-		for (Unit unit : this.getWorld().getUnits()) {
-
-			if (canHaveAsEnemy(unit)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
-	/**
-	 * will choose an activity at random
-	 * @post	
-	 * 			With a chance of one in three, movement to a random cube in the gameworld is initiated.
+		return !this.getAdjacentEnemies().isEmpty();
+	}
+
+	/**
+	 * Return all Units that this Unit can currently attack.
+	 * @return	The set of all Units of other Factions in this Unit's World
+	 * 			that this Unit can have as its enemy.
+	 * 			| for each unit in this.getWorld().getUnits():
+	 * 			|	(result.contains(unit) == (unit != null && unit != this && this.canHaveAsEnemy(unit)))
+	 * @note	Only the cubes adjacent to this Unit are inspected in the spatial index of each
+	 * 			other Faction, so the cost depends on the local density of Units only.
+	 */
+	public Set<Unit> getAdjacentEnemies(){
+		Set<Unit> result = new LinkedHashSet<>();
+		if (this.getWorld() == null || this.getPosition() == null)
+			return result;
+		int cubeX = this.getPosition().getCubeX();
+		int cubeY = this.getPosition().getCubeY();
+		int cubeZ = this.getPosition().getCubeZ();
+		for (Faction faction : this.getWorld().getActiveFactions()){
+			if (faction == this.getFaction())
+				continue;
+			for (int x = cubeX - 1; x <= cubeX + 1; x++)
+				for (int y = cubeY - 1; y <= cubeY + 1; y++)
+					for (int z = cubeZ - 1; z <= cubeZ + 1; z++)
+						for (Unit unit : faction.getUnitsInCube(x, y, z))
+							if (this.canHaveAsEnemy(unit))
+								result.add(unit);
+		}
+		return result;
+	}
+
+	/**
+	 * will choose an activity at random, without starting it yet
+	 * @return	An activity that this Unit starts when it is run.
+	 * @post	if no attackableUnits are in range then
+	 * 			With a chance of one in three, movement to a random cube in the gameworld is chosen,
+	 * 			to which a path is planned.
 	 * 			With a chance of one in two, sprinting will be enabled.
-	 * 			With a chance of one in three, the Unit starts working.
-	 * 			With a chance of one in three, the Unit starts resting.
-	 */
-	private void defaultNoAttack(){
-		Random randomgenerator= new Random();
-		int randomnumber=randomgenerator.nextInt(3);
+	 * 			With a chance of one in three, the Unit will start working.
+	 * 			With a chance of one in three, the Unit will start resting.
+	 * @post 	if an attackable Unit is in range then
+	 * 			With a chance of one in four, movement to a random cube in the gameworld is chosen,
+	 * 			to which a path is planned.
+	 * 			With a chance of one in two, sprinting will be enabled.
+	 * 			With a chance of one in four, the Unit will start working.
+	 * 			With a chance of one in four, the Unit will start resting.
+	 * 			With a chance of one in four, the Unit will start attacking.
+	 * @note	Choosing only draws numbers from the random generator of this Unit and plans its path,
+	 * 			so that Units can choose their activities in parallel. The returned activity gives up
+	 * 			quietly if the World has changed so much in the meantime that it can no longer be started.
+	 */
+	private Runnable planDefaultBehavior(){
+		SplittableRandom randomgenerator= this.getRandom();
+		boolean possibleattack = this.possibleattack();
+		int randomnumber=randomgenerator.nextInt(possibleattack ? 4 : 3);
 		if (randomnumber==0){
-			List <Vector>newlist= this.getWorld().getStandablePositions();
-			Collections.shuffle(newlist);
-			for (Vector vector : newlist) {
+			Iterator<CubeKey> cubes = this.getWorld().getStandablePositions().randomOrder(randomgenerator);
+			while (cubes.hasNext()) {
+				Vector vector = cubes.next().toVector();
 				if (this.getPosition().getDistanceTo(vector) < 20){
-					try {
-						this.moveTo(vector);
-						int randomnumber1=randomgenerator.nextInt(2);
-						if (randomnumber1==1) {
-							try {
-								setSprinting(true);
-							} catch (IllegalStateException e){
-
-							}
-						}
-						return;
-					} catch (PathfindingException | IllegalArgumentException e) {
+					boolean here = vector.getCubePosition().equals(this.getPosition().getCubePosition());
+					if (!here && !this.planPath(this.getPosition(), vector))
 						continue;
-					}
+					boolean sprinting = randomgenerator.nextInt(2) == 1;
+					return () -> this.startDefaultMove(vector, sprinting);
 				}
 			}
 		}
 
 		if (randomnumber==1){
 			if (hasGameObject()) {
-				WorkAt(this.getPosition().getCubeX(), this.getPosition().getCubeY(), this.getPosition().getCubeZ());
+				return () -> WorkAt(this.getPosition().getCubeX(), this.getPosition().getCubeY(), this.getPosition().getCubeZ());
 			}
 			else {
 				if (this.getWorld().containsInanimateObject(this.getPosition())) {	
 					int randomnumber1=randomgenerator.nextInt(2);
 					if (randomnumber1==1) {
-						List<Vector> newlist=new ArrayList<>();
+						List<CubeKey> newlist=new ArrayList<>();
 						newlist.addAll(this.getWorld().getDirectlyAdjacentPositions(this.getPosition()));
-						Collections.shuffle(newlist);
-						for (Vector vector : newlist) {
-							try {
-								WorkAt(vector.getCubeX(), vector.getCubeY(), vector.getCubeZ());
-							} catch (IllegalArgumentException e){
-								continue;
-							}
-						}
+						shuffle(newlist, randomgenerator);
+						return () -> this.workAtAny(newlist);
 					}
 					else {
-						WorkAt(this.getPosition().getCubeX(), this.getPosition().getCubeY(), this.getPosition().getCubeZ());
+						return () -> WorkAt(this.getPosition().getCubeX(), this.getPosition().getCubeY(), this.getPosition().getCubeZ());
 					}
 				}
 				else {
-					List<Vector> newlist=new ArrayList<>();
+					List<CubeKey> newlist=new ArrayList<>();
 					newlist.addAll(this.getWorld().getDirectlyAdjacentPositions(this.getPosition())) ;
-					Collections.shuffle(newlist);
-					for (Vector vector : newlist){
-						try {
-							WorkAt(vector.getCubeX(), vector.getCubeY(), vector.getCubeZ());
-						} catch (IllegalArgumentException e) {
-							continue;
-						}
-
-					}
+					shuffle(newlist, randomgenerator);
+					return () -> this.workAtAny(newlist);
 				}
 			}
 		}
 		if (randomnumber==2){
-			this.resting();}
-	}
-
-
+			return this::resting;
+		}
 
+		if (randomnumber==3) {
+			List <Unit>newlist= new ArrayList<Unit>(this.getAdjacentEnemies());
+			Unit unittoattack=newlist.get(randomgenerator.nextInt(newlist.size()));
+			return () -> {
+				if (this.canHaveAsEnemy(unittoattack))
+					this.startAttack(unittoattack);
+			};
+		}
+		return () -> {};
+	}
 
 	/**
-	 * will choose an activity at random
-	 * @post 	
-	 * 			With a chance of one in four, movement to a random cube in the gameworld is initiated.
-	 * 			With a chance of one in two, sprinting will be enabled.
-	 * 			With a chance of one in four, the Unit starts working.
-	 * 			With a chance of one in four, the Unit starts resting.
-	 * 			With a chance of one in four, the Unit starts attacking.
+	 * Start moving to the given cube, chosen by the default behavior of this Unit.
+	 * @effect	This Unit starts moving to the given cube, if it still can.
+	 * 			| this.moveTo(target)
+	 * @effect	If the given flag is set, this Unit starts sprinting, if it can.
+	 * 			| if (sprinting) then this.setSprinting(true)
 	 */
-	private void defaultWithAttack(){
-		Random randomgenerator= new Random();
-		int randomnumber=randomgenerator.nextInt(4);
-		if (randomnumber==0){
-			List <Vector>newlist= this.getWorld().getStandablePositions();
-			Collections.shuffle(newlist);
-			for (Vector vector : newlist) {
-				if (this.getPosition().getDistanceTo(vector) < 20){
-					try {
-						this.moveTo(vector);
-						int randomnumber1=randomgenerator.nextInt(2);
-						if (randomnumber1==1) {
-							try {
-								setSprinting(true);
-							} catch (IllegalStateException e){
-
-							}
-						}
-						return;
-					} catch (PathfindingException | IllegalArgumentException e) {
-						continue;
-					}
-				}
-			}
+	private void startDefaultMove(Vector target, boolean sprinting){
+		try {
+			this.moveTo(target);
+		} catch (PathfindingException | IllegalArgumentException e) {
+			return;
 		}
+		if (sprinting) {
+			try {
+				setSprinting(true);
+			} catch (IllegalStateException e){
 
-		if (randomnumber==1){
-			if (hasGameObject()) {
-				WorkAt(this.getPosition().getCubeX(), this.getPosition().getCubeY(), this.getPosition().getCubeZ());
-			}
-			else {
-				if (this.getWorld().containsInanimateObject(this.getPosition())) {	
-					int randomnumber1=randomgenerator.nextInt(2);
-					if (randomnumber1==1) {
-						List<Vector> newlist=new ArrayList<>();
-						newlist.addAll(this.getWorld().getDirectlyAdjacentPositions(this.getPosition()));
-						Collections.shuffle(newlist);
-						for (Vector vector : newlist) {
-							try {
-								WorkAt(vector.getCubeX(), vector.getCubeY(), vector.getCubeZ());
-							} catch (IllegalArgumentException e){
-								continue;
-							}
-						}
-					}
-					else {
-						WorkAt(this.getPosition().getCubeX(), this.getPosition().getCubeY(), this.getPosition().getCubeZ());
-					}
-				}
-				else {
-					List<Vector> newlist=new ArrayList<>();
-					newlist.addAll(this.getWorld().getDirectlyAdjacentPositions(this.getPosition())) ;
-					Collections.shuffle(newlist);
-					for (Vector vector : newlist){
-						try {
-							WorkAt(vector.getCubeX(), vector.getCubeY(), vector.getCubeZ());
-						} catch (IllegalArgumentException e) {
-							continue;
-						}
-
-					}
-				}
 			}
 		}
-		if (randomnumber==2){
-			this.resting();}
+	}
 
-		if (randomnumber==3) {
-			List <Unit>newlist= new ArrayList<Unit>();
-			newlist.addAll(this.getWorld().getUnits());
-			Collections.shuffle(newlist);
-			Unit unittoattack=null;
-			for (Unit unit : newlist) {
-				if (canHaveAsEnemy(unit)) {
-					unittoattack=unit;
-				}
+	/**
+	 * Start working at each of the given cubes in turn, skipping the cubes at which this Unit cannot work.
+	 * @effect	| for each cube in cubes: this.WorkAt(cube.getX(), cube.getY(), cube.getZ())
+	 */
+	private void workAtAny(List<CubeKey> cubes){
+		for (CubeKey cube : cubes){
+			try {
+				WorkAt(cube.getX(), cube.getY(), cube.getZ());
+			} catch (IllegalArgumentException e) {
+				continue;
 			}
-			this.startAttack(unittoattack);
 		}
 	}
 
@@ -2779,6 +3104,7 @@ public class Unit extends GameObject {
 	public void setDefaultBehaviorBoolean(boolean defaultBehaviorBoolean) throws IllegalStateException {
 		if (this.getStatus() != Status.IDLE && defaultBehaviorBoolean)
 			throw new IllegalStateException("The default behavior cannot be enabled while the Unit is doing something");
+		this.wakeIfAsleep();
 		this.defaultBehaviorBoolean = defaultBehaviorBoolean;
 	}
 
@@ -2851,7 +3177,7 @@ public class Unit extends GameObject {
 	 */
 	@Override
 	public boolean hasToFall(){
-		if ((this.getPosition().getCubeZ()==0)||this.getWorld().CheckadjacentValidPositions(this.getPosition().getCubeX(),this.getPosition().getCubeY(), this.getPosition().getCubeZ()).size()!=0) {
+		if ((this.getPosition().getCubeZ()==0)||this.getWorld().hasSolidNeighbour(this.getPosition().getCubeX(),this.getPosition().getCubeY(), this.getPosition().getCubeZ())) {
 			return false;
 		}
 		return true;
@@ -2920,6 +3246,44 @@ public class Unit extends GameObject {
 		}
 
 	}
+
+	/**
+	 * Return how long this Unit keeps moving in a straight line at its current speed,
+	 * without any event that changes its course or its state.
+	 * @return	If this Unit is falling, the time it takes to enter the cube it lands in.
+	 * 			| if (this.isFalling())
+	 * 			| then result == super.getTimeOfSteadyMotion()
+	 * @return	If this Unit is walking towards the next cube of its path on solid ground,
+	 * 			the time it takes to reach the centre of that cube.
+	 * 			| if (this.isMoving() && !this.getSprinting() && !this.hasToFall())
+	 * 			| then result == this.getPosition().getDistanceTo(this.getNearTarget()) / this.getSpeed().norm()
+	 * @return	Zero otherwise.
+	 * @note	A sprinting Unit loses stamina in every step, and is always advanced step by step.
+	 */
+	@Override
+	double getTimeOfSteadyMotion(){
+		if (this.isTerminated() || this.getWorld() == null)
+			return 0;
+		if (this.isFalling())
+			return super.getTimeOfSteadyMotion();
+		if (!this.isMoving() || this.getSprinting() || this.hasToFall())
+			return 0;
+		return this.getPosition().getDistanceTo(this.getNearTarget()) / this.getSpeed().norm();
+	}
+
+	/**
+	 * Advance the game time of this Unit by the given time, during which it moves steadily.
+	 * @effect	The time until this Unit has to rest decreases by the given time, down to zero.
+	 * 			| setTimeUntilRest(Math.max(0, getTimeUntilRest() - time))
+	 * @effect	This Unit moves as any GameObject that moves steadily.
+	 * 			| super.advanceSteadily(time)
+	 */
+	@Override
+	void advanceSteadily(double time){
+		this.setTimeUntilRest(Math.max(0, this.getTimeUntilRest() - time));
+		super.advanceSteadily(time);
+	}
+
 	/**
 	 * @return the experience points of this unit
 	 * 		
@@ -2959,8 +3323,7 @@ public class Unit extends GameObject {
 	 */
 	private void levelUp() {
 		while (this.getExp()>=10) {
-			Random random= new Random();
-			int randomnumber=random.nextInt(3);
+			int randomnumber=this.getRandom().nextInt(3);
 			if (randomnumber==0)
 				this.setAgility(this.getAgility()+1);
 			if (randomnumber==1)
@@ -3019,7 +3382,7 @@ public class Unit extends GameObject {
 	 * @post	This Unit's speed is the null vector
 	 * 			| new.getSpeed() == new Vector(0,0,0)
 	 * @post	This Unit's path is empty
-	 * 			| new.getPath().size() == 0
+	 * 			| new.getPathLength() == 0
 	 * @post	This Unit's Enemy is the null reference
 	 * 			| new.getEnemy() == null
 	 * @post	This Unit has been removed from its faction
@@ -3046,7 +3409,7 @@ public class Unit extends GameObject {
 		this.setNearTarget(null);
 		this.setSpeed(new Vector(0,0,0));
 		this.setEnemy(null);
-		this.getPath().clear();
+		this.clearPath();
 		this.removeFromFaction();
 		if (hasTask()) {
 			this.getTask().removeFromUnit();
@@ -3122,6 +3485,27 @@ public class Unit extends GameObject {
 	 */
 	private Faction faction;
 
+	/**
+	 * Set the position of this Unit to the given position.
+	 * 
+	 * @param  position
+	 *         The new position for this Unit.
+	 * @effect This Unit and the Units that are asleep while attacking it are woken first.
+	 * @effect The position of this Unit is set to the given position as for any GameObject.
+	 *       | super.setPosition(position)
+	 * @effect If this Unit belongs to a Faction, the spatial index of that Faction is updated.
+	 *       | if (this.getFaction() != null)
+	 *       | then this.getFaction().relocateUnit(this)
+	 */
+	@Raw @Override
+	void setPosition(Vector position) throws IllegalArgumentException {
+		this.wakeIfAsleep();
+		this.wakeSleepingAttackers();
+		super.setPosition(position);
+		if (this.getFaction() != null)
+			this.getFaction().relocateUnit(this);
+	}
+
 	/**
 	 * Return a boolean reflecting whether the given World is a valid World for this Unit
 	 * @param world
@@ -3148,6 +3532,8 @@ public class Unit extends GameObject {
 	 * 			| (world != null) && (world.hasAsUnit(this))
 	 * @pre		This Unit can have the given World as its World
 	 * 			| canHaveAsWorld(world)
+	 * @post	This Unit draws its random numbers from a stream split off the random
+	 * 			generator of the given World.
 	 * @post	This Unit occupies a position it can stand on in the given World
 	 * 			| (new this).canStandAt((new this).getPosition())
 	 * @post	This Unit has been added to the given World
@@ -3164,12 +3550,13 @@ public class Unit extends GameObject {
 	void addToWorld(@Raw World world) throws IllegalStateException{
 		assert (world != null) && (world.hasAsUnit(this)) && this.canHaveAsWorld(world);
 		this.setWorld(world);
+		this.random = world.getRandom().split();
 		if (!world.unitCanSpawnAt(this.getPosition())){
-			int index = new Random().nextInt(world.getSpawnablePositions().size());
-			Vector startPos = world.getSpawnablePositions().get(index);
-			this.setPosition(new Vector(startPos.getCubeX() + CUBELENGTH/2,
-					startPos.getCubeY() + CUBELENGTH/2,
-					startPos.getCubeZ() + CUBELENGTH/2));
+			int index = this.getRandom().nextInt(world.getSpawnablePositions().size());
+			CubeKey startPos = world.getSpawnablePositions().get(index);
+			this.setPosition(new Vector(startPos.getX() + CUBELENGTH/2,
+					startPos.getY() + CUBELENGTH/2,
+					startPos.getZ() + CUBELENGTH/2));
 		}
 		if (world.getActiveFactions().size() < 5){
 			Faction faction = new Faction(world);
@@ -3286,18 +3673,16 @@ public class Unit extends GameObject {
 	 * @post 	If the given Gameobject is null and the Unit has a Gameobject, the units gameobject will be set to null
 	 * 	        | if (gObject ==null)&& this.hasgameObject()
 	 *       	| then new.getgameobjec() == null
-	 * @effect	If the Unit has no gameobject yet it will pickup the gobject
-	 *       	the Unit's strength equals the maximum legal strength
+	 * @post	If the Unit has no gameobject yet it will carry the given gobject,
+	 * 			which has been taken from its World already
 	 *       	| if this.hasnogameobject
 	 *       	| then new.getgameobjec() == gObject
-	 *       	| gObject.removeFromWorld()
 	 * 
 	 */
 	@Raw
 	void setGameObject(InanimateObject gObject) {
 		if (!hasGameObject()) {
 			this.gameObject=gObject;
-			gObject.getWorld().removeGameObject(gObject);
 		}
 		if (hasGameObject()&&gObject==null) {
 			this.gameObject=null;
@@ -3318,7 +3703,7 @@ public class Unit extends GameObject {
 	 * @param z
 	 * 			The z-coordinate of the target cube
 	 * @post	This Unit's Path has been set to a non-empty and valid path
-	 * 			| new.getPath().size != 0 && isValidPath(new.getPath())
+	 * 			| new.getPathLength() != 0 && new.hasValidPath()
 	 * @throws IllegalArgumentException
 	 * 			The given cube is not a position where a Unit can stand
 	 * 			or the Unit is already at the given cube
@@ -3326,24 +3711,51 @@ public class Unit extends GameObject {
 	 * 			| this.getPosition().getCubePosition().equals(new Vector(x,y,z))
 	 * @throws PathfindingException
 	 * 			No path could be found to the given target position
+	 * @note	If this Unit has planned a path from its cube to the given cube on the current terrain,
+	 * 			that path is used instead of searching again.
 	 */
 	private void findPath(int x, int y, int z) throws IllegalArgumentException, PathfindingException{
-		if (!this.getWorld().unitCanStandAt(x, y, z) || (this.getPosition().getCubePosition().equals(new Vector(x,y,z))))
+		List<Vector> planned = this.takePlannedPath(x, y, z);
+		if (planned != null){
+			if (planned.isEmpty())
+				throw new PathfindingException(this.getPosition(), new Vector(x,y,z),
+						"There is no path from this Unit's position to the given position");
+			this.setPath(planned);
+			return;
+		}
+		TickProfiler profiler = this.getProfiler();
+		long start = (profiler == null) ? 0 : profiler.start();
+		try {
+			this.setPath(this.searchPath(this.getPosition(), x, y, z));
+		} finally {
+			if (profiler != null)
+				profiler.stop(TickProfiler.Phase.PATHFINDING, start);
+		}
+	}
+
+	/**
+	 * Search a path from the cube of the given position to the cube with the given coordinates.
+	 * @return	The centres of the cubes on the path, excluding the cube of the given position.
+	 * @throws	IllegalArgumentException
+	 * 			A Unit cannot stand at the given cube, or the given position lies in it.
+	 * @throws	PathfindingException
+	 * 			No path could be found to the given cube.
+	 * @note	This method only inspects the terrain of the World of this Unit.
+	 * @see	#findPath(int, int, int)
+	 */
+	private List<Vector> searchPath(Vector from, int x, int y, int z) throws IllegalArgumentException, PathfindingException{
+		if (!this.getWorld().unitCanStandAt(x, y, z) || (from.getCubePosition().equals(new Vector(x,y,z))))
 			throw new IllegalArgumentException("The Unit cannot move to this position!");
 		Heap<Node> open = new Heap<>();
 		List<Node> closed = new ArrayList<>();
 		Node end = new Node(new Vector(x,y,z),Integer.MAX_VALUE,0);
-		Node start = new Node(this.getPosition());
+		Node start = new Node(from);
 		open.add(start);
-		boolean finished = false;
-		while (!finished){
+		while (true){
 			Node current = open.pop();
 			closed.add(current);
-			if (current.equals(end)){
-				finished = true;
-				setPath(closed,start,end);
-				return;
-			}
+			if (current.equals(end))
+				return toPath(closed,start,end);
 			for (Node neighbour:current.getNeighbouringNodes()){
 				if (!this.getWorld().unitCanStandAt(neighbour.getCubeCoordinates()) ||
 						closed.contains(neighbour))
@@ -3362,7 +3774,7 @@ public class Unit extends GameObject {
 				}
 			}
 			if (open.size() == 0) //No path could be found
-				throw new PathfindingException(this.getPosition(), new Vector(x,y,z),
+				throw new PathfindingException(from, new Vector(x,y,z),
 						"There is no path from this Unit's position to the given position");
 		}
 	}
@@ -3372,11 +3784,70 @@ public class Unit extends GameObject {
 	}
 
 	/**
-	 * Return the path of this Unit.
+	 * Return the number of cubes that are left on the path of this Unit.
 	 */
-	@Basic @Raw
-	private List<Vector> getPath() {
-		return this.path;
+	@Raw
+	private int getPathLength() {
+		return this.path.length/3 - this.pathIndex;
+	}
+
+	/**
+	 * Return the centre of the cube at the given index on the remaining path of this Unit.
+	 * @param index
+	 * 			The index of the cube on the remaining path.
+	 * @pre		The given index is smaller than the length of the remaining path.
+	 * 			| 0 <= index && index < this.getPathLength()
+	 */
+	@Raw
+	private Vector getPathStep(int index) {
+		assert (index >= 0 && index < this.getPathLength());
+		int offset = 3*(this.pathIndex + index);
+		return new Vector(this.path[offset] + CUBELENGTH/2, this.path[offset+1] + CUBELENGTH/2,
+				this.path[offset+2] + CUBELENGTH/2);
+	}
+
+	/**
+	 * Remove the first cube from the path of this Unit and return its centre.
+	 * @pre		The path of this Unit is not empty.
+	 * 			| this.getPathLength() > 0
+	 * @return	The centre of the first cube on the path of this Unit.
+	 * 			| result.equals(this.getPathStep(0))
+	 * @post	The path of this Unit has become one cube shorter.
+	 * 			| new.getPathLength() == this.getPathLength() - 1
+	 */
+	private Vector removeFirstPathStep() {
+		Vector result = this.getPathStep(0);
+		this.pathIndex++;
+		return result;
+	}
+
+	/**
+	 * Remove all cubes from the path of this Unit.
+	 * @post	The path of this Unit is empty.
+	 * 			| new.getPathLength() == 0
+	 */
+	private void clearPath() {
+		this.path = NO_PATH;
+		this.pathIndex = 0;
+	}
+
+	/**
+	 * Check whether the remaining path of this Unit is a valid path for this Unit.
+	 * @return	true if the remaining path is empty or when it is possible for a Unit to stand in
+	 * 			every cube of the path and the last cube of the path is the cube of the Unit's DistantTarget
+	 * 			| result == (this.getPathLength() == 0) ||
+	 * 			|				((for each index in 0..this.getPathLength()-1:
+	 * 			|					this.getWorld().unitCanStandAt(this.getPathStep(index))) &&
+	 * 			|				this.getPathStep(this.getPathLength()-1).equals(this.getDistantTarget()))
+	 */
+	public boolean hasValidPath() {
+		if (this.getPathLength() == 0)
+			return true;
+		for (int offset = 3*this.pathIndex; offset < this.path.length; offset += 3){
+			if (!this.getWorld().unitCanStandAt(this.path[offset], this.path[offset+1], this.path[offset+2]))
+				return false;
+		}
+		return this.getPathStep(this.getPathLength()-1).equals(this.getDistantTarget());
 	}
 
 	/**
@@ -3406,15 +3877,20 @@ public class Unit extends GameObject {
 		return path.get(path.size()-1).equals(this.getDistantTarget());
 	}
 
-	private void setPath(List<Node> closed, Node start, Node end) {
+	/**
+	 * Return the centres of the cubes on the path from the given start Node to the given end Node,
+	 * following the parents of the closed Nodes back from the end Node.
+	 */
+	private static List<Vector> toPath(List<Node> closed, Node start, Node end) {
 		List<Vector> result = new ArrayList<>();
 		Node current = closed.get(closed.indexOf(end));
 		while (!current.equals(start)){
-			result.add(0, current.getCubeCoordinates().add(new Vector(CUBELENGTH/2,CUBELENGTH/2,CUBELENGTH/2)));
+			result.add(current.getCubeCoordinates().add(new Vector(CUBELENGTH/2,CUBELENGTH/2,CUBELENGTH/2)));
 			current = current.getParent();
 		}
-		this.setPath(result);
-	}	
+		Collections.reverse(result);
+		return result;
+	}
 
 	/**
 	 * Set the path of this Unit to the given path.
@@ -3424,24 +3900,47 @@ public class Unit extends GameObject {
 	 * @pre    The given path must be a valid path for any
 	 *         Unit.
 	 *       | isValidPath(path)
-	 * @post   If the Unit is currently at the center of a cube, the path of this Unit is equal to the given
-	 *         path. Otherwise, the Unit's current cube is added at the first position in the list.
+	 * @post   If the Unit is currently at the center of a cube, the path of this Unit consists of the cubes
+	 *         of the given path. Otherwise, the Unit's current cube is added at the first position of the path.
 	 *         	| if (this.getPosition().equals(this.getPosition().getCubePosition().add(new Vector(CUBELENGTH/2,CUBELENGTH/2,CUBELENGTH/2))))
-	 *         	| then new.getPath() == path
-	 *         	| else new.getPath().get(0) == this.getPosition().getCubePosition().add(new Vector(CUBELENGTH/2,CUBELENGTH/2,CUBELENGTH/2))
+	 *         	| then for each index in 0..path.size()-1: new.getPathStep(index).equals(path.get(index))
+	 *         	| else new.getPathStep(0).equals(this.getPosition().getCubePosition().add(new Vector(CUBELENGTH/2,CUBELENGTH/2,CUBELENGTH/2)))
 	 */
 	@Raw
 	private void setPath(List<Vector> path) {
 		assert isValidPath(path);
-		if (!this.getPosition().equals(this.getPosition().getCubePosition().add(new Vector(CUBELENGTH/2,CUBELENGTH/2,CUBELENGTH/2))))
-			path.add(0, this.getPosition().getCubePosition().add(new Vector(CUBELENGTH/2,CUBELENGTH/2,CUBELENGTH/2)));
-		this.path = path;
+		boolean offCentre = !this.getPosition().equals(this.getPosition().getCubePosition().add(new Vector(CUBELENGTH/2,CUBELENGTH/2,CUBELENGTH/2)));
+		int[] packed = new int[3*(path.size() + (offCentre ? 1 : 0))];
+		int offset = 0;
+		if (offCentre){
+			packed[offset++] = this.getPosition().getCubeX();
+			packed[offset++] = this.getPosition().getCubeY();
+			packed[offset++] = this.getPosition().getCubeZ();
+		}
+		for (Vector vector:path){
+			packed[offset++] = vector.getCubeX();
+			packed[offset++] = vector.getCubeY();
+			packed[offset++] = vector.getCubeZ();
+		}
+		this.path = packed;
+		this.pathIndex = 0;
 	}
 
 	/**
-	 * Variable registering the path of this Unit.
+	 * Variable registering the cubes on the path of this Unit, as consecutive
+	 * triples of cube coordinates.
+	 */
+	private int[] path = NO_PATH;
+
+	/**
+	 * Variable registering the number of cubes of the path of this Unit that have already been visited.
+	 */
+	private int pathIndex;
+
+	/**
+	 * Constant shared by all Units with an empty path.
 	 */
-	private List<Vector> path = new ArrayList<>();
+	private static final int[] NO_PATH = new int[0];
 
 	/**
 	 * Return this Unit's current Task
@@ -3511,6 +4010,7 @@ public class Unit extends GameObject {
 	private void setTask(Task task) throws IllegalArgumentException {
 		if (! isValidTask(task))
 			throw new IllegalArgumentException();
+		this.wakeIfAsleep();
 		this.task = task;
 	}
 
@@ -2,15 +2,23 @@ package hillbillies.model;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
 import be.kuleuven.cs.som.annotate.Raw;
 import hillbillies.part2.listener.TerrainChangeListener;
 import hillbillies.util.ConnectedToBorder;
+import ogp.framework.util.Util;
 
 /**
  * A class defining a game World for Units to exist in
@@ -40,22 +48,56 @@ public class World {
 	 * @post   This new World has no Factions yet.
 	 * @post   This new World has no GameObjects yet.
 	 * @post   The collapseTime of this new World is 0.
+	 * @effect	This new World is initialized with the given coordinates and listener and
+	 * 			with a randomly chosen seed.
+	 * 			| this(Coordinates, modelListener, new SplittableRandom().nextLong())
 	 */
 	public World(int[][][] Coordinates, TerrainChangeListener modelListener){
+		this(Coordinates, modelListener, new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Initialize a new World with given coordinates and without any Units, Factions or GameObjects,
+	 * with a collapse time of 0 and whose random events are drawn from the given seed.
+	 * @param Coordinates
+	 * 			The given coordinates for this new World
+	 * @param seed
+	 * 			The seed for the random events in this new World.
+	 * @post   This new World has no Units yet.
+	 * @post   This new World has no Factions yet.
+	 * @post   This new World has no GameObjects yet.
+	 * @post   The collapseTime of this new World is 0.
+	 * @post	The seed of this new World is the given seed.
+	 * 			| new.getSeed() == seed
+	 * @note	Two Worlds with the same coordinates and seed behave identically
+	 * 			when they receive the same sequence of commands.
+	 */
+	public World(int[][][] Coordinates, TerrainChangeListener modelListener, long seed){
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
 		this.setCollapseTime(0);
 		this.modelListener = modelListener;
 		this.Coordinates=Coordinates;
 		this.connectedToBorder = new ConnectedToBorder(nbCoordinateX(), nbCoordinateY(), nbCoordinateZ());
+		this.solidNeighbours = new byte[nbCoordinateX()*nbCoordinateY()*nbCoordinateZ()];
 		for (int x=0;x<nbCoordinateX();x++){
 			for (int y=0;y<nbCoordinateY();y++){
 				for (int z=0;z<nbCoordinateZ();z++){
 					if(!isValidMaterial(Coordinates[x][y][z])){
 						Coordinates[x][y][z]=0;
 					}
+					if (isSolidGround(x, y, z))
+						this.addToSolidNeighbours(x, y, z, 1);
+				}
+			}
+		}
+		for (int x=0;x<nbCoordinateX();x++){
+			for (int y=0;y<nbCoordinateY();y++){
+				for (int z=0;z<nbCoordinateZ();z++){
 					if (unitCanStandAt(x, y, z)){
-						this.addStandablePosition(new Vector(x,y,z));
+						this.addStandablePosition(CubeKey.of(x,y,z));
 						if ((z==0)||(isSolidGround(x, y, z-1)))
-							this.addSpawnablePosition(new Vector(x,y,z));
+							this.addSpawnablePosition(CubeKey.of(x,y,z));
 					}
 					if (getCubeType(x, y, z) == 0 || getCubeType(x, y, z) == 3){
 						this.connectedToBorder.changeSolidToPassable(x, y, z);
@@ -74,6 +116,17 @@ public class World {
 	 * @effect	If the sum of this World's collapsetime and the time to advance the gametime with
 	 * 			is larger than or equal to 5, all cubes that are disconnected from the borders collapse
 	 * @effect	All Units that need to be terminated are removed from this World
+	 * @effect	Units whose next event falls within the given time are woken first, and
+	 * 			afterwards every Unit that has nothing to do until its next event is put to sleep.
+	 * @effect	Every awake Unit is advanced at the level of detail its position calls for: Units that are
+	 * 			far from all interest regions of this World and are not interacting are advanced less often.
+	 * 			| advanceAtLevelOfDetail(unit, time)
+	 * @effect	If this World has parallel ticks, the Units taking a step first plan it in parallel.
+	 * 			| if (hasParallelTicks())
+	 * 			| then planSteps(objects, time)
+	 * @effect	If this World publishes snapshots, a new snapshot is published.
+	 * @post	The game time of this World is advanced by the given time.
+	 * 			| new.getGameTime() == this.getGameTime() + time
 	 * @throws IllegalArgumentException
 	 * 			The given time is an illegal time.
 	 * 			| (time < 0) || (time > 0.2)
@@ -81,33 +134,658 @@ public class World {
 	public void advanceTime(double time)throws IllegalArgumentException {
 		if (time<0||time>0.2)
 			throw new IllegalArgumentException();
+		double end = this.getGameTime() + time;
+		this.timers.advance(end, unit -> this.wakeUnit(unit));
 		if (this.getCollapseTime() + time < 5){
 			this.setCollapseTime(this.getCollapseTime() + time);
 		} else {
 			this.setCollapseTime(this.getCollapseTime() + time - 5);
-			for (Vector vector:toBeCollapsed){
-				int oldCubeType = this.getCubeType(vector);
-				this.setCubeType(vector.getCubeX(), vector.getCubeY(), vector.getCubeZ(), 0);
-				if (Math.random() <= 0.25){
-					if (oldCubeType == 1)
-						new Boulder(vector.add(new Vector(CUBELENGTH/2,CUBELENGTH/2, CUBELENGTH/2)), this);
-					else if (oldCubeType == 2)
-						new Log(vector.add(new Vector(CUBELENGTH/2,CUBELENGTH/2, CUBELENGTH/2)), this);
-				}
+			long start = (this.profiler == null) ? 0 : this.profiler.start();
+			for (CubeKey cube:toBeCollapsed){
+				int oldCubeType = this.getCubeType(cube.getX(), cube.getY(), cube.getZ());
+				this.setCubeType(cube.getX(), cube.getY(), cube.getZ(), 0);
+				if (this.getRandom().nextDouble() <= 0.25)
+					this.leaveItem(cube.getX(), cube.getY(), cube.getZ(), oldCubeType);
 			}
 			toBeCollapsed.clear();
+			if (this.profiler != null)
+				this.profiler.stop(TickProfiler.Phase.COLLAPSE, start);
 		}
 //		for (Unit unit : TerminatedUnits) {
 //			unit.removeFromWorld();
 //		}
 //		TerminatedUnits.clear();
 		
-		Set<GameObject> objects = new HashSet<>();
-		objects.addAll(this.getGameObjects());
+		List<GameObject> objects = new ArrayList<>(this.awakeObjects);
+		List<Unit> planned = this.hasParallelTicks() ? this.planSteps(objects, time) : new ArrayList<>();
+		this.advancing = true;
+		try {
+			for (GameObject gObject:objects){
+				if (gObject instanceof Unit)
+					this.advanceAtLevelOfDetail((Unit) gObject, time);
+				else
+					gObject.advanceTime(time);
+			}
+			for (int i = 0; i < this.wokenUnits.size(); i++){
+				this.wokenUnits.get(i).advanceTime(time);
+			}
+		} finally {
+			this.advancing = false;
+		}
+		for (Unit unit:planned)
+			unit.discardPlan();
+		this.gameTime = end;
+		for (GameObject gObject:objects){
+			if (gObject instanceof Unit)
+				this.sleepUntilNextEvent((Unit) gObject);
+		}
+		for (Unit unit:this.wokenUnits){
+			this.sleepUntilNextEvent(unit);
+		}
+		this.wokenUnits.clear();
+		this.publishSnapshot();
+	}
+
+	/**
+	 * Advance the game time of this World by the given duration, which may be arbitrarily long.
+	 * @param duration
+	 * 			The game time to advance with.
+	 * @effect	As long as the next event of this World lies more than two maximal steps ahead, the game
+	 * 			time jumps by a whole number of maximal steps, or to the end of the given duration,
+	 * 			up to at least one maximal step before that event.
+	 * 			Sleeping Units are left alone, and every awake GameObject moves steadily over the jump.
+	 * 			| advanceSteadily(jump)
+	 * @effect	Around each event, the game time is advanced in steps of at most the maximal step.
+	 * 			| advanceTime(nextStep(remaining))
+	 * @post	The game time of this World is advanced by the given duration, up to rounding errors.
+	 * 			| Util.fuzzyEquals(new.getGameTime(), this.getGameTime() + duration)
+	 * @note	A remainder shorter than the precision of the game time is not advanced as a step of its
+	 * 			own, since a sprinting Unit would lose a stamina point in such a step.
+	 * @note	The next event of this World is the earliest of the next event of a sleeping Unit,
+	 * 			the next cave-in if cubes are waiting to collapse, and the end of the steady motion
+	 * 			of each awake GameObject: the end of the leg a walking Unit is taking towards the next
+	 * 			cube of its path, or the moment a falling GameObject enters the cube it lands in.
+	 * 			An awake GameObject that is doing anything else, such as an idle Unit choosing its next
+	 * 			activity or a sprinting Unit losing stamina, has its next event in the next step.
+	 * @note	Since Units that work, attack or rest only update their counters between two events,
+	 * 			and walking or falling GameObjects cover the same distance in a single jump as in many
+	 * 			steps, jumping leaves the same state as stepping. Jumps are whole numbers of maximal
+	 * 			steps, so that the steps taken around an event are aligned with the steps repeated
+	 * 			advances by the maximal step would take. Events are resolved in the same step, and
+	 * 			positions only differ by rounding errors, unless such an error moves a Unit across
+	 * 			the centre of a cube at the end of a step, which delays its arrival by a step.
+	 * @throws IllegalArgumentException
+	 * 			The given duration is negative or not finite.
+	 * 			| !(duration >= 0) || Double.isInfinite(duration)
+	 */
+	public void fastForward(double duration) throws IllegalArgumentException {
+		if (!(duration >= 0) || Double.isInfinite(duration))
+			throw new IllegalArgumentException();
+		double end = this.getGameTime() + duration;
+		while (end - this.getGameTime() > Util.DEFAULT_EPSILON){
+			double remaining = end - this.getGameTime();
+			double steady = this.getTimeUntilNextEvent() - MAX_STEP;
+			double jump = (remaining <= steady) ? remaining : Math.floor(steady / MAX_STEP) * MAX_STEP;
+			if (jump > MAX_STEP)
+				this.advanceSteadily(jump);
+			else
+				this.advanceTime(nextStep(remaining));
+		}
+	}
+
+	/**
+	 * Return the step to take when the given time is left to advance.
+	 * @return	The maximal step if the given time is at least the maximal step, up to rounding errors,
+	 * 			or the given time otherwise.
+	 */
+	private static double nextStep(double left){
+		return (left > MAX_STEP - Util.DEFAULT_EPSILON) ? MAX_STEP : left;
+	}
+
+	/**
+	 * Return the time until the next event of this World.
+	 * @return	The earliest of the time until the next event of a sleeping Unit, the time until
+	 * 			the next cave-in if cubes are waiting to collapse, and the time each awake GameObject
+	 * 			keeps moving steadily. Once it is clear that the result is at most two maximal
+	 * 			steps, a smaller result may be returned instead.
+	 */
+	private double getTimeUntilNextEvent(){
+		double result = this.timers.getNextTime() - this.getGameTime();
+		if (!this.toBeCollapsed.isEmpty())
+			result = Math.min(result, 5 - this.getCollapseTime());
+		for (GameObject gObject:this.awakeObjects){
+			if (result <= 2 * MAX_STEP)
+				break;
+			result = Math.min(result, gObject.getTimeOfSteadyMotion());
+		}
+		return result;
+	}
+
+	/**
+	 * Advance the game time of this World by the given time, during which no event happens.
+	 * @pre		The next event of this World lies beyond the given time.
+	 * 			| time < getTimeUntilNextEvent()
+	 * @effect	Every awake GameObject of this World moves steadily over the given time.
+	 * 			| for each gameObject in awakeObjects:
+	 * 			|	gameObject.advanceSteadily(time)
+	 * @note	The game time is advanced by adding the maximal step as many times as advancing the game
+	 * 			time step by step would, so that the game time does not drift away from the game time of
+	 * 			repeated steps, at which sleeping Units are woken.
+	 * @effect	If this World publishes snapshots, a new snapshot is published.
+	 */
+	private void advanceSteadily(double time){
+		for (GameObject gObject:this.awakeObjects)
+			gObject.advanceSteadily(time);
+		for (double left = time; left > Util.DEFAULT_EPSILON; left -= MAX_STEP){
+			double step = nextStep(left);
+			this.gameTime += step;
+			this.setCollapseTime((this.getCollapseTime() + step) % 5);
+		}
+		this.timers.advance(this.getGameTime(), unit -> this.wakeUnit(unit));
+		this.publishSnapshot();
+	}
+
+	/**
+	 * The longest time by which the game time of a World can be advanced in a single step.
+	 */
+	public static final double MAX_STEP = 0.2;
+
+	/**
+	 * Return the game time that has passed in this World.
+	 */
+	@Basic
+	public double getGameTime(){
+		return this.gameTime;
+	}
+
+	/**
+	 * Variable registering the game time that has passed in this World.
+	 */
+	private double gameTime = 0;
+
+	/**
+	 * Put the given Unit to sleep until its next event, if it has nothing to do before then.
+	 * @param unit
+	 * 			The Unit to put to sleep.
+	 * @post	If the given Unit is an awake Unit of this World and it has nothing to do
+	 * 			until its next event, it is asleep and scheduled to be woken at that event.
+	 * 			| if (hasAsGameObject(unit) && !unit.isAsleep() && unit.getTimeUntilNextEvent() > 0)
+	 * 			| then (new unit).isAsleep()
+	 */
+	private void sleepUntilNextEvent(Unit unit){
+		if (unit.isAsleep() || unit.getLaggingTime() > 0 || !this.hasAsGameObject(unit))
+			return;
+		double delay = unit.getTimeUntilNextEvent();
+		if (delay <= 0)
+			return;
+		unit.fallAsleep(this.getGameTime());
+		this.awakeObjects.remove(unit);
+		this.timers.schedule(unit, this.getGameTime() + delay);
+	}
+
+	/**
+	 * Wake the given Unit if it is asleep in this World.
+	 * @param unit
+	 * 			The Unit to wake.
+	 * @effect	If the given Unit is asleep in this World, it is woken at the game time of this World.
+	 * 			| if (hasAsGameObject(unit) && unit.isAsleep())
+	 * 			| then unit.wakeUp(getGameTime())
+	 * @post	If the given Unit was woken while the game time of this World is being advanced,
+	 * 			it is still advanced in the current step.
+	 */
+	void wakeUnit(Unit unit){
+		if (!unit.isAsleep() || !this.hasAsGameObject(unit))
+			return;
+		unit.wakeUp(this.getGameTime());
+		this.awakeObjects.add(unit);
+		if (this.advancing)
+			this.wokenUnits.add(unit);
+	}
+
+	/**
+	 * Wake all Units asleep in the cube with the given coordinates or in a cube next to it.
+	 */
+	private void wakeUnitsAround(int x, int y, int z){
+		List<Unit> units = new ArrayList<>();
+		for (Faction faction:this.getActiveFactions()){
+			for (int dx = -1; dx <= 1; dx++)
+				for (int dy = -1; dy <= 1; dy++)
+					for (int dz = -1; dz <= 1; dz++)
+						for (Unit unit:faction.getUnitsInCube(x + dx, y + dy, z + dz))
+							if (unit.isAsleep())
+								units.add(unit);
+		}
+		for (Unit unit:units)
+			this.wakeUnit(unit);
+	}
+
+	/**
+	 * The duration of a single tick of the timer wheel of each World.
+	 */
+	static final double TIMER_RESOLUTION = 0.01;
+
+	/**
+	 * Variable referencing the timer wheel waking the Units of this World at their next event.
+	 */
+	private final TimerWheel<Unit> timers = new TimerWheel<>(TIMER_RESOLUTION);
+
+	/**
+	 * Variable registering whether the game time of this World is being advanced.
+	 */
+	private boolean advancing = false;
+
+	/**
+	 * Variable referencing the Units that were woken while the game time of this World
+	 * was being advanced, and that still need to be advanced in the current step.
+	 */
+	private final List<Unit> wokenUnits = new ArrayList<>();
+
+	/**
+	 * Check whether this World advances its game time in two phases, in which its Units first
+	 * plan their next step in parallel and are then advanced one after another.
+	 */
+	@Basic
+	public boolean hasParallelTicks(){
+		return this.parallelTicks;
+	}
+
+	/**
+	 * Enable or disable parallel ticks for this World.
+	 * @param parallelTicks
+	 * 			Whether the game time of this World must be advanced in two phases.
+	 * @post	This World has parallel ticks if and only if the given boolean is true.
+	 * 			| new.hasParallelTicks() == parallelTicks
+	 * @note	In the first phase, every Unit that takes a step plans it in parallel with the others,
+	 * 			against this World as it is at the start of the step: it searches its paths, looks ahead
+	 * 			to the next Statement of its Task and decides on its default behavior with its own random
+	 * 			generator. In the second phase, all GameObjects are advanced one after another in the order
+	 * 			in which they were woken, so that terrain changes, pick-ups and damage are always applied in
+	 * 			the same order. A Unit whose plan has become outdated in the meantime falls back to deciding
+	 * 			when it is advanced, and Tasks that become available during the second phase are only handed
+	 * 			out in the next step. The outcome only depends on the seed of this World, not on the number
+	 * 			of threads.
+	 */
+	public void setParallelTicks(boolean parallelTicks){
+		this.parallelTicks = parallelTicks;
+	}
+
+	/**
+	 * Variable registering whether this World has parallel ticks.
+	 */
+	private boolean parallelTicks = false;
+
+	/**
+	 * Let each of the given GameObjects that is a Unit taking a step within the given time plan that step,
+	 * in parallel.
+	 * @return	The Units that have planned their step.
+	 * @effect	| for each unit in result: unit.planStep(unit.getLaggingTime() + time)
+	 */
+	private List<Unit> planSteps(List<GameObject> objects, double time){
+		List<Unit> units = new ArrayList<>();
 		for (GameObject gObject:objects){
-			gObject.advanceTime(time);
+			if (gObject instanceof Unit && !this.keepsLagging((Unit) gObject, time))
+				units.add((Unit) gObject);
+		}
+		long start = (this.profiler == null) ? 0 : this.profiler.start();
+		TICK_POOL.submit(() -> units.parallelStream()
+				.forEach(unit -> unit.planStep(unit.getLaggingTime() + time))).join();
+		if (this.profiler != null)
+			this.profiler.stop(TickProfiler.Phase.PLANNING, start);
+		return units;
+	}
+
+	/**
+	 * The pool on which the Units of all Worlds plan their next step in parallel.
+	 */
+	private static final ForkJoinPool TICK_POOL = new ForkJoinPool();
+
+	/**
+	 * Return the number of times the terrain of this World has been changed.
+	 * @note	A Unit compares this number with the number at the time it planned a path,
+	 * 			to know whether that path was searched on the current terrain.
+	 */
+	@Basic
+	long getTerrainVersion(){
+		return this.terrainVersion;
+	}
+
+	/**
+	 * Variable registering the number of times the terrain of this World has been changed.
+	 */
+	private long terrainVersion = 0;
+
+	/**
+	 * Advance the given Unit by the given time, at the level of detail its position calls for.
+	 * @param unit
+	 * 			The Unit to advance.
+	 * @param time
+	 * 			The time to advance the given Unit with.
+	 * @effect	If the given Unit must be advanced at full detail, it catches up with the time it
+	 * 			lags behind and the given time together.
+	 * 			| if (isAtFullDetail(unit))
+	 * 			| then catchUp(unit, unit.getLaggingTime() + time)
+	 * @effect	Otherwise, the given time is added to the time the given Unit lags behind, for as long
+	 * 			as that total stays below the maximal step, or stays at least a maximal step before the
+	 * 			end of the steady motion of the given Unit. As soon as it does not, the given Unit
+	 * 			catches up with that total.
+	 * 			| if (keepsLagging(unit, time))
+	 * 			| then new.getLaggingTime() == unit.getLaggingTime() + time
+	 * 			| else catchUp(unit, unit.getLaggingTime() + time)
+	 * @note	A Unit walking far away from any region of interest thus takes a single aggregated
+	 * 			step for most of each leg of its path, whatever the steps by which the game time is
+	 * 			advanced, and is only stepped finely around the end of the leg. Events are resolved
+	 * 			up to a maximal step later than at full detail, and other Units see the state of the
+	 * 			given Unit at the end of its latest step.
+	 */
+	private void advanceAtLevelOfDetail(Unit unit, double time){
+		double total = unit.getLaggingTime() + time;
+		if (this.keepsLagging(unit, time)){
+			unit.setLaggingTime(total);
+			return;
 		}
+		unit.setLaggingTime(0);
+		this.catchUp(unit, total);
 	}
+
+	/**
+	 * Check whether the given Unit keeps lagging behind when the game time is advanced by the given time.
+	 * @return	| let total = unit.getLaggingTime() + time in
+	 * 			|	result == (!isAtFullDetail(unit) &&
+	 * 			|		total < Math.max(MAX_STEP, unit.getTimeOfSteadyMotion() - MAX_STEP))
+	 */
+	private boolean keepsLagging(Unit unit, double time){
+		double total = unit.getLaggingTime() + time;
+		return !this.isAtFullDetail(unit) &&
+				total < Math.max(MAX_STEP - Util.DEFAULT_EPSILON, unit.getTimeOfSteadyMotion() - MAX_STEP);
+	}
+
+	/**
+	 * Advance the given Unit by the given time, which may exceed the maximal step.
+	 * @param unit
+	 * 			The Unit to advance.
+	 * @param time
+	 * 			The time to advance the given Unit with.
+	 * @effect	As long as the steady motion of the given Unit lasts more than two maximal steps,
+	 * 			the given Unit is advanced steadily in one go, up to at least one maximal step before
+	 * 			the end of that motion or to the end of the given time.
+	 * @effect	Otherwise, the given Unit is advanced in steps of at most the maximal step.
+	 */
+	private void catchUp(Unit unit, double time){
+		double left = time;
+		while (left > Util.DEFAULT_EPSILON){
+			double steady = unit.getTimeOfSteadyMotion() - MAX_STEP;
+			double step = (steady > MAX_STEP) ? Math.min(left, steady) : nextStep(left);
+			if (step > MAX_STEP)
+				unit.advanceSteadily(step);
+			else
+				unit.advanceTime(step);
+			left -= step;
+		}
+	}
+
+	/**
+	 * Check whether the given Unit must be advanced at full detail.
+	 * @return	True if and only if this World has no interest regions, or the given Unit is falling
+	 * 			or attacking, has been interacting with another Unit recently, or lies in or near an
+	 * 			interest region of this World.
+	 * 			| result == (!hasInterestRegions() || unit.getStatus() == Status.FALLING || unit.isAttacking() ||
+	 * 			|		unit.getInteractingUntil() > getGameTime() || isOfInterest(unit.getPosition()))
+	 */
+	private boolean isAtFullDetail(Unit unit){
+		return !this.hasInterestRegions() || unit.getStatus() == Status.FALLING || unit.isAttacking()
+				|| unit.getInteractingUntil() > this.getGameTime() || this.isOfInterest(unit.getPosition());
+	}
+
+	/**
+	 * Check whether this World has any interest regions.
+	 */
+	public boolean hasInterestRegions(){
+		return !this.interestRegions.isEmpty();
+	}
+
+	/**
+	 * Add the box between the given corners to the interest regions of this World.
+	 * Units far from every interest region are advanced at a lower level of detail.
+	 * @param min
+	 * 			The corner of the box with the smallest coordinates.
+	 * @param max
+	 * 			The corner of the box with the largest coordinates.
+	 * @post	Every position in the given box, or within the interest margin of it,
+	 * 			is of interest in this World.
+	 * 			| isOfInterest(min) && isOfInterest(max)
+	 * @throws IllegalArgumentException
+	 * 			One of the given corners is not effective, or the given box is empty.
+	 * 			| (min == null) || (max == null) || (min.getX() > max.getX()) ||
+	 * 			| (min.getY() > max.getY()) || (min.getZ() > max.getZ())
+	 * @note	A user interface adds the region it shows, a headless observer the regions it
+	 * 			inspects. As long as a World has no interest regions, all its Units are advanced
+	 * 			at full detail.
+	 */
+	public void addInterestRegion(Vector min, Vector max) throws IllegalArgumentException {
+		if (min == null || max == null || min.getX() > max.getX() || min.getY() > max.getY()
+				|| min.getZ() > max.getZ())
+			throw new IllegalArgumentException();
+		this.interestRegions.add(new Vector[] {min, max});
+	}
+
+	/**
+	 * Remove all interest regions of this World.
+	 * @post	This World has no interest regions.
+	 * 			| !new.hasInterestRegions()
+	 * @note	Units that lag behind catch up in their next step.
+	 */
+	public void clearInterestRegions(){
+		this.interestRegions.clear();
+	}
+
+	/**
+	 * Check whether the given position is of interest in this World.
+	 * @param position
+	 * 			The position to check.
+	 * @return	True if this World has no interest regions, or if the given position lies within
+	 * 			the interest margin of one of them.
+	 */
+	public boolean isOfInterest(Vector position){
+		if (!this.hasInterestRegions())
+			return true;
+		for (Vector[] region:this.interestRegions){
+			if (position.getX() >= region[0].getX() - INTEREST_MARGIN && position.getX() <= region[1].getX() + INTEREST_MARGIN
+					&& position.getY() >= region[0].getY() - INTEREST_MARGIN && position.getY() <= region[1].getY() + INTEREST_MARGIN
+					&& position.getZ() >= region[0].getZ() - INTEREST_MARGIN && position.getZ() <= region[1].getZ() + INTEREST_MARGIN)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Variable referencing the interest regions of this World, as pairs of corners.
+	 */
+	private final List<Vector[]> interestRegions = new ArrayList<>();
+
+	/**
+	 * The distance around each interest region within which Units are still advanced at full detail.
+	 */
+	public static final double INTEREST_MARGIN = 3;
+
+	/**
+	 * The game time during which a Unit that attacked or was attacked is advanced at full detail.
+	 */
+	static final double INTERACTION_TIME = 1;
+
+	/**
+	 * Return the profiler measuring the phases of advancing the game time of this World,
+	 * or null if this World is not being profiled.
+	 */
+	@Basic
+	public TickProfiler getProfiler(){
+		return this.profiler;
+	}
+
+	/**
+	 * Check whether this World is being profiled.
+	 * @return	True if and only if this World has a profiler.
+	 * 			| result == (getProfiler() != null)
+	 */
+	public boolean isProfiling(){
+		return this.getProfiler() != null;
+	}
+
+	/**
+	 * Enable or disable profiling for this World.
+	 * @param profiling
+	 * 			Whether this World must be profiled.
+	 * @post	If profiling is enabled and this World was not being profiled yet, it has a new
+	 * 			profiler without any measurements. If profiling is disabled, this World has no profiler.
+	 * 			| if (profiling && !isProfiling())
+	 * 			| then new.getProfiler().getNbStatements() == 0
+	 * 			| if (!profiling)
+	 * 			| then new.getProfiler() == null
+	 * @note	While profiling is disabled, every phase checks a single field and measures nothing.
+	 */
+	public void setProfiling(boolean profiling){
+		if (!profiling)
+			this.profiler = null;
+		else if (this.profiler == null)
+			this.profiler = new TickProfiler();
+	}
+
+	/**
+	 * Variable referencing the profiler of this World.
+	 */
+	private TickProfiler profiler = null;
+
+	/**
+	 * Check whether this World publishes a snapshot at the end of each step.
+	 */
+	@Basic
+	public boolean publishesSnapshots(){
+		return this.publishesSnapshots;
+	}
+
+	/**
+	 * Enable or disable the publication of snapshots for this World.
+	 * @param publishesSnapshots
+	 * 			Whether this World must publish a snapshot at the end of each step.
+	 * @post	This World publishes snapshots if and only if the given boolean is true.
+	 * 			| new.publishesSnapshots() == publishesSnapshots
+	 * @effect	If snapshots are enabled, a first snapshot is published at once.
+	 * @note	Taking a snapshot copies the state of every Unit and item, so it is only done
+	 * 			when another thread renders this World.
+	 */
+	public void setPublishesSnapshots(boolean publishesSnapshots){
+		this.publishesSnapshots = publishesSnapshots;
+		this.changedCubes.clear();
+		this.untakenSnapshot.set(null);
+		if (publishesSnapshots)
+			this.publishSnapshot();
+		else
+			this.snapshot.set(null);
+	}
+
+	/**
+	 * Variable registering whether this World publishes snapshots.
+	 */
+	private boolean publishesSnapshots = false;
+
+	/**
+	 * Return the latest snapshot published by this World.
+	 * @return	The snapshot taken at the end of the latest step of this World,
+	 * 			or null if this World does not publish snapshots.
+	 * @note	This method may be invoked from any thread, also while the game time
+	 * 			of this World is being advanced.
+	 */
+	public WorldSnapshot getSnapshot(){
+		return this.snapshot.get();
+	}
+
+	/**
+	 * Take the latest snapshot published by this World, if it has not been taken before.
+	 * @return	The latest snapshot published by this World, or null if it has been taken
+	 * 			already or this World does not publish snapshots. Its changed cubes are all
+	 * 			cubes that have changed since the snapshot that was taken before.
+	 * @note	This method may be invoked from any thread, also while the game time
+	 * 			of this World is being advanced. Snapshots that are published while the
+	 * 			latest one has not been taken carry the changed cubes of that one along,
+	 * 			so that a single thread taking snapshots sees every change of the terrain,
+	 * 			however many snapshots it skips.
+	 */
+	public WorldSnapshot takeSnapshot(){
+		return this.untakenSnapshot.getAndSet(null);
+	}
+
+	/**
+	 * Take a snapshot of this World and publish it, if this World publishes snapshots.
+	 */
+	private void publishSnapshot(){
+		if (!this.publishesSnapshots())
+			return;
+		WorldSnapshot untaken = this.untakenSnapshot.get();
+		WorldSnapshot snapshot = new WorldSnapshot(this, this.getChangedCubesSince(untaken));
+		while (!this.untakenSnapshot.compareAndSet(untaken, snapshot)){
+			untaken = this.untakenSnapshot.get();
+			snapshot = new WorldSnapshot(this, this.getChangedCubesSince(untaken));
+		}
+		this.snapshot.set(snapshot);
+		this.changedCubes.clear();
+	}
+
+	/**
+	 * Return the cubes that have changed since the given snapshot was taken, together with
+	 * the changed cubes of the given snapshot, if it is effective.
+	 */
+	private List<Vector> getChangedCubesSince(WorldSnapshot untaken){
+		Set<Vector> changed = new LinkedHashSet<>();
+		if (untaken != null)
+			changed.addAll(untaken.getChangedCubes());
+		changed.addAll(this.changedCubes);
+		return new ArrayList<>(changed);
+	}
+
+	/**
+	 * Variable referencing the latest snapshot published by this World.
+	 */
+	private final AtomicReference<WorldSnapshot> snapshot = new AtomicReference<>();
+
+	/**
+	 * Variable referencing the latest snapshot published by this World, as long as it has not been taken.
+	 */
+	private final AtomicReference<WorldSnapshot> untakenSnapshot = new AtomicReference<>();
+
+	/**
+	 * Variable referencing the cubes whose type or connection to the borders has changed
+	 * since the latest snapshot.
+	 */
+	private final List<Vector> changedCubes = new ArrayList<>();
+
+	/**
+	 * Return the seed from which the random events in this World are drawn.
+	 */
+	@Basic @Immutable
+	public long getSeed(){
+		return this.seed;
+	}
+
+	/**
+	 * Variable registering the seed of this World.
+	 */
+	private final long seed;
+
+	/**
+	 * Return the random generator of this World.
+	 * @note	Every Unit draws from its own stream, split off this generator when the Unit
+	 * 			is added to this World, so its behavior does not depend on how often other
+	 * 			Units draw random numbers.
+	 */
+	@Basic
+	SplittableRandom getRandom(){
+		return this.random;
+	}
+
+	/**
+	 * Variable registering the random generator of this World.
+	 */
+	private final SplittableRandom random;
+
 	
 	public boolean isSolidConnectedToBorder(Vector vector) {
 		return this.connectedToBorder.isSolidConnectedToBorder(vector.getCubeX(), vector.getCubeY(), vector.getCubeZ());
@@ -189,6 +867,18 @@ public class World {
 		return true;
 	}
 
+	/**
+	 * Check whether the cube with the given coordinates lies inside this gameworld.
+	 * @return	true if each of the given coordinates lies between 0 and the maximum
+	 * 			coordinate of this gameworld in that direction.
+	 * 			| result == (x >= 0 && x < nbCoordinateX()) && (y >= 0 && y < nbCoordinateY())
+	 * 			|			&& (z >= 0 && z < nbCoordinateZ())
+	 */
+	boolean isInsideWorld(int x, int y, int z){
+		return (x >= 0 && x < this.nbCoordinateX()) && (y >= 0 && y < this.nbCoordinateY())
+				&& (z >= 0 && z < this.nbCoordinateZ());
+	}
+
 	/**
 	 * Return the type of the cube at the given position in this World
 	 * @param x
@@ -248,38 +938,95 @@ public class World {
 	public void setCubeType(int x,int y, int z, int value) throws IllegalArgumentException {
 		if (!isValidMaterial(value))
 			throw new IllegalArgumentException();
+		boolean wasSolid = this.isSolidGround(x, y, z);
 		this.getCoordinates()[x][y][z]=value;
+		this.terrainVersion++;
+		if (wasSolid != IsSolidMaterial(value))
+			this.addToSolidNeighbours(x, y, z, wasSolid ? -1 : 1);
+		if (this.publishesSnapshots())
+			this.changedCubes.add(new Vector(x, y, z));
 		this.modelListener.notifyTerrainChanged(x, y, z);
+		this.wakeObjectsInCube(x, y, z+1);
+		this.wakeUnitsAround(x, y, z);
 		if (value == 0 || value == 3){
-			Vector position = new Vector(x,y,z);
-			for (Vector vector:this.getAdjacentPositions(position)){
-				if (this.getSpawnablePositions().contains(vector)){
-					if (!unitCanSpawnAt(vector))
-						this.getSpawnablePositions().remove(vector);
-				} else {
-					if (unitCanSpawnAt(vector))
-						this.addSpawnablePosition(vector);
-				}
-				if (this.getStandablePositions().contains(vector)){
-					if (!unitCanStandAt(vector))
-						this.getStandablePositions().remove(vector);
-				} else {
-					if (unitCanStandAt(vector))
-						this.addStandablePosition(vector);
-				}
-			}
-			if (unitCanStandAt(position))
-				this.addStandablePosition(position);
-			if (unitCanSpawnAt(position))
-				this.addSpawnablePosition(position);
+			CubeKey.forEachNeighbour(x, y, z, this::updatePositionsOfCube);
+			this.updatePositionsOfCube(x, y, z);
 		}
 	}
+
+	/**
+	 * Bring the registration of the cube with the given coordinates as a position where
+	 * Units can stand and where Units can spawn up to date with the current terrain.
+	 * Cubes outside this World are ignored.
+	 * @post	The given cube is a standable position if and only if a Unit can stand at it.
+	 * 			| new.getStandablePositions().contains(CubeKey.of(x,y,z)) == unitCanStandAt(x,y,z)
+	 * @post	The given cube is a spawnable position if and only if a Unit can spawn at it.
+	 * 			| new.getSpawnablePositions().contains(CubeKey.of(x,y,z)) == unitCanSpawnAt(x,y,z)
+	 */
+	private void updatePositionsOfCube(int x, int y, int z){
+		if (!this.isInsideWorld(x, y, z))
+			return;
+		CubeKey cube = CubeKey.of(x, y, z);
+		if (this.unitCanSpawnAt(x, y, z))
+			this.addSpawnablePosition(cube);
+		else
+			this.spawnablePositions.remove(cube);
+		if (this.unitCanStandAt(x, y, z))
+			this.addStandablePosition(cube);
+		else
+			this.standablePositions.remove(cube);
+	}
 	
 	/**
 	 * variable keeping track of the values of the cubetypes
 	 */
 	private int [][][] Coordinates;
 
+	/**
+	 * Check whether at least one of the cubes sharing a face with the cube with the given
+	 * coordinates is solid.
+	 * @param x
+	 * 			The x-coordinate of the cube to check
+	 * @param y
+	 * 			The y-coordinate of the cube to check
+	 * @param z
+	 * 			The z-coordinate of the cube to check
+	 * @return	true if and only if some directly adjacent cube inside this World is solid ground.
+	 * 			| result == (for some x', y', z' with |x'-x|+|y'-y|+|z'-z| == 1:
+	 * 			|				isInsideWorld(x', y', z') && isSolidGround(x', y', z'))
+	 */
+	boolean hasSolidNeighbour(int x, int y, int z){
+		return this.solidNeighbours[this.indexOf(x, y, z)] != 0;
+	}
+
+	/**
+	 * Add the given amount to the number of solid neighbours of each cube inside this World
+	 * sharing a face with the cube with the given coordinates.
+	 */
+	private void addToSolidNeighbours(int x, int y, int z, int amount){
+		for (int[] offset:CubeKey.DIRECT_NEIGHBOURS){
+			int adjacentX = x + offset[0], adjacentY = y + offset[1], adjacentZ = z + offset[2];
+			if (this.isInsideWorld(adjacentX, adjacentY, adjacentZ))
+				this.solidNeighbours[this.indexOf(adjacentX, adjacentY, adjacentZ)] += amount;
+		}
+	}
+
+	/**
+	 * Return the index of the cube with the given coordinates in arrays holding
+	 * a value for each cube of this World.
+	 */
+	private int indexOf(int x, int y, int z){
+		return (x*this.nbCoordinateY() + y)*this.nbCoordinateZ() + z;
+	}
+
+	/**
+	 * Variable registering, for each cube of this World, how many of the cubes sharing
+	 * a face with it are solid. The count is updated whenever a cube changes between
+	 * solid and passable, so that checking for support does not need to inspect the
+	 * neighbouring cubes.
+	 */
+	private final byte[] solidNeighbours;
+
 	/**
 	 * Return the collapseTime of this World.
 	 */
@@ -380,7 +1127,7 @@ public class World {
 	 * Return all Units currently living in this World.
 	 */
 	public Set<Unit> getUnits(){
-		Set<Unit> result = new HashSet<>();
+		Set<Unit> result = new LinkedHashSet<>();
 		for (GameObject obj:this.getGameObjects())
 			if (obj instanceof Unit)
 				result.add((Unit) obj);
@@ -501,7 +1248,7 @@ public class World {
 	 *       |   ( (Faction != null) &&
 	 *       |     (! Faction.isTerminated()) )
 	 */
-	private final Set<Faction> Factions = new HashSet<Faction>();
+	private final Set<Faction> Factions = new LinkedHashSet<Faction>();
 
 	/**
 	 * Check whether this World has the given GameObject as one of its
@@ -556,9 +1303,11 @@ public class World {
 	}
 
 	/**
-	 * Return a Set containing all GameObjects at a given position in this World.
+	 * Return a Set containing all InanimateObjects at a given position in this World.
 	 * @param position
-	 * 			The position of the GameObjects to return
+	 * 			The position of the InanimateObjects to return
+	 * @return	The InanimateObjects that are GameObjects of this World in the cube of the given position,
+	 * 			together with the items of the item pile of that cube.
 	 * @throws IllegalArgumentException
 	 * 			The given position is outside of the World
 	 * 			| isInsideWorld(position)
@@ -566,44 +1315,52 @@ public class World {
 	public Set<GameObject> getInanimateObjectsAt(Vector position) throws IllegalArgumentException{
 		if (!isInsideWorld(position))
 			throw new IllegalArgumentException();
-		position = position.getCubePosition();
-		Set<GameObject> result = new HashSet<>();
-		for (GameObject object: this.getGameObjects()){
-			if (object instanceof InanimateObject && object.getPosition().getCubePosition().equals(position)){
-				result.add(object);
-			}
-		}
+		Set<GameObject> result = new LinkedHashSet<>();
+		ItemPile pile = this.getPileAt(position.getCubeX(), position.getCubeY(), position.getCubeZ(), false);
+		if (pile != null)
+			result.addAll(pile.getItems());
+		for (GameObject gObject : this.awakeObjects)
+			if (gObject instanceof InanimateObject && gObject.getPosition() != null
+					&& gObject.getPosition().getCubePosition().equals(position.getCubePosition()))
+				result.add(gObject);
 		return result;
 	}
 	
 	/**
 	 * 
-	 * @return returns all the logs in this World
+	 * @return returns all the logs in this World: the Logs that are GameObjects of this World,
+	 * 		and the Logs lying still in the item piles of this World.
 	 * 		result==Set<Log>(alllogs)
 	 */
 	public Set<Log> GetAllLogs() {
-		Set<Log> Logs= new HashSet<>();
-		for (GameObject log : gameObjects) {
-			if (log instanceof Log) {
-				Logs.add((Log)log);
-			}
-		}
-		return Logs;
+		return this.getAllItems(Log.class);
 	}
 	
 	/**
 	 * 
-	 * @return returns all the Boulders in this World
+	 * @return returns all the Boulders in this World: the Boulders that are GameObjects of this World,
+	 * 		and the Boulders lying still in the item piles of this World.
 	 * 		result==Set<Log>(allBoulders)
 	 */
 	public Set<Boulder> GetAllBoulders() {
-		Set<Boulder> Boulders= new HashSet<>();
-		for (GameObject bObject : gameObjects) {
-			if (bObject instanceof Boulder) {
-				Boulders.add((Boulder)bObject);
-			}
+		return this.getAllItems(Boulder.class);
+	}
+
+	/**
+	 * Return the items of the given type that are GameObjects of this World, together with
+	 * the items of the given type of each item pile of this World.
+	 */
+	private <T extends InanimateObject> Set<T> getAllItems(Class<T> type){
+		Set<T> result = new LinkedHashSet<>();
+		for (GameObject gObject : gameObjects) {
+			if (type.isInstance(gObject))
+				result.add(type.cast(gObject));
 		}
-		return Boulders;
+		for (ItemPile pile : this.piles.values()) {
+			for (InanimateObject item : pile.getItems(type))
+				result.add(type.cast(item));
+		}
+		return result;
 	}
 	/**
 	 * 
@@ -615,13 +1372,13 @@ public class World {
 	}
 	
 	/**
-	 * Check whether the cube of the given position contains at least one GameObject.
+	 * Check whether the cube of the given position contains at least one item lying still.
 	 * @param position
-	 * 			The position whose cube needs to be checked for GameObjects.
-	 * @return true if there is at least one GameObject occupying the cube of the given position.
+	 * 			The position whose cube needs to be checked for items.
+	 * @return true if there is at least one item in the item pile of the cube of the given position.
 	 */
 	boolean containsInanimateObject(Vector position){
-		return this.getInanimateObjectsAt(position).size() > 0;
+		return this.piles.containsKey(CubeKey.pack(position.getCubeX(), position.getCubeY(), position.getCubeZ()));
 	}
 	
 	/**
@@ -645,15 +1402,8 @@ public class World {
 	 * @return true if at least one Log and one Boulder occupy the cube of the given position.
 	 */
 	boolean containsLogAndBoulder(Vector position){
-		boolean boulder = false;
-		boolean log = false;
-		for (GameObject object:getInanimateObjectsAt(position)){
-			if (object instanceof Log)
-				log = true;
-			if (object instanceof Boulder)
-				boulder = true;
-		}
-		return (boulder && log);
+		ItemPile pile = this.getPileAt(position.getCubeX(), position.getCubeY(), position.getCubeZ(), false);
+		return (pile != null) && (pile.getNbItems(Boulder.class) > 0) && (pile.getNbItems(Log.class) > 0);
 	}
 
 	/**
@@ -685,6 +1435,7 @@ public class World {
 			if (this.getNbUnits() >= 100)
 				return;
 		gameObjects.add(gameObject);
+		awakeObjects.add(gameObject);
 		gameObject.addToWorld(this);
 	}
 
@@ -706,6 +1457,7 @@ public class World {
 	void removeGameObject(GameObject gameObject) {
 		assert this.hasAsGameObject(gameObject);
 		gameObjects.remove(gameObject);
+		awakeObjects.remove(gameObject);
 		gameObject.removeFromWorld();
 	}
 
@@ -722,7 +1474,156 @@ public class World {
 	 *       |     (! gameObject.isTerminated()) )
 	 */
 
-	private final Set<GameObject> gameObjects = new HashSet<GameObject>();
+	private final Set<GameObject> gameObjects = new LinkedHashSet<GameObject>();
+
+	/**
+	 * Check whether the given InanimateObject is asleep in this World.
+	 * @param object
+	 * 			The InanimateObject to check.
+	 * @return	true if and only if the given object lies still in an item pile of this World,
+	 * 			so that it is not advanced when the game time of this World is advanced.
+	 * 			| result == (object.getWorld() == this && !this.hasAsGameObject(object))
+	 */
+	public boolean isAsleep(InanimateObject object){
+		return object.getWorld() == this && !this.hasAsGameObject(object);
+	}
+
+	/**
+	 * Let the given InanimateObject come to rest in the item pile of its cube, so that it is no
+	 * longer advanced each time the game time of this World is advanced.
+	 * @param object
+	 * 			The InanimateObject that rests on solid ground.
+	 * @pre		The given object belongs to this World, is idle and does not have to fall.
+	 * 			| this.hasAsGameObject(object) && object.getStatus() == Status.IDLE && !object.hasToFall()
+	 * @post	The given object is no longer a GameObject of this World. It is added to the item pile
+	 * 			of its cube, and is asleep. Its position and World are left untouched.
+	 */
+	void putToRest(InanimateObject object){
+		assert this.hasAsGameObject(object) && object.getStatus() == Status.IDLE && !object.hasToFall();
+		this.gameObjects.remove(object);
+		this.awakeObjects.remove(object);
+		Vector position = object.getPosition();
+		this.getPileAt(position.getCubeX(), position.getCubeY(), position.getCubeZ(), true).add(object);
+	}
+
+	/**
+	 * Let the items in the cube with the given coordinates fall, if the cube beneath it no longer supports them.
+	 * @effect	If the cube beneath the given cube is not solid, all items of the item pile of the given cube
+	 * 			become GameObjects of this World at the position where they lay, which are advanced until
+	 * 			they come to rest again.
+	 */
+	private void wakeObjectsInCube(int x, int y, int z){
+		ItemPile pile = this.getPileAt(x, y, z, false);
+		if (pile == null || z == 0 || this.isSolidGround(x, y, z-1))
+			return;
+		this.piles.remove(CubeKey.pack(x, y, z));
+		for (InanimateObject item:pile.takeAll())
+			this.addGameObject(item);
+	}
+
+	/**
+	 * Return the item pile of the cube with the given coordinates.
+	 * @param create
+	 * 			Whether an empty pile must be created for the given cube if it has none.
+	 * @return	The pile of the given cube, or null if it has none and none must be created.
+	 */
+	private ItemPile getPileAt(int x, int y, int z, boolean create){
+		long key = CubeKey.pack(x, y, z);
+		ItemPile pile = this.piles.get(key);
+		if (pile == null && create){
+			pile = new ItemPile(this, x, y, z);
+			this.piles.put(key, pile);
+		}
+		return pile;
+	}
+
+	/**
+	 * Take an item of the given type from the cube of the given position.
+	 * @param position
+	 * 			The position whose cube is searched.
+	 * @param type
+	 * 			The type of item to look for, either Boulder or Log.
+	 * @return	An item of the given type that was lying still in the cube of the given position,
+	 * 			or null if there is no such item. The returned item no longer references any World.
+	 * 			| if (result != null)
+	 * 			| then type.isInstance(result) && result.getWorld() == null
+	 * @post	The item pile of the cube of the given position holds one item of the given type less.
+	 * @note	Both the lookup and removing the item from its pile take constant time. Only the
+	 * 			returned item is created, if nobody asked for it before.
+	 */
+	InanimateObject takeItemAt(Vector position, Class<? extends InanimateObject> type){
+		return this.removeItemAt(position, type, true);
+	}
+
+	/**
+	 * Remove an item of the given type from the cube of the given position, without creating it.
+	 * @param position
+	 * 			The position whose cube is searched.
+	 * @param type
+	 * 			The type of item to remove, either Boulder or Log.
+	 * @post	The item pile of the cube of the given position holds one item of the given type less,
+	 * 			if it held any.
+	 */
+	void consumeItemAt(Vector position, Class<? extends InanimateObject> type){
+		this.removeItemAt(position, type, false);
+	}
+
+	/**
+	 * Remove an item of the given type from the cube of the given position, and return it
+	 * if it must be materialised.
+	 */
+	private InanimateObject removeItemAt(Vector position, Class<? extends InanimateObject> type, boolean materialise){
+		long key = CubeKey.pack(position.getCubeX(), position.getCubeY(), position.getCubeZ());
+		ItemPile pile = this.piles.get(key);
+		if (pile == null)
+			return null;
+		InanimateObject item = materialise ? pile.take(type) : pile.remove(type);
+		if (pile.isEmpty())
+			this.piles.remove(key);
+		if (item != null)
+			item.removeFromWorld();
+		return item;
+	}
+
+	/**
+	 * Drop the given item at the given position in this World.
+	 * @param item
+	 * 			The item to drop, which does not reference any World.
+	 * @param position
+	 * 			The position to drop the given item at.
+	 * @effect	The given item becomes a GameObject of this World at the given position.
+	 * 			| addGameObject(item) && item.setPosition(position)
+	 * @effect	If the given item does not have to fall, it comes to rest at once.
+	 * 			| if (!item.hasToFall())
+	 * 			| then putToRest(item)
+	 */
+	void dropItem(InanimateObject item, Vector position){
+		this.addGameObject(item);
+		item.setPosition(position);
+		if (item.getStatus() == Status.IDLE && !item.hasToFall())
+			this.putToRest(item);
+	}
+
+	/**
+	 * Variable referencing the GameObjects of this World that are advanced each time
+	 * the game time of this World is advanced.
+	 * 
+	 * @invar	Each GameObject of this World is either awake or a sleeping Unit.
+	 * @note	The set keeps the order in which the GameObjects were woken, so that every tick
+	 * 			advances them in the same order.
+	 */
+	private final Set<GameObject> awakeObjects = new LinkedHashSet<GameObject>();
+
+	/**
+	 * Variable referencing the pile of items lying still in each occupied cube of this World.
+	 * Items lying still are not GameObjects of this World: each pile registers the weights of
+	 * its items, and only creates an InanimateObject for an item when it is asked for, so that
+	 * items left by collapsing cubes cost no more than their weight until they are used.
+	 * Terrain changes only need to wake the items in the cube above the changed cube.
+	 * 
+	 * @invar	No cube is mapped to an empty pile.
+	 */
+	private final Map<Long, ItemPile> piles = new HashMap<>();
 
 
 	/**
@@ -781,71 +1682,82 @@ public class World {
 		setCubeType(x, y, z, 0);
 		List<int[]> collapsing = this.connectedToBorder.changeSolidToPassable(x, y, z);
 		for (int[] cube:collapsing){
-			toBeCollapsed.add(new Vector(cube[0],cube[1],cube[2]));
+			toBeCollapsed.add(CubeKey.of(cube[0],cube[1],cube[2]));
+			if (this.publishesSnapshots())
+				this.changedCubes.add(new Vector(cube[0],cube[1],cube[2]));
 		}
-		if (Math.random()<=0.25) {
-			if (value==1){
-				new Boulder(new Vector(x+World.CUBELENGTH/2, y+World.CUBELENGTH/2, z+World.CUBELENGTH/2), this);
-			}
-			else if (value == 2){
-				new Log(new Vector(x+World.CUBELENGTH/2, y+World.CUBELENGTH/2, z+World.CUBELENGTH/2), this);
-			}
+		if (this.getRandom().nextDouble()<=0.25)
+			this.leaveItem(x, y, z, value);
+	}
+
+	/**
+	 * Leave the item a collapsed cube of the given type turns into in that cube.
+	 * @param x
+	 * 			The x-coordinate of the collapsed cube.
+	 * @param y
+	 * 			The y-coordinate of the collapsed cube.
+	 * @param z
+	 * 			The z-coordinate of the collapsed cube.
+	 * @param type
+	 * 			The type of the cube before it collapsed.
+	 * @effect	If the cube was rock, a Boulder with a random weight is left in the centre of the cube.
+	 * 			If the cube was wood, a Log with a random weight is left there.
+	 * 			An item that has to fall is created as a GameObject of this World, any other item
+	 * 			is only counted in the item pile of the cube.
+	 */
+	private void leaveItem(int x, int y, int z, int type){
+		if (type != 1 && type != 2)
+			return;
+		Class<? extends InanimateObject> itemType = (type == 1) ? Boulder.class : Log.class;
+		if (z == 0 || this.isSolidGround(x, y, z-1))
+			this.getPileAt(x, y, z, true).add(itemType, this.getRandom().nextInt(41) + 10);
+		else {
+			Vector centre = new Vector(x+World.CUBELENGTH/2, y+World.CUBELENGTH/2, z+World.CUBELENGTH/2);
+			if (type == 1)
+				new Boulder(centre, this);
+			else
+				new Log(centre, this);
 		}
 	}
 
 	/**
 	 * Variable registering the cubes that need to be collapsed within at most 5 seconds of gametime.
 	 */
-	private Set<Vector> toBeCollapsed = new HashSet<>();
+	private final Set<CubeKey> toBeCollapsed = new LinkedHashSet<>();
 
 	/**
 	 * Return a set containing all cubes directly adjacent to the given position
 	 * that are not outside the gameworld.
 	 */
-	Set<Vector> getDirectlyAdjacentPositions(Vector position){
-		Set<Vector> result = new HashSet<>();
-		position = position.getCubePosition();
-		for (int x = -1; x <= 1; x++){
-			for (int y = -1; y <= 1; y++){
-				for(int z = -1; z <= 1; z++){
-					if(Math.abs(x)+Math.abs(y)+Math.abs(z) == 1){
-						Vector vector = position.add(new Vector(x,y,z));
-						if(isInsideWorld(vector))
-							result.add(vector);
-					}
-				}
-			}
-		}
+	Set<CubeKey> getDirectlyAdjacentPositions(Vector position){
+		Set<CubeKey> result = new LinkedHashSet<>();
+		CubeKey.forEachDirectNeighbour(position.getCubeX(), position.getCubeY(), position.getCubeZ(), (x, y, z) -> {
+			if (this.isInsideWorld(x, y, z))
+				result.add(CubeKey.of(x, y, z));
+		});
 		return result;
 	}
 
 	/**
 	 * Return a Set containing all cubes adjacent to the given position
+	 * that are not outside the gameworld.
 	 * @param position
 	 *			The position for which to get the adjacent positions.
 	 *
 	 */
-	Set<Vector> getAdjacentPositions(Vector position){
-		Set<Vector> result = new HashSet<>();
-		position = position.getCubePosition();
-		for (int x = -1; x <= 1; x++){
-			for (int y = -1; y <= 1; y++){
-				for(int z = -1; z <= 1; z++){
-					if(Math.abs(x)+Math.abs(y)+Math.abs(z) != 0){
-						Vector vector = position.add(new Vector(x,y,z));
-						if(isInsideWorld(vector))
-							result.add(vector);
-					}
-				}
-			}
-		}
+	Set<CubeKey> getAdjacentPositions(Vector position){
+		Set<CubeKey> result = new LinkedHashSet<>();
+		CubeKey.forEachNeighbour(position.getCubeX(), position.getCubeY(), position.getCubeZ(), (x, y, z) -> {
+			if (this.isInsideWorld(x, y, z))
+				result.add(CubeKey.of(x, y, z));
+		});
 		return result;
 	}
 
 	/**
-	 * Return a list containing all positions in this game World where a Unit can spawn.
+	 * Return a set containing all positions in this game World where a Unit can spawn.
 	 */
-	List<Vector> getSpawnablePositions(){
+	CubeSet getSpawnablePositions(){
 		return this.spawnablePositions;
 	}
 
@@ -866,34 +1778,44 @@ public class World {
 			return false;
 		if (!isInsideWorld(position))
 			return false;
-		if (isSolidGround(position.getCubeX(), position.getCubeY(), position.getCubeZ()))
+		return this.unitCanSpawnAt(position.getCubeX(), position.getCubeY(), position.getCubeZ());
+	}
+
+	/**
+	 * Check whether a Unit can spawn at the cube with the given cube coordinates.
+	 * @return	| result == unitCanSpawnAt(new Vector(x,y,z))
+	 */
+	boolean unitCanSpawnAt(int x, int y, int z){
+		if (!isInsideWorld(x, y, z))
+			return false;
+		if (isSolidGround(x, y, z))
 			return false;
-		return (position.getCubeZ() == 0) || (isSolidGround(position.getCubeX(), position.getCubeY(), position.getCubeZ()-1));
+		return (z == 0) || (isSolidGround(x, y, z-1));
 	}
 
 	/**
-	 * Add a position to the List of positions where a Unit can spawn.
+	 * Add a position to the set of positions where a Unit can spawn.
 	 * @param position
-	 * 			The position to be added to the list of spawnable positions.
+	 * 			The position to be added to the set of spawnable positions.
 	 * @pre		The cube below the Unit is either the lowest level or solid ground.
 	 * 			| (position.getCubeZ() == 0) || (isSolidGround(position.getCubeX(), position.getCubeY(), position.getCubeZ()))
-	 * @post	The given position has been added to the list of spawnable positions.
+	 * @post	The given position has been added to the set of spawnable positions.
 	 * 			| this.getSpawnablePositions().contains(position)
 	 */
-	private void addSpawnablePosition(Vector position){
-		assert (unitCanSpawnAt(position));
+	private void addSpawnablePosition(CubeKey position){
+		assert (unitCanSpawnAt(position.getX(), position.getY(), position.getZ()));
 		this.spawnablePositions.add(position);
 	}
 
 	/**
-	 * A List containing all positions in this game World where a Unit can stand.
+	 * A set containing all positions in this game World where a Unit can spawn.
 	 */
-	private List<Vector> spawnablePositions = new ArrayList<>();
+	private final CubeSet spawnablePositions = new CubeSet();
 
 	/**
-	 * Return a list containing all positions in this game World where a Unit can stand.
+	 * Return a set containing all positions in this game World where a Unit can stand.
 	 */
-	List<Vector> getStandablePositions(){
+	CubeSet getStandablePositions(){
 		return this.standablePositions;
 	}
 
@@ -914,15 +1836,7 @@ public class World {
 	public boolean unitCanStandAt(Vector position){
 		if (!isInsideWorld(position))
 			return false;
-		if (isSolidGround(position.getCubeX(), position.getCubeY(), position.getCubeZ()))
-			return false;
-		if (position.getCubeZ() == 0)
-			return true;
-		for (Vector vector:this.getDirectlyAdjacentPositions(position)){
-			if (isSolidGround(vector.getCubeX(), vector.getCubeY(), vector.getCubeZ()))
-				return true;
-		}
-		return false;
+		return this.unitCanStandAt(position.getCubeX(), position.getCubeY(), position.getCubeZ());
 	}
 
 	/**
@@ -936,85 +1850,86 @@ public class World {
 	 * @return unitCanStandAt(new Vector(x,y,z))
 	 */
 	boolean unitCanStandAt(int x, int y, int z){
-		return unitCanStandAt(new Vector(x,y,z));
+		if (!isInsideWorld(x, y, z))
+			return false;
+		if (isSolidGround(x, y, z))
+			return false;
+		return (z == 0) || hasSolidNeighbour(x, y, z);
 	}
 
 	/**
-	 * Add a position to the List of positions where a Unit can stand.
+	 * Add a position to the set of positions where a Unit can stand.
 	 * @param position
-	 * 			The position to be added to the list of standable positions.
+	 * 			The position to be added to the set of standable positions.
 	 * @pre		A Unit must be able to stand at the given position.
 	 * 			| unitCanStandAt(position)
-	 * @post	The given position has been added to the list of standable positions.
+	 * @post	The given position has been added to the set of standable positions.
 	 * 			| this.getStandablePositions().contains(position)
 	 */
-	private void addStandablePosition(Vector position){
-		assert (unitCanStandAt(position));
+	private void addStandablePosition(CubeKey position){
+		assert (unitCanStandAt(position.getX(), position.getY(), position.getZ()));
 		this.standablePositions.add(position);
 	}
 
 	/**
-	 * A List containing all positions in this game World where a Unit can stand.
+	 * A set containing all positions in this game World where a Unit can stand.
 	 */
-	private List<Vector> standablePositions = new ArrayList<>();
+	private final CubeSet standablePositions = new CubeSet();
 	
 	/**
-	 * Return the cubes that are directly adjacent to the given cube and are solid
-	 * @param X
-	 * 			The x-position of the cube to be checked
-	 * @param Y
-	 * 			The y-position of the cube to be checked
-	 * @param Z
-	 * 			The z-position of the cube to be checked
-	 * @return A Set of Vectors containing all directly adjacent solid cubes
+	 * TODO: documentatie
+	 * @param coll
+	 * @param unit
+	 * @return
 	 */
-	Set <Vector>  CheckadjacentValidPositions(int X, int Y, int Z) {
-		Set <Vector>  validpositions = new HashSet<>() ;
-		for(int x=-1; x<=1;x++){
-			if (x==0) {
-
-			}
-			else {
-				if (isInsideWorld(new Vector(x+X, Y, Z))&&isSolidGround(x+X, Y, Z)) {
-					validpositions.add(new Vector(x+X, Y, Z));
-				}
-			}
-
-		}
-
-		for(int y=-1;y<=1;y++){
-			if (y==0) {
-
-			}
-			else {
-				if (isInsideWorld(new Vector(X, Y+y, Z))&&isSolidGround(X, Y+y, Z)) {
-					validpositions.add(new Vector(X, Y+y, Z));
-				}
-
-			}
-		}
-
-		for(int z=-1; z<=1;z++){
-			if (z==0) {
-
+	public static <T extends GameObject> T getNearestObject(Collection<T> coll, Unit unit){
+		return searchNearest(unit, cube -> {
+			for (T object : coll){
+				if (object != unit)
+					if (object.getPosition().getCubePosition().equals(cube))
+						return object;
 			}
-			else {
-				if (isInsideWorld(new Vector(X, Y, Z+z))&&isSolidGround(X, Y, Z+z)) {
-					validpositions.add(new Vector(X, Y, Z+z));
-				}
+			return null;
+		});
+	}
 
-			}
-		}
-		return validpositions;
+	/**
+	 * Return the Unit of another Faction that can be reached by the given Unit along the shortest path.
+	 * @param unit
+	 * 			The Unit looking for an enemy.
+	 * @return	The same Unit as getNearestObject would return for the collection of all Units of
+	 * 			other Factions in the World of the given Unit.
+	 * @throws	NoSuchElementException
+	 * 			No Unit of another Faction can be reached by the given Unit.
+	 * @note	Each visited cube is looked up in the spatial index of the other Factions,
+	 * 			instead of comparing it to the position of every Unit in the World.
+	 */
+	public static Unit getNearestEnemy(Unit unit) throws NoSuchElementException {
+		List<Faction> enemyFactions = new ArrayList<>();
+		for (Faction faction : unit.getWorld().getActiveFactions())
+			if (faction != unit.getFaction())
+				enemyFactions.add(faction);
+		if (enemyFactions.isEmpty())
+			throw new NoSuchElementException();
+		return searchNearest(unit, cube -> {
+			for (Faction faction : enemyFactions)
+				for (Unit other : faction.getUnitsInCube(cube.getCubeX(), cube.getCubeY(), cube.getCubeZ()))
+					return other;
+			return null;
+		});
 	}
-	
+
 	/**
-	 * TODO: documentatie
-	 * @param coll
+	 * Return the first object found by the given lookup while visiting the cubes reachable by
+	 * the given Unit in order of increasing path length.
 	 * @param unit
-	 * @return
+	 * 			The Unit from whose position the search starts.
+	 * @param objectAt
+	 * 			A function returning an object of interest in the given cube, or null if there is none.
+	 * @throws	NoSuchElementException
+	 * 			No reachable cube contains an object of interest.
 	 */
-	public static <T extends GameObject> T getNearestObject(Collection<T> coll, Unit unit){
+	private static <T> T searchNearest(Unit unit, Function<Vector, T> objectAt) throws NoSuchElementException {
 		Heap<Node> open = new Heap<>();
 		List<Node> closed = new ArrayList<>();
 		Node start = new Node(unit.getPosition());
@@ -1022,11 +1937,9 @@ public class World {
 		while (open.size() > 0){
 			Node current = open.pop();
 			closed.add(current);
-			for (T object : coll){
-				if (object != unit)
-					if (object.getPosition().getCubePosition().equals(current.getCubeCoordinates()))
-						return object;
-			}
+			T found = objectAt.apply(current.getCubeCoordinates());
+			if (found != null)
+				return found;
 			for (Node neighbour:current.getNeighbouringNodes()){
 				if (!unit.getWorld().unitCanStandAt(neighbour.getCubeCoordinates()) ||
 						closed.contains(neighbour))
@@ -0,0 +1,295 @@
+package hillbillies.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import be.kuleuven.cs.som.annotate.Value;
+
+/**
+ * A class of snapshots, recording everything needed to render a World at the end of a step.
+ * Snapshots cannot change after they have been taken, so that they can be read by any thread
+ * while the World they were taken from is being advanced.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ */
+@Value
+public class WorldSnapshot {
+
+	/**
+	 * Initialize this new snapshot with the current state of the given World.
+	 * @param world
+	 * 			The World to take this new snapshot of.
+	 * @param changedCubes
+	 * 			The cubes of the given World whose type or connection to the borders has changed
+	 * 			since the previous snapshot.
+	 * @post	The game time of this new snapshot is the game time of the given World.
+	 * @post	This new snapshot records the state of every Unit, Boulder and Log of the given World.
+	 * @post	The changed cubes of this new snapshot are the given cubes.
+	 * @post	This new snapshot records the type of each of the given cubes, and whether it is
+	 * 			solid and connected to the borders of the given World.
+	 */
+	WorldSnapshot(World world, List<Vector> changedCubes){
+		this.gameTime = world.getGameTime();
+		Map<Unit, UnitState> units = new LinkedHashMap<>();
+		for (Unit unit:world.getUnits())
+			units.put(unit, new UnitState(unit));
+		this.units = Collections.unmodifiableMap(units);
+		this.boulders = Collections.unmodifiableMap(positionsOf(world.GetAllBoulders()));
+		this.logs = Collections.unmodifiableMap(positionsOf(world.GetAllLogs()));
+		this.changedCubes = Collections.unmodifiableList(changedCubes);
+		for (Vector cube:changedCubes){
+			this.cubeTypes.put(cube, world.getCubeType(cube));
+			if (world.isSolidGround(cube) && world.isSolidConnectedToBorder(cube))
+				this.connectedCubes.add(cube);
+		}
+	}
+
+	/**
+	 * Return a map from each of the given GameObjects to its current position.
+	 */
+	private static <T extends GameObject> Map<T, Vector> positionsOf(Set<T> objects){
+		Map<T, Vector> positions = new LinkedHashMap<>();
+		for (T object:objects)
+			positions.put(object, object.getPosition());
+		return positions;
+	}
+
+	/**
+	 * Return the game time of the World at the moment this snapshot was taken.
+	 */
+	@Basic @Immutable
+	public double getGameTime(){
+		return this.gameTime;
+	}
+
+	/**
+	 * Variable registering the game time of this snapshot.
+	 */
+	private final double gameTime;
+
+	/**
+	 * Return the Units of the World at the moment this snapshot was taken.
+	 */
+	@Immutable
+	public Set<Unit> getUnits(){
+		return this.units.keySet();
+	}
+
+	/**
+	 * Return the state of the given Unit at the moment this snapshot was taken.
+	 * @param unit
+	 * 			The Unit to return the state of.
+	 * @return	The recorded state of the given Unit, or null if the given Unit was
+	 * 			not part of the World at that moment.
+	 */
+	public UnitState getState(Unit unit){
+		return this.units.get(unit);
+	}
+
+	/**
+	 * Variable referencing the state of each Unit of this snapshot.
+	 */
+	private final Map<Unit, UnitState> units;
+
+	/**
+	 * Return a map from each Boulder of the World at the moment this snapshot was taken
+	 * to its position at that moment.
+	 */
+	@Immutable
+	public Map<Boulder, Vector> getBoulders(){
+		return this.boulders;
+	}
+
+	/**
+	 * Variable referencing the position of each Boulder of this snapshot.
+	 */
+	private final Map<Boulder, Vector> boulders;
+
+	/**
+	 * Return a map from each Log of the World at the moment this snapshot was taken
+	 * to its position at that moment.
+	 */
+	@Immutable
+	public Map<Log, Vector> getLogs(){
+		return this.logs;
+	}
+
+	/**
+	 * Variable referencing the position of each Log of this snapshot.
+	 */
+	private final Map<Log, Vector> logs;
+
+	/**
+	 * Return the cubes whose type or connection to the borders has changed since the previous
+	 * snapshot of the same World, in the order in which they have first changed.
+	 */
+	@Immutable
+	public List<Vector> getChangedCubes(){
+		return this.changedCubes;
+	}
+
+	/**
+	 * Variable referencing the changed cubes of this snapshot.
+	 */
+	private final List<Vector> changedCubes;
+
+	/**
+	 * Return the type of the given changed cube at the moment this snapshot was taken.
+	 * @param cube
+	 * 			The cube to return the type of.
+	 * @throws IllegalArgumentException
+	 * 			The given cube is not one of the changed cubes of this snapshot.
+	 * 			| !getChangedCubes().contains(cube)
+	 */
+	public int getCubeType(Vector cube) throws IllegalArgumentException {
+		Integer type = this.cubeTypes.get(cube);
+		if (type == null)
+			throw new IllegalArgumentException();
+		return type;
+	}
+
+	/**
+	 * Variable referencing the type of each changed cube of this snapshot.
+	 */
+	private final Map<Vector, Integer> cubeTypes = new HashMap<>();
+
+	/**
+	 * Check whether the given changed cube was solid and connected to the borders of the World
+	 * at the moment this snapshot was taken.
+	 * @param cube
+	 * 			The cube to check.
+	 * @throws IllegalArgumentException
+	 * 			The given cube is not one of the changed cubes of this snapshot.
+	 * 			| !getChangedCubes().contains(cube)
+	 */
+	public boolean isSolidConnectedToBorder(Vector cube) throws IllegalArgumentException {
+		if (!this.cubeTypes.containsKey(cube))
+			throw new IllegalArgumentException();
+		return this.connectedCubes.contains(cube);
+	}
+
+	/**
+	 * Variable referencing the changed cubes of this snapshot that are solid and connected to the borders.
+	 */
+	private final Set<Vector> connectedCubes = new HashSet<>();
+
+	/**
+	 * A class recording the state of a single Unit at the moment a snapshot was taken.
+	 */
+	@Value
+	public static class UnitState {
+
+		/**
+		 * Initialize this new state with the current state of the given Unit.
+		 */
+		private UnitState(Unit unit){
+			this.position = unit.getPosition();
+			this.orientation = unit.getOrientation();
+			this.status = unit.getStatus();
+			this.sprinting = unit.getSprinting();
+			this.carryingLog = unit.isCarryingLog();
+			this.carryingBoulder = unit.isCarryingBoulder();
+			this.hitpoints = unit.getHitpoints();
+			this.stamina = unit.getStamina();
+			this.faction = unit.getFaction();
+		}
+
+		/**
+		 * Return the recorded position of the Unit.
+		 */
+		@Basic @Immutable
+		public Vector getPosition(){
+			return this.position;
+		}
+
+		private final Vector position;
+
+		/**
+		 * Return the recorded orientation of the Unit.
+		 */
+		@Basic @Immutable
+		public double getOrientation(){
+			return this.orientation;
+		}
+
+		private final double orientation;
+
+		/**
+		 * Return the recorded status of the Unit.
+		 */
+		@Basic @Immutable
+		public Status getStatus(){
+			return this.status;
+		}
+
+		private final Status status;
+
+		/**
+		 * Return whether the Unit was sprinting.
+		 */
+		@Basic @Immutable
+		public boolean isSprinting(){
+			return this.sprinting;
+		}
+
+		private final boolean sprinting;
+
+		/**
+		 * Return whether the Unit was carrying a Log.
+		 */
+		@Basic @Immutable
+		public boolean isCarryingLog(){
+			return this.carryingLog;
+		}
+
+		private final boolean carryingLog;
+
+		/**
+		 * Return whether the Unit was carrying a Boulder.
+		 */
+		@Basic @Immutable
+		public boolean isCarryingBoulder(){
+			return this.carryingBoulder;
+		}
+
+		private final boolean carryingBoulder;
+
+		/**
+		 * Return the recorded hitpoints of the Unit.
+		 */
+		@Basic @Immutable
+		public int getHitpoints(){
+			return this.hitpoints;
+		}
+
+		private final int hitpoints;
+
+		/**
+		 * Return the recorded stamina of the Unit.
+		 */
+		@Basic @Immutable
+		public int getStamina(){
+			return this.stamina;
+		}
+
+		private final int stamina;
+
+		/**
+		 * Return the Faction of the Unit.
+		 */
+		@Basic @Immutable
+		public Faction getFaction(){
+			return this.faction;
+		}
+
+		private final Faction faction;
+	}
+}
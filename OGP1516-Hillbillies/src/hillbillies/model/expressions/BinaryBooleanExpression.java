@@ -2,7 +2,6 @@ package hillbillies.model.expressions;
 
 import java.util.Set;
 
-import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
 public abstract class BinaryBooleanExpression extends Expression implements IBooleanExpression {
@@ -28,16 +27,14 @@ public abstract class BinaryBooleanExpression extends Expression implements IBoo
 	
 	private final IBooleanExpression rightExpression;
 	
-	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		this.leftExpression.addToTask(task);
-		this.rightExpression.addToTask(task);
-	}
-	
 	public abstract BinaryBooleanExpression clone();
 	
 	public boolean isWellFormed(Set<String> variables){
 		return (this.leftExpression.isWellFormed(variables) && this.rightExpression.isWellFormed(variables));
 	}
-}
+	
+	@Override
+	public int getNbNodes() {
+		return 1 + this.leftExpression.getNbNodes() + this.rightExpression.getNbNodes();
+	}
+	}
@@ -2,6 +2,8 @@ package hillbillies.model.expressions;
 
 import java.util.NoSuchElementException;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Vector;
 import hillbillies.model.World;
 import hillbillies.part3.programs.SourceLocation;
@@ -12,12 +14,35 @@ public class BoulderPositionExpression extends Expression implements IPositionEx
 		super(sourceLocation);
 	}
 
+	private BoulderPositionExpression(SourceLocation sourceLocation, int node) throws IllegalArgumentException {
+		super(sourceLocation, node);
+	}
+
 	@Override
-	public Vector evaluate() throws NoSuchElementException {
-		if (this.getUnit().getWorld().GetAllBoulders().size() == 0)
+	public Vector evaluate(Task task) throws NoSuchElementException {
+		Vector memoised = (Vector) this.getMemoisedValue(task);
+		if (memoised != null)
+			return memoised;
+		return this.memoise(task, this.search(task));
+	}
+
+	/**
+	 * Return the position of the boulder nearest to the Unit executing this expression.
+	 */
+	private Vector search(Task task) throws NoSuchElementException {
+		if (task.getUnit().getWorld().GetAllBoulders().size() == 0)
 			throw new NoSuchElementException();
-		return World.getNearestObject(this.getUnit().getWorld().GetAllBoulders(), getUnit()).getPosition();
+		return World.getNearestObject(task.getUnit().getWorld().GetAllBoulders(), task.getUnit()).getPosition();
 	}
+
+	/**
+	 * Return a copy of this expression, memoising its value under a new node of the given layout.
+	 */
+	@Override
+	public BoulderPositionExpression layOut(FrameLayout layout) {
+		return new BoulderPositionExpression(getSourceLocation(), layout.registerNode());
+	}
+
 	
 
 	@Override
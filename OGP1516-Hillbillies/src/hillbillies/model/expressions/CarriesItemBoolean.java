@@ -1,5 +1,7 @@
 package hillbillies.model.expressions;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Unit;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -11,8 +13,8 @@ public class CarriesItemBoolean extends UnitBoolean {
 	}
 
 	@Override
-	public Boolean evaluate() {
-		Unit unit = this.getTarget().evaluate();
+	public Boolean evaluate(Task task) {
+		Unit unit = this.getTarget().evaluate(task);
 		return unit.isCarryingLog() || unit.isCarryingBoulder();
 	}
 	
@@ -20,7 +22,15 @@ public class CarriesItemBoolean extends UnitBoolean {
 	public CarriesItemBoolean clone(){
 		return new CarriesItemBoolean(getTarget().clone(), getSourceLocation());
 	}
-	
-	
 
+	/**
+	 * Return this expression, with its Unit laid out in the given layout.
+	 */
+	@Override
+	public IBooleanExpression layOut(FrameLayout layout) {
+		IUnitExpression target = this.getTarget().layOut(layout);
+		if (target == this.getTarget())
+			return this;
+		return new CarriesItemBoolean(target, getSourceLocation());
+	}
 }
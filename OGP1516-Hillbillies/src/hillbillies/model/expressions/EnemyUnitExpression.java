@@ -1,9 +1,9 @@
 package hillbillies.model.expressions;
 
-import java.util.HashSet;
 import java.util.NoSuchElementException;
-import java.util.Set;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Unit;
 import hillbillies.model.World;
 import hillbillies.part3.programs.SourceLocation;
@@ -14,15 +14,33 @@ public class EnemyUnitExpression extends Expression implements IUnitExpression {
 		super(sourceLocation);
 	}
 
+	private EnemyUnitExpression(SourceLocation sourceLocation, int node) throws IllegalArgumentException {
+		super(sourceLocation, node);
+	}
+
+	@Override
+	public Unit evaluate(Task task) throws NoSuchElementException {
+		Unit memoised = (Unit) this.getMemoisedValue(task);
+		if (memoised != null)
+			return memoised;
+		return this.memoise(task, this.search(task));
+	}
+
+	/**
+	 * Return the enemy Unit nearest to the Unit executing this expression.
+	 */
+	private Unit search(Task task) throws NoSuchElementException {
+		return World.getNearestEnemy(task.getUnit());
+	}
+
+	/**
+	 * Return a copy of this expression, memoising its value under a new node of the given layout.
+	 */
 	@Override
-	public Unit evaluate() throws NoSuchElementException {
-		Set<Unit> units = new HashSet<>();
-		units.addAll(this.getUnit().getWorld().getUnits());
-		units.removeIf(u -> u.getFaction() == this.getUnit().getFaction());
-		if (units.size() == 0)
-			throw new NoSuchElementException();
-		return World.getNearestObject(units, getUnit());
+	public EnemyUnitExpression layOut(FrameLayout layout) {
+		return new EnemyUnitExpression(getSourceLocation(), layout.registerNode());
 	}
+
 	
 	@Override
 	public EnemyUnitExpression clone(){
@@ -1,9 +1,6 @@
 package hillbillies.model.expressions;
 
-import be.kuleuven.cs.som.annotate.Basic;
-import be.kuleuven.cs.som.annotate.Raw;
 import hillbillies.model.Task;
-import hillbillies.model.Unit;
 import hillbillies.part3.programs.SourceLocation;
 
 /**
@@ -15,30 +12,49 @@ import hillbillies.part3.programs.SourceLocation;
 public abstract class Expression implements IExpression {
 	
 	public Expression(SourceLocation sourceLocation) throws IllegalArgumentException{
+		this(sourceLocation, -1);
+	}
+	
+	/**
+	 * Initialize this new expression at the given location, memoising its value under the given node.
+	 * @param node
+	 * 			The index of the node of this expression in the evaluation contexts of the Tasks
+	 * 			executing it, or -1 if its value is not memoised.
+	 */
+	protected Expression(SourceLocation sourceLocation, int node) throws IllegalArgumentException{
 		if (sourceLocation == null)
 			throw new IllegalArgumentException();
 		this.sourceLocation = sourceLocation;
+		this.node = node;
 	}
 	
-	public void addToTask(Task task) {
-		this.setTask(task);
-	}
-	
-	@Basic @Raw
-	public Task getTask(){
-		return this.task;
+	/**
+	 * Return the value memoised for this expression in the current step of the given Task,
+	 * or null if there is none.
+	 * @note	Expressions that search the World are given a node when they are laid out, since
+	 * 			evaluating them costs far more than looking up their memoised value. Expressions
+	 * 			that have not been laid out are never memoised.
+	 */
+	protected Object getMemoisedValue(Task task){
+		if (this.node < 0)
+			return null;
+		return task.getEvaluationContext().getValue(this.node);
 	}
 	
-	@Raw
-	public void setTask(Task task){
-		this.task = task;
+	/**
+	 * Memoise the given value for this expression in the current step of the given Task, and return it.
+	 */
+	protected <T> T memoise(Task task, T value){
+		if (this.node >= 0)
+			task.getEvaluationContext().setValue(this.node, value);
+		return value;
 	}
-
-	private Task task;	
 	
-	protected Unit getUnit(){
-		return this.getTask().getUnit();
-	}
+	/**
+	 * Variable registering the index of the node of this expression in the evaluation context
+	 * of the Tasks executing it, or -1 if this expression is not memoised.
+	 */
+	private final int node;
 	
 	protected SourceLocation getSourceLocation(){
 		return this.sourceLocation;
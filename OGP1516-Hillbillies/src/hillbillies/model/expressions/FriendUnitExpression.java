@@ -3,6 +3,8 @@ package hillbillies.model.expressions;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Unit;
 import hillbillies.model.World;
 import hillbillies.part3.programs.SourceLocation;
@@ -13,15 +15,38 @@ public class FriendUnitExpression extends Expression implements IUnitExpression
 		super(sourceLocation);
 	}
 
+	private FriendUnitExpression(SourceLocation sourceLocation, int node) throws IllegalArgumentException {
+		super(sourceLocation, node);
+	}
+
 	@Override
-	public Unit evaluate() throws NoSuchElementException {
-		Set<Unit> units = this.getUnit().getWorld().getUnits();
-		units.remove(getUnit());
-		units.removeIf(u -> u.getFaction() != this.getUnit().getFaction());
+	public Unit evaluate(Task task) throws NoSuchElementException {
+		Unit memoised = (Unit) this.getMemoisedValue(task);
+		if (memoised != null)
+			return memoised;
+		return this.memoise(task, this.search(task));
+	}
+
+	/**
+	 * Return the friendly Unit nearest to the Unit executing this expression.
+	 */
+	private Unit search(Task task) throws NoSuchElementException {
+		Set<Unit> units = task.getUnit().getWorld().getUnits();
+		units.remove(task.getUnit());
+		units.removeIf(u -> u.getFaction() != task.getUnit().getFaction());
 		if (units.size() == 0)
 			throw new NoSuchElementException();
-		return World.getNearestObject(units, getUnit());
+		return World.getNearestObject(units, task.getUnit());
 	}
+
+	/**
+	 * Return a copy of this expression, memoising its value under a new node of the given layout.
+	 */
+	@Override
+	public FriendUnitExpression layOut(FrameLayout layout) {
+		return new FriendUnitExpression(getSourceLocation(), layout.registerNode());
+	}
+
 	
 	@Override
 	public FriendUnitExpression clone(){
@@ -1,5 +1,6 @@
 package hillbillies.model.expressions;
 
+import hillbillies.model.Task;
 import hillbillies.model.Vector;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -10,8 +11,8 @@ public class HerePositionExpression extends Expression implements IPositionExpre
 	}
 
 	@Override
-	public Vector evaluate() {
-		return this.getUnit().getPosition();
+	public Vector evaluate(Task task) {
+		return task.getUnit().getPosition();
 	}
 	
 	@Override
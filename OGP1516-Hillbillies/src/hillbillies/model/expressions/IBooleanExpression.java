@@ -1,9 +1,27 @@
 package hillbillies.model.expressions;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
+
 public interface IBooleanExpression extends IExpression{
 	
-	public Boolean evaluate();
-		
+	public Boolean evaluate(Task task);
+	
 	public IBooleanExpression clone();
+	
+	@Override
+	public default IBooleanExpression layOut(FrameLayout layout) {
+		return this;
+	}
+	
+	/**
+	 * Return a boolean expression evaluating to the same value as this one, in which the
+	 * subexpressions built from true and false only are replaced by their value.
+	 * @note	A subexpression is only dropped if it is not evaluated by this expression either,
+	 * 			so that folding never hides an evaluation that fails.
+	 */
+	public default IBooleanExpression fold() {
+		return this;
+	}
 
 }
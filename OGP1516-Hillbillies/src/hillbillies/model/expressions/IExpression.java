@@ -2,17 +2,40 @@ package hillbillies.model.expressions;
 
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Task;
 
 public interface IExpression {
 	
-	public void addToTask(Task task);
+	/**
+	 * Return the value of this expression for the given Task, which provides the Unit
+	 * executing it, its selected position and the values of its variables.
+	 */
+	public Object evaluate(Task task);
 	
-	public Object evaluate();
+	/**
+	 * Return this expression, with the execution state of this expression and its subexpressions
+	 * laid out in the given layout.
+	 * @return	This expression if neither it nor any of its subexpressions keeps execution state.
+	 * 			Otherwise a new expression, registering the slots and nodes of the given layout.
+	 * @note	This is done once, when the program containing this expression is compiled.
+	 * 			This expression itself is left unchanged.
+	 */
+	public default IExpression layOut(FrameLayout layout) {
+		return this;
+	}
 	
 	public IExpression clone();
 	
 	public default boolean isWellFormed(Set<String> variables) {
 		return true;
 	}
+	
+	/**
+	 * Return the number of nodes of this expression, counting this expression
+	 * and each of its subexpressions.
+	 */
+	public default int getNbNodes() {
+		return 1;
+	}
 }
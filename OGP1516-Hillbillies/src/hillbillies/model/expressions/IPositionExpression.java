@@ -2,11 +2,18 @@ package hillbillies.model.expressions;
 
 import java.util.NoSuchElementException;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Vector;
 
 public interface IPositionExpression extends IExpression {
 	
-	public Vector evaluate() throws NoSuchElementException;
-		
+	public Vector evaluate(Task task) throws NoSuchElementException;
+	
 	public IPositionExpression clone();
+	
+	@Override
+	public default IPositionExpression layOut(FrameLayout layout) {
+		return this;
+	}
 }
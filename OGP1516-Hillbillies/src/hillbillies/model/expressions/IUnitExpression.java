@@ -2,11 +2,18 @@ package hillbillies.model.expressions;
 
 import java.util.NoSuchElementException;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Unit;
 
 public interface IUnitExpression extends IExpression {
 
-	public Unit evaluate() throws NoSuchElementException;
-		
+	public Unit evaluate(Task task) throws NoSuchElementException;
+	
 	public IUnitExpression clone();
+	
+	@Override
+	public default IUnitExpression layOut(FrameLayout layout) {
+		return this;
+	}
 }
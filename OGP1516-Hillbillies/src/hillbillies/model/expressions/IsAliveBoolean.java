@@ -1,5 +1,7 @@
 package hillbillies.model.expressions;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
 public class IsAliveBoolean extends UnitBoolean {
@@ -10,12 +12,23 @@ public class IsAliveBoolean extends UnitBoolean {
 	}
 
 	@Override
-	public Boolean evaluate() {
-		return (!this.getTarget().evaluate().isTerminated());
+	public Boolean evaluate(Task task) {
+		return (!this.getTarget().evaluate(task).isTerminated());
 	}
 	
 	@Override
 	public IsAliveBoolean clone(){
 		return new IsAliveBoolean(getTarget().clone(), getSourceLocation());
 	}
+
+	/**
+	 * Return this expression, with its Unit laid out in the given layout.
+	 */
+	@Override
+	public IBooleanExpression layOut(FrameLayout layout) {
+		IUnitExpression target = this.getTarget().layOut(layout);
+		if (target == this.getTarget())
+			return this;
+		return new IsAliveBoolean(target, getSourceLocation());
+	}
 }
@@ -1,5 +1,7 @@
 package hillbillies.model.expressions;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Unit;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -10,16 +12,27 @@ public class IsEnemyBoolean extends UnitBoolean {
 	}
 
 	@Override
-	public Boolean evaluate() {
-		Unit target = this.getTarget().evaluate();
-		if (target.getWorld() != this.getUnit().getWorld())
+	public Boolean evaluate(Task task) {
+		Unit target = this.getTarget().evaluate(task);
+		if (target.getWorld() != task.getUnit().getWorld())
 			return false;
 		else
-			return !this.getUnit().getFaction().hasAsUnit(target);
+			return !task.getUnit().getFaction().hasAsUnit(target);
 	}
 	
 	@Override
 	public IsEnemyBoolean clone(){
 		return new IsEnemyBoolean(getTarget().clone(), getSourceLocation());
 	}
+
+	/**
+	 * Return this expression, with its Unit laid out in the given layout.
+	 */
+	@Override
+	public IBooleanExpression layOut(FrameLayout layout) {
+		IUnitExpression target = this.getTarget().layOut(layout);
+		if (target == this.getTarget())
+			return this;
+		return new IsEnemyBoolean(target, getSourceLocation());
+	}
 }
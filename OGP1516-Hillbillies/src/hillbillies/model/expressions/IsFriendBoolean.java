@@ -1,5 +1,7 @@
 package hillbillies.model.expressions;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
 public class IsFriendBoolean extends UnitBoolean {
@@ -9,8 +11,8 @@ public class IsFriendBoolean extends UnitBoolean {
 	}
 
 	@Override
-	public Boolean evaluate() {
-		return this.getUnit().getFaction().hasAsUnit(this.getTarget().evaluate());
+	public Boolean evaluate(Task task) {
+		return task.getUnit().getFaction().hasAsUnit(this.getTarget().evaluate(task));
 	}
 	
 	@Override
@@ -18,4 +20,14 @@ public class IsFriendBoolean extends UnitBoolean {
 		return new IsFriendBoolean(getTarget().clone(), getSourceLocation());
 	}
 
+	/**
+	 * Return this expression, with its Unit laid out in the given layout.
+	 */
+	@Override
+	public IBooleanExpression layOut(FrameLayout layout) {
+		IUnitExpression target = this.getTarget().layOut(layout);
+		if (target == this.getTarget())
+			return this;
+		return new IsFriendBoolean(target, getSourceLocation());
+	}
 }
@@ -1,5 +1,7 @@
 package hillbillies.model.expressions;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
 public class IsPassableBoolean extends PositionBoolean {
@@ -10,8 +12,8 @@ public class IsPassableBoolean extends PositionBoolean {
 	}
 
 	@Override
-	public Boolean evaluate() {
-		return this.getUnit().getWorld().isSolidGround(this.getTarget().evaluate());
+	public Boolean evaluate(Task task) {
+		return task.getUnit().getWorld().isSolidGround(this.getTarget().evaluate(task));
 	}
 	
 	@Override
@@ -19,4 +21,14 @@ public class IsPassableBoolean extends PositionBoolean {
 		return new IsPassableBoolean(getTarget().clone(), getSourceLocation());
 	}
 
+	/**
+	 * Return this expression, with its position laid out in the given layout.
+	 */
+	@Override
+	public IBooleanExpression layOut(FrameLayout layout) {
+		IPositionExpression target = this.getTarget().layOut(layout);
+		if (target == this.getTarget())
+			return this;
+		return new IsPassableBoolean(target, getSourceLocation());
+	}
 }
@@ -2,6 +2,7 @@ package hillbillies.model.expressions;
 
 import java.util.NoSuchElementException;
 
+import hillbillies.model.Task;
 import hillbillies.model.Vector;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -13,8 +14,8 @@ public class LiteralPositionExpression extends Expression implements IPositionEx
 	}
 
 	@Override
-	public Vector evaluate() throws NoSuchElementException {
-		if (!this.getUnit().getWorld().isInsideWorld(position))
+	public Vector evaluate(Task task) throws NoSuchElementException {
+		if (!task.getUnit().getWorld().isInsideWorld(position))
 			throw new NoSuchElementException();
 		else
 			return this.position;
@@ -2,6 +2,8 @@ package hillbillies.model.expressions;
 
 import java.util.NoSuchElementException;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Vector;
 import hillbillies.model.World;
 import hillbillies.part3.programs.SourceLocation;
@@ -12,11 +14,33 @@ public class LogPositionExpression extends Expression implements IPositionExpres
 		super(sourceLocation);
 	}
 
+	private LogPositionExpression(SourceLocation sourceLocation, int node) throws IllegalArgumentException {
+		super(sourceLocation, node);
+	}
+
 	@Override
-	public Vector evaluate() throws NoSuchElementException {
-		if (this.getUnit().getWorld().GetAllLogs().size() == 0)
+	public Vector evaluate(Task task) throws NoSuchElementException {
+		Vector memoised = (Vector) this.getMemoisedValue(task);
+		if (memoised != null)
+			return memoised;
+		return this.memoise(task, this.search(task));
+	}
+
+	/**
+	 * Return the position of the log nearest to the Unit executing this expression.
+	 */
+	private Vector search(Task task) throws NoSuchElementException {
+		if (task.getUnit().getWorld().GetAllLogs().size() == 0)
 			throw new NoSuchElementException();
-		return World.getNearestObject(this.getUnit().getWorld().GetAllLogs(), getUnit()).getPosition();
+		return World.getNearestObject(task.getUnit().getWorld().GetAllLogs(), task.getUnit()).getPosition();
+	}
+
+	/**
+	 * Return a copy of this expression, memoising its value under a new node of the given layout.
+	 */
+	@Override
+	public LogPositionExpression layOut(FrameLayout layout) {
+		return new LogPositionExpression(getSourceLocation(), layout.registerNode());
 	}
 
 	@Override
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Task;
 import hillbillies.model.Vector;
 import hillbillies.part3.programs.SourceLocation;
@@ -20,8 +21,24 @@ public class NextToPositionExpression extends Expression implements IPositionExp
 		this.target = position;
 	}
 
+	private NextToPositionExpression(IPositionExpression position, SourceLocation sourceLocation, int node) 
+			throws IllegalArgumentException {
+		super(sourceLocation, node);
+		this.target = position;
+	}
+
 	@Override
-	public Vector evaluate() throws NoSuchElementException {
+	public Vector evaluate(Task task) throws NoSuchElementException {
+		Vector memoised = (Vector) this.getMemoisedValue(task);
+		if (memoised != null)
+			return memoised;
+		return this.memoise(task, this.search(task));
+	}
+
+	/**
+	 * Return a random position next to the target of this expression, at which the Unit executing it can stand.
+	 */
+	private Vector search(Task task) throws NoSuchElementException {
 		List<Integer> xPositions = new ArrayList<>();
 		xPositions.add(-1);xPositions.add(0);xPositions.add(1);
 		List<Integer> yPositions = new ArrayList<>();
@@ -29,12 +46,13 @@ public class NextToPositionExpression extends Expression implements IPositionExp
 		List<Integer> zPositions = new ArrayList<>();
 		zPositions.addAll(xPositions);
 		Collections.shuffle(xPositions);Collections.shuffle(yPositions);Collections.shuffle(zPositions);
+		Vector target = this.target.evaluate(task);
 		for (int x=0; x < xPositions.size();x++){
 			for (int y=0; y < yPositions.size();y++){
 				for (int z=0; z < zPositions.size();z++){
 					if (Math.abs(xPositions.get(x)) + Math.abs(yPositions.get(y)) + Math.abs(zPositions.get(z)) == 1){
-						Vector position = target.evaluate().add(new Vector(xPositions.get(x),yPositions.get(y),zPositions.get(z)));
-						if (this.getUnit().getWorld().unitCanStandAt(position))
+						Vector position = target.add(new Vector(xPositions.get(x),yPositions.get(y),zPositions.get(z)));
+						if (task.getUnit().getWorld().unitCanStandAt(position))
 							return position;
 					}
 				}
@@ -42,7 +60,7 @@ public class NextToPositionExpression extends Expression implements IPositionExp
 		}
 		throw new NoSuchElementException();
 	}
-	
+
 	private final IPositionExpression target;
 	
 	@Override
@@ -51,13 +69,22 @@ public class NextToPositionExpression extends Expression implements IPositionExp
 	}
 	
 	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		this.target.addToTask(task);
+	public boolean isWellFormed(Set<String> variables) {
+		return this.target.isWellFormed(variables);
 	}
 
 	@Override
-	public boolean isWellFormed(Set<String> variables) {
-		return this.target.isWellFormed(variables);
+	public int getNbNodes() {
+		return 1 + this.target.getNbNodes();
+	}
+
+	/**
+	 * Return a copy of this expression with its target laid out in the given layout,
+	 * memoising its value under a new node of that layout.
+	 */
+	@Override
+	public NextToPositionExpression layOut(FrameLayout layout) {
+		int node = layout.registerNode();
+		return new NextToPositionExpression(this.target.layOut(layout), getSourceLocation(), node);
 	}
 }
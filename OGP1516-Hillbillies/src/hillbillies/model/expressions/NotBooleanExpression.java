@@ -2,6 +2,7 @@ package hillbillies.model.expressions;
 
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -16,8 +17,8 @@ public class NotBooleanExpression extends Expression implements IBooleanExpressi
 	}
 
 	@Override
-	public Boolean evaluate() {
-		return !(this.getTarget().evaluate());
+	public Boolean evaluate(Task task) {
+		return !(this.getTarget().evaluate(task));
 	}
 	
 	protected IBooleanExpression getTarget(){
@@ -26,19 +27,48 @@ public class NotBooleanExpression extends Expression implements IBooleanExpressi
 	
 	private final IBooleanExpression target;
 	
+	/**
+	 * Return the folded negation of the folded target of this expression.
+	 * @return	If the folded target is true or false, its opposite. If it is a negation itself,
+	 * 			the target of that negation. Otherwise the negation of the folded target.
+	 */
+	@Override
+	public IBooleanExpression fold() {
+		IBooleanExpression target = this.target.fold();
+		if (target instanceof TrueBooleanExpression)
+			return new FalseBooleanExpression(getSourceLocation());
+		if (target instanceof FalseBooleanExpression)
+			return new TrueBooleanExpression(getSourceLocation());
+		if (target instanceof NotBooleanExpression)
+			return ((NotBooleanExpression) target).getTarget();
+		if (target == this.target)
+			return this;
+		return new NotBooleanExpression(target, getSourceLocation());
+	}
+	
 	@Override
 	public NotBooleanExpression clone(){
 		return new NotBooleanExpression(getTarget().clone(), getSourceLocation());
 	}
 	
 	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		this.target.addToTask(task);
+	public boolean isWellFormed(Set<String> variables) {
+		return this.target.isWellFormed(variables);
+	}
+
+	@Override
+	public int getNbNodes() {
+		return 1 + this.target.getNbNodes();
 	}
 
+	/**
+	 * Return this expression, with its target laid out in the given layout.
+	 */
 	@Override
-	public boolean isWellFormed(Set<String> variables) {
-		return this.target.isWellFormed(variables);
+	public IBooleanExpression layOut(FrameLayout layout) {
+		IBooleanExpression target = this.getTarget().layOut(layout);
+		if (target == this.getTarget())
+			return this;
+		return new NotBooleanExpression(target, getSourceLocation());
 	}
 }
@@ -1,5 +1,7 @@
 package hillbillies.model.expressions;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
 public class OrBooleanExpression extends BinaryBooleanExpression {
@@ -10,8 +12,30 @@ public class OrBooleanExpression extends BinaryBooleanExpression {
 	}
 
 	@Override
-	public Boolean evaluate() {
-		return (this.getLeftExpression().evaluate()) || (this.getRightExpression().evaluate());
+	public Boolean evaluate(Task task) {
+		return (this.getLeftExpression().evaluate(task)) || (this.getRightExpression().evaluate(task));
+	}
+	
+	/**
+	 * Return the folded disjunction of the folded operands of this expression.
+	 * @return	If the left operand folds to false, the folded right operand. If the left operand folds
+	 * 			to true, true. If the right operand folds to false, the folded left operand.
+	 * 			Otherwise the disjunction of both folded operands.
+	 * @note	A right operand folding to true is kept, since the left operand is still evaluated.
+	 */
+	@Override
+	public IBooleanExpression fold() {
+		IBooleanExpression left = this.getLeftExpression().fold();
+		if (left instanceof FalseBooleanExpression)
+			return this.getRightExpression().fold();
+		if (left instanceof TrueBooleanExpression)
+			return left;
+		IBooleanExpression right = this.getRightExpression().fold();
+		if (right instanceof FalseBooleanExpression)
+			return left;
+		if (left == this.getLeftExpression() && right == this.getRightExpression())
+			return this;
+		return new OrBooleanExpression(left, right, getSourceLocation());
 	}
 	
 	@Override
@@ -19,4 +43,15 @@ public class OrBooleanExpression extends BinaryBooleanExpression {
 		return new OrBooleanExpression(getLeftExpression().clone(), getRightExpression().clone(), getSourceLocation());
 	}
 
+	/**
+	 * Return this expression, with its operands laid out in the given layout.
+	 */
+	@Override
+	public IBooleanExpression layOut(FrameLayout layout) {
+		IBooleanExpression left = this.getLeftExpression().layOut(layout);
+		IBooleanExpression right = this.getRightExpression().layOut(layout);
+		if (left == this.getLeftExpression() && right == this.getRightExpression())
+			return this;
+		return new OrBooleanExpression(left, right, getSourceLocation());
+	}
 }
@@ -2,7 +2,6 @@ package hillbillies.model.expressions;
 
 import java.util.Set;
 
-import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
 public abstract class PositionBoolean extends Expression implements IBooleanExpression {
@@ -18,12 +17,6 @@ public abstract class PositionBoolean extends Expression implements IBooleanExpr
 	protected IPositionExpression getTarget(){
 		return this.target;
 	}
-	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		target.addToTask(task);
-		
-	}
 	private final IPositionExpression target;
 	
 	public abstract PositionBoolean clone();
@@ -32,4 +25,9 @@ public abstract class PositionBoolean extends Expression implements IBooleanExpr
 	public boolean isWellFormed(Set<String> variables) {
 		return this.target.isWellFormed(variables);
 	}
+
+	@Override
+	public int getNbNodes() {
+		return 1 + this.target.getNbNodes();
+	}
 }
@@ -3,6 +3,7 @@ package hillbillies.model.expressions;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Task;
 import hillbillies.model.Vector;
 import hillbillies.part3.programs.SourceLocation;
@@ -18,8 +19,8 @@ public class PositionOfExpression extends Expression implements IPositionExpress
 	}
 
 	@Override
-	public Vector evaluate() throws NoSuchElementException {
-		return target.evaluate().getPosition();
+	public Vector evaluate(Task task) throws NoSuchElementException {
+		return target.evaluate(task).getPosition();
 	}
 	
 	private final IUnitExpression target;
@@ -30,13 +31,23 @@ public class PositionOfExpression extends Expression implements IPositionExpress
 	}
 	
 	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		this.target.addToTask(task);
+	public boolean isWellFormed(Set<String> variables) {
+		return this.target.isWellFormed(variables);
 	}
 
 	@Override
-	public boolean isWellFormed(Set<String> variables) {
-		return this.target.isWellFormed(variables);
+	public int getNbNodes() {
+		return 1 + this.target.getNbNodes();
+	}
+
+	/**
+	 * Return this expression, with its Unit laid out in the given layout.
+	 */
+	@Override
+	public IPositionExpression layOut(FrameLayout layout) {
+		IUnitExpression target = this.target.layOut(layout);
+		if (target == this.target)
+			return this;
+		return new PositionOfExpression(target, getSourceLocation());
 	}
 }
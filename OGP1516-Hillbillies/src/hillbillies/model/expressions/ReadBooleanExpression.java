@@ -1,5 +1,7 @@
 package hillbillies.model.expressions;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
 public class ReadBooleanExpression extends ReadVariable implements IBooleanExpression {
@@ -9,15 +11,27 @@ public class ReadBooleanExpression extends ReadVariable implements IBooleanExpre
 		super(variableName, sourceLocation);
 	}
 
+	private ReadBooleanExpression(String variableName, SourceLocation sourceLocation, int slot) 
+			throws IllegalArgumentException {
+		super(variableName, sourceLocation, slot);
+	}
+
 	@Override
-	public Boolean evaluate() {
-		assert this.getVariableValue() instanceof Boolean;
-		return (Boolean) this.getVariableValue();
+	public Boolean evaluate(Task task) {
+		return task.getBooleanVariable(this.getSlot(task));
 	}
 	
 	@Override
 	public ReadBooleanExpression clone(){
 		return new ReadBooleanExpression(getVariableName(), getSourceLocation());
 	}
+	
+	/**
+	 * Return a copy of this expression, reading its variable from the slot of the given layout.
+	 */
+	@Override
+	public ReadBooleanExpression layOut(FrameLayout layout) {
+		return new ReadBooleanExpression(getVariableName(), getSourceLocation(), layout.getVariableSlot(getVariableName()));
+	}
 
 }
@@ -2,6 +2,8 @@ package hillbillies.model.expressions;
 
 import java.util.NoSuchElementException;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Vector;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -12,15 +14,27 @@ public class ReadPositionExpression extends ReadVariable implements IPositionExp
 		super(variableName, sourceLocation);
 	}
 
+	private ReadPositionExpression(String variableName, SourceLocation sourceLocation, int slot) 
+			throws IllegalArgumentException {
+		super(variableName, sourceLocation, slot);
+	}
+
 	@Override
-	public Vector evaluate() throws NoSuchElementException {
-		assert this.getVariableValue() instanceof Vector;
-		return (Vector) this.getVariableValue();
+	public Vector evaluate(Task task) throws NoSuchElementException {
+		return task.getPositionVariable(this.getSlot(task));
 	}
 	
 	@Override
 	public ReadPositionExpression clone(){
 		return new ReadPositionExpression(getVariableName(), getSourceLocation());
 	}
+	
+	/**
+	 * Return a copy of this expression, reading its variable from the slot of the given layout.
+	 */
+	@Override
+	public ReadPositionExpression layOut(FrameLayout layout) {
+		return new ReadPositionExpression(getVariableName(), getSourceLocation(), layout.getVariableSlot(getVariableName()));
+	}
 
 }
@@ -2,6 +2,8 @@ package hillbillies.model.expressions;
 
 import java.util.NoSuchElementException;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Unit;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -12,15 +14,27 @@ public class ReadUnitExpression extends ReadVariable implements IUnitExpression
 		super(variableName, sourceLocation);
 	}
 
+	private ReadUnitExpression(String variableName, SourceLocation sourceLocation, int slot) 
+			throws IllegalArgumentException {
+		super(variableName, sourceLocation, slot);
+	}
+
 	@Override
-	public Unit evaluate() throws NoSuchElementException {
-		assert this.getVariableValue() instanceof Unit;
-		return (Unit) this.getVariableValue();
+	public Unit evaluate(Task task) throws NoSuchElementException {
+		return task.getUnitVariable(this.getSlot(task));
 	}
 	
 	@Override
 	public ReadUnitExpression clone(){
 		return new ReadUnitExpression(getVariableName(), getSourceLocation());
 	}
+	
+	/**
+	 * Return a copy of this expression, reading its variable from the slot of the given layout.
+	 */
+	@Override
+	public ReadUnitExpression layOut(FrameLayout layout) {
+		return new ReadUnitExpression(getVariableName(), getSourceLocation(), layout.getVariableSlot(getVariableName()));
+	}
 
 }
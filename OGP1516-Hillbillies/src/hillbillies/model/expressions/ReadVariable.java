@@ -2,22 +2,42 @@ package hillbillies.model.expressions;
 
 import java.util.Set;
 
+import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
 public abstract class ReadVariable extends Expression {
 	
 	public  ReadVariable(String variableName, SourceLocation sourceLocation) 
 			throws IllegalArgumentException {
+		this(variableName, sourceLocation, -1);
+	}
+	
+	/**
+	 * Initialize this new expression reading the variable with the given name from the given slot.
+	 * @param slot
+	 * 			The slot of the variable in the variable banks of the Tasks executing this expression,
+	 * 			or -1 if each Task resolves the variable by its name.
+	 */
+	protected ReadVariable(String variableName, SourceLocation sourceLocation, int slot) 
+			throws IllegalArgumentException {
 		super(sourceLocation);
 		if (variableName == null || variableName.length() == 0)
 			throw new IllegalArgumentException();
 		this.variableName=variableName;
+		this.slot = slot;
 	}
 	
-	protected Object getVariableValue(){
-		return this.getTask().getVariable(this.variableName);
+	/**
+	 * Return the slot of the variable read by this expression in the variable banks of the given Task.
+	 * @return	The slot resolved when this expression was laid out, if it has been. Otherwise
+	 * 			the slot the given Task registers for the variable.
+	 */
+	protected int getSlot(Task task){
+		return (this.slot >= 0) ? this.slot : task.getVariableSlot(this.variableName);
 	}
 	
+	private final int slot;
+	
 	protected String getVariableName(){
 		return this.variableName;
 	}
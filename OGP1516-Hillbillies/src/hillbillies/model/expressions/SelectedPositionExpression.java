@@ -1,8 +1,9 @@
 package hillbillies.model.expressions;
 
 import java.util.NoSuchElementException;
-import java.util.Set;
 
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
 import hillbillies.model.Vector;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -13,11 +14,11 @@ public class SelectedPositionExpression extends Expression implements IPositionE
 	}
 
 	@Override
-	public Vector evaluate() throws NoSuchElementException {
-		if (this.getTask().getSelectedPosition() == null)
+	public Vector evaluate(Task task) throws NoSuchElementException {
+		if (task.getSelectedPosition() == null)
 			throw new NoSuchElementException();
 		else 
-			return this.getTask().getSelectedPosition();
+			return task.getSelectedPosition();
 	}
 
 	@Override
@@ -25,9 +26,13 @@ public class SelectedPositionExpression extends Expression implements IPositionE
 		return new SelectedPositionExpression(getSourceLocation());
 	}
 
+	/**
+	 * Return this expression, registering with the given layout that the selected position is read.
+	 */
 	@Override
-	public boolean isWellFormed(Set<String> variables) {
-		return (this.getTask().getSelectedPosition() != null);
+	public SelectedPositionExpression layOut(FrameLayout layout) {
+		layout.registerSelectedPosition();
+		return this;
 	}
 
 }
@@ -2,6 +2,7 @@ package hillbillies.model.expressions;
 
 import java.util.NoSuchElementException;
 
+import hillbillies.model.Task;
 import hillbillies.model.Unit;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -12,8 +13,8 @@ public class ThisUnitExpression extends Expression implements IUnitExpression {
 	}
 
 	@Override
-	public Unit evaluate() throws NoSuchElementException {
-		return this.getUnit();
+	public Unit evaluate(Task task) throws NoSuchElementException {
+		return task.getUnit();
 	}
 	
 	@Override
@@ -1,5 +1,6 @@
 package hillbillies.model.expressions;
 
+import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
 public class TrueBooleanExpression extends Expression implements IBooleanExpression {
@@ -9,7 +10,7 @@ public class TrueBooleanExpression extends Expression implements IBooleanExpress
 	}
 
 	@Override
-	public Boolean evaluate() {
+	public Boolean evaluate(Task task) {
 		return true;
 	}
 	
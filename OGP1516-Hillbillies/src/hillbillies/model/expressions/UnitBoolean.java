@@ -2,7 +2,6 @@ package hillbillies.model.expressions;
 
 import java.util.Set;
 
-import hillbillies.model.Task;
 import hillbillies.part3.programs.SourceLocation;
 
 public abstract class UnitBoolean extends Expression implements IBooleanExpression {
@@ -21,16 +20,15 @@ public abstract class UnitBoolean extends Expression implements IBooleanExpressi
 	
 	private final IUnitExpression target;
 	
-	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		target.addToTask(task);
-	}
-	
 	public abstract UnitBoolean clone();
 
 	@Override
 	public boolean isWellFormed(Set<String> variables) {
 		return this.target.isWellFormed(variables);
 	}
+
+	@Override
+	public int getNbNodes() {
+		return 1 + this.target.getNbNodes();
+	}
 }
@@ -4,8 +4,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Heap;
 import hillbillies.model.Node;
+import hillbillies.model.Task;
 import hillbillies.model.Unit;
 import hillbillies.model.Vector;
 import hillbillies.model.World;
@@ -17,9 +19,23 @@ public class WorkshopPositionExpression extends Expression implements IPositionE
 		super(sourceLocation);
 	}
 
+	private WorkshopPositionExpression(SourceLocation sourceLocation, int node) throws IllegalArgumentException {
+		super(sourceLocation, node);
+	}
+
 	@Override
-	public Vector evaluate() throws NoSuchElementException {
-		Unit unit = this.getUnit();
+	public Vector evaluate(Task task) throws NoSuchElementException {
+		Vector memoised = (Vector) this.getMemoisedValue(task);
+		if (memoised != null)
+			return memoised;
+		return this.memoise(task, this.search(task));
+	}
+
+	/**
+	 * Return the position of the workshop nearest to the Unit executing this expression.
+	 */
+	private Vector search(Task task) throws NoSuchElementException {
+		Unit unit = task.getUnit();
 		World world = unit.getWorld();
 		Heap<Node> open = new Heap<>();
 		List<Node> closed = new ArrayList<>();
@@ -49,6 +65,15 @@ public class WorkshopPositionExpression extends Expression implements IPositionE
 		}
 		throw new NoSuchElementException();
 	}
+
+	/**
+	 * Return a copy of this expression, memoising its value under a new node of the given layout.
+	 */
+	@Override
+	public WorkshopPositionExpression layOut(FrameLayout layout) {
+		return new WorkshopPositionExpression(getSourceLocation(), layout.registerNode());
+	}
+
 	
 	@Override
 	public WorkshopPositionExpression clone(){
@@ -1,24 +1,40 @@
 package hillbillies.model.statements;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Task;
+import hillbillies.model.expressions.IBooleanExpression;
 import hillbillies.model.expressions.IExpression;
+import hillbillies.model.expressions.IPositionExpression;
+import hillbillies.model.expressions.IUnitExpression;
 import hillbillies.part3.programs.SourceLocation;
 
 public class AssignmentStatement extends Statement implements IExecutableStatement {
 	
 	public AssignmentStatement(IExpression expression, String variableName, SourceLocation sourceLocation) 
 			throws IllegalArgumentException {
+		this(expression, variableName, sourceLocation, -1);
+	}
+	
+	private AssignmentStatement(IExpression expression, String variableName, SourceLocation sourceLocation, int slot) 
+			throws IllegalArgumentException {
 		super(sourceLocation);
 		if (expression == null || variableName == null || variableName.length() == 0)
 			throw new IllegalArgumentException();
 		this.expression = expression;
 		this.variableName = variableName;
+		if (expression instanceof IPositionExpression)
+			this.type = POSITION;
+		else if (expression instanceof IUnitExpression)
+			this.type = UNIT;
+		else if (expression instanceof IBooleanExpression)
+			this.type = BOOLEAN;
+		else
+			this.type = OTHER;
+		this.slot = slot;
 	}
 	
 	public String getVariableName(){
@@ -29,43 +45,71 @@ public class AssignmentStatement extends Statement implements IExecutableStateme
 	
 	private final IExpression expression;
 	
+	/**
+	 * Variable registering the type of the expression of this Statement, as one of the constants below,
+	 * so that executing this Statement stores its value without checking its type.
+	 */
+	private final int type;
+	
+	private static final int POSITION = 0;
+	
+	private static final int UNIT = 1;
+	
+	private static final int BOOLEAN = 2;
+	
+	private static final int OTHER = 3;
+	
+	/**
+	 * Variable registering the slot of the variable assigned by this Statement, resolved when it is laid out.
+	 */
+	private final int slot;
 
 	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		this.expression.addToTask(task);
+	public void execute(Task task) {
+		switch (this.type) {
+		case POSITION:
+			task.storePositionVariable(this.slot, ((IPositionExpression) this.expression).evaluate(task));
+			break;
+		case UNIT:
+			task.storeUnitVariable(this.slot, ((IUnitExpression) this.expression).evaluate(task));
+			break;
+		case BOOLEAN:
+			task.storeBooleanVariable(this.slot, ((IBooleanExpression) this.expression).evaluate(task));
+			break;
+		default:
+			task.storeVariable(this.variableName, this.expression.evaluate(task));
+		}
 	}
 
 	@Override
-	public void execute() {
-		this.getTask().storeVariable(variableName, expression.evaluate());
+	public Statement clone() {
+		return new AssignmentStatement(expression.clone(), variableName, getSourceLocation());
 	}
 
 	@Override
-	public Statement clone() {
-		return new AssignmentStatement(expression.clone(), variableName, getSourceLocation());
+	AssignmentStatement layOut(FrameLayout layout) {
+		IExpression expression = this.expression.layOut(layout);
+		return new AssignmentStatement(expression, this.variableName, getSourceLocation(), layout.getVariableSlot(this.variableName));
 	}
 
 	@Override
-	public Iterator<IExecutableStatement> iterator() {
-		return new Iterator<IExecutableStatement>(){
-			
-			private boolean statementHandled = false;
+	void compile(Program.Compiler compiler) {
+		compiler.emitExecute(this, getSourceLocation());
+	}
 
-			@Override
-			public boolean hasNext() {
-				return !statementHandled;
-			}
+	@Override
+	int getNbNodes() {
+		return 1 + this.expression.getNbNodes();
+	}
 
-			@Override
-			public IExecutableStatement next() throws NoSuchElementException {
-				if (!hasNext())
-					throw new NoSuchElementException();
-				statementHandled = true;
-				return AssignmentStatement.this;
-			}
-			
-		};
+	@Override
+	Statement optimize() {
+		if (!(this.expression instanceof IBooleanExpression))
+			return this;
+		IBooleanExpression folded = ((IBooleanExpression) this.expression).fold();
+		if (folded == this.expression)
+			return this;
+		return new AssignmentStatement(folded, this.variableName, getSourceLocation());
 	}
 	
 	@Override
@@ -1,10 +1,9 @@
 package hillbillies.model.statements;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Task;
 import hillbillies.model.expressions.IUnitExpression;
 import hillbillies.part3.programs.SourceLocation;
@@ -22,14 +21,8 @@ public class AttackStatement extends Statement implements IExecutableStatement {
 	private final IUnitExpression expression;
 
 	@Override
-	public void execute(){
-		this.getUnit().startAttack(expression.evaluate());
-	}
-
-	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		this.expression.addToTask(task);
+	public void execute(Task task){
+		task.getUnit().startAttack(expression.evaluate(task));
 	}
 
 	@Override
@@ -38,25 +31,18 @@ public class AttackStatement extends Statement implements IExecutableStatement {
 	}
 
 	@Override
-	public Iterator<IExecutableStatement> iterator() {
-		return new Iterator<IExecutableStatement>(){
-
-			private boolean statementHandled = false;
-
-			@Override
-			public boolean hasNext() {
-				return !statementHandled;
-			}
+	AttackStatement layOut(FrameLayout layout) {
+		return new AttackStatement(this.expression.layOut(layout), getSourceLocation());
+	}
 
-			@Override
-			public IExecutableStatement next() throws NoSuchElementException {
-				if (!hasNext())
-					throw new NoSuchElementException();
-				statementHandled = true;
-				return AttackStatement.this;
-			}
+	@Override
+	void compile(Program.Compiler compiler) {
+		compiler.emitExecute(this, getSourceLocation());
+	}
 
-		};
+	@Override
+	int getNbNodes() {
+		return 1 + this.expression.getNbNodes();
 	}
 	
 	@Override
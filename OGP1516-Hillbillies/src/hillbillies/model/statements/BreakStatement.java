@@ -1,54 +1,36 @@
 package hillbillies.model.statements;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
-import hillbillies.model.Task;
+import hillbillies.model.FrameLayout;
 import hillbillies.part3.programs.SourceLocation;
 
-public class BreakStatement  extends Statement implements IExecutableStatement {
+public class BreakStatement  extends Statement {
 
 	public BreakStatement(SourceLocation sourceLocation) throws IllegalArgumentException {
 		super(sourceLocation);
 	}
 
 	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
+	public BreakStatement clone() {
+		return new BreakStatement(getSourceLocation());
 	}
 
 	@Override
-	public void execute() {
-		this.getWhileStatement().breakWhile();
+	BreakStatement layOut(FrameLayout layout) {
+		return new BreakStatement(getSourceLocation());
 	}
 
 	@Override
-	public BreakStatement clone() {
-		return new BreakStatement(getSourceLocation());
+	void compile(Program.Compiler compiler) {
+		compiler.emitBreak(getSourceLocation());
 	}
 
 	@Override
-	public Iterator<IExecutableStatement> iterator() {
-		return new Iterator<IExecutableStatement>(){
-
-			private boolean statementHandled = false;
-
-			@Override
-			public boolean hasNext() {
-				return !statementHandled;
-			}
-
-			@Override
-			public IExecutableStatement next() throws NoSuchElementException {
-				if (!hasNext())
-					throw new NoSuchElementException();
-				statementHandled = true;
-				return BreakStatement.this;
-			}
-		};
+	int getNbNodes() {
+		return 1;
 	}
 	
 	@Override
@@ -1,11 +1,10 @@
 package hillbillies.model.statements;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Task;
 import hillbillies.model.Unit;
 import hillbillies.model.Vector;
@@ -16,29 +15,42 @@ public class FollowStatement extends Statement implements IExecutableStatement {
 
 	public FollowStatement( IUnitExpression expression, SourceLocation sourceLocation) 
 			throws IllegalArgumentException {
+		this(expression, sourceLocation, -1);
+	}
+
+	private FollowStatement(IUnitExpression expression, SourceLocation sourceLocation, int target) 
+			throws IllegalArgumentException {
 		super(sourceLocation);
 		if (expression == null)
 			throw new IllegalArgumentException();
 		this.expression=expression;
-		this.unit = null;
+		this.target = target;
 	}
 
 	private final IUnitExpression expression;
 	
-	private Unit unit;
-
-	public void execute(){
-		if (this.unit == null)
-			this.unit = this.expression.evaluate();
-		Vector position = this.unit.getPosition();
-		this.getUnit().moveTo(position.getCubeX(),position.getCubeY(),position.getCubeZ());
+	/**
+	 * Variable registering the index under which the Tasks executing this Statement keep
+	 * the Unit they follow, resolved when this Statement is laid out.
+	 */
+	private final int target;
+
+	public void execute(Task task){
+		Unit unit = task.getTarget(this.target);
+		if (unit == null){
+			unit = this.expression.evaluate(task);
+			task.setTarget(this.target, unit);
+		}
+		Vector position = unit.getPosition();
+		task.getUnit().moveTo(position.getCubeX(),position.getCubeY(),position.getCubeZ());
 	}
 
-	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		this.expression.addToTask(task);
-
+	/**
+	 * Check whether the Unit executing this Statement as part of the given Task is next to the Unit to follow.
+	 * This check is public so that the classes generated for a program can call it.
+	 */
+	public boolean hasReachedTarget(Task task){
+		return task.getUnit().isAdjacentPosition(this.expression.evaluate(task).getPosition());
 	}
 
 	@Override
@@ -52,29 +64,21 @@ public class FollowStatement extends Statement implements IExecutableStatement {
 	}
 
 	@Override
-	public Iterator<IExecutableStatement> iterator() {
-		return new Iterator<IExecutableStatement>(){
-
-			private boolean statementHandled = false;
-
-			@Override
-			public boolean hasNext() {
-				if (!statementHandled)
-					return true;
-				if (getUnit().isAdjacentPosition(expression.evaluate().getPosition()))
-					return false;
-				return true;
-			}
+	FollowStatement layOut(FrameLayout layout) {
+		IUnitExpression expression = this.expression.layOut(layout);
+		return new FollowStatement(expression, getSourceLocation(), layout.registerTarget());
+	}
 
-			@Override
-			public IExecutableStatement next() throws NoSuchElementException {
-				if (!hasNext())
-					throw new NoSuchElementException();
-				statementHandled = true;
-				return FollowStatement.this;
-			}
+	@Override
+	void compile(Program.Compiler compiler) {
+		int start = compiler.here();
+		int index = compiler.emitExecute(this, getSourceLocation());
+		compiler.emitRepeatFollow(index, start, getSourceLocation());
+	}
 
-		};
+	@Override
+	int getNbNodes() {
+		return 1 + this.expression.getNbNodes();
 	}
 	@Override
 	public List<Statement> getStatements() {
@@ -83,9 +87,4 @@ public class FollowStatement extends Statement implements IExecutableStatement {
 		return list;
 	}
 
-	@Override
-	public void reset() {
-		this.unit = null;
-	}
-
 }
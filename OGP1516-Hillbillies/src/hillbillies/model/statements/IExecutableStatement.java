@@ -1,7 +1,12 @@
 package hillbillies.model.statements;
 
+import hillbillies.model.Task;
+
 public interface IExecutableStatement {
 	
-	public void execute();
+	/**
+	 * Execute this Statement as part of the given Task.
+	 */
+	public void execute(Task task);
 	
 }
@@ -1,13 +1,13 @@
 package hillbillies.model.statements;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
-import hillbillies.model.Task;
+import hillbillies.model.FrameLayout;
+import hillbillies.model.expressions.FalseBooleanExpression;
 import hillbillies.model.expressions.IBooleanExpression;
+import hillbillies.model.expressions.TrueBooleanExpression;
 import hillbillies.part3.programs.SourceLocation;
 
 public class IfStatement extends Statement {
@@ -38,15 +38,6 @@ public class IfStatement extends Statement {
 
 	private final Statement falseStatement;
 
-	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		this.expression.addToTask(task);
-		this.trueStatement.addToTask(task);
-		if (this.hasElseStatement())
-			this.falseStatement.addToTask(task);
-	}
-
 	public IfStatement clone() {
 		if (falseStatement!=null) {
 			return new IfStatement(expression.clone(), trueStatement.clone(), falseStatement.clone(), getSourceLocation());
@@ -70,39 +61,56 @@ public class IfStatement extends Statement {
 	}
 
 	@Override
-	public Iterator<IExecutableStatement> iterator() {
-		return new Iterator<IExecutableStatement>(){
-
-			private boolean firstCall = true;
-
-			private Iterator<IExecutableStatement> subIterator;
-
-			@Override
-			public boolean hasNext() {
-				if (firstCall)
-					if (hasElseStatement())
-						return true;
-					else
-						return expression.evaluate();
-				else
-					return subIterator.hasNext();
-			}
-
-			@Override
-			public IExecutableStatement next() throws NoSuchElementException {
-				if (!hasNext())
-					throw new NoSuchElementException();
-				if (firstCall){
-					firstCall = false;
-					if (expression.evaluate())
-						subIterator = trueStatement.iterator();
-					else
-						subIterator = falseStatement.iterator();
-				}
-				return subIterator.next();
-			}
-
-		};
+	IfStatement layOut(FrameLayout layout) {
+		IBooleanExpression condition = this.expression.layOut(layout);
+		Statement whenTrue = this.trueStatement.layOut(layout);
+		Statement whenFalse = this.hasElseStatement() ? this.falseStatement.layOut(layout) : null;
+		return new IfStatement(condition, whenTrue, whenFalse, getSourceLocation());
+	}
+
+	@Override
+	void compile(Program.Compiler compiler) {
+		int test = compiler.emitJumpIfFalse(this.expression, -1, getSourceLocation());
+		this.trueStatement.compile(compiler);
+		if (this.hasElseStatement()){
+			int skip = compiler.emit(Program.JUMP, -1, 0, getSourceLocation());
+			compiler.patch(test, compiler.here());
+			this.falseStatement.compile(compiler);
+			compiler.patch(skip, compiler.here());
+		} else
+			compiler.patch(test, compiler.here());
+	}
+
+	@Override
+	int getNbNodes() {
+		int nbNodes = 1 + this.expression.getNbNodes() + this.trueStatement.getNbNodes();
+		if (this.hasElseStatement())
+			nbNodes += this.falseStatement.getNbNodes();
+		return nbNodes;
+	}
+
+	/**
+	 * Return the optimised version of this if Statement.
+	 * @return	If the folded condition is true or false, the optimised branch it selects, or an empty
+	 * 			sequence if there is no such branch. If neither optimised branch executes anything, an
+	 * 			empty sequence. Otherwise an if Statement with the folded condition and optimised branches.
+	 * @note	An if Statement without anything to execute is removed along with its condition,
+	 * 			so that a condition failing to evaluate no longer stops the task.
+	 */
+	@Override
+	Statement optimize() {
+		IBooleanExpression condition = this.expression.fold();
+		Statement whenTrue = this.trueStatement.optimize();
+		Statement whenFalse = this.hasElseStatement() ? this.falseStatement.optimize() : null;
+		if (whenFalse != null && whenFalse.isEmpty())
+			whenFalse = null;
+		if (condition instanceof TrueBooleanExpression)
+			return whenTrue;
+		if (condition instanceof FalseBooleanExpression || (whenTrue.isEmpty() && whenFalse == null))
+			return (whenFalse == null) ? SequenceStatement.empty(getSourceLocation()) : whenFalse;
+		if (condition == this.expression && whenTrue == this.trueStatement && whenFalse == this.falseStatement)
+			return this;
+		return new IfStatement(condition, whenTrue, whenFalse, getSourceLocation());
 	}
 
 	@Override
@@ -114,11 +122,4 @@ public class IfStatement extends Statement {
 			return (this.expression.isWellFormed(variables) && this.trueStatement.isWellFormed(variables));
 	}
 
-	@Override
-	public void reset() {
-		this.trueStatement.reset();
-		if (this.hasElseStatement())
-			this.falseStatement.reset();
-	}
-
 }
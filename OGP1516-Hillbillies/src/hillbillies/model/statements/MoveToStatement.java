@@ -1,12 +1,12 @@
 package hillbillies.model.statements;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Task;
+import hillbillies.model.Vector;
 import hillbillies.model.expressions.IPositionExpression;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -21,17 +21,18 @@ public class MoveToStatement extends Statement implements IExecutableStatement {
 	}
 	
 	private final IPositionExpression expression;
-	
-	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		this.expression.addToTask(task);
 		
-	}
-	
 	@Override
-	public void execute(){
-		this.getUnit().moveTo(expression.evaluate().getCubeX(),expression.evaluate().getCubeY(),expression.evaluate().getCubeZ());
+	public void execute(Task task){
+		Vector position = this.getTarget(task);
+		task.getUnit().moveTo(position.getCubeX(),position.getCubeY(),position.getCubeZ());
+	}
+
+	/**
+	 * Return the position to which this Statement moves the Unit of the given Task.
+	 */
+	public Vector getTarget(Task task){
+		return expression.evaluate(task);
 	}	
 
 	@Override
@@ -40,24 +41,18 @@ public class MoveToStatement extends Statement implements IExecutableStatement {
 	}
 
 	@Override
-	public Iterator<IExecutableStatement> iterator() {
-		return new Iterator<IExecutableStatement>(){
-
-			private boolean statementHandled = false;
+	MoveToStatement layOut(FrameLayout layout) {
+		return new MoveToStatement(this.expression.layOut(layout), getSourceLocation());
+	}
 
-			@Override
-			public boolean hasNext() {
-				return !statementHandled;
-			}
+	@Override
+	void compile(Program.Compiler compiler) {
+		compiler.emitExecute(this, getSourceLocation());
+	}
 
-			@Override
-			public IExecutableStatement next() throws NoSuchElementException {
-				if (!hasNext())
-					throw new NoSuchElementException();
-				statementHandled = true;
-				return MoveToStatement.this;
-			}
-		};
+	@Override
+	int getNbNodes() {
+		return 1 + this.expression.getNbNodes();
 	}
 
 	@Override
@@ -1,12 +1,12 @@
 package hillbillies.model.statements;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Task;
+import hillbillies.model.expressions.IBooleanExpression;
 import hillbillies.model.expressions.IExpression;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -22,20 +22,13 @@ public class PrintStatement extends Statement implements IExecutableStatement {
 
 	private final IExpression expression;
 
-	@Override
-	public void addToTask(Task task) {
-		expression.addToTask(task);
-		this.setTask(task);
-
-	}
-
-	private Object getvalue(){
-		return expression.evaluate();
+	private Object getvalue(Task task){
+		return expression.evaluate(task);
 	}
 
 	@Override
-	public void execute() {
-		System.out.println(getvalue()); 
+	public void execute(Task task) {
+		System.out.println(getvalue(task)); 
 
 	}
 
@@ -45,24 +38,28 @@ public class PrintStatement extends Statement implements IExecutableStatement {
 	}
 
 	@Override
-	public Iterator<IExecutableStatement> iterator() {
-		return new Iterator<IExecutableStatement>(){
+	PrintStatement layOut(FrameLayout layout) {
+		return new PrintStatement(this.expression.layOut(layout), getSourceLocation());
+	}
 
-			private boolean statementHandled = false;
+	@Override
+	void compile(Program.Compiler compiler) {
+		compiler.emitExecute(this, getSourceLocation());
+	}
 
-			@Override
-			public boolean hasNext() {
-				return !statementHandled;
-			}
+	@Override
+	int getNbNodes() {
+		return 1 + this.expression.getNbNodes();
+	}
 
-			@Override
-			public IExecutableStatement next() throws NoSuchElementException {
-				if (!hasNext())
-					throw new NoSuchElementException();
-				statementHandled = true;
-				return PrintStatement.this;
-			}
-		};
+	@Override
+	Statement optimize() {
+		if (!(this.expression instanceof IBooleanExpression))
+			return this;
+		IBooleanExpression folded = ((IBooleanExpression) this.expression).fold();
+		if (folded == this.expression)
+			return this;
+		return new PrintStatement(folded, getSourceLocation());
 	}
 	@Override
 	public List<Statement> getStatements() {
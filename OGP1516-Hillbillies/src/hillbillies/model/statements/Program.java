@@ -0,0 +1,497 @@
+package hillbillies.model.statements;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import hillbillies.model.FrameLayout;
+import hillbillies.model.Task;
+import hillbillies.model.expressions.IBooleanExpression;
+import hillbillies.part3.programs.SourceLocation;
+
+/**
+ * A class of programs, holding a Statement compiled to a flat array of instructions.
+ *
+ * Each instruction takes three slots of the array: an operation code and two operands.
+ * Simple Statements are executed by a single EXECUTE instruction, while the control flow of
+ * sequences, if, while and break Statements is expressed by jumps to the index of another
+ * instruction. An execution of a program only needs to remember the index of its next
+ * instruction, so that advancing it never allocates.
+ *
+ * Only the control flow of Statements is compiled. Expressions, such as the conditions of if and while
+ * Statements and the operands of simple Statements, remain trees that are evaluated as a whole by a
+ * single instruction. Their leaves read a single slot of the executing Task, such as a variable, or
+ * repeat a search of the World whose result is memoised in the Task. Their inner nodes are the boolean
+ * operators and the checks on a position or a Unit, which rarely nest more than a few levels deep.
+ * Compiling them to instructions of their own would replace a few virtual calls by as many dispatches
+ * of the interpreter, without saving a search of the World.
+ *
+ * A program is shared by all Tasks executing its Statement. The state of each execution, such as the
+ * values of its variables, is kept by the Task executing it, in slots laid out while the program is compiled.
+ * The program compiles a laid-out copy of its Statement, so that the Statement it is given is never changed.
+ *
+ * Programs start out interpreted. Once a program has executed PROMOTION_THRESHOLD Statements,
+ * summed over all its executions, it is translated into a class of its own, in which the virtual
+ * machine can inline the conditions and Statements of the program. Programs that are rarely used,
+ * or that cannot be translated, remain interpreted.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ */
+public final class Program {
+
+	/**
+	 * Execute the Statement registered at the first operand, and continue with the next instruction.
+	 */
+	static final int EXECUTE = 0;
+
+	/**
+	 * Continue with the instruction at the first operand.
+	 */
+	static final int JUMP = 1;
+
+	/**
+	 * Evaluate the condition registered at the first operand. Continue with the next instruction
+	 * if it holds, and with the instruction at the second operand otherwise.
+	 */
+	static final int JUMP_IF_FALSE = 2;
+
+	/**
+	 * Continue with the instruction at the second operand, unless the FollowStatement registered
+	 * at the first operand has reached the Unit it follows.
+	 */
+	static final int REPEAT_FOLLOW = 3;
+
+	/**
+	 * The number of slots taken by a single instruction.
+	 */
+	static final int INSTRUCTION_SIZE = 3;
+
+	/**
+	 * Initialize this new program by compiling the given Statement.
+	 * @param statement
+	 * 			The Statement to compile.
+	 * @post	Executing this new program executes the simple Statements of the given Statement
+	 * 			in the order prescribed by its sequences, if, while and break Statements.
+	 * @throws IllegalArgumentException
+	 * 			The given Statement is not effective.
+	 */
+	public Program(Statement statement) throws IllegalArgumentException {
+		if (statement == null)
+			throw new IllegalArgumentException();
+		Compiler compiler = new Compiler();
+		Statement laidOut = statement.layOut(compiler.getLayout());
+		laidOut.compile(compiler);
+		this.statement = laidOut;
+		this.layout = compiler.getLayout();
+		this.code = compiler.getCode();
+		this.sourceLocations = compiler.sourceLocations.toArray(new SourceLocation[compiler.sourceLocations.size()]);
+		this.statements = compiler.statements.toArray(new IExecutableStatement[compiler.statements.size()]);
+		this.conditions = compiler.conditions.toArray(new IBooleanExpression[compiler.conditions.size()]);
+	}
+
+	/**
+	 * Return the Statement compiled into this program.
+	 * @note	This is a copy of the Statement this program was created with, in which the execution
+	 * 			state is laid out. It is shared by all Tasks executing this program, and never changes.
+	 */
+	@Basic @Immutable
+	public Statement getStatement(){
+		return this.statement;
+	}
+
+	private final Statement statement;
+
+	/**
+	 * Return the layout of the execution state kept by each Task executing this program.
+	 * @note	The layout is complete once this program has been compiled, and must not be extended.
+	 */
+	@Basic @Immutable
+	public FrameLayout getLayout(){
+		return this.layout;
+	}
+
+	private final FrameLayout layout;
+
+	/**
+	 * Return the number of instructions of this program.
+	 */
+	@Immutable
+	public int getNbInstructions(){
+		return this.code.length / INSTRUCTION_SIZE;
+	}
+
+	/**
+	 * Return a copy of the instructions of this program. Each instruction takes three
+	 * elements: an operation code and two operands.
+	 */
+	public int[] getInstructions(){
+		return this.code.clone();
+	}
+
+	/**
+	 * Variable referencing the instructions of this program.
+	 */
+	private final int[] code;
+
+	/**
+	 * Return the source location of the Statement that emitted the instruction at the given
+	 * position of this program, counting instructions from zero.
+	 * @throws IllegalArgumentException
+	 * 			The given position is not the position of an instruction of this program.
+	 * 			| index < 0 || index >= getNbInstructions()
+	 */
+	@Immutable
+	public SourceLocation getSourceLocation(int index) throws IllegalArgumentException {
+		if (index < 0 || index >= this.sourceLocations.length)
+			throw new IllegalArgumentException();
+		return this.sourceLocations[index];
+	}
+
+	/**
+	 * Variable referencing the source location of each instruction of this program.
+	 */
+	private final SourceLocation[] sourceLocations;
+
+	/**
+	 * Variable referencing the simple Statements executed by this program, indexed by the
+	 * operands of its EXECUTE and REPEAT_FOLLOW instructions.
+	 */
+	private final IExecutableStatement[] statements;
+
+	/**
+	 * Variable referencing the conditions evaluated by this program, indexed by the
+	 * operands of its JUMP_IF_FALSE instructions.
+	 */
+	private final IBooleanExpression[] conditions;
+
+	/**
+	 * The number of Statements a program executes before it is translated into a class of its own.
+	 */
+	public static final int PROMOTION_THRESHOLD = 10000;
+
+	/**
+	 * An interface for the classes translating a single program.
+	 * It is public because each of these classes is defined by a class loader of its own.
+	 */
+	public interface CompiledProgram {
+
+		/**
+		 * Follow the jumps of the program for the given Task from the instruction at the given index,
+		 * up to the next Statement to execute or the end of the program, and return the index it stops at.
+		 * Return -1 if the jumps keep looping without reaching either of them.
+		 */
+		int resolve(Task task, int pc);
+
+		/**
+		 * Execute the Statement of the EXECUTE instruction at the given index as part of the given Task.
+		 */
+		void execute(Task task, int pc);
+	}
+
+	/**
+	 * Check whether this program has been translated into a class of its own.
+	 */
+	public boolean isCompiled(){
+		return this.compiled != null;
+	}
+
+	/**
+	 * Register that a Statement of this program has been executed, and translate this program
+	 * once it has executed enough Statements.
+	 */
+	private void countExecution(){
+		if (++this.nbExecuted == PROMOTION_THRESHOLD)
+			this.compile();
+	}
+
+	/**
+	 * Translate this program into a class of its own. If that fails, this program remains interpreted.
+	 */
+	private synchronized void compile(){
+		if (this.compiled != null)
+			return;
+		try {
+			this.compiled = ProgramClassGenerator.generate(this.code, this.statements, this.conditions);
+		} catch (IllegalArgumentException | ReflectiveOperationException | LinkageError | SecurityException e){
+			this.compiled = null;
+		}
+	}
+
+	/**
+	 * Variable registering the number of Statements this program has executed, until it is translated.
+	 */
+	private int nbExecuted = 0;
+
+	/**
+	 * Variable referencing the translation of this program, or null if it is interpreted.
+	 */
+	private volatile CompiledProgram compiled;
+
+	/**
+	 * Return a new execution of this program by the given Task, starting at its first instruction.
+	 * @throws IllegalArgumentException
+	 * 			The given Task is not effective.
+	 */
+	public Execution start(Task task) throws IllegalArgumentException {
+		if (task == null)
+			throw new IllegalArgumentException();
+		return new Execution(task);
+	}
+
+	/**
+	 * A class of executions of a program, registering the Task executing it and the index
+	 * of the next instruction to execute.
+	 */
+	public final class Execution {
+
+		private Execution(Task task){
+			this.task = task;
+			this.pc = 0;
+		}
+
+		/**
+		 * Return the Task executing this execution.
+		 */
+		@Basic @Immutable
+		public Task getTask(){
+			return this.task;
+		}
+
+		private final Task task;
+
+		/**
+		 * Return the program this execution executes.
+		 */
+		@Basic @Immutable
+		public Program getProgram(){
+			return Program.this;
+		}
+
+		/**
+		 * Follow the jumps of the program up to the next Statement to execute or the end of the program.
+		 * @return	True if and only if this execution has reached a Statement to execute or the end of
+		 * 			the program. This is not the case if the jumps keep looping without ever reaching a Statement.
+		 */
+		private boolean resolve(){
+			CompiledProgram compiled = Program.this.compiled;
+			if (compiled != null){
+				int next = compiled.resolve(this.task, this.pc);
+				if (next < 0)
+					return false;
+				this.pc = next;
+				return true;
+			}
+			int[] code = Program.this.code;
+			for (int steps = 0; steps <= code.length; steps += INSTRUCTION_SIZE){
+				if (this.pc == code.length)
+					return true;
+				switch (code[this.pc]){
+				case EXECUTE:
+					return true;
+				case JUMP:
+					this.pc = code[this.pc+1];
+					break;
+				case JUMP_IF_FALSE:
+					this.pc = conditions[code[this.pc+1]].evaluate(this.task) ? this.pc + INSTRUCTION_SIZE : code[this.pc+2];
+					break;
+				case REPEAT_FOLLOW:
+					this.pc = ((FollowStatement) statements[code[this.pc+1]]).hasReachedTarget(this.task) ?
+							this.pc + INSTRUCTION_SIZE : code[this.pc+2];
+					break;
+				default:
+					throw new IllegalStateException("Unknown instruction " + code[this.pc]);
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Check whether this execution has executed all Statements of its program.
+		 * @note	The conditions that decide whether any Statement remains are evaluated.
+		 */
+		public boolean isFinished(){
+			return this.resolve() && this.pc == Program.this.code.length;
+		}
+
+		/**
+		 * Execute the next Statement of the program.
+		 * @throws NoSuchElementException
+		 * 			This execution is finished, or its jumps keep looping without reaching a Statement.
+		 */
+		public void executeNext() throws NoSuchElementException {
+			if (!this.resolve() || this.pc == Program.this.code.length)
+				throw new NoSuchElementException();
+			int current = this.pc;
+			this.pc += INSTRUCTION_SIZE;
+			CompiledProgram compiled = Program.this.compiled;
+			if (compiled != null)
+				compiled.execute(this.task, current);
+			else {
+				Program.this.countExecution();
+				statements[Program.this.code[current+1]].execute(this.task);
+			}
+		}
+
+		/**
+		 * Return the next Statement this execution executes, without executing anything.
+		 * @return	The next Statement of the program, or null if this execution is finished
+		 * 			or its jumps keep looping without reaching a Statement.
+		 * @note	The conditions of the jumps up to that Statement are evaluated,
+		 * 			but the next instruction of this execution is left untouched.
+		 */
+		public IExecutableStatement peekNext(){
+			int current = this.pc;
+			try {
+				if (!this.resolve() || this.pc == Program.this.code.length)
+					return null;
+				return statements[Program.this.code[this.pc+1]];
+			} finally {
+				this.pc = current;
+			}
+		}
+
+		/**
+		 * Return the position of the next instruction of this execution, counting instructions from zero.
+		 * @note	Until the jumps of the program have been followed, for instance by checking whether this
+		 * 			execution is finished, the next instruction need not be a Statement to execute.
+		 */
+		public int getNextInstruction(){
+			return this.pc / INSTRUCTION_SIZE;
+		}
+
+		/**
+		 * Variable registering the index of the next instruction of this execution.
+		 */
+		private int pc;
+	}
+
+	/**
+	 * A class of compilers, collecting the instructions of a program while its Statement is compiled.
+	 */
+	static final class Compiler {
+
+		private Compiler(){
+		}
+
+		/**
+		 * Return the index the next instruction will be emitted at.
+		 */
+		int here(){
+			return this.size;
+		}
+
+		/**
+		 * Emit an instruction with the given operation code and operands, emitted by the
+		 * Statement at the given source location.
+		 * @return	The index of the emitted instruction.
+		 */
+		int emit(int operation, int first, int second, SourceLocation sourceLocation){
+			if (this.size + INSTRUCTION_SIZE > this.code.length){
+				int[] larger = new int[2*this.code.length];
+				System.arraycopy(this.code, 0, larger, 0, this.size);
+				this.code = larger;
+			}
+			this.code[this.size] = operation;
+			this.code[this.size+1] = first;
+			this.code[this.size+2] = second;
+			this.size += INSTRUCTION_SIZE;
+			this.sourceLocations.add(sourceLocation);
+			return this.size - INSTRUCTION_SIZE;
+		}
+
+		/**
+		 * Emit an instruction executing the given Statement.
+		 * @return	The index under which the given Statement is registered.
+		 */
+		int emitExecute(IExecutableStatement statement, SourceLocation sourceLocation){
+			this.statements.add(statement);
+			this.emit(EXECUTE, this.statements.size()-1, 0, sourceLocation);
+			return this.statements.size()-1;
+		}
+
+		/**
+		 * Emit an instruction jumping to the given target if the given condition does not hold.
+		 * @return	The index of the emitted instruction, to patch its target later on.
+		 */
+		int emitJumpIfFalse(IBooleanExpression condition, int target, SourceLocation sourceLocation){
+			this.conditions.add(condition);
+			return this.emit(JUMP_IF_FALSE, this.conditions.size()-1, target, sourceLocation);
+		}
+
+		/**
+		 * Emit an instruction jumping to the given target unless the FollowStatement registered
+		 * under the given index has reached the Unit it follows.
+		 */
+		void emitRepeatFollow(int statement, int target, SourceLocation sourceLocation){
+			this.emit(REPEAT_FOLLOW, statement, target, sourceLocation);
+		}
+
+		/**
+		 * Set the target of the jump instruction at the given index to the given target.
+		 */
+		void patch(int instruction, int target){
+			int operand = (this.code[instruction] == JUMP) ? 1 : 2;
+			this.code[instruction+operand] = target;
+		}
+
+		/**
+		 * Start compiling the body of a while Statement.
+		 */
+		void enterLoop(){
+			this.breaks.add(new ArrayList<>());
+		}
+
+		/**
+		 * Emit a jump out of the innermost while Statement being compiled.
+		 * @throws IllegalStateException
+		 * 			No while Statement is being compiled.
+		 */
+		void emitBreak(SourceLocation sourceLocation) throws IllegalStateException {
+			if (this.breaks.isEmpty())
+				throw new IllegalStateException("Break outside of a while statement");
+			this.breaks.get(this.breaks.size()-1).add(this.emit(JUMP, -1, 0, sourceLocation));
+		}
+
+		/**
+		 * Finish compiling the body of the innermost while Statement, letting each
+		 * of its breaks jump to the given target.
+		 */
+		void exitLoop(int target){
+			for (int instruction:this.breaks.remove(this.breaks.size()-1))
+				this.patch(instruction, target);
+		}
+
+		/**
+		 * Return the layout of the execution state of the program being compiled.
+		 */
+		FrameLayout getLayout(){
+			return this.layout;
+		}
+
+		private final FrameLayout layout = new FrameLayout();
+
+		/**
+		 * Return the instructions emitted so far.
+		 */
+		private int[] getCode(){
+			int[] result = new int[this.size];
+			System.arraycopy(this.code, 0, result, 0, this.size);
+			return result;
+		}
+
+		private int[] code = new int[16*INSTRUCTION_SIZE];
+
+		private int size = 0;
+
+		private final List<IExecutableStatement> statements = new ArrayList<>();
+
+		private final List<IBooleanExpression> conditions = new ArrayList<>();
+
+		private final List<SourceLocation> sourceLocations = new ArrayList<>();
+
+		private final List<List<Integer>> breaks = new ArrayList<>();
+	}
+}
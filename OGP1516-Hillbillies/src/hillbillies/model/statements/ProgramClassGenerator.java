@@ -0,0 +1,514 @@
+package hillbillies.model.statements;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import hillbillies.model.expressions.IBooleanExpression;
+
+/**
+ * A class of generators, translating the instructions of a program into a class of its own.
+ *
+ * The generated class implements Program.CompiledProgram. Each of its methods switches on the
+ * index of an instruction, and every condition or Statement the program refers to is a static
+ * final field of its own. These fields are set by the initializer of the class from its class data,
+ * the array of the conditions followed by the Statements of the program. The virtual machine treats
+ * static final fields as constants, and since every program gets a class of its own, the calls to
+ * these conditions and Statements only ever see a single receiver, so that they can be inlined.
+ *
+ * Each class is defined by a class loader of its own, which hands out the class data and lets the
+ * class be unloaded together with its program. Everything the generated class refers to must
+ * therefore be public. The class is written in the oldest class file format without stack map
+ * frames, which keeps the generator small and runs on any virtual machine since Java 8.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ */
+final class ProgramClassGenerator {
+
+	/**
+	 * The largest number of instructions of a program that can be translated.
+	 * Beyond this number, the generated methods could exceed the size limit of the class file format.
+	 */
+	static final int MAX_INSTRUCTIONS = 1500;
+
+	private static final String COMPILED = "hillbillies/model/statements/Program$CompiledProgram";
+	private static final String CONDITION = "hillbillies/model/expressions/IBooleanExpression";
+	private static final String STATEMENT = "hillbillies/model/statements/IExecutableStatement";
+	private static final String FOLLOW = "hillbillies/model/statements/FollowStatement";
+	private static final String TASK = "hillbillies/model/Task";
+
+	/**
+	 * Initialize this new generator for a program with the given instructions, Statements and conditions.
+	 */
+	private ProgramClassGenerator(int[] code, IExecutableStatement[] statements, IBooleanExpression[] conditions){
+		this.code = code;
+		this.statements = statements;
+		this.conditions = conditions;
+	}
+
+	private final int[] code;
+
+	private final IExecutableStatement[] statements;
+
+	private final IBooleanExpression[] conditions;
+
+	/**
+	 * Translate the program with the given instructions, Statements and conditions into a class of its own,
+	 * and return a new instance of that class.
+	 * @throws IllegalArgumentException
+	 * 			The program has more than MAX_INSTRUCTIONS instructions.
+	 * @throws ReflectiveOperationException
+	 * 			The generated class could not be defined or initialized.
+	 */
+	static Program.CompiledProgram generate(int[] code, IExecutableStatement[] statements,
+			IBooleanExpression[] conditions) throws IllegalArgumentException, ReflectiveOperationException {
+		if (code.length / Program.INSTRUCTION_SIZE > MAX_INSTRUCTIONS)
+			throw new IllegalArgumentException("Program too large");
+		ProgramClassGenerator generator = new ProgramClassGenerator(code, statements, conditions);
+		Object[] classData = new Object[conditions.length + statements.length];
+		System.arraycopy(conditions, 0, classData, 0, conditions.length);
+		System.arraycopy(statements, 0, classData, conditions.length, statements.length);
+		Class<?> compiledClass = new ProgramClassLoader(classData).define(generator.toClassFile());
+		return (Program.CompiledProgram) compiledClass.getConstructor().newInstance();
+	}
+
+	/**
+	 * The binary name of each generated class.
+	 */
+	private static final String NAME = "hillbillies.model.statements.CompiledProgram";
+
+	/**
+	 * A class of class loaders, each defining the class of a single program.
+	 * The initializer of that class asks its class loader for its class data.
+	 */
+	private static final class ProgramClassLoader extends ClassLoader implements Supplier<Object[]> {
+
+		private ProgramClassLoader(Object[] classData){
+			super(ProgramClassGenerator.class.getClassLoader());
+			this.classData = classData;
+		}
+
+		private final Object[] classData;
+
+		/**
+		 * Return the conditions followed by the Statements of the program of this class loader.
+		 */
+		@Override
+		public Object[] get(){
+			return this.classData;
+		}
+
+		/**
+		 * Define the generated class from the given bytes.
+		 */
+		private Class<?> define(byte[] bytes){
+			return this.defineClass(NAME, bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * Return the bytes of the class file of the class translating the program of this generator.
+	 */
+	private byte[] toClassFile(){
+		int thisClass = this.classEntry(NAME.replace('.', '/'));
+		int superClass = this.classEntry("java/lang/Object");
+		int compiledInterface = this.classEntry(COMPILED);
+		byte[] constructor = this.constructor();
+		byte[] initializer = this.initializer();
+		byte[] resolve = this.resolveMethod();
+		byte[] execute = this.executeMethod();
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(49);
+			int codeName = this.utf8("Code");
+			int[] fieldNames = new int[this.conditions.length + this.statements.length];
+			int[] fieldTypes = new int[fieldNames.length];
+			for (int i = 0; i < fieldNames.length; i++){
+				boolean isCondition = i < this.conditions.length;
+				fieldNames[i] = this.utf8(isCondition ? "c" + i : "s" + (i - this.conditions.length));
+				fieldTypes[i] = this.utf8("L" + (isCondition ? CONDITION : STATEMENT) + ";");
+			}
+			int initName = this.utf8("<init>"), initType = this.utf8("()V");
+			int clinitName = this.utf8("<clinit>");
+			int resolveName = this.utf8("resolve"), resolveType = this.utf8("(L" + TASK + ";I)I");
+			int executeName = this.utf8("execute"), executeType = this.utf8("(L" + TASK + ";I)V");
+			out.writeShort(this.constants.size() + 1);
+			out.write(this.pool.toByteArray());
+			out.writeShort(0x0001 | 0x0010 | 0x0020);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(compiledInterface);
+			out.writeShort(fieldNames.length);
+			for (int i = 0; i < fieldNames.length; i++){
+				out.writeShort(0x0002 | 0x0008 | 0x0010);
+				out.writeShort(fieldNames[i]);
+				out.writeShort(fieldTypes[i]);
+				out.writeShort(0);
+			}
+			out.writeShort(4);
+			writeMethod(out, clinitName, initType, codeName, 0x0008, 2, 1, initializer);
+			writeMethod(out, initName, initType, codeName, 1, 1, constructor);
+			writeMethod(out, resolveName, resolveType, codeName, 4, 4, resolve);
+			writeMethod(out, executeName, executeType, codeName, 2, 3, execute);
+			out.writeShort(0);
+			return bytes.toByteArray();
+		} catch (IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Write a public method with the given name, type, stack size, number of locals and code to the given stream.
+	 */
+	private static void writeMethod(DataOutputStream out, int name, int type, int codeName,
+			int maxStack, int maxLocals, byte[] code) throws IOException {
+		writeMethod(out, name, type, codeName, 0x0001, maxStack, maxLocals, code);
+	}
+
+	/**
+	 * Write a method with the given name, type, access flags, stack size, number of locals and code to the given stream.
+	 */
+	private static void writeMethod(DataOutputStream out, int name, int type, int codeName, int access,
+			int maxStack, int maxLocals, byte[] code) throws IOException {
+		out.writeShort(access);
+		out.writeShort(name);
+		out.writeShort(type);
+		out.writeShort(1);
+		out.writeShort(codeName);
+		out.writeInt(12 + code.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0);
+		out.writeShort(0);
+	}
+
+	/**
+	 * Return the code of the constructor of the generated class.
+	 */
+	private byte[] constructor(){
+		Assembler assembler = new Assembler();
+		assembler.op(ALOAD_0);
+		assembler.op(INVOKESPECIAL).u2(this.methodEntry(10, "java/lang/Object", "<init>", "()V"));
+		assembler.op(RETURN);
+		return assembler.toByteArray();
+	}
+
+	/**
+	 * Return the code of the initializer of the generated class, setting each static field to
+	 * the element of the class data at the same position. The class data is the result of the
+	 * class loader of the generated class, which is a Supplier.
+	 */
+	private byte[] initializer(){
+		Assembler assembler = new Assembler();
+		assembler.op(LDC_W).u2(this.classEntry(NAME.replace('.', '/')));
+		assembler.op(INVOKEVIRTUAL).u2(this.methodEntry(10, "java/lang/Class", "getClassLoader", "()Ljava/lang/ClassLoader;"));
+		assembler.op(CHECKCAST).u2(this.classEntry("java/util/function/Supplier"));
+		assembler.op(INVOKEINTERFACE).u2(this.methodEntry(11, "java/util/function/Supplier", "get", "()Ljava/lang/Object;"))
+				.u1(1).u1(0);
+		assembler.op(CHECKCAST).u2(this.classEntry("[Ljava/lang/Object;"));
+		assembler.op(ASTORE_0);
+		for (int i = 0; i < this.conditions.length + this.statements.length; i++){
+			boolean isCondition = i < this.conditions.length;
+			String type = isCondition ? CONDITION : STATEMENT;
+			assembler.op(ALOAD_0);
+			assembler.pushInt(i);
+			assembler.op(AALOAD);
+			assembler.op(CHECKCAST).u2(this.classEntry(type));
+			assembler.op(PUTSTATIC).u2(this.fieldEntry(isCondition ? "c" + i : "s" + (i - this.conditions.length), type));
+		}
+		assembler.op(RETURN);
+		return assembler.toByteArray();
+	}
+
+	/**
+	 * Return the code of the method following the jumps of the program from the instruction at a given index,
+	 * up to the next Statement to execute or the end of the program.
+	 * It returns the index it stops at, or -1 if it keeps jumping without reaching either of them.
+	 */
+	private byte[] resolveMethod(){
+		int nbInstructions = this.code.length / Program.INSTRUCTION_SIZE;
+		Assembler assembler = new Assembler();
+		int fail = nbInstructions + 1;
+		assembler.pushInt(nbInstructions + 1);
+		assembler.op(ISTORE_3);
+		assembler.op(ILOAD_2);
+		assembler.pushInt(Program.INSTRUCTION_SIZE);
+		assembler.op(IDIV);
+		assembler.tableSwitch(nbInstructions + 1, fail);
+		for (int index = 0; index < nbInstructions; index++){
+			int pc = index * Program.INSTRUCTION_SIZE;
+			assembler.mark(index);
+			assembler.op(IINC).u1(3).u1(-1);
+			assembler.op(ILOAD_3);
+			assembler.branch(IFLT, fail);
+			switch (this.code[pc]){
+			case Program.EXECUTE:
+				assembler.pushInt(pc);
+				assembler.op(IRETURN);
+				break;
+			case Program.JUMP:
+				assembler.branch(GOTO, this.code[pc+1] / Program.INSTRUCTION_SIZE);
+				break;
+			case Program.JUMP_IF_FALSE:
+				assembler.op(GETSTATIC).u2(this.fieldEntry("c" + this.code[pc+1], CONDITION));
+				assembler.op(ALOAD_1);
+				assembler.op(INVOKEINTERFACE).u2(this.methodEntry(11, CONDITION, "evaluate", "(L" + TASK + ";)Ljava/lang/Boolean;"))
+						.u1(2).u1(0);
+				assembler.op(INVOKEVIRTUAL).u2(this.methodEntry(10, "java/lang/Boolean", "booleanValue", "()Z"));
+				assembler.branch(IFEQ, this.code[pc+2] / Program.INSTRUCTION_SIZE);
+				break;
+			case Program.REPEAT_FOLLOW:
+				assembler.op(GETSTATIC).u2(this.fieldEntry("s" + this.code[pc+1], STATEMENT));
+				assembler.op(CHECKCAST).u2(this.classEntry(FOLLOW));
+				assembler.op(ALOAD_1);
+				assembler.op(INVOKEVIRTUAL).u2(this.methodEntry(10, FOLLOW, "hasReachedTarget", "(L" + TASK + ";)Z"));
+				assembler.branch(IFEQ, this.code[pc+2] / Program.INSTRUCTION_SIZE);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown instruction " + this.code[pc]);
+			}
+		}
+		assembler.mark(nbInstructions);
+		assembler.pushInt(this.code.length);
+		assembler.op(IRETURN);
+		assembler.mark(fail);
+		assembler.op(ICONST_M1);
+		assembler.op(IRETURN);
+		return assembler.toByteArray();
+	}
+
+	/**
+	 * Return the code of the method executing the Statement of the EXECUTE instruction at a given index.
+	 */
+	private byte[] executeMethod(){
+		int nbInstructions = this.code.length / Program.INSTRUCTION_SIZE;
+		Assembler assembler = new Assembler();
+		int fail = nbInstructions;
+		assembler.op(ILOAD_2);
+		assembler.pushInt(Program.INSTRUCTION_SIZE);
+		assembler.op(IDIV);
+		assembler.tableSwitch(nbInstructions, fail);
+		for (int index = 0; index < nbInstructions; index++){
+			int pc = index * Program.INSTRUCTION_SIZE;
+			assembler.mark(index);
+			if (this.code[pc] == Program.EXECUTE){
+				assembler.op(GETSTATIC).u2(this.fieldEntry("s" + this.code[pc+1], STATEMENT));
+				assembler.op(ALOAD_1);
+				assembler.op(INVOKEINTERFACE).u2(this.methodEntry(11, STATEMENT, "execute", "(L" + TASK + ";)V")).u1(2).u1(0);
+				assembler.op(RETURN);
+			} else
+				assembler.branch(GOTO, fail);
+		}
+		assembler.mark(fail);
+		int exception = this.classEntry("java/lang/IllegalStateException");
+		assembler.op(NEW).u2(exception);
+		assembler.op(DUP);
+		assembler.op(INVOKESPECIAL).u2(this.methodEntry(10, "java/lang/IllegalStateException", "<init>", "()V"));
+		assembler.op(ATHROW);
+		return assembler.toByteArray();
+	}
+
+	/*
+	 * The constant pool of the generated class.
+	 */
+
+	private int utf8(String value){
+		return this.constant("U" + value, out -> {
+			out.writeByte(1);
+			out.writeUTF(value);
+		});
+	}
+
+	private int classEntry(String name){
+		int nameIndex = this.utf8(name);
+		return this.constant("C" + name, out -> {
+			out.writeByte(7);
+			out.writeShort(nameIndex);
+		});
+	}
+
+	private int nameAndType(String name, String type){
+		int nameIndex = this.utf8(name), typeIndex = this.utf8(type);
+		return this.constant("N" + name + " " + type, out -> {
+			out.writeByte(12);
+			out.writeShort(nameIndex);
+			out.writeShort(typeIndex);
+		});
+	}
+
+	private int fieldEntry(String name, String typeName){
+		int owner = this.classEntry(NAME.replace('.', '/'));
+		int nameAndType = this.nameAndType(name, "L" + typeName + ";");
+		return this.constant("F" + name, out -> {
+			out.writeByte(9);
+			out.writeShort(owner);
+			out.writeShort(nameAndType);
+		});
+	}
+
+	/**
+	 * Return the index of a method reference with the given tag, 10 for a class method and 11 for an interface method.
+	 */
+	private int methodEntry(int tag, String owner, String name, String type){
+		int ownerIndex = this.classEntry(owner);
+		int nameAndType = this.nameAndType(name, type);
+		return this.constant("M" + owner + "." + name + type, out -> {
+			out.writeByte(tag);
+			out.writeShort(ownerIndex);
+			out.writeShort(nameAndType);
+		});
+	}
+
+	/**
+	 * Return the index of the constant with the given key, writing it to the pool if it is not there yet.
+	 */
+	private int constant(String key, ConstantWriter writer){
+		Integer index = this.constants.get(key);
+		if (index != null)
+			return index;
+		try {
+			writer.write(this.poolOut);
+		} catch (IOException e){
+			throw new IllegalStateException(e);
+		}
+		this.constants.put(key, this.constants.size() + 1);
+		return this.constants.size();
+	}
+
+	@FunctionalInterface
+	private interface ConstantWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private final Map<String, Integer> constants = new HashMap<>();
+
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+
+	private final DataOutputStream poolOut = new DataOutputStream(this.pool);
+
+	/*
+	 * The operation codes of the virtual machine used by the generated class.
+	 */
+
+	private static final int ICONST_M1 = 0x02, BIPUSH = 0x10, SIPUSH = 0x11, ILOAD_2 = 0x1C, ILOAD_3 = 0x1D,
+			LDC_W = 0x13, ALOAD_0 = 0x2A, ALOAD_1 = 0x2B, AALOAD = 0x32, ISTORE_3 = 0x3E, ASTORE_0 = 0x4B, DUP = 0x59, IDIV = 0x6C, IINC = 0x84,
+			IFEQ = 0x99, IFLT = 0x9B, GOTO = 0xA7, TABLESWITCH = 0xAA, IRETURN = 0xAC, RETURN = 0xB1, GETSTATIC = 0xB2,
+			PUTSTATIC = 0xB3, INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7, INVOKEINTERFACE = 0xB9,
+			NEW = 0xBB, ATHROW = 0xBF, CHECKCAST = 0xC0;
+
+	/**
+	 * A class of assemblers, collecting the code of a single method with branches to numbered labels.
+	 */
+	private static final class Assembler {
+
+		Assembler op(int operation){
+			this.bytes.write(operation);
+			return this;
+		}
+
+		Assembler u1(int value){
+			this.bytes.write(value & 0xFF);
+			return this;
+		}
+
+		Assembler u2(int value){
+			this.bytes.write((value >> 8) & 0xFF);
+			this.bytes.write(value & 0xFF);
+			return this;
+		}
+
+		private Assembler u4(int value){
+			this.u2(value >>> 16);
+			return this.u2(value);
+		}
+
+		/**
+		 * Push the given integer, which lies between -32768 and 32767.
+		 */
+		void pushInt(int value){
+			assert value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+			if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+				this.op(BIPUSH).u1(value);
+			else
+				this.op(SIPUSH).u2(value);
+		}
+
+		/**
+		 * Register that the label with the given number lies at the current position.
+		 */
+		void mark(int label){
+			this.labels.put(label, this.bytes.size());
+		}
+
+		/**
+		 * Emit a branch with the given operation code to the label with the given number.
+		 */
+		void branch(int operation, int label){
+			int position = this.bytes.size();
+			this.op(operation);
+			this.fixups.add(new int[] {position, this.bytes.size(), label, 2});
+			this.u2(0);
+		}
+
+		/**
+		 * Emit a table switch on the integer on top of the stack, jumping to the label with the same number
+		 * as that integer if it lies between zero and the given number of cases, and to the given default label otherwise.
+		 */
+		void tableSwitch(int nbCases, int defaultLabel){
+			int position = this.bytes.size();
+			this.op(TABLESWITCH);
+			while (this.bytes.size() % 4 != 0)
+				this.u1(0);
+			this.fixups.add(new int[] {position, this.bytes.size(), defaultLabel, 4});
+			this.u4(0);
+			this.u4(0);
+			this.u4(nbCases - 1);
+			for (int label = 0; label < nbCases; label++){
+				this.fixups.add(new int[] {position, this.bytes.size(), label, 4});
+				this.u4(0);
+			}
+		}
+
+		/**
+		 * Return the code collected by this assembler, with the offsets of all branches filled in.
+		 */
+		byte[] toByteArray(){
+			byte[] result = this.bytes.toByteArray();
+			for (int[] fixup:this.fixups){
+				int offset = this.labels.get(fixup[2]) - fixup[0];
+				if (fixup[3] == 2){
+					if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+						throw new IllegalArgumentException("Branch too far");
+					result[fixup[1]] = (byte) (offset >> 8);
+					result[fixup[1]+1] = (byte) offset;
+				} else {
+					for (int i = 0; i < 4; i++)
+						result[fixup[1]+i] = (byte) (offset >> (24 - 8*i));
+				}
+			}
+			return result;
+		}
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		private final Map<Integer, Integer> labels = new HashMap<>();
+
+		/**
+		 * The branches whose offset must still be filled in, as the position of the branching
+		 * operation, the position of the offset, the number of the target label and the size of the offset.
+		 */
+		private final List<int[]> fixups = new ArrayList<>();
+	}
+}
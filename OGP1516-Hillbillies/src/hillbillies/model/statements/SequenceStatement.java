@@ -1,12 +1,10 @@
 package hillbillies.model.statements;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
-import hillbillies.model.Task;
+import hillbillies.model.FrameLayout;
 import hillbillies.part3.programs.SourceLocation;
 
 public class SequenceStatement extends Statement {
@@ -22,14 +20,6 @@ public class SequenceStatement extends Statement {
 			statement.setParentStatement(this);
 		}
 	}
-
-	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		for (Statement statement : statements) {
-			statement.addToTask(task);
-		}
-	}
 	
 	public List<Statement> getSequence(){
 		return this.statements;
@@ -46,51 +36,63 @@ public class SequenceStatement extends Statement {
 	}
 
 	@Override
-	public Iterator<IExecutableStatement> iterator() {
-		return new Iterator<IExecutableStatement>(){
-			
-			private Iterator<Statement> nextStatements = statements.iterator();
-			
-			private Iterator<IExecutableStatement> currentIterator;
-			
-			private int nbStatementsHandled = 0;
-
-			@Override
-			public boolean hasNext() {
-				if (currentIterator != null && currentIterator.hasNext())
-					return true;
-				for (int i = nbStatementsHandled + 1; i < statements.size(); i++){
-					if (statements.get(i).iterator().hasNext())
-						return true;
-				}
-				return false;
-			}
+	SequenceStatement layOut(FrameLayout layout) {
+		List<Statement> laidOut = new ArrayList<>();
+		for (Statement statement:this.statements)
+			laidOut.add(statement.layOut(layout));
+		return new SequenceStatement(laidOut, getSourceLocation());
+	}
 
-			@Override
-			public IExecutableStatement next() throws NoSuchElementException {
-				if (!hasNext())
-					throw new NoSuchElementException();
-				if (currentIterator == null)
-					currentIterator = nextStatements.next().iterator();
-				while(!currentIterator.hasNext()){
-					nbStatementsHandled += 1;
-					currentIterator = nextStatements.next().iterator();
-				}
-				return currentIterator.next();
-			}
-			
-		};
+	@Override
+	void compile(Program.Compiler compiler) {
+		for (Statement statement:this.statements)
+			statement.compile(compiler);
 	}
+
 	@Override
-	public void   setExecuted(boolean e) {
-		this.executed=e;
-		for (Statement statement : statements) {
-			statement.setExecuted(e);
+	int getNbNodes() {
+		int nbNodes = 1;
+		for (Statement statement:this.statements)
+			nbNodes += statement.getNbNodes();
+		return nbNodes;
+	}
 
+	/**
+	 * Return the optimised sequence of the optimised Statements of this sequence.
+	 * @return	The Statements of nested sequences are taken up in the resulting sequence, and the
+	 * 			Statements following a break are dropped, since they can never be reached.
+	 * 			A sequence of a single Statement is replaced by that Statement.
+	 */
+	@Override
+	Statement optimize() {
+		List<Statement> optimized = new ArrayList<>();
+		for (Statement statement:this.statements){
+			Statement result = statement.optimize();
+			if (result instanceof SequenceStatement)
+				optimized.addAll(((SequenceStatement) result).statements);
+			else
+				optimized.add(result);
+			if (!optimized.isEmpty() && optimized.get(optimized.size()-1) instanceof BreakStatement)
+				break;
 		}
-			 
-		}
+		if (optimized.size() == 1)
+			return optimized.get(0);
+		if (optimized.equals(this.statements))
+			return this;
+		return new SequenceStatement(optimized, getSourceLocation());
+	}
+
+	@Override
+	boolean isEmpty() {
+		return this.statements.isEmpty();
+	}
 
+	/**
+	 * Return a new sequence without any Statements, at the given location.
+	 */
+	static SequenceStatement empty(SourceLocation sourceLocation){
+		return new SequenceStatement(new ArrayList<>(), sourceLocation);
+	}
 	@Override
 	public List<Statement> getStatements() {
 		List<Statement> list= new ArrayList<>();
@@ -108,11 +110,4 @@ public class SequenceStatement extends Statement {
 				return false;
 		return true;
 	}
-
-	@Override
-	public void reset() {
-		for (Statement statement : this.statements){
-			statement.reset();
-		}			
-	}
 }
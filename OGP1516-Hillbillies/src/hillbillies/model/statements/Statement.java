@@ -1,22 +1,22 @@
 package hillbillies.model.statements;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
-import be.kuleuven.cs.som.annotate.Basic;
-import be.kuleuven.cs.som.annotate.Raw;
-import hillbillies.model.Task;
-import hillbillies.model.Unit;
+import hillbillies.model.FrameLayout;
 import hillbillies.part3.programs.SourceLocation;
 
 /**
- * 
+ * A class of Statements of the task language.
+ *
+ * A program compiles its own laid-out copy of a Statement, which does not change afterwards, so that
+ * a single tree of Statements can be shared by all Tasks executing it. The execution state of a Task, such as
+ * the values of its variables, is kept by that Task itself, and passed to each Statement it executes.
  * @author Sander Declercq
  * @author Bram Belpaire
  *
  */
-public abstract class Statement implements Iterable<IExecutableStatement> {
+public abstract class Statement {
 	
 	public Statement(SourceLocation sourceLocation) throws IllegalArgumentException {
 		if (sourceLocation == null)
@@ -30,49 +30,51 @@ public abstract class Statement implements Iterable<IExecutableStatement> {
 	
 	private final SourceLocation sourceLocation;
 
-	public abstract void addToTask(Task task);
-
-	/**
-	 * Return the Task of this Statement.
-	 */
-	@Basic @Raw
-	protected Task getTask() {
-		return this.task;
+	protected Statement getParentStatement(){
+		return this.parentStatement;
 	}
 	
-	@Raw
-	protected void setTask(Task task) {
-		this.task = task;
+	protected void setParentStatement(Statement statement){
+		this.parentStatement = statement;
 	}
-
+	
 	/**
-	 * Variable registering the Task of this Statement.
+	 * Return a copy of this Statement, in which the execution state of this Statement and of its
+	 * sub-Statements and expressions is laid out in the given layout.
+	 * @note	This is done once, when a program is compiled. The copy registers its slots in final
+	 * 			fields, and is never changed afterwards. This Statement itself is left unchanged.
 	 */
-	private Task task;	
+	abstract Statement layOut(FrameLayout layout);
 	
-	protected Unit getUnit(){
-		return this.getTask().getUnit();
-	}
+	/**
+	 * Append the instructions executing this Statement to the program being compiled
+	 * by the given compiler.
+	 */
+	abstract void compile(Program.Compiler compiler);
 	
-	protected boolean executed=false;
+	/**
+	 * Return the number of nodes of this Statement, counting this Statement and each
+	 * of its sub-Statements and expressions.
+	 */
+	abstract int getNbNodes();
 	
-	public boolean getexecuted () {
-		return this.executed;
-	}
-	public void setExecuted(boolean e){
-		this.executed=e;
-	}
-
-	protected Statement getParentStatement(){
-		return this.parentStatement;
+	/**
+	 * Return a Statement executing the same simple Statements as this one, in which the conditions
+	 * are folded and the branches and loops that cannot execute a simple Statement are removed.
+	 * @return	This Statement if nothing can be optimised. Otherwise a new Statement, which may share
+	 * 			sub-Statements and expressions with this Statement.
+	 */
+	Statement optimize(){
+		return this;
 	}
 	
-	protected void setParentStatement(Statement statement){
-		this.parentStatement = statement;
+	/**
+	 * Check whether this Statement executes nothing at all.
+	 */
+	boolean isEmpty(){
+		return false;
 	}
 	
-	public abstract Iterator<IExecutableStatement> iterator();
-	
 	private Statement parentStatement;
 		
 	public WhileStatement getWhileStatement() {
@@ -97,8 +99,4 @@ public abstract class Statement implements Iterable<IExecutableStatement> {
 	public abstract List< Statement> getStatements();
 	
 	public abstract boolean isWellFormed(Set<String> variables);
-	
-	public void reset(){
-		
-	}
 }
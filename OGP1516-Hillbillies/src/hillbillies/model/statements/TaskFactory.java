@@ -41,18 +41,29 @@ import hillbillies.part3.programs.SourceLocation;
 public class TaskFactory implements ITaskFactory<Expression, Statement, Task> {
 	
 	private HashMap<String,Class<? extends Expression>> types = new HashMap<>();
+	
+	/**
+	 * Return the optimiser simplifying the activities of the tasks created by this factory.
+	 */
+	public TaskOptimizer getOptimizer(){
+		return this.optimizer;
+	}
+	
+	private final TaskOptimizer optimizer = new TaskOptimizer();
 
 	@Override
 	public List<Task> createTasks(String name, int priority, Statement activity, List<int[]> selectedCubes) {
 		
+		 activity = this.optimizer.optimize(activity);
+		 Program program = new Program(activity);
 		 List<Task> tasklist= new ArrayList<>();
 		if (selectedCubes.size()!=0) {
 			for (int[] i : selectedCubes) {
-				tasklist.add(new Task(name, priority, activity.clone(), new Vector(i[0],i[1],i[2])));
+				tasklist.add(new Task(name, priority, program, new Vector(i[0],i[1],i[2])));
 			}
 		}
 		else {
-			tasklist.add(new Task(name, priority, activity.clone()));
+			tasklist.add(new Task(name, priority, program));
 		}
 		
 		return tasklist;
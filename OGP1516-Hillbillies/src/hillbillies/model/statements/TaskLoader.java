@@ -0,0 +1,263 @@
+package hillbillies.model.statements;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import hillbillies.model.Scheduler;
+import hillbillies.model.Task;
+import hillbillies.part3.programs.TaskParser;
+
+/**
+ * A class of loaders, adding libraries of tasks to a Scheduler at once.
+ *
+ * A library is either a directory, of which each .txt file holds a single task, or a bundle:
+ * a single file in which several tasks are concatenated, each starting with its name. The
+ * tasks of a library are parsed and checked for well-formedness in parallel, after which all
+ * tasks that could be created are added to the Scheduler in a single call. A task that cannot
+ * be parsed or is not well formed is reported, but does not keep the other tasks from loading.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ * @invar	The number of threads of each loader is strictly positive.
+ * 			| getNbThreads() > 0
+ */
+public final class TaskLoader {
+
+	/**
+	 * Initialize this new loader with the given number of threads.
+	 * @param nbThreads
+	 * 			The number of threads parsing tasks at the same time.
+	 * @post	| new.getNbThreads() == nbThreads
+	 * @throws IllegalArgumentException
+	 * 			The given number of threads is not strictly positive.
+	 * 			| nbThreads < 1
+	 */
+	public TaskLoader(int nbThreads) throws IllegalArgumentException {
+		if (nbThreads < 1)
+			throw new IllegalArgumentException();
+		this.nbThreads = nbThreads;
+	}
+
+	/**
+	 * Initialize this new loader with a thread for each available processor.
+	 * @effect	| this(Runtime.getRuntime().availableProcessors())
+	 */
+	public TaskLoader(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Return the number of threads parsing tasks at the same time.
+	 */
+	@Basic @Immutable
+	public int getNbThreads(){
+		return this.nbThreads;
+	}
+
+	private final int nbThreads;
+
+	/**
+	 * Load the tasks of the library at the given path, and add them to the given Scheduler.
+	 * @param library
+	 * 			A directory of task files, or a bundle of concatenated tasks.
+	 * @param scheduler
+	 * 			The Scheduler to add the loaded tasks to.
+	 * @param selectedCubes
+	 * 			The cubes to use as selected cubes of the loaded tasks.
+	 * @return	A report listing the loaded tasks and the errors of the tasks that could not be loaded.
+	 * @effect	All loaded tasks are added to the given Scheduler at once.
+	 * 			| scheduler.addTasks(result.getTasks())
+	 * @note	Threads accessing the World of the given Scheduler must synchronize on it while the
+	 * 			tasks are added, as for any other change to the World.
+	 * @throws IllegalArgumentException
+	 * 			The given library, Scheduler or list of cubes is not effective.
+	 * @throws IOException
+	 * 			The given library cannot be read.
+	 */
+	public Report load(Path library, Scheduler scheduler, List<int[]> selectedCubes)
+			throws IllegalArgumentException, IOException {
+		if (library == null || scheduler == null || selectedCubes == null)
+			throw new IllegalArgumentException();
+		Report report = this.parse(split(library), selectedCubes);
+		scheduler.addTasks(report.tasks.toArray(new Task[report.tasks.size()]));
+		return report;
+	}
+
+	/**
+	 * Load the tasks of the library at the given path without selected cubes, and add them
+	 * to the given Scheduler.
+	 * @effect	| load(library, scheduler, new ArrayList<>())
+	 */
+	public Report load(Path library, Scheduler scheduler) throws IllegalArgumentException, IOException {
+		return this.load(library, scheduler, new ArrayList<>());
+	}
+
+	/**
+	 * Return the source text of each task of the given library, by a description of its origin.
+	 * The texts of a directory are ordered by file name, those of a bundle by their position.
+	 */
+	private static Map<String, String> split(Path library) throws IOException {
+		Map<String, String> sources = new LinkedHashMap<>();
+		if (Files.isDirectory(library)){
+			List<Path> files = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(library, "*.txt")){
+				for (Path file : stream)
+					files.add(file);
+			}
+			Collections.sort(files);
+			for (Path file : files)
+				sources.put(file.toString(), read(file));
+			return sources;
+		}
+		String text = read(library);
+		Matcher matcher = TASK_START.matcher(text);
+		List<Integer> starts = new ArrayList<>();
+		while (matcher.find())
+			starts.add(matcher.start());
+		if (starts.isEmpty() || !text.substring(0, starts.get(0)).trim().isEmpty())
+			starts.add(0, 0);
+		for (int i = 0; i < starts.size(); i++){
+			int start = starts.get(i);
+			int end = (i + 1 < starts.size()) ? starts.get(i+1) : text.length();
+			sources.put(library + ":" + lineOf(text, start), text.substring(start, end));
+		}
+		return sources;
+	}
+
+	/**
+	 * The start of a task in a bundle: the keyword name at the beginning of a line.
+	 */
+	private static final Pattern TASK_START = Pattern.compile("(?m)^[ \\t]*name[ \\t]*:");
+
+	private static String read(Path file) throws IOException {
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Return the number of the line holding the given index of the given text, starting from one.
+	 */
+	private static int lineOf(String text, int index) {
+		int line = 1;
+		for (int i = 0; i < index; i++)
+			if (text.charAt(i) == '\n')
+				line++;
+		return line;
+	}
+
+	/**
+	 * Parse the given sources on the threads of this loader, and report the results in the
+	 * order of the given sources.
+	 */
+	private Report parse(Map<String, String> sources, List<int[]> selectedCubes) {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.nbThreads, Math.max(1, sources.size())),
+				runnable -> {
+					Thread thread = new Thread(runnable, "Task loader");
+					thread.setDaemon(true);
+					return thread;
+				});
+		try {
+			Map<String, Future<Report>> results = new LinkedHashMap<>();
+			for (Map.Entry<String, String> source : sources.entrySet())
+				results.put(source.getKey(),
+						executor.submit(() -> parse(source.getKey(), source.getValue(), selectedCubes)));
+			Report report = new Report();
+			for (Map.Entry<String, Future<Report>> result : results.entrySet()){
+				try {
+					Report outcome = result.getValue().get();
+					report.tasks.addAll(outcome.tasks);
+					report.errors.putAll(outcome.errors);
+				} catch (ExecutionException e){
+					report.errors.put(result.getKey(), Collections.singletonList(e.getCause().toString()));
+				} catch (InterruptedException e){
+					Thread.currentThread().interrupt();
+					report.errors.put(result.getKey(), Collections.singletonList(e.toString()));
+				}
+			}
+			return report;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Parse the given source text, and check whether the resulting tasks are well formed.
+	 * @return	A report listing the tasks created from the given text, or the errors that kept
+	 * 			them from being created under the given origin.
+	 * @note	Each source is parsed with a factory of its own, since factories are not thread-safe.
+	 * 			Threads parsing the same text share its recording in the parse cache, but each of them
+	 * 			replays it into new Statements, which are optimised and compiled by that thread only.
+	 */
+	private static Report parse(String origin, String source, List<int[]> selectedCubes) {
+		Report report = new Report();
+		TaskParser<?, ?, Task> parser = TaskParser.create(new TaskFactory());
+		Optional<List<Task>> tasks = parser.parseString(source, selectedCubes);
+		if (!tasks.isPresent())
+			report.errors.put(origin, new ArrayList<>(parser.getErrors()));
+		else {
+			for (Task task : tasks.get())
+				if (!task.wellformed()){
+					report.errors.put(origin, Collections.singletonList("Task " + task.getName() + " is not well formed"));
+					return report;
+				}
+			report.tasks.addAll(tasks.get());
+		}
+		return report;
+	}
+
+	/**
+	 * A class of reports on the loading of a library of tasks.
+	 */
+	public static final class Report {
+
+		private Report(){
+		}
+
+		/**
+		 * Return the tasks loaded from the library, in the order of their sources.
+		 */
+		public List<Task> getTasks(){
+			return Collections.unmodifiableList(this.tasks);
+		}
+
+		private final List<Task> tasks = new ArrayList<>();
+
+		/**
+		 * Return the errors of each source of the library that could not be loaded,
+		 * by a description of that source.
+		 */
+		public Map<String, List<String>> getErrors(){
+			return Collections.unmodifiableMap(this.errors);
+		}
+
+		private final Map<String, List<String>> errors = new LinkedHashMap<>();
+
+		/**
+		 * Check whether all sources of the library have been loaded.
+		 */
+		public boolean isComplete(){
+			return this.errors.isEmpty();
+		}
+
+		@Override
+		public String toString(){
+			return "Loaded " + this.tasks.size() + " tasks, " + this.errors.size() + " sources failed";
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package hillbillies.model.statements;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import be.kuleuven.cs.som.annotate.Basic;
+
+/**
+ * A class of optimisers, simplifying the Statements of parsed tasks before they are executed.
+ *
+ * Boolean subexpressions built from true and false only are folded, branches of if Statements
+ * that can never be selected are removed, as are loops that can never execute a simple Statement,
+ * Statements following a break and nested sequences. The optimiser registers how many nodes it
+ * has removed from all Statements it has optimised.
+ * @note	Loop-invariant expressions are not hoisted out of loops: apart from the constants
+ * 			folded by this optimiser, every expression of the task language reads the world or
+ * 			the unit executing the task, both of which change while the loop executes.
+ * @author Sander Declercq
+ * @author Bram Belpaire
+ *
+ */
+public final class TaskOptimizer {
+
+	/**
+	 * Return an optimised version of the given Statement.
+	 * @param statement
+	 * 			The Statement to optimise.
+	 * @return	A Statement executing the same simple Statements as the given Statement.
+	 * 			The given Statement itself is left unchanged, and shares no nodes with the result.
+	 * @effect	The number of optimised Statements is incremented by one.
+	 * @effect	The number of removed nodes is incremented by the number of nodes of the given
+	 * 			Statement that do not remain in the result.
+	 * @throws IllegalArgumentException
+	 * 			The given Statement is not effective.
+	 * @note	The optimised Statement is built from a copy of the given Statement, since the
+	 * 			Statements built while optimising become the parents of the Statements they hold.
+	 * @note	An optimiser can be used by several threads at once.
+	 */
+	public Statement optimize(Statement statement) throws IllegalArgumentException {
+		if (statement == null)
+			throw new IllegalArgumentException();
+		Statement result = statement.clone().optimize();
+		result.setParentStatement(null);
+		this.nbOptimized.incrementAndGet();
+		this.nbRemovedNodes.addAndGet(statement.getNbNodes() - result.getNbNodes());
+		return result;
+	}
+
+	/**
+	 * Return the number of Statements this optimiser has optimised.
+	 */
+	@Basic
+	public int getNbOptimized(){
+		return this.nbOptimized.get();
+	}
+
+	/**
+	 * Variable registering the number of Statements this optimiser has optimised.
+	 */
+	private final AtomicInteger nbOptimized = new AtomicInteger();
+
+	/**
+	 * Return the number of nodes this optimiser has removed from the Statements it has optimised.
+	 */
+	@Basic
+	public int getNbRemovedNodes(){
+		return this.nbRemovedNodes.get();
+	}
+
+	/**
+	 * Variable registering the number of nodes this optimiser has removed.
+	 */
+	private final AtomicInteger nbRemovedNodes = new AtomicInteger();
+
+	/**
+	 * Return a textual report of the work of this optimiser.
+	 */
+	@Override
+	public String toString(){
+		return "Optimised " + this.getNbOptimized() + " statements, removing " + this.getNbRemovedNodes() + " nodes";
+	}
+}
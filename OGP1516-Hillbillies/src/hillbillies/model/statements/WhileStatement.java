@@ -1,12 +1,11 @@
 package hillbillies.model.statements;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
-import hillbillies.model.Task;
+import hillbillies.model.FrameLayout;
+import hillbillies.model.expressions.FalseBooleanExpression;
 import hillbillies.model.expressions.IBooleanExpression;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -20,7 +19,6 @@ public class WhileStatement extends Statement {
 		this.expression=condition;
 		this.body=body;
 		this.body.setParentStatement(this);
-		this.broken = false;
 	}
 
 	private final IBooleanExpression expression;
@@ -36,56 +34,49 @@ public class WhileStatement extends Statement {
 	//	}
 
 	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		body.addToTask(task);
-		this.expression.addToTask(task);
+	public WhileStatement clone() {
+		return new WhileStatement(expression.clone(), body.clone(), getSourceLocation());
 	}
 
-	void breakWhile(){
-		this.broken = true;
+	@Override
+	WhileStatement layOut(FrameLayout layout) {
+		return new WhileStatement(this.expression.layOut(layout), this.body.layOut(layout), getSourceLocation());
 	}
 
-	boolean isBroken(){
-		return this.broken;
+	@Override
+	void compile(Program.Compiler compiler) {
+		int start = compiler.here();
+		int test = compiler.emitJumpIfFalse(this.expression, -1, getSourceLocation());
+		compiler.enterLoop();
+		this.body.compile(compiler);
+		compiler.emit(Program.JUMP, start, 0, getSourceLocation());
+		compiler.patch(test, compiler.here());
+		compiler.exitLoop(compiler.here());
 	}
 
-	private boolean broken;
-
 	@Override
-	public WhileStatement clone() {
-		return new WhileStatement(expression.clone(), body.clone(), getSourceLocation());
+	int getNbNodes() {
+		return 1 + this.expression.getNbNodes() + this.body.getNbNodes();
 	}
 
+	/**
+	 * Return the optimised version of this while Statement.
+	 * @return	If the folded condition is false, or the optimised body does not execute anything,
+	 * 			an empty sequence. Otherwise a while Statement with the folded condition and optimised body.
+	 * @note	A loop without anything to execute either does nothing or keeps looping without ever
+	 * 			executing a Statement, which stops the task. It is removed along with its condition.
+	 */
 	@Override
-	public Iterator<IExecutableStatement> iterator() {
-		return new Iterator<IExecutableStatement>() {
-
-			Iterator<IExecutableStatement> subIterator = body.iterator();
-
-			@Override
-			public IExecutableStatement next() throws NoSuchElementException {
-				if (subIterator.hasNext())
-					return subIterator.next();
-				else if (expression.evaluate()){
-					subIterator = body.iterator();
-					return subIterator.next();
-				} else
-					throw new NoSuchElementException();
-			}
-
-			@Override
-			public boolean hasNext() {
-				if (isBroken())
-					return false;
-				if (subIterator.hasNext())
-					return true;
-				else if (expression.evaluate())
-					return true;
-				return false;
-			}
-		};
+	Statement optimize() {
+		IBooleanExpression condition = this.expression.fold();
+		Statement body = this.body.optimize();
+		if (condition instanceof FalseBooleanExpression || body.isEmpty())
+			return SequenceStatement.empty(getSourceLocation());
+		if (condition == this.expression && body == this.body)
+			return this;
+		return new WhileStatement(condition, body, getSourceLocation());
 	}
+
 	@Override
 	public List<Statement> getStatements() {
 		List<Statement>list=new ArrayList<Statement>();
@@ -97,10 +88,4 @@ public class WhileStatement extends Statement {
 	public boolean isWellFormed(Set<String> variables) {
 		return this.expression.isWellFormed(variables) && this.body.isWellFormed(variables);
 	}
-
-	@Override
-	public void reset() {
-		this.broken = false;
-		this.body.reset();
-	}
 }
@@ -1,12 +1,12 @@
 package hillbillies.model.statements;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 import java.util.Set;
 
+import hillbillies.model.FrameLayout;
 import hillbillies.model.Task;
+import hillbillies.model.Vector;
 import hillbillies.model.expressions.IPositionExpression;
 import hillbillies.part3.programs.SourceLocation;
 
@@ -23,15 +23,9 @@ public class WorkStatement extends Statement implements IExecutableStatement {
 	private final IPositionExpression expression;
 
 	@Override
-	public void execute(){
-		this.getUnit().WorkAt(expression.evaluate().getCubeX(),expression.evaluate().getCubeY(),expression.evaluate().getCubeZ());
-	}
-
-	@Override
-	public void addToTask(Task task) {
-		this.setTask(task);
-		this.expression.addToTask(task);
-
+	public void execute(Task task){
+		Vector position = expression.evaluate(task);
+		task.getUnit().WorkAt(position.getCubeX(),position.getCubeY(),position.getCubeZ());
 	}
 	
 	@Override
@@ -40,24 +34,18 @@ public class WorkStatement extends Statement implements IExecutableStatement {
 	}
 
 	@Override
-	public Iterator<IExecutableStatement> iterator() {
-		return new Iterator<IExecutableStatement>(){
-
-			private boolean statementHandled = false;
+	WorkStatement layOut(FrameLayout layout) {
+		return new WorkStatement(this.expression.layOut(layout), getSourceLocation());
+	}
 
-			@Override
-			public boolean hasNext() {
-				return !statementHandled;
-			}
+	@Override
+	void compile(Program.Compiler compiler) {
+		compiler.emitExecute(this, getSourceLocation());
+	}
 
-			@Override
-			public IExecutableStatement next() throws NoSuchElementException {
-				if (!hasNext())
-					throw new NoSuchElementException();
-				statementHandled = true;
-				return WorkStatement.this;
-			}
-		};
+	@Override
+	int getNbNodes() {
+		return 1 + this.expression.getNbNodes();
 	}
 
 	@Override
@@ -71,7 +71,6 @@ public class ExpressionsTest {
 	@Test
 	public void anyUnit() {
 		AnyUnitExpression anyUnitExpression =new AnyUnitExpression(sourcelocation);
-		anyUnitExpression.addToTask(task);
 		unit1.moveTo(0, 0, 0);
 		unit2.moveTo(0, 0, 0);
 		unit3.moveTo(2, 0, 0);
@@ -80,16 +79,15 @@ public class ExpressionsTest {
 
 		}
 		task.assignToUnit(unit1);
-		assertTrue(anyUnitExpression.evaluate()==unit2);
+		assertTrue(anyUnitExpression.evaluate(task)==unit2);
 		
 	}
 	@Test
 	public void isSolid() {
 		IsSolidBoolean isSolidBoolean =new IsSolidBoolean(new LiteralPositionExpression(4, 0, 0,sourcelocation), sourcelocation);
-		isSolidBoolean.addToTask(task);
 		task.assignToUnit(unit1);
 
-		assertTrue(isSolidBoolean.evaluate());
+		assertTrue(isSolidBoolean.evaluate(task));
 
 		
 		
@@ -97,86 +95,76 @@ public class ExpressionsTest {
 	@Test
 	public void isThis() {
 		ThisUnitExpression thisUnitExpression =new ThisUnitExpression(sourcelocation);
-		thisUnitExpression.addToTask(task);
 		task.assignToUnit(unit1);
 
-		assertTrue(thisUnitExpression.evaluate()==unit1);
+		assertTrue(thisUnitExpression.evaluate(task)==unit1);
 	}
 	@Test
 	public void trueexpression() {
 		TrueBooleanExpression trueBooleanExpression =new TrueBooleanExpression(sourcelocation);
-		trueBooleanExpression.addToTask(task);
 		task.assignToUnit(unit1);
 
-		assertTrue(trueBooleanExpression.evaluate());
+		assertTrue(trueBooleanExpression.evaluate(task));
 	}
 	@Test
 	public void falseExpression() {
 		FalseBooleanExpression falseBooleanExpression =new FalseBooleanExpression(sourcelocation);
-		falseBooleanExpression.addToTask(task);
 		task.assignToUnit(unit1);
 
-		assertTrue(!falseBooleanExpression.evaluate());
+		assertTrue(!falseBooleanExpression.evaluate(task));
 	}
 	@Test
 	public void nextTo() {
 		NextToPositionExpression nextToPositionExpression =new NextToPositionExpression(new LiteralPositionExpression(0, 0, 0, sourcelocation),sourcelocation);
-		nextToPositionExpression.addToTask(task);
 		
 		task.assignToUnit(unit1);
-		assertTrue(nextToPositionExpression.evaluate().equals(new Vector(1, 0, 0)));
+		assertTrue(nextToPositionExpression.evaluate(task).equals(new Vector(1, 0, 0)));
 		
 	}
 	@Test
 	public void Isalive() {
 		IsAliveBoolean isAliveBoolean =new IsAliveBoolean(new ThisUnitExpression(sourcelocation),sourcelocation);
-		isAliveBoolean.addToTask(task);
 		task.assignToUnit(unit1);
-		assertTrue(isAliveBoolean.evaluate());
+		assertTrue(isAliveBoolean.evaluate(task));
 	}
 	@Test
 	public void ReadUnit() {
 		task.assignToUnit(unit1);
 		ThisUnitExpression thisUnitExpression1=new ThisUnitExpression(sourcelocation);
-		thisUnitExpression1.addToTask(task);
-		task.storeVariable("test", thisUnitExpression1.evaluate());
+		task.storeVariable("test", thisUnitExpression1.evaluate(task));
 		ReadUnitExpression readUnitExpression =new ReadUnitExpression("test",sourcelocation);
-		readUnitExpression.addToTask(task);
 		
 		
-		assertTrue(readUnitExpression.evaluate()==unit1);
+		assertTrue(readUnitExpression.evaluate(task)==unit1);
 	}
 	
 	@Test
 	public void anyLog() {
 		LogPositionExpression logPositionExpression =new LogPositionExpression(sourcelocation);
-		logPositionExpression.addToTask(task);
 		unit1.moveTo(0, 0, 0);
 		for (int i = 0; i < 100; i++) {
 			world.advanceTime(0.19);
 
 		}
 		task.assignToUnit(unit1);
-		assertTrue(logPositionExpression.evaluate().equals(log1.getPosition()));
+		assertTrue(logPositionExpression.evaluate(task).equals(log1.getPosition()));
 		
 	}
 	@Test
 	public void anyBoulder() {
 		BoulderPositionExpression boulderPositionExpression =new BoulderPositionExpression(sourcelocation);
-		boulderPositionExpression.addToTask(task);
 		unit1.moveTo(0, 0, 0);
 		for (int i = 0; i < 100; i++) {
 			world.advanceTime(0.19);
 
 		}
 		task.assignToUnit(unit1);
-		assertTrue(boulderPositionExpression.evaluate().equals(boulder1.getPosition()));
+		assertTrue(boulderPositionExpression.evaluate(task).equals(boulder1.getPosition()));
 		
 	}
 	@Test
 	public void enemyUnit() {
 		EnemyUnitExpression enemyUnitExpression =new EnemyUnitExpression(sourcelocation);
-		enemyUnitExpression.addToTask(task);
 		unit1.moveTo(0, 0, 0);
 		unit2.moveTo(0, 0, 0);
 		unit3.moveTo(2, 0, 0);
@@ -185,7 +173,7 @@ public class ExpressionsTest {
 
 		}
 		task.assignToUnit(unit1);
-		assertTrue(enemyUnitExpression.evaluate()==unit2);
+		assertTrue(enemyUnitExpression.evaluate(task)==unit2);
 		
 	}
 	
@@ -0,0 +1,50 @@
+package hillbillies.tests.model;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import hillbillies.model.CubeKey;
+import hillbillies.model.Vector;
+
+public class CubeKeyTest {
+
+	@Test
+	public void coordinatesAreRoundTripped(){
+		CubeKey key = CubeKey.of(49, 0, 12);
+		assertEquals(49, key.getX());
+		assertEquals(0, key.getY());
+		assertEquals(12, key.getZ());
+		assertEquals(CubeKey.of(-1, 5, -3).getX(), -1);
+		assertEquals(CubeKey.of(-1, 5, -3).getZ(), -3);
+		assertEquals(key, CubeKey.of(new Vector(49.5, 0.2, 12.9)));
+		assertEquals(new Vector(49, 0, 12), key.toVector());
+	}
+
+	@Test
+	public void diagonalCubesDoNotCollide(){
+		Set<Integer> hashCodes = new HashSet<>();
+		for (int x = 0; x <= 6; x++)
+			for (int y = 0; y <= 6 - x; y++)
+				hashCodes.add(CubeKey.of(x, y, 6 - x - y).hashCode());
+		assertEquals(28, hashCodes.size());
+		assertNotEquals(CubeKey.of(1, 2, 3), CubeKey.of(3, 2, 1));
+	}
+
+	@Test
+	public void neighboursAreVisitedOnce(){
+		Set<CubeKey> direct = new HashSet<>();
+		CubeKey.forEachDirectNeighbour(4, 4, 4, (x, y, z) -> assertTrue(direct.add(CubeKey.of(x, y, z))));
+		assertEquals(6, direct.size());
+		Set<CubeKey> all = new HashSet<>();
+		CubeKey.forEachNeighbour(4, 4, 4, (x, y, z) -> assertTrue(all.add(CubeKey.of(x, y, z))));
+		assertEquals(26, all.size());
+		assertTrue(all.containsAll(direct));
+		assertFalse(all.contains(CubeKey.of(4, 4, 4)));
+	}
+}
@@ -1,8 +1,19 @@
 package hillbillies.tests.model;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -16,8 +27,11 @@ import hillbillies.model.World;
 import hillbillies.model.expressions.HerePositionExpression;
 import hillbillies.model.statements.MoveToStatement;
 import hillbillies.model.statements.Statement;
+import hillbillies.model.statements.TaskFactory;
+import hillbillies.model.statements.TaskLoader;
 import hillbillies.part2.listener.DefaultTerrainChangeListener;
 import hillbillies.part3.programs.SourceLocation;
+import hillbillies.part3.programs.TaskParser;
 
 public class SchedulerTest {
 	
@@ -171,4 +185,78 @@ public class SchedulerTest {
 	public void removeTask_noTask(){
 		scheduler1.removeTaskFromUnit(unit);
 	}
+	
+	@Test
+	public void loadDirectory_collectsErrors() throws IOException {
+		Path library = Files.createTempDirectory("tasks");
+		try {
+			Files.write(library.resolve("a.txt"), "name: \"a\" priority: 1 activities: moveTo here;".getBytes(StandardCharsets.UTF_8));
+			Files.write(library.resolve("b.txt"), "name: \"b\" priority: 2 activities: moveTo ;".getBytes(StandardCharsets.UTF_8));
+			Files.write(library.resolve("c.txt"), "name: \"c\" priority: 3 activities: moveTo p;".getBytes(StandardCharsets.UTF_8));
+			Files.write(library.resolve("d.txt"), "name: \"d\" priority: 4 activities: work here;".getBytes(StandardCharsets.UTF_8));
+			TaskLoader.Report report = new TaskLoader(2).load(library, scheduler1);
+			assertEquals(2, report.getTasks().size());
+			assertEquals("a", report.getTasks().get(0).getName());
+			assertEquals("d", report.getTasks().get(1).getName());
+			assertEquals(2, report.getErrors().size());
+			assertTrue(report.getErrors().containsKey(library.resolve("b.txt").toString()));
+			assertTrue(report.getErrors().containsKey(library.resolve("c.txt").toString()));
+			for (Task loaded : report.getTasks())
+				assertTrue(scheduler1.hasAsTask(loaded));
+		} finally {
+			for (Path file : Files.newDirectoryStream(library))
+				Files.delete(file);
+			Files.delete(library);
+		}
+	}
+	
+	@Test
+	public void loadBundle_splitsTasks() throws IOException {
+		Path bundle = Files.createTempFile("tasks", ".txt");
+		try {
+			Files.write(bundle, ("name: \"a\"\npriority: 1\nactivities:\n p := here;\n moveTo p;\n"
+					+ "name: \"b\"\npriority: 2\nactivities: work here;\n").getBytes(StandardCharsets.UTF_8));
+			int nbTasks = scheduler1.getNbTasks();
+			TaskLoader.Report report = new TaskLoader().load(bundle, scheduler1);
+			assertTrue(report.isComplete());
+			assertEquals(2, report.getTasks().size());
+			assertEquals(nbTasks + 2, scheduler1.getNbTasks());
+		} finally {
+			Files.delete(bundle);
+		}
+	}
+	
+	@Test
+	public void load_sameSourceOnSeveralThreads() throws IOException {
+		String text = "name: \"same\"\npriority: 5\nactivities:\n u := this; p := here;\n"
+				+ " while is_alive u && !is_solid (next_to p) do\n"
+				+ "  if carries_item u then work p; else moveTo position_of friend; fi\n"
+				+ "  follow any; print is_enemy enemy; break;\n done\n";
+		Path bundle = Files.createTempFile("tasks", ".txt");
+		try {
+			StringBuilder library = new StringBuilder();
+			for (int i = 0; i < 64; i++)
+				library.append(text);
+			Files.write(bundle, library.toString().getBytes(StandardCharsets.UTF_8));
+			TaskParser<?, ?, Task> parser = TaskParser.create(new TaskFactory());
+			parser.setCaching(false);
+			Task expected = parser.parseString(text, new ArrayList<>()).get().get(0);
+			TaskLoader.Report report = new TaskLoader(8).load(bundle, scheduler1);
+			assertTrue(report.isComplete());
+			assertEquals(64, report.getTasks().size());
+			Set<Statement> statements = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (Task loaded : report.getTasks()){
+				assertEquals("same", loaded.getName());
+				assertEquals(5, loaded.getPriority());
+				assertTrue(loaded.wellformed());
+				assertArrayEquals(expected.getProgram().getInstructions(), loaded.getProgram().getInstructions());
+				assertEquals(expected.getProgram().getLayout().getVariableSlots(), loaded.getProgram().getLayout().getVariableSlots());
+				assertEquals(expected.getProgram().getLayout().getNbNodes(), loaded.getProgram().getLayout().getNbNodes());
+				assertEquals(expected.getProgram().getLayout().getNbTargets(), loaded.getProgram().getLayout().getNbTargets());
+				assertTrue(statements.add(loaded.getStatement()));
+			}
+		} finally {
+			Files.delete(bundle);
+		}
+	}
 }
@@ -1,9 +1,19 @@
 package hillbillies.tests.model;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 
@@ -19,11 +29,17 @@ import hillbillies.model.Task;
 import hillbillies.model.Unit;
 import hillbillies.model.Vector;
 import hillbillies.model.World;
+import hillbillies.model.expressions.AndBooleanExpression;
 import hillbillies.model.expressions.AnyUnitExpression;
 import hillbillies.model.expressions.BoulderPositionExpression;
 import hillbillies.model.expressions.EnemyUnitExpression;
+import hillbillies.model.expressions.FalseBooleanExpression;
 import hillbillies.model.expressions.HerePositionExpression;
+import hillbillies.model.expressions.IBooleanExpression;
+import hillbillies.model.expressions.IsSolidBoolean;
 import hillbillies.model.expressions.LiteralPositionExpression;
+import hillbillies.model.expressions.NotBooleanExpression;
+import hillbillies.model.expressions.OrBooleanExpression;
 import hillbillies.model.expressions.ReadPositionExpression;
 import hillbillies.model.expressions.TrueBooleanExpression;
 import hillbillies.model.statements.AttackStatement;
@@ -31,11 +47,16 @@ import hillbillies.model.statements.BreakStatement;
 import hillbillies.model.statements.FollowStatement;
 import hillbillies.model.statements.IfStatement;
 import hillbillies.model.statements.MoveToStatement;
+import hillbillies.model.statements.Program;
 import hillbillies.model.statements.SequenceStatement;
 import hillbillies.model.statements.Statement;
+import hillbillies.model.statements.TaskFactory;
+import hillbillies.model.statements.TaskOptimizer;
 import hillbillies.model.statements.WhileStatement;
 import hillbillies.model.statements.WorkStatement;
 import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import hillbillies.part3.programs.ParseCache;
+import hillbillies.part3.programs.TaskParser;
 import hillbillies.part3.programs.SourceLocation;
 
 public class StatementsTests {
@@ -97,7 +118,6 @@ public class StatementsTests {
 	@Test
 	public void testMove(){
 		LiteralPositionExpression literalPositionExpression = new LiteralPositionExpression(3, 0, 0, sourcelocation);
-		literalPositionExpression.addToTask(task);
 		task= new Task("name", 0, new MoveToStatement(literalPositionExpression, sourcelocation));
 		unit1.moveTo(0, 0, 0);
 		
@@ -118,7 +138,6 @@ public class StatementsTests {
 	@Test
 	public void testfollow(){
 		AnyUnitExpression anyUnitExpression= new AnyUnitExpression(sourcelocation);
-		anyUnitExpression.addToTask(task);
 		task= new Task("name", 0, new FollowStatement(anyUnitExpression,sourcelocation));
 		unit1.moveTo(0, 0, 0);
 		unit2.moveTo(2, 0, 0);
@@ -140,7 +159,6 @@ public class StatementsTests {
 	@Test
 	public void testWorkandMove(){
 		BoulderPositionExpression boulderPositionExpression= new BoulderPositionExpression(sourcelocation);
-		boulderPositionExpression.addToTask(task);
 		task= new Task("name", 0, new MoveToStatement(boulderPositionExpression,sourcelocation));
 		unit1.moveTo(0, 0, 0);
 		for (int i = 0; i < 50; i++) {
@@ -156,7 +174,6 @@ public class StatementsTests {
 		assertTrue(unit1.getPosition().getCubeX()==1);
 
 		HerePositionExpression herePositionExpression= new HerePositionExpression(sourcelocation);
-		herePositionExpression.addToTask(task);
 		task2= new Task("name", 0, new WorkStatement(herePositionExpression,sourcelocation));
 		task2.assignToUnit(unit1);
 		unit1.advanceTime(0.19);
@@ -191,4 +208,196 @@ public class StatementsTests {
 		Statement seq = new SequenceStatement(list, sourceLocation);
 		assertFalse(seq.isWellFormed(new HashSet<String>()));
 	}
+	
+	@Test
+	public void optimizer_foldsConditions(){
+		SourceLocation sourceLocation = new SourceLocation(1, 1);
+		IBooleanExpression solid = new IsSolidBoolean(new HerePositionExpression(sourceLocation), sourceLocation);
+		IBooleanExpression or = new OrBooleanExpression(new FalseBooleanExpression(sourceLocation), 
+				new NotBooleanExpression(new NotBooleanExpression(solid, sourceLocation), sourceLocation), sourceLocation);
+		assertSame(solid, or.fold());
+		IBooleanExpression and = new AndBooleanExpression(solid, new FalseBooleanExpression(sourceLocation), sourceLocation);
+		assertSame(and, and.fold());
+	}
+	
+	@Test
+	public void optimizer_removesDeadCode(){
+		SourceLocation sourceLocation = new SourceLocation(1, 1);
+		TaskFactory factory = new TaskFactory();
+		Statement ifstmt = factory.createIf(factory.createNot(factory.createNot(factory.createTrue(sourceLocation), sourceLocation), sourceLocation), 
+				factory.createMoveTo(factory.createLiteralPosition(1, 1, 1, sourceLocation), sourceLocation), 
+				factory.createWork(factory.createHerePosition(sourceLocation), sourceLocation), sourceLocation);
+		Statement deadwhile = factory.createWhile(factory.createFalse(sourceLocation), 
+				factory.createWork(factory.createHerePosition(sourceLocation), sourceLocation), sourceLocation);
+		Statement emptywhile = factory.createWhile(factory.createAnd(factory.createTrue(sourceLocation), 
+				factory.createIsSolid(factory.createHerePosition(sourceLocation), sourceLocation), sourceLocation), 
+				factory.createSequence(new ArrayList<>(), sourceLocation), sourceLocation);
+		List<Statement> list = new ArrayList<>();
+		list.add(ifstmt);
+		list.add(deadwhile);
+		list.add(emptywhile);
+		List<Task> tasks = factory.createTasks("optimized", 0, factory.createSequence(list, sourceLocation), new ArrayList<>());
+		assertTrue(tasks.get(0).getStatement() instanceof MoveToStatement);
+		assertEquals(1, tasks.get(0).getProgram().getNbInstructions());
+		assertEquals(17, factory.getOptimizer().getNbRemovedNodes());
+	}
+	
+	@Test
+	public void optimizer_leavesStatementUnchanged(){
+		SourceLocation sourceLocation = new SourceLocation(1, 1);
+		BreakStatement breakstmt = new BreakStatement(sourceLocation);
+		WhileStatement whilestmt = new WhileStatement(new NotBooleanExpression(new FalseBooleanExpression(sourceLocation), sourceLocation), 
+				breakstmt, sourceLocation);
+		TaskOptimizer optimizer = new TaskOptimizer();
+		Statement optimized = optimizer.optimize(whilestmt);
+		assertNotSame(whilestmt, optimized);
+		assertNotSame(breakstmt, optimized.getStatements().get(0));
+		assertSame(whilestmt, breakstmt.getWhileStatement());
+		assertEquals(1, optimizer.getNbOptimized());
+	}
+	
+	@Test
+	public void createTasks_shareProgram(){
+		SourceLocation sourceLocation = new SourceLocation(1, 1);
+		TaskFactory factory = new TaskFactory();
+		List<Statement> list = new ArrayList<>();
+		list.add(factory.createAssignment("p", factory.createSelectedPosition(sourceLocation), sourceLocation));
+		list.add(factory.createMoveTo(factory.createReadVariable("p", sourceLocation), sourceLocation));
+		List<int[]> cubes = new ArrayList<>();
+		cubes.add(new int[]{1, 2, 0});
+		cubes.add(new int[]{3, 4, 0});
+		List<Task> tasks = factory.createTasks("shared", 0, factory.createSequence(list, sourceLocation), cubes);
+		assertEquals(2, tasks.size());
+		assertSame(tasks.get(0).getStatement(), tasks.get(1).getStatement());
+		assertSame(tasks.get(0).getProgram(), tasks.get(1).getProgram());
+		for (Task task : tasks)
+			task.getProgram().start(task).executeNext();
+		assertEquals(new Vector(1, 2, 0), tasks.get(0).getVariable("p"));
+		assertEquals(new Vector(3, 4, 0), tasks.get(1).getVariable("p"));
+	}
+	
+	@Test
+	public void parseCache_replaysRecordedTask(){
+		String text = "name: \"cached\"\npriority: 7\nactivities: p := selected; moveTo p;";
+		List<int[]> cubes = new ArrayList<>();
+		cubes.add(new int[]{1, 2, 0});
+		ParseCache cache = TaskParser.getCache();
+		long hits = cache.getNbHits();
+		List<Task> first = TaskParser.parseTasksFromString(text, new TaskFactory(), cubes);
+		List<Task> second = TaskParser.parseTasksFromString(text, new TaskFactory(), cubes);
+		assertEquals(hits + 1, cache.getNbHits());
+		assertEquals(7, second.get(0).getPriority());
+		assertEquals("cached", second.get(0).getName());
+		assertNotSame(first.get(0).getStatement(), second.get(0).getStatement());
+		TaskParser<?, ?, Task> parser = TaskParser.create(new TaskFactory());
+		parser.setCaching(false);
+		assertTrue(parser.parseString(text, cubes).isPresent());
+		assertEquals(hits + 1, cache.getNbHits());
+	}
+	
+	@Test
+	public void parseCache_dependsOnFactoryState(){
+		String first = "name: \"first\"\npriority: 0\nactivities: v := true;";
+		String second = "name: \"second\"\npriority: 0\nactivities: v := here; moveTo v;";
+		List<int[]> cubes = new ArrayList<>();
+		assertTrue(TaskParser.create(new TaskFactory()).parseString(second, cubes).isPresent());
+		TaskParser<?, ?, Task> cached = TaskParser.create(new TaskFactory());
+		TaskParser<?, ?, Task> uncached = TaskParser.create(new TaskFactory());
+		uncached.setCaching(false);
+		assertTrue(cached.parseString(first, cubes).isPresent());
+		assertTrue(uncached.parseString(first, cubes).isPresent());
+		ParseCache cache = TaskParser.getCache();
+		long hits = cache.getNbHits();
+		assertFalse(uncached.parseString(second, cubes).isPresent());
+		assertFalse(cached.parseString(second, cubes).isPresent());
+		assertEquals(hits + 1, cache.getNbHits());
+		assertFalse(cached.getErrors().isEmpty());
+	}
+	
+	@Test
+	public void parseCache_evictsLeastRecentlyUsed(){
+		ParseCache cache = TaskParser.getCache();
+		int capacity = cache.getCapacity();
+		try {
+			cache.clear();
+			cache.setCapacity(1);
+			long evictions = cache.getNbEvictions();
+			TaskParser<?, ?, Task> parser = TaskParser.create(new TaskFactory());
+			assertTrue(parser.parseString("name: \"a\"\npriority: 1\nactivities: print true;", new ArrayList<>()).isPresent());
+			assertTrue(parser.parseString("name: \"b\"\npriority: 1\nactivities: print false;", new ArrayList<>()).isPresent());
+			assertEquals(evictions + 1, cache.getNbEvictions());
+			assertEquals(1, cache.size());
+			cache.setCapacity(0);
+			assertEquals(0, cache.size());
+		} finally {
+			cache.setCapacity(capacity);
+		}
+	}
+	
+	@Test
+	public void twoStageParsing_reportsErrors(){
+		TaskParser.warmUp();
+		TaskParser<?, ?, Task> parser = TaskParser.create(new TaskFactory());
+		parser.setCaching(false);
+		assertTrue(parser.isTwoStage());
+		assertTrue(parser.parseString("name: \"ok\"\npriority: 1\nactivities: while true do print true; break; done", new ArrayList<>()).isPresent());
+		assertTrue(parser.getErrors().isEmpty());
+		assertFalse(parser.parseString("name: \"broken\"\npriority: 1\nactivities: moveTo ;", new ArrayList<>()).isPresent());
+		assertFalse(parser.getErrors().isEmpty());
+	}
+	
+	@Test
+	public void taskBundle_roundTrip() throws IOException {
+		String text = "name: \"round trip\"\npriority: 3\nactivities:\n"
+				+ "p := selected; u := this;\n"
+				+ "while is_alive u && !is_solid (next_to p) do\n"
+				+ "  if carries_item u || false then work (1, 2, 0); else moveTo position_of u; fi\n"
+				+ "  follow any; attack enemy; print is_enemy friend; break;\n"
+				+ "done";
+		List<int[]> cubes = new ArrayList<>();
+		cubes.add(new int[]{1, 2, 0});
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TaskParser.saveBundle(Arrays.asList(text, text), out);
+		List<Task> loaded = TaskParser.loadBundle(new ByteArrayInputStream(out.toByteArray()), new TaskFactory(), cubes);
+		List<Task> parsed = TaskParser.parseTasksFromString(text, new TaskFactory(), cubes);
+		assertEquals(2, loaded.size());
+		assertEquals("round trip", loaded.get(1).getName());
+		assertEquals(3, loaded.get(1).getPriority());
+		assertEquals(new Vector(1, 2, 0), loaded.get(1).getSelectedPosition());
+		assertTrue(loaded.get(1).wellformed());
+		Program expected = parsed.get(0).getProgram();
+		Program actual = loaded.get(1).getProgram();
+		assertArrayEquals(expected.getInstructions(), actual.getInstructions());
+		for (int i = 0; i < expected.getNbInstructions(); i++)
+			assertEquals(expected.getSourceLocation(i), actual.getSourceLocation(i));
+		assertEquals(new SourceLocation(4, 0), actual.getSourceLocation(0));
+	}
+	
+	@Test
+	public void taskBundle_invalidCounts() throws IOException {
+		for (int[] counts : new int[][]{{-1, 0, 0}, {1, -1, 0}, {1, 0, -1}, {1, 0, Integer.MAX_VALUE}, {-1}}){
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream data = new DataOutputStream(bytes);
+			data.writeInt(0x48425442);
+			data.writeShort(1);
+			data.writeInt(counts[0]);
+			if (counts.length > 1){
+				data.writeUTF("corrupt");
+				data.writeInt(1);
+				data.writeInt(counts[1]);
+				data.writeInt(counts[2]);
+			}
+			try {
+				TaskParser.loadBundle(new ByteArrayInputStream(bytes.toByteArray()), new TaskFactory(), new ArrayList<>());
+				fail();
+			} catch (IOException e){
+				assertTrue(e.getMessage().startsWith("Invalid number of"));
+			}
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void taskBundle_notABundle() throws IOException {
+		TaskParser.loadBundle(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6}), new TaskFactory(), new ArrayList<>());
+	}
 }
@@ -1,8 +1,16 @@
 package hillbillies.tests.model;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -14,11 +22,24 @@ import hillbillies.model.Task;
 import hillbillies.model.Unit;
 import hillbillies.model.Vector;
 import hillbillies.model.World;
+import hillbillies.model.expressions.FalseBooleanExpression;
 import hillbillies.model.expressions.HerePositionExpression;
+import hillbillies.model.expressions.LiteralPositionExpression;
+import hillbillies.model.expressions.NextToPositionExpression;
+import hillbillies.model.expressions.ReadBooleanExpression;
+import hillbillies.model.expressions.TrueBooleanExpression;
+import hillbillies.model.statements.AssignmentStatement;
+import hillbillies.model.statements.BreakStatement;
+import hillbillies.model.statements.IfStatement;
 import hillbillies.model.statements.MoveToStatement;
+import hillbillies.model.statements.Program;
+import hillbillies.model.statements.SequenceStatement;
 import hillbillies.model.statements.Statement;
+import hillbillies.model.statements.TaskFactory;
+import hillbillies.model.statements.WhileStatement;
 import hillbillies.part2.listener.DefaultTerrainChangeListener;
 import hillbillies.part3.programs.SourceLocation;
+import hillbillies.part3.programs.TaskParser;
 
 public class TaskTest {
 	
@@ -131,4 +152,163 @@ public class TaskTest {
 		task.storeVariable("test", test);
 		assertTrue(task.getVariable("test") == test);
 	}
+	
+	@Test
+	public void storeVariable_slotsAreTyped(){
+		Vector vector = new Vector(1,2,3);
+		task.storeVariable("test", vector);
+		int slot = task.getVariableSlot("test");
+		assertEquals(slot, task.getVariableSlot("test"));
+		assertTrue(task.getPositionVariable(slot) == vector);
+		task.storeBooleanVariable(slot, false);
+		assertEquals(false, task.getVariable("test"));
+		try {
+			task.getPositionVariable(slot);
+			assertTrue(false);
+		} catch (NoSuchElementException e) {
+		}
+		try {
+			task.getVariable("unknown");
+			assertTrue(false);
+		} catch (NoSuchElementException e) {
+		}
+	}
+
+	@Test
+	public void evaluationContext_registersSearches(){
+		SourceLocation loc = new SourceLocation(1, 1);
+		Task searching = new Task("search", 0, new MoveToStatement(
+				new NextToPositionExpression(new HerePositionExpression(loc), loc), loc));
+		assertEquals(1, searching.getEvaluationContext().getNbNodes());
+		searching.assignToUnit(unit);
+		unit.advanceTime(0.1);
+		assertTrue(unit.isMoving());
+		assertFalse(searching.getEvaluationContext().isOpen());
+		assertNull(searching.getEvaluationContext().getValue(0));
+	}
+
+	@Test
+	public void program_laysOutCopyOfStatement(){
+		SourceLocation loc = new SourceLocation(1, 1);
+		Statement statement = new MoveToStatement(
+				new NextToPositionExpression(new HerePositionExpression(loc), loc), loc);
+		Task first = new Task("first", 0, statement);
+		Task second = new Task("second", 0, new Program(statement));
+		assertNotSame(statement, first.getStatement());
+		assertNotSame(first.getStatement(), second.getStatement());
+		assertEquals(1, first.getEvaluationContext().getNbNodes());
+		assertEquals(1, second.getEvaluationContext().getNbNodes());
+		second.assignToUnit(unit);
+		unit.advanceTime(0.1);
+		assertTrue(unit.isMoving());
+	}
+
+	@Test
+	public void programFollowsControlFlow(){
+		SourceLocation loc = new SourceLocation(1, 1);
+		List<Statement> body = new ArrayList<>();
+		body.add(new IfStatement(new ReadBooleanExpression("b", loc),
+				new SequenceStatement(Arrays.asList(
+						new AssignmentStatement(new FalseBooleanExpression(loc), "b", loc),
+						new AssignmentStatement(new LiteralPositionExpression(1, 0, 0, loc), "p", loc)), loc),
+				new BreakStatement(loc), loc));
+		body.add(new AssignmentStatement(new LiteralPositionExpression(2, 0, 0, loc), "q", loc));
+		body.add(new BreakStatement(loc));
+		body.add(new AssignmentStatement(new LiteralPositionExpression(3, 0, 0, loc), "q", loc));
+		Statement program = new SequenceStatement(Arrays.asList(
+				new AssignmentStatement(new TrueBooleanExpression(loc), "b", loc),
+				new WhileStatement(new FalseBooleanExpression(loc),
+						new AssignmentStatement(new TrueBooleanExpression(loc), "r", loc), loc),
+				new WhileStatement(new TrueBooleanExpression(loc), new SequenceStatement(body, loc), loc)), loc);
+		Task controlFlow = new Task("control flow", 0, program);
+		controlFlow.assignToUnit(unit);
+		assertFalse(controlFlow.getProgram().isCompiled());
+		for (int run = 0; run < Program.PROMOTION_THRESHOLD / 4 + 10; run++){
+			Program.Execution execution = controlFlow.getProgram().start(controlFlow);
+			int nbExecuted = 0;
+			while (!execution.isFinished()){
+				execution.executeNext();
+				nbExecuted++;
+			}
+			assertEquals(4, nbExecuted);
+			assertEquals(false, controlFlow.getVariable("b"));
+			assertEquals(new Vector(1, 0, 0), controlFlow.getVariable("p"));
+			assertEquals(new Vector(2, 0, 0), controlFlow.getVariable("q"));
+		}
+		assertTrue(controlFlow.getProgram().isCompiled());
+	}
+
+	@Test
+	public void compiledProgramMatchesInterpreter(){
+		String text = "name: \"counter\"\npriority: 0\nactivities:\n"
+				+ "a := false; b := false; c := false;\n"
+				+ "while true do\n"
+				+ "  if a && b && c then break; fi\n"
+				+ "  if !a then a := true;\n"
+				+ "  else a := false; if !b then b := true; else b := false; c := true; fi\n"
+				+ "  fi\n"
+				+ "  while b || c do p := (1, 2, 0); break; done\n"
+				+ "done\n"
+				+ "q := (2, 2, 0);";
+		Statement statement = TaskParser.parseTasksFromString(text, new TaskFactory(), new ArrayList<>()).get(0).getStatement();
+		Program interpreted = new Program(statement);
+		Program compiled = new Program(statement);
+		Task warmUp = new Task("warm up", 0, compiled);
+		warmUp.assignToUnit(new Unit(world, false));
+		for (int run = 0; !compiled.isCompiled(); run++){
+			assertTrue(run <= Program.PROMOTION_THRESHOLD);
+			Program.Execution execution = compiled.start(warmUp);
+			while (!execution.isFinished())
+				execution.executeNext();
+		}
+		Task expected = new Task("interpreted", 0, interpreted);
+		Task actual = new Task("compiled", 0, compiled);
+		expected.assignToUnit(unit);
+		actual.assignToUnit(unit2);
+		for (int run = 0; run < 3; run++){
+			Program.Execution reference = interpreted.start(expected);
+			Program.Execution execution = compiled.start(actual);
+			int nbExecuted = 0;
+			while (!reference.isFinished()){
+				assertFalse(execution.isFinished());
+				assertEquals(reference.getNextInstruction(), execution.getNextInstruction());
+				reference.executeNext();
+				execution.executeNext();
+				nbExecuted++;
+				assertEquals(variables(expected), variables(actual));
+			}
+			assertTrue(execution.isFinished());
+			assertEquals(reference.getNextInstruction(), execution.getNextInstruction());
+			assertEquals(new Vector(2, 2, 0), actual.getVariable("q"));
+			assertTrue(nbExecuted > 20);
+		}
+		assertFalse(interpreted.isCompiled());
+	}
+
+	/**
+	 * Return the values of the variables of the counter task of the given Task, or null for
+	 * those that have not been assigned yet.
+	 */
+	private static List<Object> variables(Task task){
+		List<Object> values = new ArrayList<>();
+		for (String name : Arrays.asList("a", "b", "c", "p", "q")){
+			try {
+				values.add(task.getVariable(name));
+			} catch (NoSuchElementException e){
+				values.add(null);
+			}
+		}
+		return values;
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void programLoopingWithoutStatements(){
+		SourceLocation loc = new SourceLocation(1, 1);
+		Statement program = new WhileStatement(new TrueBooleanExpression(loc),
+				new WhileStatement(new FalseBooleanExpression(loc), new BreakStatement(loc), loc), loc);
+		Task spin = new Task("spin", 0, program);
+		Program.Execution execution = spin.getProgram().start(spin);
+		assertFalse(execution.isFinished());
+		execution.executeNext();
+	}
 }
@@ -1,6 +1,15 @@
 package hillbillies.tests.model;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -8,10 +17,15 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import hillbillies.model.Boulder;
 import hillbillies.model.Faction;
+import hillbillies.model.Log;
+import hillbillies.model.SimulationLoop;
+import hillbillies.model.TickProfiler;
 import hillbillies.model.Unit;
 import hillbillies.model.Vector;
 import hillbillies.model.World;
+import hillbillies.model.WorldSnapshot;
 import hillbillies.part2.listener.DefaultTerrainChangeListener;
 
 public class WorldTest {
@@ -71,4 +85,428 @@ public class WorldTest {
 		assertFalse(world3.hasAsFaction(test));
 	}
 
+	@Test
+	public void enemyProximityIndex(){
+		World flat = new World(new int[10][10][1], new DefaultTerrainChangeListener());
+		Unit unit = new Unit(new Vector(0.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		Unit neighbour = new Unit(new Vector(1.5,0.5,0.5), 50,50,50,"Bob",50,false);
+		Unit distant = new Unit(new Vector(5.5,5.5,0.5), 50,50,50,"Carol",50,false);
+		flat.addGameObject(unit);
+		flat.addGameObject(neighbour);
+		flat.addGameObject(distant);
+		Set<Unit> adjacent = unit.getAdjacentEnemies();
+		assertEquals(1, adjacent.size());
+		assertTrue(adjacent.contains(neighbour));
+		assertTrue(World.getNearestEnemy(unit) == neighbour);
+	}
+
+	@Test
+	public void restingObjectsSleepUntilTerrainChanges(){
+		int[][][] coordinates = new int[1][1][3];
+		coordinates[0][0][0] = 1;
+		World column = new World(coordinates, new DefaultTerrainChangeListener());
+		Log log = new Log(new Vector(0.5,0.5,1.5), column);
+		assertTrue(column.isAsleep(log));
+		assertEquals(0, column.getNbGameObjects());
+		column.setCubeType(0, 0, 0, 0);
+		assertFalse(column.isAsleep(log));
+		column.advanceTime(0.2);
+		column.advanceTime(0.2);
+		column.advanceTime(0.2);
+		assertEquals(0, log.getPosition().getCubeZ());
+		assertTrue(column.getInanimateObjectsAt(new Vector(0.5,0.5,0.5)).contains(log));
+		assertTrue(column.getInanimateObjectsAt(new Vector(0.5,0.5,1.5)).isEmpty());
+	}
+
+	@Test
+	public void itemsLyingStillArePiledPerCube(){
+		World flat = new World(new int[3][3][1], new DefaultTerrainChangeListener());
+		Boulder first = new Boulder(new Vector(1.2,1.7,0.5), flat);
+		List<Integer> weights = new ArrayList<>();
+		weights.add(first.getWeight());
+		for (int i = 0; i < 4; i++)
+			weights.add(new Boulder(new Vector(1.5,1.5,0.5), flat).getWeight());
+		new Log(new Vector(1.5,1.5,0.5), flat);
+		assertEquals(0, flat.getNbGameObjects());
+		assertEquals(5, flat.GetAllBoulders().size());
+		assertEquals(flat.GetAllBoulders(), flat.GetAllBoulders());
+		assertTrue(flat.GetAllBoulders().contains(first));
+		assertEquals(1, flat.GetAllLogs().size());
+		assertEquals(6, flat.getInanimateObjectsAt(new Vector(1.5,1.5,0.5)).size());
+		assertSame(flat, first.getWorld());
+		assertTrue(flat.isAsleep(first));
+		assertEquals(new Vector(1.2,1.7,0.5), first.getPosition());
+		Unit worker = new Unit(new Vector(0.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		flat.addGameObject(worker);
+		for (int i = 0; i < 5; i++){
+			worker.WorkAt(1, 1, 0);
+			while (worker.isWorking())
+				flat.advanceTime(0.2);
+			assertTrue(worker.isCarryingBoulder());
+			worker.WorkAt(0, 1, 0);
+			while (worker.isWorking())
+				flat.advanceTime(0.2);
+			assertFalse(worker.isCarryingBoulder());
+		}
+		assertEquals(1, flat.getNbGameObjects());
+		assertEquals(5, flat.GetAllBoulders().size());
+		List<Integer> droppedWeights = new ArrayList<>();
+		for (Boulder boulder : flat.GetAllBoulders()){
+			assertEquals(1, boulder.getPosition().getCubeY());
+			droppedWeights.add(boulder.getWeight());
+		}
+		Collections.sort(weights);
+		Collections.sort(droppedWeights);
+		assertEquals(weights, droppedWeights);
+		assertEquals(1, flat.getInanimateObjectsAt(new Vector(1.5,1.5,0.5)).size());
+		assertTrue(flat.getInanimateObjectsAt(new Vector(1.5,1.5,0.5)).iterator().next() instanceof Log);
+	}
+
+	@Test
+	public void seededWorldsBehaveIdentically(){
+		World first = new World(new int[10][10][2], new DefaultTerrainChangeListener(), 42);
+		World second = new World(new int[10][10][2], new DefaultTerrainChangeListener(), 42);
+		assertEquals(42, first.getSeed());
+		List<Unit> firstUnits = new ArrayList<>();
+		List<Unit> secondUnits = new ArrayList<>();
+		for (int i = 0; i < 10; i++){
+			firstUnits.add(new Unit(first, true));
+			secondUnits.add(new Unit(second, true));
+		}
+		for (int i = 0; i < 100; i++){
+			first.advanceTime(0.2);
+			second.advanceTime(0.2);
+		}
+		for (int i = 0; i < 10; i++){
+			Unit one = firstUnits.get(i);
+			Unit other = secondUnits.get(i);
+			assertEquals(one.getStrength(), other.getStrength());
+			assertEquals(one.getHitpoints(), other.getHitpoints());
+			assertEquals(one.getStatus(), other.getStatus());
+			assertTrue(one.getPosition().equals(other.getPosition()));
+		}
+	}
+
+	@Test
+	public void parallelTicksAreReproducible(){
+		World first = new World(new int[10][10][2], new DefaultTerrainChangeListener(), 42);
+		World second = new World(new int[10][10][2], new DefaultTerrainChangeListener(), 42);
+		first.setParallelTicks(true);
+		second.setParallelTicks(true);
+		assertTrue(first.hasParallelTicks());
+		List<Unit> firstUnits = new ArrayList<>();
+		List<Unit> secondUnits = new ArrayList<>();
+		for (int i = 0; i < 10; i++){
+			firstUnits.add(new Unit(first, true));
+			secondUnits.add(new Unit(second, true));
+		}
+		for (int i = 0; i < 100; i++){
+			first.advanceTime(0.2);
+			second.advanceTime(0.2);
+		}
+		for (int i = 0; i < 10; i++){
+			Unit one = firstUnits.get(i);
+			Unit other = secondUnits.get(i);
+			assertEquals(one.getHitpoints(), other.getHitpoints());
+			assertEquals(one.getStatus(), other.getStatus());
+			assertTrue(one.getPosition().equals(other.getPosition()));
+		}
+	}
+
+	@Test
+	public void parallelTicksMatchSequentialTicksWithoutInteraction(){
+		World sequential = new World(new int[10][10][2], new DefaultTerrainChangeListener(), 7);
+		World parallel = new World(new int[10][10][2], new DefaultTerrainChangeListener(), 7);
+		parallel.setParallelTicks(true);
+		Unit one = new Unit(sequential, true);
+		Unit other = new Unit(parallel, true);
+		for (int i = 0; i < 200; i++){
+			sequential.advanceTime(0.2);
+			parallel.advanceTime(0.2);
+			assertEquals(one.getStatus(), other.getStatus());
+			assertTrue(one.getPosition().equals(other.getPosition()));
+		}
+	}
+
+	@Test
+	public void workingUnitsFinishOnTime(){
+		int[][][] coordinates = new int[5][5][2];
+		coordinates[1][0][0] = 1;
+		coordinates[0][1][0] = 1;
+		World flat = new World(coordinates, new DefaultTerrainChangeListener());
+		Unit worker = new Unit(new Vector(0.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		flat.addGameObject(worker);
+		worker.WorkAt(1, 0, 0);
+		for (int i = 0; i < 49; i++)
+			flat.advanceTime(0.2);
+		assertTrue(worker.isWorking());
+		flat.advanceTime(0.2);
+		flat.advanceTime(0.2);
+		assertFalse(worker.isWorking());
+		assertEquals(0, flat.getCubeType(1, 0, 0));
+		worker.WorkAt(0, 1, 0);
+		flat.advanceTime(0.2);
+		worker.moveToAdjacent(1, 0, 0);
+		assertTrue(worker.isMoving());
+	}
+
+	@Test
+	public void fastForwardMatchesRepeatedSteps(){
+		int[][][] coordinates = new int[5][5][2];
+		coordinates[1][0][0] = 1;
+		World stepped = new World(coordinates, new DefaultTerrainChangeListener());
+		World forwarded = new World(coordinates, new DefaultTerrainChangeListener());
+		Unit first = new Unit(new Vector(0.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		Unit second = new Unit(new Vector(0.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		stepped.addGameObject(first);
+		forwarded.addGameObject(second);
+		first.WorkAt(1, 0, 0);
+		second.WorkAt(1, 0, 0);
+		for (int i = 0; i < 45; i++)
+			stepped.advanceTime(0.2);
+		forwarded.fastForward(9.0);
+		assertEquals(9.0, forwarded.getGameTime(), 1e-9);
+		assertTrue(first.isWorking() && second.isWorking());
+		for (int i = 0; i < 7; i++)
+			stepped.advanceTime(0.2);
+		forwarded.fastForward(1.4);
+		assertFalse(first.isWorking() || second.isWorking());
+		assertEquals(0, forwarded.getCubeType(1, 0, 0));
+		first.moveTo(4, 4, 0);
+		second.moveTo(4, 4, 0);
+		for (int i = 0; i < 10; i++)
+			stepped.advanceTime(0.2);
+		forwarded.fastForward(2.0);
+		assertTrue(first.getPosition().equals(second.getPosition()));
+	}
+
+	@Test
+	public void fastForwardWithAwakeUnitMatchesRepeatedSteps(){
+		int[][][] coordinates = new int[10][5][2];
+		coordinates[1][0][0] = 1;
+		World stepped = new World(coordinates, new DefaultTerrainChangeListener());
+		World forwarded = new World(coordinates, new DefaultTerrainChangeListener());
+		Unit firstWorker = new Unit(new Vector(0.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		Unit secondWorker = new Unit(new Vector(0.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		Unit firstWalker = new Unit(new Vector(0.5,4.5,0.5), 50,50,50,"Alice",50,false);
+		Unit secondWalker = new Unit(new Vector(0.5,4.5,0.5), 50,50,50,"Alice",50,false);
+		stepped.addGameObject(firstWorker);
+		stepped.addGameObject(firstWalker);
+		forwarded.addGameObject(secondWorker);
+		forwarded.addGameObject(secondWalker);
+		firstWorker.WorkAt(1, 0, 0);
+		secondWorker.WorkAt(1, 0, 0);
+		firstWalker.moveTo(9, 4, 0);
+		secondWalker.moveTo(9, 4, 0);
+		for (int i = 0; i < 15; i++)
+			stepped.advanceTime(0.2);
+		forwarded.fastForward(3.0);
+		assertEquals(3.0, forwarded.getGameTime(), 1e-9);
+		assertTrue(secondWalker.isMoving());
+		assertTrue(firstWalker.getPosition().equals(secondWalker.getPosition()));
+		assertTrue(firstWorker.isWorking() && secondWorker.isWorking());
+		for (int i = 0; i < 45; i++)
+			stepped.advanceTime(0.2);
+		forwarded.fastForward(9.0);
+		assertFalse(firstWorker.isWorking() || secondWorker.isWorking());
+		assertEquals(0, stepped.getCubeType(1, 0, 0));
+		assertEquals(0, forwarded.getCubeType(1, 0, 0));
+		assertTrue(firstWalker.getPosition().equals(secondWalker.getPosition()));
+	}
+
+	@Test
+	public void fastForwardJumpsOverWalkingAndFalling(){
+		int[][][] coordinates = new int[10][1][10];
+		int[][][] otherCoordinates = new int[10][1][10];
+		for (int z = 0; z < 8; z++){
+			coordinates[0][0][z] = 1;
+			otherCoordinates[0][0][z] = 1;
+		}
+		World stepped = new World(coordinates, new DefaultTerrainChangeListener());
+		World forwarded = new World(otherCoordinates, new DefaultTerrainChangeListener());
+		stepped.setProfiling(true);
+		forwarded.setProfiling(true);
+		Unit firstFaller = new Unit(new Vector(0.5,0.5,8.5), 100,100,100,"Alice",100,false);
+		Unit secondFaller = new Unit(new Vector(0.5,0.5,8.5), 100,100,100,"Alice",100,false);
+		Unit firstWalker = new Unit(new Vector(1.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		Unit secondWalker = new Unit(new Vector(1.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		stepped.addGameObject(firstFaller);
+		stepped.addGameObject(firstWalker);
+		forwarded.addGameObject(secondFaller);
+		forwarded.addGameObject(secondWalker);
+		for (int z = 0; z < 8; z++){
+			stepped.setCubeType(0, 0, z, 0);
+			forwarded.setCubeType(0, 0, z, 0);
+		}
+		for (int i = 0; i < 20; i++)
+			stepped.advanceTime(0.2);
+		forwarded.fastForward(4.0);
+		assertEquals(4.0, forwarded.getGameTime(), 1e-9);
+		assertFalse(firstFaller.isFalling() || secondFaller.isFalling());
+		assertTrue(firstFaller.getPosition().equals(secondFaller.getPosition()));
+		assertEquals(0, secondFaller.getPosition().getCubeZ());
+		assertEquals(firstFaller.getHitpoints(), secondFaller.getHitpoints());
+		assertTrue(forwarded.getProfiler().getCount(TickProfiler.Phase.FALL)
+				< stepped.getProfiler().getCount(TickProfiler.Phase.FALL) / 2);
+		firstWalker.moveTo(9, 0, 0);
+		secondWalker.moveTo(9, 0, 0);
+		for (int i = 0; i < 20; i++)
+			stepped.advanceTime(0.2);
+		forwarded.fastForward(4.0);
+		assertTrue(secondWalker.isMoving());
+		assertTrue(firstWalker.getPosition().equals(secondWalker.getPosition()));
+		for (int i = 0; i < 30; i++)
+			stepped.advanceTime(0.2);
+		forwarded.fastForward(6.0);
+		assertFalse(firstWalker.isMoving() || secondWalker.isMoving());
+		assertTrue(firstWalker.getPosition().equals(secondWalker.getPosition()));
+		assertTrue(forwarded.getProfiler().getCount(TickProfiler.Phase.MOVEMENT)
+				< stepped.getProfiler().getCount(TickProfiler.Phase.MOVEMENT));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void fastForwardNegativeDuration(){
+		world3.fastForward(-1);
+	}
+
+	@Test
+	public void snapshotsArePublishedAfterEachStep(){
+		int[][][] coordinates = new int[5][5][2];
+		coordinates[1][0][0] = 1;
+		World flat = new World(coordinates, new DefaultTerrainChangeListener());
+		Unit worker = new Unit(new Vector(0.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		flat.addGameObject(worker);
+		assertNull(flat.getSnapshot());
+		flat.setPublishesSnapshots(true);
+		WorldSnapshot first = flat.getSnapshot();
+		assertTrue(first.getUnits().contains(worker));
+		worker.moveToAdjacent(1, 1, 0);
+		flat.advanceTime(0.2);
+		WorldSnapshot second = flat.getSnapshot();
+		assertTrue(second != first);
+		assertEquals(0.2, second.getGameTime(), 1e-9);
+		assertTrue(second.getState(worker).getPosition().equals(worker.getPosition()));
+		assertTrue(first.getState(worker).getPosition().equals(new Vector(0.5,0.5,0.5)));
+		flat.setCubeType(1, 0, 0, 0);
+		flat.advanceTime(0.2);
+		assertEquals(1, flat.getSnapshot().getChangedCubes().size());
+		assertTrue(flat.getSnapshot().getChangedCubes().get(0).equals(new Vector(1, 0, 0)));
+	}
+
+	@Test
+	public void takenSnapshotsCarryAllChangedCubes(){
+		int[][][] coordinates = new int[5][5][3];
+		coordinates[2][2][0] = 1;
+		coordinates[2][2][1] = 1;
+		coordinates[3][3][0] = 2;
+		World flat = new World(coordinates, new DefaultTerrainChangeListener());
+		flat.setPublishesSnapshots(true);
+		assertTrue(flat.takeSnapshot().getChangedCubes().isEmpty());
+		assertNull(flat.takeSnapshot());
+		flat.setCubeType(3, 3, 0, 0);
+		flat.advanceTime(0.2);
+		flat.setCubeType(2, 2, 0, 0);
+		flat.advanceTime(0.2);
+		WorldSnapshot taken = flat.takeSnapshot();
+		assertTrue(taken == flat.getSnapshot());
+		assertEquals(2, taken.getChangedCubes().size());
+		assertEquals(0, taken.getCubeType(new Vector(3, 3, 0)));
+		assertFalse(taken.isSolidConnectedToBorder(new Vector(2, 2, 0)));
+		assertNull(flat.takeSnapshot());
+		flat.advanceTime(0.2);
+		assertTrue(flat.takeSnapshot().getChangedCubes().isEmpty());
+	}
+
+	@Test
+	public void simulationLoopAdvancesOnItsOwnThread() throws InterruptedException{
+		World flat = new World(new int[5][5][2], new DefaultTerrainChangeListener());
+		SimulationLoop loop = new SimulationLoop(flat, 0.01);
+		loop.start();
+		try {
+			loop.addTime(0.1);
+			for (int i = 0; i < 200 && flat.getSnapshot().getGameTime() < 0.1 - 1e-9; i++)
+				Thread.sleep(10);
+			assertEquals(0.1, flat.getSnapshot().getGameTime(), 1e-9);
+		} finally {
+			loop.stop();
+		}
+		assertFalse(loop.isRunning());
+		assertNull(loop.getFailure());
+	}
+
+	@Test
+	public void profilerMeasuresPhases(){
+		World flat = new World(new int[5][5][2], new DefaultTerrainChangeListener());
+		Unit walker = new Unit(new Vector(0.5,0.5,0.5), 50,50,50,"Alice",50,false);
+		flat.addGameObject(walker);
+		assertFalse(flat.isProfiling());
+		flat.setProfiling(true);
+		TickProfiler profiler = flat.getProfiler();
+		walker.moveTo(4, 4, 0);
+		for (int i = 0; i < 10; i++)
+			flat.advanceTime(0.2);
+		assertEquals(1, profiler.getCount(TickProfiler.Phase.PATHFINDING));
+		assertEquals(10, profiler.getCount(TickProfiler.Phase.MOVEMENT));
+		assertEquals(0, profiler.getCount(TickProfiler.Phase.COLLAPSE));
+		assertTrue(profiler.getPercentile(TickProfiler.Phase.MOVEMENT, 50) <= profiler.getMaxTime(TickProfiler.Phase.MOVEMENT));
+		profiler.reset();
+		assertEquals(0, profiler.getCount(TickProfiler.Phase.MOVEMENT));
+		flat.setProfiling(false);
+		assertNull(flat.getProfiler());
+	}
+
+	@Test
+	public void farUnitsAreAdvancedAtLowerDetail(){
+		World flat = new World(new int[20][5][2], new DefaultTerrainChangeListener());
+		World reference = new World(new int[20][5][2], new DefaultTerrainChangeListener());
+		Unit near = new Unit(new Vector(1.5,1.5,0.5), 50,50,50,"Alice",50,false);
+		Unit far = new Unit(new Vector(15.5,1.5,0.5), 50,50,50,"Alice",50,false);
+		Unit control = new Unit(new Vector(15.5,1.5,0.5), 50,50,50,"Alice",50,false);
+		flat.addGameObject(near);
+		flat.addGameObject(far);
+		reference.addGameObject(control);
+		flat.addInterestRegion(new Vector(0,0,0), new Vector(5,5,2));
+		assertTrue(flat.isOfInterest(near.getPosition()));
+		assertFalse(flat.isOfInterest(far.getPosition()));
+		Vector start = far.getPosition();
+		near.moveToAdjacent(1, 0, 0);
+		far.moveToAdjacent(1, 0, 0);
+		control.moveToAdjacent(1, 0, 0);
+		for (int i = 0; i < 9; i++){
+			Vector before = near.getPosition();
+			flat.advanceTime(0.05);
+			reference.advanceTime(0.05);
+			assertFalse(near.getPosition().equals(before));
+		}
+		assertTrue(far.getPosition().equals(start));
+		flat.advanceTime(0.05);
+		reference.advanceTime(0.05);
+		assertEquals(0, far.getPosition().getDistanceTo(control.getPosition()), 1e-9);
+		flat.advanceTime(0.05);
+		reference.advanceTime(0.05);
+		flat.clearInterestRegions();
+		flat.advanceTime(0.05);
+		reference.advanceTime(0.05);
+		assertEquals(0, far.getPosition().getDistanceTo(control.getPosition()), 1e-9);
+	}
+
+
+	@Test
+	public void supportFollowsTerrainChanges(){
+		int[][][] coordinates = new int[3][3][3];
+		coordinates[1][1][0] = 1;
+		World small = new World(coordinates, new DefaultTerrainChangeListener());
+		Unit unit = new Unit(new Vector(1.5,1.5,1.5), 50,50,50,"Alice",50,false);
+		small.addGameObject(unit);
+		assertTrue(small.unitCanStandAt(new Vector(1.5,1.5,1.5)));
+		assertFalse(small.unitCanStandAt(new Vector(0.5,0.5,1.5)));
+		assertFalse(unit.hasToFall());
+		small.setCubeType(2, 1, 1, 2);
+		small.setCubeType(1, 1, 0, 0);
+		assertTrue(small.unitCanStandAt(new Vector(1.5,1.5,1.5)));
+		assertFalse(unit.hasToFall());
+		small.setCubeType(2, 1, 1, 3);
+		assertFalse(small.unitCanStandAt(new Vector(1.5,1.5,1.5)));
+		assertTrue(unit.hasToFall());
+	}
 }